@@ -1,38 +1,90 @@
 package com.example.bluetoothapp;
 
 import android.app.Notification;
+import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
 import android.bluetooth.BluetoothDevice;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.support.annotation.Nullable;
 import android.util.Log;
-import android.widget.Toast;
 
+import com.example.bluetoothapp.core.channel.BufferPool;
+import com.example.bluetoothapp.core.channel.DataLinks;
+import com.example.bluetoothapp.core.channel.FrameChannel;
+import com.example.bluetoothapp.core.device.DeviceSnapshot;
+import com.example.bluetoothapp.core.discovery.DiscoveryScheduler;
+import com.example.bluetoothapp.core.follow.ConnectionNotifier;
+import com.example.bluetoothapp.core.follow.ConnectionSummary;
+import com.example.bluetoothapp.core.follow.FollowEngine;
+import com.example.bluetoothapp.core.metrics.Counter;
+import com.example.bluetoothapp.core.metrics.Gauge;
+import com.example.bluetoothapp.core.metrics.Histogram;
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler;
+import com.example.bluetoothapp.core.operation.ScheduledConnector;
+import com.example.bluetoothapp.core.presence.PresenceEngine;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.DeviceConnector;
+import com.example.bluetoothapp.core.radio.LeScanSettings;
+import com.example.bluetoothapp.core.reconnect.ReconnectEngine;
+import com.example.bluetoothapp.core.service.ServiceDiscovery;
+import com.example.bluetoothapp.core.service.ServiceUuids;
+import com.example.bluetoothapp.core.time.Clock;
+import com.example.bluetoothapp.utilities.AndroidDeviceConnector;
 import com.example.bluetoothapp.utilities.BluetoothFacade;
+import com.example.bluetoothapp.utilities.ConnectionHistory;
+import com.example.bluetoothapp.utilities.FollowedDevices;
+import com.example.bluetoothapp.utilities.HandlerScheduler;
+import com.example.bluetoothapp.utilities.Metrics;
+import com.example.bluetoothapp.utilities.RfcommConnector;
 
-import static com.example.bluetoothapp.MainActivity.BLUETOOTH_DEVICE_FOLLOWED;
-import static com.example.bluetoothapp.utilities.BluetoothFacade.BLUETOOTH_PREFS_FILE;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class BluetoothConnService extends Service {
 
     private static final String BLUETOOTH_CONN_SERVICE_TAG = "bluetooth_conn_service";
+    private static final int FOREGROUND_NOTIFICATION_ID = 30;
+    // Summaries naming more devices than this only count them.
+    private static final int MAX_NAMED_CHANGES = 3;
+    // Presence sightings come from a short background scan this often, and from batched low
+    // power LE scan results where LE is supported.
+    private static final long PRESENCE_SCAN_PERIOD = 60 * 1000;
+    private static final long PRESENCE_LE_REPORT_DELAY = 10 * 1000;
+    // Sensor data links share this many pooled buffers, each holding a batch of frames.
+    private static final int LINK_BUFFER_SIZE = 16 * 1024;
+    private static final int LINK_POOLED_BUFFERS = 16;
+    // adb shell dumpsys activity service com.example.bluetoothapp/.BluetoothConnService
+    //     --write-snapshot
+    private static final String DUMP_WRITE_SNAPSHOT = "--write-snapshot";
+    // How far back the dump's connection history goes.
+    private static final long DUMP_HISTORY_RANGE = 24 * 60 * 60 * 1000L;
     private BluetoothFacade mBluetoothFacade;
-
-    private SharedPreferences mSharedPreferences;
-
-    private IntentFilter mFilter;
-    private BroadcastReceiver mNotificationsReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            mBluetoothFacade.manageConnectionNotifications(intent);
-        }
-    };
+    private FollowEngine mFollowEngine;
+    private HandlerThread mNotifierThread;
+    private ConnectionNotifier mConnectionNotifier;
+    private Notification.Builder mNotificationBuilder;
+    private AndroidDeviceConnector mDeviceConnector;
+    private ScheduledConnector<BluetoothDevice> mScheduledConnector;
+    private ReconnectEngine<BluetoothDevice> mReconnectEngine;
+    private ExecutorService mLinkExecutor;
+    private DataLinks<BluetoothDevice> mDataLinks;
+    private final Histogram mConnectionChangeTimes =
+            Metrics.get().histogram("service.connection_changed");
+    private final Gauge mOpenLinks = Metrics.get().gauge("links.open");
+    private final Counter mFramesReceived = Metrics.get().counter("links.frames_received");
 
     @Nullable
     @Override
@@ -44,34 +96,63 @@ public class BluetoothConnService extends Service {
     public void onCreate() {
         super.onCreate();
         Log.v(BLUETOOTH_CONN_SERVICE_TAG, "onCreate");
-        mSharedPreferences = getSharedPreferences(BLUETOOTH_PREFS_FILE, Context.MODE_PRIVATE);
-
-        mBluetoothFacade = new BluetoothFacade();
-        mBluetoothFacade.setNotificationListener(new BluetoothFacade.
-                OnDeviceFollowedNotificationListener() {
-            @Override
-            public void onDeviceConnected(BluetoothDevice device) {
-                if (isTheDeviceFollowed(device)) {
-                    Log.v(BLUETOOTH_CONN_SERVICE_TAG, device.getName() + " connected.");
-                    Toast.makeText(getApplicationContext(), device.getName() + " connected. ",
-                            Toast.LENGTH_LONG).show();
-                }
-            }
-
+        mFollowEngine = FollowedDevices.get(this);
+        mNotifierThread = new HandlerThread("bluetooth-notifier");
+        mNotifierThread.start();
+        HandlerScheduler notifierScheduler =
+                new HandlerScheduler(new Handler(mNotifierThread.getLooper()));
+        mConnectionNotifier = new ConnectionNotifier(Clock.MONOTONIC, notifierScheduler,
+                ConnectionNotifier.DEFAULT_HYSTERESIS, ConnectionNotifier.DEFAULT_MIN_INTERVAL);
+        mConnectionNotifier.setListener(new ConnectionNotifier.Listener() {
             @Override
-            public void onDeviceDisconnected(BluetoothDevice device) {
-                if (isTheDeviceFollowed(device)) {
-                    Log.v(BLUETOOTH_CONN_SERVICE_TAG, device.getName() + " disconnected.");
-                    Toast.makeText(getApplicationContext(), device.getName() + " disconnected. ",
-                            Toast.LENGTH_LONG).show();
-                }
+            public void onSummary(ConnectionSummary summary) {
+                showSummary(summary);
             }
         });
 
-        mFilter = new IntentFilter();
-        mFilter.addAction(BluetoothDevice.ACTION_ACL_CONNECTED);
-        mFilter.addAction(BluetoothDevice.ACTION_ACL_DISCONNECTED);
-        registerReceiver(mNotificationsReceiver, mFilter);
+        mBluetoothFacade = new BluetoothFacade(this);
+        mDeviceConnector = new AndroidDeviceConnector(this);
+        ServiceDiscovery<BluetoothDevice> services = mBluetoothFacade.getServiceDiscovery();
+        if (services != null) {
+            mDeviceConnector.setServiceCache(services.getCache());
+        }
+        // Reconnects wait for the controller like any other operation, but come before
+        // background scans.
+        mScheduledConnector = mBluetoothFacade.scheduleConnects(mDeviceConnector,
+                RadioOperationScheduler.PRIORITY_NORMAL);
+        mLinkExecutor = Executors.newSingleThreadExecutor();
+        mDataLinks = mBluetoothFacade.createDataLinks(new RfcommConnector(), mLinkExecutor,
+                new BufferPool(LINK_BUFFER_SIZE, LINK_POOLED_BUFFERS),
+                FrameChannel.Policy.DEFAULT, RadioOperationScheduler.PRIORITY_NORMAL);
+        mDataLinks.setListener(mLinkListener);
+        mReconnectEngine = new ReconnectEngine<>(Clock.MONOTONIC, notifierScheduler,
+                mReconnector, ReconnectEngine.Policy.DEFAULT, new Random());
+        mReconnectEngine.setListener(mReconnectListener);
+
+        mBluetoothFacade.setConnectionJournal(ConnectionHistory.get(this));
+        mBluetoothFacade.setConnectionListener(mConnectionListener);
+
+        mBluetoothFacade.setPresenceListener(mPresenceListener);
+        mBluetoothFacade.startPresenceDetection(PresenceEngine.Policy.DEFAULT,
+                new PresenceEngine.Selector() {
+                    @Override
+                    public boolean isTracked(String address) {
+                        return mFollowEngine.isFollowed(address);
+                    }
+                });
+
+        mBluetoothFacade.start(BluetoothRadio.EVENT_CONNECTION | BluetoothRadio.EVENT_DEVICE |
+                BluetoothRadio.EVENT_DISCOVERY);
+        mBluetoothFacade.setDiscoveryPolicy(new DiscoveryScheduler.Policy.Builder()
+                .setBackgroundPeriod(PRESENCE_SCAN_PERIOD)
+                .build());
+        mBluetoothFacade.startBackgroundDiscovery();
+        if (mBluetoothFacade.isLeScanSupported()) {
+            mBluetoothFacade.startLeScan(new LeScanSettings.Builder()
+                    .setScanMode(LeScanSettings.SCAN_MODE_LOW_POWER)
+                    .setReportDelay(PRESENCE_LE_REPORT_DELAY)
+                    .build());
+        }
     }
 
     @Override
@@ -85,28 +166,203 @@ public class BluetoothConnService extends Service {
     public void onDestroy() {
         super.onDestroy();
         Log.v(BLUETOOTH_CONN_SERVICE_TAG, "onDestroy");
-        unregisterReceiver(mNotificationsReceiver);
+        mBluetoothFacade.release();
+        mConnectionNotifier.cancel();
+        mReconnectEngine.cancelAll();
+        mScheduledConnector.cancelAll();
+        mDataLinks.closeAll();
+        mLinkExecutor.shutdown();
+        mDeviceConnector.close();
+        mNotifierThread.quit();
     }
 
-    private boolean isTheDeviceFollowed(BluetoothDevice device) {
-        return mSharedPreferences.getString(BLUETOOTH_DEVICE_FOLLOWED, "")
-                .equals(device.getAddress());
+    /**
+     * Prints the metrics and the last day of connection history, and with --write-snapshot
+     * also writes the metrics to the snapshot file.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        Metrics.get().snapshot().dump(writer);
+        long now = Clock.WALL.now();
+        ConnectionHistory.get(this).dump(writer, now - DUMP_HISTORY_RANGE, now);
+        if (args != null && Arrays.asList(args).contains(DUMP_WRITE_SNAPSHOT)) {
+            try {
+                writer.println("Snapshot written to " + Metrics.writeSnapshot(this));
+            } catch (IOException e) {
+                writer.println("Could not write the snapshot: " + e);
+            }
+        }
     }
 
-    private void addNotification() {
-        Intent notificationIntent = new Intent(this, MainActivity.class);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, notificationIntent, 0);
-        Notification notification = null;
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN) {
-            notification = new Notification.Builder(this)
+    /**
+     * Only records the change; the notifier settles and reports it, and a dropped followed
+     * device is reconnected, on the notifier thread. A followed device that may offer the
+     * serial port service gets a data link while connected.
+     */
+    private void onConnectionChanged(DeviceSnapshot<BluetoothDevice> device, boolean connected) {
+        long start = System.nanoTime();
+        if (connected) {
+            mScheduledConnector.onConnected(device.getAddress());
+            mReconnectEngine.onConnected(device.getAddress());
+            if (mFollowEngine.isFollowed(device.getAddress()) &&
+                    mayOffer(device.getAddress(), ServiceUuids.SERIAL_PORT)) {
+                mDataLinks.open(device.getDevice());
+            }
+        } else {
+            mDataLinks.close(device.getAddress());
+            if (mFollowEngine.isFollowed(device.getAddress())) {
+                mReconnectEngine.onDisconnected(device.getAddress(), device.getDevice());
+            }
+        }
+        if (mFollowEngine.shouldNotify(device.getAddress(), connected)) {
+            mConnectionNotifier.onConnectionChanged(device.getAddress(), device.getName(),
+                    connected);
+        }
+        mConnectionChangeTimes.recordSince(start);
+    }
+
+    // True too when the device's services are not known.
+    private boolean mayOffer(String address, UUID service) {
+        List<UUID> services = mBluetoothFacade.getServices(address);
+        return services == null || services.contains(service);
+    }
+
+    /**
+     * Updates the foreground notification in place. Called on the notifier thread.
+     */
+    private void showSummary(ConnectionSummary summary) {
+        Log.v(BLUETOOTH_CONN_SERVICE_TAG, summary.toString());
+        int changes = summary.getChanges().size();
+        String text;
+        if (changes > MAX_NAMED_CHANGES) {
+            int connected = summary.getConnectedCount();
+            text = getString(R.string.devices_changed, connected, changes - connected);
+        } else {
+            StringBuilder builder = new StringBuilder();
+            for (ConnectionSummary.Change change : summary.getChanges()) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(getString(change.isConnected() ? R.string.device_connected
+                        : R.string.device_disconnected, change.getName()));
+            }
+            text = builder.toString();
+        }
+        NotificationManager notificationManager =
+                (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        synchronized (this) {
+            if (mNotificationBuilder == null) {
+                return;
+            }
+            mNotificationBuilder.setContentText(text).setWhen(System.currentTimeMillis());
+            notificationManager.notify(FOREGROUND_NOTIFICATION_ID, buildNotification());
+        }
+    }
+
+    /**
+     * Reconnects through the audio profiles a device may take, or else through a data link to
+     * its serial port, whose socket then keeps the link up.
+     */
+    private final DeviceConnector<BluetoothDevice> mReconnector =
+            new DeviceConnector<BluetoothDevice>() {
+                @Override
+                public boolean connect(BluetoothDevice device) {
+                    if (mDeviceConnector.mayConnect(device)) {
+                        return mScheduledConnector.connect(device);
+                    }
+                    if (mayOffer(device.getAddress(), ServiceUuids.SERIAL_PORT)) {
+                        mDataLinks.open(device);
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    private final ReconnectEngine.Listener mReconnectListener = new ReconnectEngine.Listener() {
+        @Override
+        public void onReconnected(String address, long latency, int attempts) {
+            long[] percentiles = mReconnectEngine.getLatencies().getPercentiles(50, 90, 99);
+            long[] waits = mBluetoothFacade.getOperations()
+                    .getWaitTimes(RadioOperationScheduler.Kind.CONNECT).getPercentiles(50, 90, 99);
+            Log.v(BLUETOOTH_CONN_SERVICE_TAG, address + " back after " + latency + " ms and " +
+                    attempts + " attempts; p50/p90/p99 " + Arrays.toString(percentiles) +
+                    ", queued p50/p90/p99 " + Arrays.toString(waits));
+        }
+
+        @Override
+        public void onGaveUp(String address, int attempts) {
+            Log.v(BLUETOOTH_CONN_SERVICE_TAG, "Gave up on " + address + " after " + attempts +
+                    " attempts");
+        }
+    };
+
+    private final DataLinks.Listener mLinkListener = new DataLinks.Listener() {
+        @Override
+        public void onLinkOpened(String address, FrameChannel channel) {
+            mOpenLinks.add(1);
+            Log.v(BLUETOOTH_CONN_SERVICE_TAG, "Data link to " + address + " open");
+        }
+
+        @Override
+        public void onFrame(String address, ByteBuffer frame) {
+            // Sensor payloads have no consumer yet; they are only counted.
+            mFramesReceived.increment();
+        }
+
+        @Override
+        public void onLinkClosed(String address, FrameChannel channel, IOException cause) {
+            if (channel == null) {
+                Log.v(BLUETOOTH_CONN_SERVICE_TAG, "No data link to " + address + ": " + cause);
+                return;
+            }
+            mOpenLinks.add(-1);
+            Log.v(BLUETOOTH_CONN_SERVICE_TAG, "Data link to " + address + " closed after " +
+                    channel.getFramesReceived() + " frames in, " + channel.getFramesSent() +
+                    " out in " + channel.getWriteCount() + " writes" +
+                    (cause != null ? ": " + cause : ""));
+        }
+    };
+
+    private final BluetoothFacade.OnPresenceChangedListener mPresenceListener =
+            new BluetoothFacade.OnPresenceChangedListener() {
+                @Override
+                public void onPresenceChanged(String address, PresenceEngine.State previous,
+                                              PresenceEngine.State state) {
+                    Log.v(BLUETOOTH_CONN_SERVICE_TAG, address + " " + previous + " -> " + state);
+                }
+            };
+
+    private final BluetoothFacade.OnConnectionChangedListener mConnectionListener =
+            new BluetoothFacade.OnConnectionChangedListener() {
+                @Override
+                public void onConnectionChanged(DeviceSnapshot<BluetoothDevice> device,
+                                                boolean connected) {
+                    BluetoothConnService.this.onConnectionChanged(device, connected);
+                }
+            };
+
+    private synchronized void addNotification() {
+        if (mNotificationBuilder == null) {
+            Intent notificationIntent = new Intent(this, MainActivity.class);
+            PendingIntent pendingIntent =
+                    PendingIntent.getActivity(this, 0, notificationIntent, 0);
+            mNotificationBuilder = new Notification.Builder(this)
                     .setContentTitle(getText(R.string.app_name))
                     .setContentText(getText(R.string.notification_bluetooth))
                     .setSmallIcon(R.mipmap.ic_launcher)
                     .setContentIntent(pendingIntent)
                     .setTicker(getText(R.string.app_name))
-                    .build();
+                    .setOnlyAlertOnce(true);
+        }
+        startForeground(FOREGROUND_NOTIFICATION_ID, buildNotification());
+    }
+
+    @SuppressWarnings("deprecation")
+    private Notification buildNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return mNotificationBuilder.build();
         }
-        startForeground(30, notification);
+        return mNotificationBuilder.getNotification();
     }
 
 }
\ No newline at end of file
@@ -3,14 +3,11 @@ package com.example.bluetoothapp;
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Handler;
 import android.provider.Settings;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
@@ -19,26 +16,43 @@ import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.Toast;
 
 import com.example.bluetoothapp.adapter.DeviceAdapter;
+import com.example.bluetoothapp.core.device.DeviceSnapshot;
+import com.example.bluetoothapp.core.discovery.DiscoverySnapshot;
+import com.example.bluetoothapp.core.follow.FollowEngine;
+import com.example.bluetoothapp.core.radio.BluetoothEvent;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.LeScanSettings;
+import com.example.bluetoothapp.core.stream.Streams;
+import com.example.bluetoothapp.core.stream.Subscriber;
+import com.example.bluetoothapp.core.stream.Subscription;
 import com.example.bluetoothapp.utilities.BluetoothFacade;
+import com.example.bluetoothapp.utilities.FollowedDevices;
+import com.example.bluetoothapp.utilities.HandlerScheduler;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 
-import static com.example.bluetoothapp.utilities.BluetoothFacade.BLUETOOTH_PREFS_FILE;
 import static com.example.bluetoothapp.utilities.BluetoothFacade.REQUEST_ENABLE_BLUETOOTH;
 import static com.example.bluetoothapp.utilities.BluetoothFacade.REQUEST_FINE_LOCATION;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final String MAIN_ACTIVITY_TAG = "main_activity_tag";
-    public static final String BLUETOOTH_DEVICE_FOLLOWED = "bluetooth_device_followed";
+    private static final int NEAREST_DEVICE_COUNT = 5;
+    private static final long LE_REPORT_DELAY = 1000;
+    private static final long DEVICE_CHANGE_WINDOW = 250;
 
     BluetoothFacade mBluetooth;
     private DeviceAdapter mDeviceAdapter;
@@ -48,22 +62,8 @@ public class MainActivity extends AppCompatActivity {
     private AlertDialog mAdapterDialog;
     private AlertDialog mDeviceDialog;
 
-    private BroadcastReceiver mDiscoveryReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            mBluetooth.manageDeviceDiscovery(intent);
-        }
-    };
-
-    private BroadcastReceiver mAdapterReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            mBluetooth.manageAdapter(intent);
-        }
-    };
-
-    private SharedPreferences mSharedPreferences;
-    private SharedPreferences.Editor mEditor;
+    private FollowEngine mFollowEngine;
+    private Subscription mDeviceChanges;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -99,7 +99,8 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        registerReceiver();
+        mBluetooth.start(BluetoothRadio.EVENT_ADAPTER | BluetoothRadio.EVENT_DISCOVERY |
+                BluetoothRadio.EVENT_DEVICE);
 
     }
 
@@ -108,17 +109,6 @@ public class MainActivity extends AppCompatActivity {
                 == PackageManager.PERMISSION_GRANTED;
     }
 
-    private void registerReceiver() {
-        IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(BluetoothAdapter.ACTION_DISCOVERY_STARTED);
-        intentFilter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
-        intentFilter.addAction(BluetoothDevice.ACTION_FOUND);
-        registerReceiver(mDiscoveryReceiver, intentFilter);
-        intentFilter = new IntentFilter();
-        intentFilter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
-        registerReceiver(mAdapterReceiver, intentFilter);
-    }
-
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
                                            @NonNull int[] grantResults) {
@@ -146,16 +136,55 @@ public class MainActivity extends AppCompatActivity {
         if (item.getItemId() == R.id.action_exit) {
             Log.v(MAIN_ACTIVITY_TAG, "finish()");
             finish();
+        } else if (item.getItemId() == R.id.action_le_scan) {
+            toggleLeScan(item);
+        } else if (item.getItemId() == R.id.action_nearest) {
+            showNearestDevices();
+        } else if (item.getItemId() == R.id.action_metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
         }
         return super.onOptionsItemSelected(item);
     }
 
+    private void toggleLeScan(MenuItem item) {
+        if (!mBluetooth.isLeScanSupported()) {
+            Toast.makeText(this, R.string.le_not_supported, Toast.LENGTH_SHORT).show();
+        } else if (mBluetooth.isLeScanning()) {
+            mBluetooth.stopLeScan();
+            item.setTitle(R.string.le_scan);
+        } else {
+            mBluetooth.startLeScan(new LeScanSettings.Builder()
+                    .setScanMode(LeScanSettings.SCAN_MODE_BALANCED)
+                    .setReportDelay(LE_REPORT_DELAY)
+                    .build());
+            item.setTitle(R.string.stop_le_scan);
+        }
+    }
+
+    private void showNearestDevices() {
+        List<DeviceSnapshot<BluetoothDevice>> nearest =
+                mBluetooth.getNearestDevices(NEAREST_DEVICE_COUNT);
+        if (nearest.isEmpty()) {
+            Toast.makeText(this, R.string.no_nearest_devices, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        StringBuilder text = new StringBuilder(getString(R.string.nearest_devices));
+        for (DeviceSnapshot<BluetoothDevice> device : nearest) {
+            text.append('\n').append(DeviceAdapter.getDisplayName(this, device)).append(", ")
+                    .append(Math.round(mBluetooth.getSignalStrength(device.getAddress())))
+                    .append(" dBm");
+        }
+        Toast.makeText(this, text, Toast.LENGTH_LONG).show();
+    }
+
     @Override
     protected void onDestroy() {
         Log.v(MAIN_ACTIVITY_TAG, "onDestroy");
-        unregisterReceiver(mDiscoveryReceiver);
-        unregisterReceiver(mAdapterReceiver);
+        if (mDeviceChanges != null) {
+            mDeviceChanges.cancel();
+        }
         mBluetooth.cancelDiscovery();
+        mBluetooth.release();
         super.onDestroy();
     }
 
@@ -164,8 +193,7 @@ public class MainActivity extends AppCompatActivity {
         Log.v(MAIN_ACTIVITY_TAG, "onResume");
         if (mBluetooth.isSupported()) {
             if (mBluetooth.isEnabled()) {
-                mDeviceAdapter.setList(mBluetooth.getBluetoothDevices());
-                mDeviceAdapter.notifyDataSetChanged();
+                mBluetooth.reconcileDevices();
             } else {
                 mAdapterDialog.show();
             }
@@ -191,42 +219,60 @@ public class MainActivity extends AppCompatActivity {
         mAdapterDialog = createAdapterDialog();
         mDeviceDialog = createDeviceDialog();
 
-        mSharedPreferences = getSharedPreferences(BLUETOOTH_PREFS_FILE, Context.MODE_PRIVATE);
-        mEditor = mSharedPreferences.edit();
+        mFollowEngine = FollowedDevices.get(this);
 
-        mBluetooth = new BluetoothFacade();
+        mBluetooth = new BluetoothFacade(this);
         mBluetooth.setScanListener(mScanListener);
         mBluetooth.setAdapterListener(mAdapterListener);
-        mBluetooth.setNotificationListener(mNotificationListener);
+        mBluetooth.setReconciledListener(mReconciledListener);
+        Streams.window(mBluetooth.getEvents(), DEVICE_CHANGE_WINDOW,
+                new HandlerScheduler(new Handler())).subscribe(mDeviceChangeSubscriber);
 
         mDeviceAdapter = new DeviceAdapter(mBluetooth.getBluetoothDevices(), mItemClickListener);
         mDeviceList.setAdapter(mDeviceAdapter);
+
+        EditText searchEditText = (EditText) findViewById(R.id.SearchEditText);
+        searchEditText.addTextChangedListener(mSearchWatcher);
     }
 
+    private TextWatcher mSearchWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            mDeviceAdapter.setFilter(s.toString());
+        }
+    };
+
     private BluetoothFacade.OnBluetoothDeviceScanListener
             mScanListener = new BluetoothFacade.OnBluetoothDeviceScanListener() {
         @Override
-        public void onScanStarted(ArrayList<BluetoothDevice> devices) {
+        public void onScanStarted(DiscoverySnapshot<DeviceSnapshot<BluetoothDevice>> snapshot) {
             Log.v(MAIN_ACTIVITY_TAG, "Scan started.");
             mDeviceAdapter.setScanning(true);
-            mDeviceAdapter.setList(devices);
-            mDeviceAdapter.notifyDataSetChanged();
+            mDeviceAdapter.replaceList(snapshot.getDevices());
         }
 
         @Override
-        public void onDeviceFound(ArrayList<BluetoothDevice> devices) {
-            Log.v(MAIN_ACTIVITY_TAG, "Device found.");
-            mDeviceAdapter.setList(devices);
-            mDeviceAdapter.notifyDataSetChanged();
+        public void onDeviceFound(DiscoverySnapshot<DeviceSnapshot<BluetoothDevice>> snapshot) {
+            Log.v(MAIN_ACTIVITY_TAG, "Devices found.");
+            for (DeviceSnapshot<BluetoothDevice> device : snapshot.getAddedDevices()) {
+                mDeviceAdapter.addDevice(device);
+            }
         }
 
         @Override
-        public void onScanFinishedAndDevicesFound(ArrayList<BluetoothDevice> devices) {
+        public void onScanFinishedAndDevicesFound(
+                DiscoverySnapshot<DeviceSnapshot<BluetoothDevice>> snapshot) {
             Log.v(MAIN_ACTIVITY_TAG, "Scan finished and devices found.");
             mScanButton.setText(R.string.scan);
             mDeviceAdapter.setScanning(false);
-            mDeviceAdapter.setList(devices);
-            mDeviceAdapter.notifyDataSetChanged();
         }
 
         @Override
@@ -241,8 +287,7 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void onEnable() {
             Log.v(MAIN_ACTIVITY_TAG, "Adapter enabled.");
-            mDeviceAdapter.setList(mBluetooth.getBluetoothDevices());
-            mDeviceAdapter.notifyDataSetChanged();
+            mBluetooth.reconcileDevices();
             if (mBluetooth.isDiscovering()) {
                 mScanButton.setText(R.string.stop_scan);
             } else {
@@ -253,47 +298,79 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void onDisable() {
             Log.v(MAIN_ACTIVITY_TAG, "Adapter disable.");
-            mDeviceAdapter.setList(new ArrayList<BluetoothDevice>());
-            mDeviceAdapter.notifyDataSetChanged();
+            mDeviceAdapter.replaceList(
+                    Collections.<DeviceSnapshot<BluetoothDevice>>emptyList());
             mScanButton.setText(R.string.scan);
         }
     };
 
-    private BluetoothFacade.OnDeviceFollowedNotificationListener mNotificationListener =
-            new BluetoothFacade.OnDeviceFollowedNotificationListener() {
+    private BluetoothFacade.OnDevicesReconciledListener mReconciledListener =
+            new BluetoothFacade.OnDevicesReconciledListener() {
                 @Override
-                public void onDeviceConnected(BluetoothDevice device) {
-                    if (isTheDeviceFollowed(device)) {
-                        Log.v(MAIN_ACTIVITY_TAG, device.getName() + " connected.");
-                        Toast.makeText(MainActivity.this, device.getName() + " connected. ",
-                                Toast.LENGTH_LONG).show();
-                    }
+                public void onDevicesReconciled(List<DeviceSnapshot<BluetoothDevice>> devices) {
+                    mDeviceAdapter.replaceList(devices);
+                }
+            };
+
+    // Renames, class and bond changes from the facade's event stream, a window's worth at a
+    // time, each device updated once with its latest snapshot.
+    private Subscriber<List<BluetoothEvent<BluetoothDevice>>> mDeviceChangeSubscriber =
+            new Subscriber<List<BluetoothEvent<BluetoothDevice>>>() {
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    mDeviceChanges = subscription;
+                    subscription.request(Long.MAX_VALUE);
                 }
 
                 @Override
-                public void onDeviceDisconnected(BluetoothDevice device) {
-                    if (isTheDeviceFollowed(device)) {
-                        Log.v(MAIN_ACTIVITY_TAG, device.getName() + " disconnected.");
-                        Toast.makeText(MainActivity.this, device.getName() + " disconnected. ",
-                                Toast.LENGTH_LONG).show();
+                public void onNext(List<BluetoothEvent<BluetoothDevice>> events) {
+                    LinkedHashMap<String, DeviceSnapshot<BluetoothDevice>> changed =
+                            new LinkedHashMap<>();
+                    for (BluetoothEvent<BluetoothDevice> event : events) {
+                        if (event.getType() == BluetoothEvent.Type.DEVICE_CHANGED) {
+                            changed.put(event.getDevice().getAddress(), event.getDevice());
+                        }
                     }
+                    for (DeviceSnapshot<BluetoothDevice> device : changed.values()) {
+                        mDeviceAdapter.updateDevice(device);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    Log.w(MAIN_ACTIVITY_TAG, "Device changes failed", error);
+                }
+
+                @Override
+                public void onComplete() {
                 }
             };
 
     private DeviceAdapter.OnItemClickListener mItemClickListener = new DeviceAdapter.OnItemClickListener() {
         @Override
-        public void onItemClick(BluetoothDevice device) {
+        public void onItemClick(DeviceSnapshot<BluetoothDevice> device) {
             Log.v(MAIN_ACTIVITY_TAG, device.getName() + " Bond state: " + device.getBondState());
             if (device.getBondState() == BluetoothDevice.BOND_NONE) {
                 mDeviceDialog.show();
             } else if (device.getBondState() == BluetoothDevice.BOND_BONDED) {
-                Log.v(MAIN_ACTIVITY_TAG, " Device selected: " + device.getName());
-                Toast.makeText(MainActivity.this, "You selected this device: " +
-                        device.getName(), Toast.LENGTH_LONG).show();
-                mEditor.putString(BLUETOOTH_DEVICE_FOLLOWED, device.getAddress());
-                mEditor.commit();
+                if (mFollowEngine.isFollowed(device.getAddress())) {
+                    Log.v(MAIN_ACTIVITY_TAG, " Device unfollowed: " + device.getName());
+                    Toast.makeText(MainActivity.this, "You stopped following this device: " +
+                            DeviceAdapter.getDisplayName(MainActivity.this, device),
+                            Toast.LENGTH_LONG).show();
+                    mFollowEngine.unfollow(device.getAddress());
+                    if (mFollowEngine.size() == 0) {
+                        stopService(new Intent(MainActivity.this, BluetoothConnService.class));
+                    }
+                } else {
+                    Log.v(MAIN_ACTIVITY_TAG, " Device selected: " + device.getName());
+                    Toast.makeText(MainActivity.this, "You selected this device: " +
+                            DeviceAdapter.getDisplayName(MainActivity.this, device),
+                            Toast.LENGTH_LONG).show();
+                    mFollowEngine.follow(device.getAddress(), FollowEngine.NOTIFY_BOTH);
 
-                startService(new Intent(MainActivity.this, BluetoothConnService.class));
+                    startService(new Intent(MainActivity.this, BluetoothConnService.class));
+                }
             }
         }
     };
@@ -343,10 +420,5 @@ public class MainActivity extends AppCompatActivity {
         return dialog;
     }
 
-    private boolean isTheDeviceFollowed(BluetoothDevice device) {
-        return mSharedPreferences.getString(BLUETOOTH_DEVICE_FOLLOWED, "")
-                .equals(device.getAddress());
-    }
-
 }
 
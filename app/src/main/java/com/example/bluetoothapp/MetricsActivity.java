@@ -0,0 +1,54 @@
+package com.example.bluetoothapp;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.v7.app.AppCompatActivity;
+import android.widget.TextView;
+
+import com.example.bluetoothapp.utilities.Metrics;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Debug screen showing what the service's dump prints, refreshed while it is in front.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private static final long REFRESH_INTERVAL = 1000;
+
+    private final Handler mHandler = new Handler();
+    private TextView mMetricsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+        mMetricsTextView = (TextView) findViewById(R.id.MetricsTextView);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mRefresh.run();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mHandler.removeCallbacks(mRefresh);
+    }
+
+    private final Runnable mRefresh = new Runnable() {
+        @Override
+        public void run() {
+            StringWriter text = new StringWriter();
+            PrintWriter writer = new PrintWriter(text);
+            Metrics.get().snapshot().dump(writer);
+            writer.flush();
+            mMetricsTextView.setText(text.toString());
+            mHandler.postDelayed(this, REFRESH_INTERVAL);
+        }
+    };
+
+}
@@ -1,7 +1,10 @@
 package com.example.bluetoothapp.adapter;
 
-import android.bluetooth.BluetoothClass;
 import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,90 +14,249 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.example.bluetoothapp.R;
-import com.example.bluetoothapp.utilities.BluetoothFacade;
+import com.example.bluetoothapp.core.device.DeviceClass;
+import com.example.bluetoothapp.core.device.DeviceSnapshot;
+import com.example.bluetoothapp.core.list.SectionedDeviceList;
+import com.example.bluetoothapp.core.list.SectionedDeviceList.Section;
+import com.example.bluetoothapp.core.metrics.Histogram;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.search.DeviceSearchIndex;
+import com.example.bluetoothapp.utilities.Metrics;
 
 import java.util.ArrayList;
-
-import static com.example.bluetoothapp.utilities.BluetoothFacade.AVAILABLE_BLUETOOTH_DEVICE;
-import static com.example.bluetoothapp.utilities.BluetoothFacade.PAIRED_BLUETOOTH_DEVICE;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class DeviceAdapter extends RecyclerView.Adapter {
 
-    private ArrayList<Object> mList;
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private SectionedDeviceList<DeviceSnapshot<BluetoothDevice>> mDevices;
     private OnItemClickListener mItemClickListener;
     private final int VIEW_HEADER = 0;
     private final int VIEW_ITEM = 1;
     private boolean mScanning = false;
 
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<DeviceSnapshot<BluetoothDevice>> mDeferredDevices = new ArrayList<>();
+    private final ArrayList<DeviceSnapshot<BluetoothDevice>> mDeferredUpdates = new ArrayList<>();
+    private int mPendingReplacements;
+    private int mReplacementGeneration;
+
+    // Every device given to the adapter; mDevices holds those matching the filter.
+    private final DeviceSearchIndex<BluetoothDevice> mIndex = new DeviceSearchIndex<>();
+    private final DeviceSearchIndex<BluetoothDevice>.Search mFilter = mIndex.newSearch();
+
+    // Building and diffing a replacement list, off the main thread; applying it, and binding a
+    // row, on it.
+    private final Histogram mBuildTimes = Metrics.get().histogram("adapter.build_list");
+    private final Histogram mApplyTimes = Metrics.get().histogram("adapter.apply_list");
+    private final Histogram mBindTimes = Metrics.get().histogram("adapter.bind");
+
     public interface OnItemClickListener {
-        void onItemClick(BluetoothDevice device);
+        void onItemClick(DeviceSnapshot<BluetoothDevice> device);
     }
 
-    public DeviceAdapter(ArrayList<BluetoothDevice> devices,
+    public DeviceAdapter(List<DeviceSnapshot<BluetoothDevice>> devices,
                          OnItemClickListener itemClickListener) {
-        mList = buildList(devices);
+        mDevices = createList();
+        mIndex.putAll(devices);
+        mDevices.setAll(devices);
+        mDevices.setCallback(mUpdateCallback);
         mItemClickListener = itemClickListener;
     }
 
-    public void setList(ArrayList<BluetoothDevice> devices) {
-        mList = buildList(devices);
-    }
-
-    public void setScanning(boolean scanning) {
-        mScanning = scanning;
+    public void addDevice(DeviceSnapshot<BluetoothDevice> device) {
+        mIndex.put(device);
+        if (!mFilter.matches(device)) {
+            return;
+        }
+        if (mPendingReplacements > 0) {
+            mDeferredDevices.add(device);
+        } else {
+            mDevices.add(device);
+        }
     }
 
-    private ArrayList<Object> buildList(ArrayList<BluetoothDevice> devices) {
-        ArrayList<Object> list = new ArrayList<>();
-        if (getPaired(devices).size() > 0) {
-            list.add(PAIRED_BLUETOOTH_DEVICE);
-            list.addAll(getPaired(devices));
+    /**
+     * Rebinds the device's row, moving it if it changed section, when it is listed. A known
+     * device that now matches the filter, or no longer does, is shown or hidden.
+     */
+    public void updateDevice(DeviceSnapshot<BluetoothDevice> device) {
+        if (mPendingReplacements > 0) {
+            mDeferredUpdates.add(device);
+            return;
         }
-        if (getAvailable(devices).size() > 0 || isScanning()) {
-            list.add(AVAILABLE_BLUETOOTH_DEVICE);
-            list.addAll(getAvailable(devices));
+        if (!mIndex.contains(device.getAddress())) {
+            return;
+        }
+        mIndex.put(device);
+        boolean listed = mDevices.contains(device.getAddress());
+        if (!mFilter.matches(device)) {
+            if (listed) {
+                mDevices.remove(device.getAddress());
+            }
+        } else if (listed) {
+            mDevices.update(device);
+        } else {
+            mDevices.add(device);
         }
-        return list;
     }
 
-    private ArrayList<BluetoothDevice> getPaired(ArrayList<BluetoothDevice> devices) {
-        ArrayList<BluetoothDevice> pairedDevices = new ArrayList<>();
-        ArrayList<BluetoothDevice> otherPairedDevices = new ArrayList<>();
-        for (BluetoothDevice device : devices) {
-            if (BluetoothFacade.getDeviceType(device).equals(PAIRED_BLUETOOTH_DEVICE)) {
-                if (hasPriority(device)) {
-                    pairedDevices.add(device);
-                } else {
-                    otherPairedDevices.add(device);
-                }
+    public void replaceList(List<DeviceSnapshot<BluetoothDevice>> devices) {
+        mIndex.clear();
+        mIndex.putAll(devices);
+        showList(mFilter.isEmpty() ? devices : mFilter.getResults());
+    }
+
+    /**
+     * Lists only devices whose name or address matches the text, allowing for a mistyped
+     * letter. Each keystroke is answered from the index rather than by going over the devices.
+     */
+    public void setFilter(String text) {
+        mFilter.setText(text);
+        showList(mFilter.isEmpty() ? mIndex.getAll() : mFilter.getResults());
+    }
+
+    private void showList(List<DeviceSnapshot<BluetoothDevice>> devices) {
+        final ArrayList<Object> oldItems = mDevices.toList();
+        final ArrayList<DeviceSnapshot<BluetoothDevice>> newDevices = new ArrayList<>(devices);
+        final boolean scanning = mDevices.isScanning();
+        final int generation = ++mReplacementGeneration;
+        mPendingReplacements++;
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                final SectionedDeviceList<DeviceSnapshot<BluetoothDevice>> newList =
+                        createList();
+                newList.setScanning(scanning);
+                newList.setAll(newDevices);
+                final DiffUtil.DiffResult result =
+                        DiffUtil.calculateDiff(new ItemDiffCallback(oldItems, newList.toList()));
+                mBuildTimes.recordSince(start);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyReplacement(generation, newList, result);
+                    }
+                });
             }
+        });
+    }
+
+    public void setScanning(boolean scanning) {
+        mScanning = scanning;
+        if (mPendingReplacements == 0) {
+            mDevices.setScanning(scanning);
         }
-        pairedDevices.addAll(otherPairedDevices);
-        return pairedDevices;
     }
 
-    private ArrayList<BluetoothDevice> getAvailable(ArrayList<BluetoothDevice> devices) {
-        ArrayList<BluetoothDevice> availableDevices = new ArrayList<>();
-        ArrayList<BluetoothDevice> otherAvailableDevices = new ArrayList<>();
-        for (BluetoothDevice device : devices) {
-            if (BluetoothFacade.getDeviceType(device).equals(AVAILABLE_BLUETOOTH_DEVICE)) {
-                if (hasPriority(device)) {
-                    availableDevices.add(device);
-                } else {
-                    otherAvailableDevices.add(device);
-                }
+    private void applyReplacement(int generation,
+                                  SectionedDeviceList<DeviceSnapshot<BluetoothDevice>> newList,
+                                  DiffUtil.DiffResult result) {
+        mPendingReplacements--;
+        if (generation != mReplacementGeneration) {
+            return;
+        }
+        long start = System.nanoTime();
+        mDevices.setCallback(null);
+        mDevices = newList;
+        mDevices.setCallback(mUpdateCallback);
+        result.dispatchUpdatesTo(this);
+        mDevices.setScanning(mScanning);
+        for (DeviceSnapshot<BluetoothDevice> device : mDeferredDevices) {
+            if (mFilter.matches(device)) {
+                mDevices.add(device);
             }
         }
-        availableDevices.addAll(otherAvailableDevices);
-        return availableDevices;
+        mDeferredDevices.clear();
+        for (DeviceSnapshot<BluetoothDevice> device : mDeferredUpdates) {
+            updateDevice(device);
+        }
+        mDeferredUpdates.clear();
+        mApplyTimes.recordSince(start);
     }
 
-    private boolean hasPriority(BluetoothDevice device) {
-        return BluetoothFacade.getDeviceClassDescription(device).equals("AUDIO_VIDEO_HANDSFREE");
+    // Rows are classified and rendered from snapshots only, never by asking the device.
+    private SectionedDeviceList<DeviceSnapshot<BluetoothDevice>> createList() {
+        return new SectionedDeviceList<>(
+                new SectionedDeviceList.Classifier<DeviceSnapshot<BluetoothDevice>>() {
+                    @Override
+                    public String getAddress(DeviceSnapshot<BluetoothDevice> device) {
+                        return device.getAddress();
+                    }
+
+                    @Override
+                    public boolean isPaired(DeviceSnapshot<BluetoothDevice> device) {
+                        return device.getBondState() == BluetoothRadio.BOND_BONDED;
+                    }
+
+                    @Override
+                    public boolean hasPriority(DeviceSnapshot<BluetoothDevice> device) {
+                        return device.getDeviceClass() == DeviceClass.AUDIO_VIDEO_HANDSFREE;
+                    }
+                });
     }
 
     private boolean isScanning() {
-        return mScanning;
+        return mDevices.isScanning();
+    }
+
+    private final SectionedDeviceList.Callback mUpdateCallback =
+            new SectionedDeviceList.Callback() {
+                @Override
+                public void onInserted(int position, int count) {
+                    notifyItemRangeInserted(position, count);
+                }
+
+                @Override
+                public void onRemoved(int position, int count) {
+                    notifyItemRangeRemoved(position, count);
+                }
+
+                @Override
+                public void onChanged(int position, int count) {
+                    notifyItemRangeChanged(position, count);
+                }
+            };
+
+    private static class ItemDiffCallback extends DiffUtil.Callback {
+
+        private final ArrayList<Object> mOldItems;
+        private final ArrayList<Object> mNewItems;
+
+        ItemDiffCallback(ArrayList<Object> oldItems, ArrayList<Object> newItems) {
+            mOldItems = oldItems;
+            mNewItems = newItems;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldItems.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewItems.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            Object oldItem = mOldItems.get(oldItemPosition);
+            Object newItem = mNewItems.get(newItemPosition);
+            if (oldItem instanceof DeviceSnapshot && newItem instanceof DeviceSnapshot) {
+                return ((DeviceSnapshot) oldItem).getAddress()
+                        .equals(((DeviceSnapshot) newItem).getAddress());
+            }
+            return oldItem == newItem;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldItems.get(oldItemPosition).equals(mNewItems.get(newItemPosition));
+        }
     }
 
     @Override
@@ -114,12 +276,13 @@ public class DeviceAdapter extends RecyclerView.Adapter {
 
     @Override
     public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        long start = System.nanoTime();
         if (holder instanceof DeviceListHeaderViewHolder) {
             DeviceListHeaderViewHolder viewHolder = (DeviceListHeaderViewHolder) holder;
-            String section = (String) mList.get(position);
+            Section section = (Section) mDevices.getItem(position);
             viewHolder.mScanningTextView.setVisibility(View.INVISIBLE);
             viewHolder.mScanningProgressBar.setVisibility(View.INVISIBLE);
-            if (section.equals(AVAILABLE_BLUETOOTH_DEVICE)) {
+            if (section == Section.AVAILABLE) {
                 viewHolder.mSectionNameTextView.setText(R.string.available_devices);
                 if (isScanning()) {
                     viewHolder.mScanningTextView.setVisibility(View.VISIBLE);
@@ -130,8 +293,11 @@ public class DeviceAdapter extends RecyclerView.Adapter {
             }
         } else if (holder instanceof DeviceListItemViewHolder) {
             DeviceListItemViewHolder viewHolder = (DeviceListItemViewHolder) holder;
-            final BluetoothDevice device = (BluetoothDevice) mList.get(position);
-            viewHolder.mDeviceNameTextView.setText(device.getName());
+            @SuppressWarnings("unchecked")
+            final DeviceSnapshot<BluetoothDevice> device =
+                    (DeviceSnapshot<BluetoothDevice>) mDevices.getItem(position);
+            viewHolder.mDeviceNameTextView.setText(
+                    getDisplayName(viewHolder.itemView.getContext(), device));
             viewHolder.mDeviceImageView.setImageResource(getImage(device));
             viewHolder.itemView.setOnClickListener(new View.OnClickListener() {
                 @Override
@@ -140,16 +306,17 @@ public class DeviceAdapter extends RecyclerView.Adapter {
                 }
             });
         }
+        mBindTimes.recordSince(start);
     }
 
     @Override
     public int getItemViewType(int position) {
-        return mList.get(position) instanceof String ? VIEW_HEADER : VIEW_ITEM;
+        return mDevices.isHeader(position) ? VIEW_HEADER : VIEW_ITEM;
     }
 
     @Override
     public int getItemCount() {
-        return mList.size();
+        return mDevices.getItemCount();
     }
 
     private class DeviceListItemViewHolder extends RecyclerView.ViewHolder {
@@ -178,14 +345,23 @@ public class DeviceAdapter extends RecyclerView.Adapter {
         }
     }
 
-    private int getImage(BluetoothDevice device) {
-        int deviceClass = device.getBluetoothClass().getDeviceClass();
-        switch (deviceClass) {
-            case BluetoothClass.Device.AUDIO_VIDEO_HANDSFREE:
+    /**
+     * The device's name, or "Unknown" and its vendor for a device that has not told its name.
+     */
+    public static String getDisplayName(Context context, DeviceSnapshot<?> device) {
+        if (device.getName() != null || device.getVendor() == null) {
+            return device.getName();
+        }
+        return context.getString(R.string.unknown_vendor_device, device.getVendor());
+    }
+
+    private int getImage(DeviceSnapshot<BluetoothDevice> device) {
+        switch (device.getDeviceClass()) {
+            case AUDIO_VIDEO_HANDSFREE:
                 return R.drawable.handsfree;
-            case BluetoothClass.Device.COMPUTER_LAPTOP:
+            case COMPUTER_LAPTOP:
                 return R.drawable.computer;
-            case BluetoothClass.Device.PHONE_SMART:
+            case PHONE_SMART:
                 return R.drawable.phone;
             default:
                 return R.drawable.unknown;
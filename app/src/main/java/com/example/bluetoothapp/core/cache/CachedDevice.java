@@ -0,0 +1,76 @@
+package com.example.bluetoothapp.core.cache;
+
+/**
+ * What is remembered about a device between runs. lastSeen is wall-clock milliseconds.
+ */
+public final class CachedDevice {
+
+    private final String mAddress;
+    private final String mName;
+    private final int mDeviceClass;
+    private final int mBondState;
+    private final long mLastSeen;
+
+    public CachedDevice(String address, String name, int deviceClass, int bondState,
+                        long lastSeen) {
+        mAddress = address;
+        mName = name;
+        mDeviceClass = deviceClass;
+        mBondState = bondState;
+        mLastSeen = lastSeen;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getDeviceClass() {
+        return mDeviceClass;
+    }
+
+    public int getBondState() {
+        return mBondState;
+    }
+
+    public long getLastSeen() {
+        return mLastSeen;
+    }
+
+    public CachedDevice withBondState(int bondState) {
+        return new CachedDevice(mAddress, mName, mDeviceClass, bondState, mLastSeen);
+    }
+
+    /**
+     * True when everything but lastSeen is the same.
+     */
+    public boolean hasSameDetails(CachedDevice other) {
+        return mAddress.equals(other.mAddress) &&
+                (mName == null ? other.mName == null : mName.equals(other.mName)) &&
+                mDeviceClass == other.mDeviceClass &&
+                mBondState == other.mBondState;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof CachedDevice)) {
+            return false;
+        }
+        CachedDevice device = (CachedDevice) other;
+        return hasSameDetails(device) && mLastSeen == device.mLastSeen;
+    }
+
+    @Override
+    public int hashCode() {
+        return mAddress.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mAddress + " (" + mName + ")";
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.example.bluetoothapp.core.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The last-known device set, held in memory and persisted to a {@link DeviceCacheFile}. Only new
+ * or changed devices are written, as appended records on the write executor, so callers never
+ * wait for the disk. A device seen again with nothing changed is rewritten at most once per
+ * {@link #LAST_SEEN_RESOLUTION}. When full, the device seen longest ago is forgotten.
+ * The write executor must run tasks one at a time, in order.
+ */
+public class DeviceCache {
+
+    public static final int DEFAULT_CAPACITY = 128;
+    public static final long LAST_SEEN_RESOLUTION = 60000;
+
+    private static final int MIN_COMPACTION_RECORDS = 64;
+
+    private final DeviceCacheFile mFile;
+    private final Executor mWriteExecutor;
+    private final int mCapacity;
+    private final AtomicLong mWriteErrors = new AtomicLong();
+
+    // Least recently seen first.
+    private final LinkedHashMap<String, CachedDevice> mDevices;
+    private ArrayList<CachedDevice> mPendingWrites = new ArrayList<>();
+    private int mFileRecords;
+    private boolean mRewriteNeeded;
+
+    public DeviceCache(DeviceCacheFile file, Executor writeExecutor, int capacity) {
+        mFile = file;
+        mWriteExecutor = writeExecutor;
+        mCapacity = capacity;
+        mDevices = new LinkedHashMap<>();
+    }
+
+    /**
+     * Reads the file on the calling thread. Devices put before it was read are newer than the
+     * file's and are kept over them. A damaged file is read as far as it goes and then
+     * compacted on the write executor.
+     */
+    public void load() throws IOException {
+        ArrayList<CachedDevice> records = new ArrayList<>();
+        boolean clean = mFile.read(records);
+        synchronized (this) {
+            ArrayList<CachedDevice> newer = new ArrayList<>(mDevices.values());
+            mDevices.clear();
+            for (CachedDevice record : records) {
+                mDevices.remove(record.getAddress());
+                mDevices.put(record.getAddress(), record);
+            }
+            for (CachedDevice device : newer) {
+                mDevices.remove(device.getAddress());
+                mDevices.put(device.getAddress(), device);
+            }
+            trimToCapacity();
+            mFileRecords = records.size();
+            if (!clean || needsCompaction()) {
+                mRewriteNeeded = true;
+                scheduleWrite();
+            }
+        }
+    }
+
+    public synchronized CachedDevice get(String address) {
+        return mDevices.get(address);
+    }
+
+    /**
+     * Most recently seen first.
+     */
+    public synchronized List<CachedDevice> getDevices() {
+        ArrayList<CachedDevice> devices = new ArrayList<>(mDevices.values());
+        for (int left = 0, right = devices.size() - 1; left < right; left++, right--) {
+            CachedDevice swap = devices.get(left);
+            devices.set(left, devices.get(right));
+            devices.set(right, swap);
+        }
+        return devices;
+    }
+
+    public synchronized int size() {
+        return mDevices.size();
+    }
+
+    /**
+     * Returns true when the device was new or changed and has been queued for writing.
+     */
+    public synchronized boolean put(CachedDevice device) {
+        CachedDevice cached = mDevices.get(device.getAddress());
+        if (cached != null && cached.hasSameDetails(device) &&
+                device.getLastSeen() - cached.getLastSeen() < LAST_SEEN_RESOLUTION) {
+            return false;
+        }
+        mDevices.remove(device.getAddress());
+        mDevices.put(device.getAddress(), device);
+        trimToCapacity();
+        mPendingWrites.add(device);
+        scheduleWrite();
+        return true;
+    }
+
+    /**
+     * Updates the bond state without counting as a sighting, so the device keeps its place.
+     */
+    public synchronized boolean setBondState(String address, int bondState) {
+        CachedDevice cached = mDevices.get(address);
+        if (cached == null || cached.getBondState() == bondState) {
+            return false;
+        }
+        CachedDevice updated = cached.withBondState(bondState);
+        mDevices.put(address, updated);
+        mPendingWrites.add(updated);
+        scheduleWrite();
+        return true;
+    }
+
+    public long getWriteErrorCount() {
+        return mWriteErrors.get();
+    }
+
+    private void trimToCapacity() {
+        Iterator<String> addresses = mDevices.keySet().iterator();
+        while (mDevices.size() > mCapacity && addresses.hasNext()) {
+            addresses.next();
+            addresses.remove();
+        }
+    }
+
+    private boolean needsCompaction() {
+        return mFileRecords > Math.max(MIN_COMPACTION_RECORDS, 2 * mDevices.size());
+    }
+
+    private void scheduleWrite() {
+        if (mPendingWrites.size() == 1 || (mRewriteNeeded && mPendingWrites.isEmpty())) {
+            mWriteExecutor.execute(mWriteTask);
+        }
+    }
+
+    private final Runnable mWriteTask = new Runnable() {
+        @Override
+        public void run() {
+            ArrayList<CachedDevice> records;
+            boolean rewrite;
+            synchronized (DeviceCache.this) {
+                if (mPendingWrites.isEmpty() && !mRewriteNeeded) {
+                    return;
+                }
+                rewrite = mRewriteNeeded || mFileRecords + mPendingWrites.size() >
+                        Math.max(MIN_COMPACTION_RECORDS, 2 * mDevices.size());
+                records = rewrite ? new ArrayList<>(mDevices.values()) : mPendingWrites;
+                mPendingWrites = new ArrayList<>();
+                mRewriteNeeded = false;
+            }
+            try {
+                if (rewrite) {
+                    mFile.rewrite(records);
+                } else {
+                    mFile.append(records);
+                }
+                synchronized (DeviceCache.this) {
+                    mFileRecords = rewrite ? records.size() : mFileRecords + records.size();
+                }
+            } catch (IOException e) {
+                mWriteErrors.incrementAndGet();
+                synchronized (DeviceCache.this) {
+                    mRewriteNeeded = true;
+                }
+            }
+        }
+    };
+
+}
@@ -0,0 +1,143 @@
+package com.example.bluetoothapp.core.cache;
+
+import com.example.bluetoothapp.core.device.MacAddress;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Append-only binary log of {@link CachedDevice} records. A record takes the 6 address bytes,
+ * last seen time, class, bond state and the name, about 30 bytes for a typical device. Later
+ * records for an address replace earlier ones; {@link #rewrite} compacts the log to one record
+ * per device.
+ */
+public class DeviceCacheFile {
+
+    private static final int MAGIC = 0x42544443;
+    private static final int VERSION = 1;
+
+    private final File mFile;
+
+    public DeviceCacheFile(File file) {
+        mFile = file;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Adds every record in the log to the list, oldest first. Returns false when the log is not
+     * clean to append to: it has an unknown header or ends in a partly written record. A missing
+     * log is clean and empty.
+     */
+    public boolean read(List<CachedDevice> records) throws IOException {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+        } catch (FileNotFoundException e) {
+            return true;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return false;
+            }
+            byte[] address = new byte[MacAddress.BYTES];
+            while (true) {
+                int first = in.read();
+                if (first < 0) {
+                    return true;
+                }
+                address[0] = (byte) first;
+                in.readFully(address, 1, MacAddress.BYTES - 1);
+                long lastSeen = in.readLong();
+                int deviceClass = in.readInt();
+                int bondState = in.readByte();
+                String name = in.readBoolean() ? in.readUTF() : null;
+                records.add(new CachedDevice(MacAddress.unpack(toLong(address)), name,
+                        deviceClass, bondState, lastSeen));
+            }
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    public void append(Collection<CachedDevice> records) throws IOException {
+        boolean empty = mFile.length() == 0;
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(mFile, true)));
+        try {
+            if (empty) {
+                writeHeader(out);
+            }
+            writeRecords(out, records);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Replaces the log with the given records. The new log is written next to the old one and
+     * renamed over it, so a crash leaves one or the other.
+     */
+    public void rewrite(Collection<CachedDevice> records) throws IOException {
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            writeHeader(out);
+            writeRecords(out, records);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Could not replace " + mFile);
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    private static void writeRecords(DataOutputStream out, Collection<CachedDevice> records)
+            throws IOException {
+        for (CachedDevice record : records) {
+            if (!MacAddress.isValid(record.getAddress())) {
+                continue;
+            }
+            long address = MacAddress.pack(record.getAddress());
+            for (int shift = 8 * (MacAddress.BYTES - 1); shift >= 0; shift -= 8) {
+                out.writeByte((int) (address >>> shift));
+            }
+            out.writeLong(record.getLastSeen());
+            out.writeInt(record.getDeviceClass());
+            out.writeByte(record.getBondState());
+            out.writeBoolean(record.getName() != null);
+            if (record.getName() != null) {
+                out.writeUTF(record.getName());
+            }
+        }
+    }
+
+    private static long toLong(byte[] address) {
+        long value = 0;
+        for (byte b : address) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.example.bluetoothapp.core.channel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Fixed-size byte buffers kept for reuse, so a busy link does not allocate per frame. Buffers
+ * are array-backed: the streams they are filled from and drained to take arrays, and a direct
+ * buffer would cost a copy on every read and write. Up to the pool's capacity of released
+ * buffers are kept; beyond that they are left to the garbage collector. Thread-safe.
+ */
+public class BufferPool {
+
+    private final int mBufferSize;
+    private final int mCapacity;
+    private final ArrayDeque<ByteBuffer> mFree = new ArrayDeque<>();
+    private long mAllocatedCount;
+    private long mReusedCount;
+
+    public BufferPool(int bufferSize, int capacity) {
+        mBufferSize = bufferSize;
+        mCapacity = capacity;
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /**
+     * A cleared buffer of the pool's size.
+     */
+    public ByteBuffer acquire() {
+        synchronized (this) {
+            ByteBuffer buffer = mFree.pollFirst();
+            if (buffer != null) {
+                mReusedCount++;
+                buffer.clear();
+                return buffer;
+            }
+            mAllocatedCount++;
+        }
+        return ByteBuffer.allocate(mBufferSize);
+    }
+
+    /**
+     * Returns a buffer taken from this pool. It must not be used afterwards.
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        if (buffer.capacity() != mBufferSize || !buffer.hasArray()) {
+            throw new IllegalArgumentException("Not from this pool");
+        }
+        if (mFree.size() < mCapacity) {
+            mFree.addFirst(buffer);
+        }
+    }
+
+    public synchronized int getFreeCount() {
+        return mFree.size();
+    }
+
+    public synchronized long getAllocatedCount() {
+        return mAllocatedCount;
+    }
+
+    public synchronized long getReusedCount() {
+        return mReusedCount;
+    }
+
+}
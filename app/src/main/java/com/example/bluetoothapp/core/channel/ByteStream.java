@@ -0,0 +1,18 @@
+package com.example.bluetoothapp.core.channel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A connected, two-way byte stream: an RFCOMM socket on a device, a TCP socket off one.
+ * Closing it must unblock a read in progress on another thread.
+ */
+public interface ByteStream extends Closeable {
+
+    InputStream getInputStream() throws IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+}
@@ -0,0 +1,296 @@
+package com.example.bluetoothapp.core.channel;
+
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * One {@link FrameChannel} per device, over a stream the connector opens. Opening a link pages
+ * the device, so it waits its turn as a connect operation of the
+ * {@link RadioOperationScheduler}; the blocking connect itself runs on the executor. An open
+ * that is cancelled or runs out of time closes the stream it is connecting, so the radio is
+ * free for the next operation straight away. A link that is open or opening is not opened
+ * again. All links share one buffer pool.
+ */
+public class DataLinks<D> {
+
+    public interface StreamConnector<D> {
+
+        /**
+         * A stream to the device's data service, not connected yet.
+         */
+        PendingStream newStream(D device) throws IOException;
+
+    }
+
+    public interface PendingStream extends ByteStream {
+
+        /**
+         * Connects, blocking until connected. Closing the stream from another thread gives up
+         * the connect, which then throws.
+         */
+        void connect() throws IOException;
+
+    }
+
+    public interface Listener {
+
+        void onLinkOpened(String address, FrameChannel channel);
+
+        /**
+         * Called on the link's read thread; see {@link FrameChannel.Listener#onFrame}.
+         */
+        void onFrame(String address, ByteBuffer frame);
+
+        /**
+         * The link could not be opened, with channel null, or has ended.
+         */
+        void onLinkClosed(String address, FrameChannel channel, IOException cause);
+
+    }
+
+    private final RadioOperationScheduler mOperations;
+    private final BluetoothRadio<D> mRadio;
+    private final StreamConnector<D> mConnector;
+    private final Executor mConnectExecutor;
+    private final BufferPool mPool;
+    private final FrameChannel.Policy mPolicy;
+    private final int mPriority;
+    private volatile Listener mListener;
+
+    private final HashMap<String, OpenOperation> mOpening = new HashMap<>();
+    private final HashMap<String, FrameChannel> mLinks = new HashMap<>();
+
+    private final class OpenOperation extends RadioOperationScheduler.Operation
+            implements Runnable {
+
+        final String mAddress;
+        final D mDevice;
+        // The stream being connected, guarded by DataLinks.this.
+        private PendingStream mStream;
+        private boolean mAborted;
+
+        OpenOperation(String address, D device) {
+            mAddress = address;
+            mDevice = device;
+        }
+
+        @Override
+        protected boolean start() {
+            mConnectExecutor.execute(this);
+            return true;
+        }
+
+        @Override
+        protected void abort() {
+            PendingStream stream;
+            synchronized (DataLinks.this) {
+                mAborted = true;
+                stream = mStream;
+                mStream = null;
+            }
+            if (stream != null) {
+                closeQuietly(stream);
+            }
+        }
+
+        @Override
+        public void run() {
+            PendingStream stream = null;
+            try {
+                stream = mConnector.newStream(mDevice);
+                boolean aborted;
+                synchronized (DataLinks.this) {
+                    aborted = mAborted;
+                    if (!aborted) {
+                        mStream = stream;
+                    }
+                }
+                if (aborted) {
+                    // Makes the connect below throw.
+                    closeQuietly(stream);
+                }
+                stream.connect();
+            } catch (IOException e) {
+                synchronized (DataLinks.this) {
+                    mStream = null;
+                    if (mOpening.get(mAddress) == this) {
+                        mOpening.remove(mAddress);
+                    }
+                }
+                if (stream != null) {
+                    closeQuietly(stream);
+                }
+                finish(false);
+                Listener listener = mListener;
+                if (listener != null) {
+                    listener.onLinkClosed(mAddress, null, e);
+                }
+                return;
+            }
+            FrameChannel channel = new FrameChannel("link-" + mAddress, stream, mPool, mPolicy,
+                    new ChannelListener(mAddress));
+            synchronized (DataLinks.this) {
+                // The channel owns the stream now; an abort from here on must not close it.
+                mStream = null;
+                // Cancelled, or out of time, while connecting.
+                if (mOpening.get(mAddress) != this || !isRunning()) {
+                    channel = null;
+                } else {
+                    mOpening.remove(mAddress);
+                    mLinks.put(mAddress, channel);
+                }
+            }
+            finish(channel != null);
+            if (channel == null) {
+                closeQuietly(stream);
+                return;
+            }
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onLinkOpened(mAddress, channel);
+            }
+            try {
+                channel.start();
+            } catch (IOException e) {
+                channel.close();
+            }
+        }
+
+        @Override
+        protected void onEnded(RadioOperationScheduler.Result result) {
+            synchronized (DataLinks.this) {
+                if (mOpening.get(mAddress) == this) {
+                    mOpening.remove(mAddress);
+                }
+            }
+        }
+
+    }
+
+    private final class ChannelListener implements FrameChannel.Listener {
+
+        final String mAddress;
+
+        ChannelListener(String address) {
+            mAddress = address;
+        }
+
+        @Override
+        public void onFrame(FrameChannel channel, ByteBuffer frame) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onFrame(mAddress, frame);
+            }
+        }
+
+        @Override
+        public void onClosed(FrameChannel channel, IOException cause) {
+            synchronized (DataLinks.this) {
+                if (mLinks.get(mAddress) == channel) {
+                    mLinks.remove(mAddress);
+                }
+            }
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onLinkClosed(mAddress, channel, cause);
+            }
+        }
+
+    }
+
+    public DataLinks(RadioOperationScheduler operations, BluetoothRadio<D> radio,
+                     StreamConnector<D> connector, Executor connectExecutor, BufferPool pool,
+                     FrameChannel.Policy policy, int priority) {
+        mOperations = operations;
+        mRadio = radio;
+        mConnector = connector;
+        mConnectExecutor = connectExecutor;
+        mPool = pool;
+        mPolicy = policy;
+        mPriority = priority;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Queues opening a link to the device unless it has one open or opening.
+     */
+    public synchronized void open(D device) {
+        String address = mRadio.getAddress(device);
+        if (mLinks.containsKey(address) || mOpening.containsKey(address)) {
+            return;
+        }
+        OpenOperation operation = new OpenOperation(address, device);
+        mOpening.put(address, operation);
+        mOperations.submit(operation, RadioOperationScheduler.Kind.CONNECT, mPriority,
+                RadioOperationScheduler.NO_DEADLINE);
+    }
+
+    /**
+     * The device's open link, or null.
+     */
+    public synchronized FrameChannel get(String address) {
+        return mLinks.get(address);
+    }
+
+    public void close(String address) {
+        OpenOperation operation;
+        FrameChannel channel;
+        synchronized (this) {
+            operation = mOpening.remove(address);
+            channel = mLinks.get(address);
+        }
+        if (operation != null) {
+            operation.cancel();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    public void closeAll() {
+        List<OpenOperation> operations;
+        List<FrameChannel> channels;
+        synchronized (this) {
+            operations = new ArrayList<>(mOpening.values());
+            mOpening.clear();
+            channels = new ArrayList<>(mLinks.values());
+        }
+        for (OpenOperation operation : operations) {
+            operation.cancel();
+        }
+        for (FrameChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    public synchronized int getOpenCount() {
+        return mLinks.size();
+    }
+
+    public synchronized int getOpeningCount() {
+        return mOpening.size();
+    }
+
+    public BufferPool getPool() {
+        return mPool;
+    }
+
+    private static void closeQuietly(ByteStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // Never used.
+        }
+    }
+
+}
@@ -0,0 +1,360 @@
+package com.example.bluetoothapp.core.channel;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Length-prefixed frames over a {@link ByteStream}, each a 4-byte big-endian payload length
+ * followed by the payload. The link has a read thread and a write thread of its own, so a
+ * blocked stream holds up nothing else.
+ * <p>
+ * Sending copies the frame into the last of a queue of pooled buffers, starting a new one when
+ * it does not fit; the write thread writes each buffer with a single call. Frames sent while a
+ * write is in progress thus leave together in the next. Once the queued bytes reach the
+ * policy's limit, senders wait or are refused until the stream takes more.
+ * <p>
+ * Received frames are handed to the listener as views into a pooled receive buffer, without
+ * copying or allocating.
+ */
+public class FrameChannel {
+
+    public interface Listener {
+
+        /**
+         * Called on the read thread. The frame is the view's bytes between its position and
+         * limit, valid only until this returns.
+         */
+        void onFrame(FrameChannel channel, ByteBuffer frame);
+
+        /**
+         * Called once, with the error that ended the link, or null when it was closed here.
+         */
+        void onClosed(FrameChannel channel, IOException cause);
+
+    }
+
+    public static final int HEADER_BYTES = 4;
+
+    private final String mName;
+    private final ByteStream mStream;
+    private final BufferPool mPool;
+    private final Policy mPolicy;
+    private final Listener mListener;
+
+    private final ArrayDeque<ByteBuffer> mQueue = new ArrayDeque<>();
+    // The buffer new frames are appended to; null once the write thread has taken it.
+    private ByteBuffer mTail;
+    // Queued and being written.
+    private int mQueuedBytes;
+    private boolean mStarted;
+    private boolean mClosed;
+    private long mFramesSent;
+    private long mBytesSent;
+    private long mWriteCount;
+    private long mFramesReceived;
+    private long mBytesReceived;
+
+    public static final class Policy {
+
+        public static final Policy DEFAULT = new Builder().build();
+
+        private final int mMaxFrameSize;
+        private final int mMaxQueuedBytes;
+
+        private Policy(Builder builder) {
+            mMaxFrameSize = builder.mMaxFrameSize;
+            mMaxQueuedBytes = builder.mMaxQueuedBytes;
+        }
+
+        public int getMaxFrameSize() {
+            return mMaxFrameSize;
+        }
+
+        public int getMaxQueuedBytes() {
+            return mMaxQueuedBytes;
+        }
+
+        public static final class Builder {
+
+            private int mMaxFrameSize = 4096;
+            private int mMaxQueuedBytes = 64 * 1024;
+
+            /**
+             * The largest payload sent or accepted. A longer one received ends the link.
+             */
+            public Builder setMaxFrameSize(int maxFrameSize) {
+                mMaxFrameSize = maxFrameSize;
+                return this;
+            }
+
+            public Builder setMaxQueuedBytes(int maxQueuedBytes) {
+                mMaxQueuedBytes = maxQueuedBytes;
+                return this;
+            }
+
+            public Policy build() {
+                return new Policy(this);
+            }
+
+        }
+
+    }
+
+    /**
+     * The pool's buffers must hold a frame of the policy's largest size with its header.
+     */
+    public FrameChannel(String name, ByteStream stream, BufferPool pool, Policy policy,
+                        Listener listener) {
+        if (pool.getBufferSize() < policy.getMaxFrameSize() + HEADER_BYTES) {
+            throw new IllegalArgumentException("Pool buffers cannot hold a whole frame");
+        }
+        mName = name;
+        mStream = stream;
+        mPool = pool;
+        mPolicy = policy;
+        mListener = listener;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Starts the read and write threads.
+     */
+    public void start() throws IOException {
+        final InputStream in = mStream.getInputStream();
+        final OutputStream out = mStream.getOutputStream();
+        synchronized (this) {
+            if (mStarted || mClosed) {
+                return;
+            }
+            mStarted = true;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                read(in);
+            }
+        }, mName + "-read").start();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write(out);
+            }
+        }, mName + "-write").start();
+    }
+
+    /**
+     * Queues the payload's remaining bytes as a frame, waiting up to the timeout for room.
+     * Returns false if there was none in time or the channel is closed. The payload is copied
+     * before this returns.
+     */
+    public boolean send(ByteBuffer payload, long timeoutMillis) throws InterruptedException {
+        int length = payload.remaining();
+        if (length > mPolicy.getMaxFrameSize()) {
+            throw new IllegalArgumentException("Frame of " + length + " bytes is too long");
+        }
+        int size = HEADER_BYTES + length;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            // A frame always fits in an empty queue, whatever the limit.
+            while (!mClosed && mQueuedBytes > 0 &&
+                    mQueuedBytes + size > mPolicy.getMaxQueuedBytes()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            if (mClosed) {
+                return false;
+            }
+            if (mTail == null || mTail.remaining() < size) {
+                mTail = mPool.acquire();
+                mQueue.addLast(mTail);
+            }
+            mTail.putInt(length);
+            mTail.put(payload.duplicate());
+            mQueuedBytes += size;
+            notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Queues the frame only if there is room now.
+     */
+    public boolean offer(ByteBuffer payload) {
+        try {
+            return send(payload, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Ends the link, dropping frames not yet written.
+     */
+    public void close() {
+        closeWith(null);
+    }
+
+    public synchronized boolean isOpen() {
+        return !mClosed;
+    }
+
+    public synchronized int getQueuedBytes() {
+        return mQueuedBytes;
+    }
+
+    public synchronized long getFramesSent() {
+        return mFramesSent;
+    }
+
+    public synchronized long getBytesSent() {
+        return mBytesSent;
+    }
+
+    /**
+     * Writes to the stream; fewer than the frames sent when frames were batched.
+     */
+    public synchronized long getWriteCount() {
+        return mWriteCount;
+    }
+
+    public synchronized long getFramesReceived() {
+        return mFramesReceived;
+    }
+
+    public synchronized long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    private void read(InputStream in) {
+        ByteBuffer buffer = mPool.acquire();
+        ByteBuffer view = buffer.duplicate();
+        IOException cause;
+        try {
+            while (true) {
+                int read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                        buffer.remaining());
+                if (read < 0) {
+                    throw new EOFException("Closed by the remote device");
+                }
+                buffer.position(buffer.position() + read);
+                buffer.flip();
+                int frames = 0;
+                int bytes = 0;
+                while (buffer.remaining() >= HEADER_BYTES) {
+                    int length = buffer.getInt(buffer.position());
+                    if (length < 0 || length > mPolicy.getMaxFrameSize()) {
+                        throw new IOException("Frame length " + length + " out of range");
+                    }
+                    if (buffer.remaining() < HEADER_BYTES + length) {
+                        break;
+                    }
+                    int start = buffer.position() + HEADER_BYTES;
+                    view.limit(start + length);
+                    view.position(start);
+                    mListener.onFrame(this, view);
+                    buffer.position(start + length);
+                    frames++;
+                    bytes += length;
+                }
+                buffer.compact();
+                if (frames > 0) {
+                    synchronized (this) {
+                        mFramesReceived += frames;
+                        mBytesReceived += bytes;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            cause = e;
+        } finally {
+            mPool.release(buffer);
+        }
+        closeWith(cause);
+    }
+
+    private void write(OutputStream out) {
+        try {
+            while (true) {
+                ByteBuffer buffer;
+                synchronized (this) {
+                    while (mQueue.isEmpty() && !mClosed) {
+                        wait();
+                    }
+                    if (mClosed) {
+                        return;
+                    }
+                    buffer = mQueue.pollFirst();
+                    if (buffer == mTail) {
+                        mTail = null;
+                    }
+                }
+                int length = buffer.position();
+                int frames = countFrames(buffer, length);
+                try {
+                    out.write(buffer.array(), buffer.arrayOffset(), length);
+                    out.flush();
+                } finally {
+                    mPool.release(buffer);
+                }
+                synchronized (this) {
+                    if (!mClosed) {
+                        mQueuedBytes -= length;
+                        notifyAll();
+                    }
+                    mWriteCount++;
+                    mBytesSent += length;
+                    mFramesSent += frames;
+                }
+            }
+        } catch (InterruptedException e) {
+            closeWith(null);
+        } catch (IOException e) {
+            closeWith(e);
+        }
+    }
+
+    private static int countFrames(ByteBuffer buffer, int length) {
+        int frames = 0;
+        for (int position = 0; position < length; frames++) {
+            position += HEADER_BYTES + buffer.getInt(position);
+        }
+        return frames;
+    }
+
+    private void closeWith(IOException cause) {
+        ArrayList<ByteBuffer> dropped;
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            dropped = new ArrayList<>(mQueue);
+            mQueue.clear();
+            mTail = null;
+            mQueuedBytes = 0;
+            notifyAll();
+        }
+        for (ByteBuffer buffer : dropped) {
+            mPool.release(buffer);
+        }
+        try {
+            mStream.close();
+        } catch (IOException e) {
+            // Closed either way.
+        }
+        mListener.onClosed(this, cause);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.example.bluetoothapp.core.channel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * A {@link ByteStream} over a TCP socket, standing in for an RFCOMM link in tests and
+ * benchmarks.
+ */
+public class SocketByteStream implements ByteStream {
+
+    private final Socket mSocket;
+
+    public SocketByteStream(Socket socket) {
+        mSocket = socket;
+    }
+
+    /**
+     * Two streams connected to each other over the loopback interface, with Nagle's algorithm
+     * off as on an RFCOMM socket.
+     */
+    public static SocketByteStream[] pair() throws IOException {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        ServerSocket server = new ServerSocket(0, 1, loopback);
+        try {
+            Socket client = new Socket(loopback, server.getLocalPort());
+            Socket accepted = server.accept();
+            client.setTcpNoDelay(true);
+            accepted.setTcpNoDelay(true);
+            return new SocketByteStream[]{
+                    new SocketByteStream(client), new SocketByteStream(accepted)};
+        } finally {
+            server.close();
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return mSocket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return mSocket.getOutputStream();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSocket.close();
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.example.bluetoothapp.core.device;
+
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The bonded devices, read from the radio once and then kept current from its bond state and
+ * adapter state broadcasts, which must be fed in. Reading the set is a field read until an
+ * adapter state change, or {@link #invalidate()}, makes the next read query the radio again.
+ * Thread-safe; the radio is never queried under the lock.
+ */
+public class BondedDeviceSet<D> {
+
+    private final BluetoothRadio<D> mRadio;
+    private final DeviceSnapshotStore<D> mSnapshots;
+
+    // Null while the set has to be read again.
+    private LinkedHashMap<String, DeviceSnapshot<D>> mBonded;
+    private volatile List<DeviceSnapshot<D>> mDevices;
+    // Bumped on every change, so a read racing with one is not kept.
+    private int mGeneration;
+    private int mLoadCount;
+
+    public BondedDeviceSet(BluetoothRadio<D> radio, DeviceSnapshotStore<D> snapshots) {
+        mRadio = radio;
+        mSnapshots = snapshots;
+    }
+
+    /**
+     * The bonded devices in the order the radio first listed them, then in the order bonded.
+     * The list is not modified afterwards; a changed set is a new list.
+     */
+    public List<DeviceSnapshot<D>> get() {
+        List<DeviceSnapshot<D>> devices = mDevices;
+        if (devices != null) {
+            return devices;
+        }
+        int generation;
+        synchronized (this) {
+            generation = mGeneration;
+            mLoadCount++;
+        }
+        LinkedHashMap<String, DeviceSnapshot<D>> bonded = read();
+        synchronized (this) {
+            if (generation != mGeneration) {
+                // Changed while being read; answer with what was read but read again next time.
+                return Collections.unmodifiableList(new ArrayList<>(bonded.values()));
+            }
+            mBonded = bonded;
+            publish();
+            return mDevices;
+        }
+    }
+
+    /**
+     * Forgets the set, for when its broadcasts may have been missed.
+     */
+    public synchronized void invalidate() {
+        mGeneration++;
+        mBonded = null;
+        mDevices = null;
+    }
+
+    /**
+     * Any change of adapter state; the set is read again once the adapter is on.
+     */
+    public void onStateChanged(int state) {
+        invalidate();
+    }
+
+    public void onBondStateChanged(D device, int bondState) {
+        DeviceSnapshot<D> snapshot = null;
+        if (bondState == BluetoothRadio.BOND_BONDED) {
+            snapshot = bondedSnapshot(device);
+        } else if (bondState != BluetoothRadio.BOND_NONE) {
+            return;
+        }
+        String address = mRadio.getAddress(device);
+        synchronized (this) {
+            mGeneration++;
+            if (mBonded == null) {
+                return;
+            }
+            if (snapshot != null) {
+                mBonded.put(address, snapshot);
+            } else if (mBonded.remove(address) == null) {
+                return;
+            }
+            publish();
+        }
+    }
+
+    /**
+     * A device's name or class changed; a bonded one is listed with its new snapshot.
+     */
+    public synchronized void onDeviceChanged(DeviceSnapshot<D> snapshot) {
+        mGeneration++;
+        if (mBonded == null || !mBonded.containsKey(snapshot.getAddress())) {
+            return;
+        }
+        mBonded.put(snapshot.getAddress(), snapshot);
+        publish();
+    }
+
+    /**
+     * How many times the set has been read from the radio.
+     */
+    public synchronized int getLoadCount() {
+        return mLoadCount;
+    }
+
+    private LinkedHashMap<String, DeviceSnapshot<D>> read() {
+        LinkedHashMap<String, DeviceSnapshot<D>> bonded = new LinkedHashMap<>();
+        if (!mRadio.isEnabled()) {
+            // The adapter lists no bonded devices while off.
+            return bonded;
+        }
+        for (D device : mRadio.getBondedDevices()) {
+            DeviceSnapshot<D> snapshot = bondedSnapshot(device);
+            bonded.put(snapshot.getAddress(), snapshot);
+        }
+        return bonded;
+    }
+
+    private DeviceSnapshot<D> bondedSnapshot(D device) {
+        DeviceSnapshot<D> snapshot = mSnapshots.capture(device);
+        if (snapshot.getBondState() != BluetoothRadio.BOND_BONDED) {
+            // Bonded while nobody was listening for the broadcast.
+            DeviceSnapshot<D> updated = mSnapshots.setBondState(device, BluetoothRadio.BOND_BONDED);
+            if (updated != null) {
+                snapshot = updated;
+            }
+        }
+        return snapshot;
+    }
+
+    private void publish() {
+        mDevices = Collections.unmodifiableList(new ArrayList<>(mBonded.values()));
+    }
+
+}
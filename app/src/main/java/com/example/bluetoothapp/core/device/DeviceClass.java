@@ -0,0 +1,113 @@
+package com.example.bluetoothapp.core.device;
+
+/**
+ * Major and minor class of device, as returned by BluetoothClass.getDeviceClass(). Codes match
+ * android.bluetooth.BluetoothClass.Device. Lookups binary search a static sorted table and do
+ * not allocate.
+ */
+public enum DeviceClass {
+
+    COMPUTER_UNCATEGORIZED(0x0100),
+    COMPUTER_DESKTOP(0x0104),
+    COMPUTER_SERVER(0x0108),
+    COMPUTER_LAPTOP(0x010C),
+    COMPUTER_HANDHELD_PC_PDA(0x0110),
+    COMPUTER_PALM_SIZE_PC_PDA(0x0114),
+    COMPUTER_WEARABLE(0x0118),
+    PHONE_UNCATEGORIZED(0x0200),
+    PHONE_CELLULAR(0x0204),
+    PHONE_CORDLESS(0x0208),
+    PHONE_SMART(0x020C),
+    PHONE_MODEM_OR_GATEWAY(0x0210),
+    PHONE_ISDN(0x0214),
+    AUDIO_VIDEO_UNCATEGORIZED(0x0400),
+    AUDIO_VIDEO_WEARABLE_HEADSET(0x0404),
+    AUDIO_VIDEO_HANDSFREE(0x0408),
+    AUDIO_VIDEO_MICROPHONE(0x0410),
+    AUDIO_VIDEO_LOUDSPEAKER(0x0414),
+    AUDIO_VIDEO_HEADPHONES(0x0418),
+    AUDIO_VIDEO_PORTABLE_AUDIO(0x041C),
+    AUDIO_VIDEO_CAR_AUDIO(0x0420),
+    AUDIO_VIDEO_SET_TOP_BOX(0x0424),
+    AUDIO_VIDEO_HIFI_AUDIO(0x0428),
+    AUDIO_VIDEO_VCR(0x042C),
+    AUDIO_VIDEO_VIDEO_CAMERA(0x0430),
+    AUDIO_VIDEO_CAMCORDER(0x0434),
+    AUDIO_VIDEO_VIDEO_MONITOR(0x0438),
+    AUDIO_VIDEO_VIDEO_DISPLAY_AND_LOUDSPEAKER(0x043C),
+    AUDIO_VIDEO_VIDEO_CONFERENCING(0x0440),
+    AUDIO_VIDEO_VIDEO_GAMING_TOY(0x0448),
+    WEARABLE_UNCATEGORIZED(0x0700),
+    WEARABLE_WRIST_WATCH(0x0704),
+    WEARABLE_PAGER(0x0708),
+    WEARABLE_JACKET(0x070C),
+    WEARABLE_HELMET(0x0710),
+    WEARABLE_GLASSES(0x0714),
+    TOY_UNCATEGORIZED(0x0800),
+    TOY_ROBOT(0x0804),
+    TOY_VEHICLE(0x0808),
+    TOY_DOLL_ACTION_FIGURE(0x080C),
+    TOY_CONTROLLER(0x0810),
+    TOY_GAME(0x0814),
+    HEALTH_UNCATEGORIZED(0x0900),
+    HEALTH_BLOOD_PRESSURE(0x0904),
+    HEALTH_THERMOMETER(0x0908),
+    HEALTH_WEIGHING(0x090C),
+    HEALTH_GLUCOSE(0x0910),
+    HEALTH_PULSE_OXIMETER(0x0914),
+    HEALTH_PULSE_RATE(0x0918),
+    HEALTH_DATA_DISPLAY(0x091C),
+    UNKNOWN(-1);
+
+    public static final int BITMASK = 0x1FFC;
+
+    private static final int[] CODES;
+    private static final DeviceClass[] CLASSES;
+
+    static {
+        DeviceClass[] values = values();
+        CODES = new int[values.length - 1];
+        CLASSES = new DeviceClass[values.length - 1];
+        for (int index = 0; index < CODES.length; index++) {
+            CODES[index] = values[index].mCode;
+            CLASSES[index] = values[index];
+        }
+    }
+
+    private final int mCode;
+
+    DeviceClass(int code) {
+        mCode = code;
+    }
+
+    public int getCode() {
+        return mCode;
+    }
+
+    public MajorDeviceClass getMajor() {
+        return this == UNKNOWN ? MajorDeviceClass.UNKNOWN : MajorDeviceClass.fromDeviceClass(mCode);
+    }
+
+    public int getMinor() {
+        return this == UNKNOWN ? -1 : mCode & ~MajorDeviceClass.BITMASK & BITMASK;
+    }
+
+    public static DeviceClass fromCode(int deviceClass) {
+        int code = deviceClass & BITMASK;
+        int low = 0;
+        int high = CODES.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = CODES[middle];
+            if (value < code) {
+                low = middle + 1;
+            } else if (value > code) {
+                high = middle - 1;
+            } else {
+                return CLASSES[middle];
+            }
+        }
+        return UNKNOWN;
+    }
+
+}
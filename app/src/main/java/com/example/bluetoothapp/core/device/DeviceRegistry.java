@@ -0,0 +1,158 @@
+package com.example.bluetoothapp.core.device;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Devices keyed by MAC address, kept in insertion order, with a secondary index by name.
+ * Inserts, lookups and removals by address are O(1).
+ */
+public class DeviceRegistry<T> implements Iterable<T> {
+
+    private final LinkedHashMap<String, Entry<T>> mByAddress;
+    private final HashMap<String, ArrayList<T>> mByName;
+
+    private static class Entry<T> {
+
+        final String mName;
+        final T mDevice;
+
+        Entry(String name, T device) {
+            mName = name;
+            mDevice = device;
+        }
+
+    }
+
+    public DeviceRegistry() {
+        this(16);
+    }
+
+    public DeviceRegistry(int expectedSize) {
+        mByAddress = new LinkedHashMap<>(capacityFor(expectedSize));
+        mByName = new HashMap<>(capacityFor(expectedSize));
+    }
+
+    /**
+     * Adds the device, or replaces the one already registered under the same address while
+     * keeping its original position. Returns true only when the address was not known yet.
+     */
+    public boolean put(String address, String name, T device) {
+        Entry<T> previous = mByAddress.put(address, new Entry<>(name, device));
+        if (previous != null) {
+            unindexName(previous.mName, previous.mDevice);
+        }
+        indexName(name, device);
+        return previous == null;
+    }
+
+    public boolean contains(String address) {
+        return mByAddress.containsKey(address);
+    }
+
+    public T get(String address) {
+        Entry<T> entry = mByAddress.get(address);
+        return entry == null ? null : entry.mDevice;
+    }
+
+    public List<T> findByName(String name) {
+        ArrayList<T> devices = mByName.get(name);
+        if (devices == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(devices);
+    }
+
+    public T remove(String address) {
+        Entry<T> entry = mByAddress.remove(address);
+        if (entry == null) {
+            return null;
+        }
+        unindexName(entry.mName, entry.mDevice);
+        return entry.mDevice;
+    }
+
+    public void addAll(DeviceRegistry<T> other) {
+        for (Map.Entry<String, Entry<T>> entry : other.mByAddress.entrySet()) {
+            put(entry.getKey(), entry.getValue().mName, entry.getValue().mDevice);
+        }
+    }
+
+    public int size() {
+        return mByAddress.size();
+    }
+
+    public boolean isEmpty() {
+        return mByAddress.isEmpty();
+    }
+
+    public void clear() {
+        mByAddress.clear();
+        mByName.clear();
+    }
+
+    public ArrayList<T> toList() {
+        ArrayList<T> devices = new ArrayList<>(mByAddress.size());
+        for (Entry<T> entry : mByAddress.values()) {
+            devices.add(entry.mDevice);
+        }
+        return devices;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<Entry<T>> entries = mByAddress.values().iterator();
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return entries.next().mDevice;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Use DeviceRegistry.remove(address)");
+            }
+        };
+    }
+
+    private void indexName(String name, T device) {
+        if (name == null) {
+            return;
+        }
+        ArrayList<T> devices = mByName.get(name);
+        if (devices == null) {
+            devices = new ArrayList<>(1);
+            mByName.put(name, devices);
+        }
+        devices.add(device);
+    }
+
+    private void unindexName(String name, T device) {
+        if (name == null) {
+            return;
+        }
+        ArrayList<T> devices = mByName.get(name);
+        if (devices == null) {
+            return;
+        }
+        devices.remove(device);
+        if (devices.isEmpty()) {
+            mByName.remove(name);
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        return Math.max(16, (int) (expectedSize / 0.75f) + 1);
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.example.bluetoothapp.core.device;
+
+/**
+ * What is known about a remote device at one point in time, read from the radio once and then
+ * only replaced when a name, class or bond state change is reported. Reading it never crosses
+ * into the Bluetooth process, so lists can classify and render devices freely. Times are
+ * wall-clock milliseconds.
+ * <p>
+ * Two snapshots are equal when everything shown about the device is the same; the handle and
+ * the times are ignored, and so is the vendor, which follows from the address.
+ */
+public final class DeviceSnapshot<D> {
+
+    private final D mDevice;
+    private final String mAddress;
+    private final String mName;
+    private final int mDeviceClass;
+    private final int mBondState;
+    private final long mFirstSeen;
+    private final long mUpdated;
+    private final String mVendor;
+
+    public DeviceSnapshot(D device, String address, String name, int deviceClass, int bondState,
+                          long firstSeen, long updated) {
+        this(device, address, name, deviceClass, bondState, firstSeen, updated, null);
+    }
+
+    public DeviceSnapshot(D device, String address, String name, int deviceClass, int bondState,
+                          long firstSeen, long updated, String vendor) {
+        mDevice = device;
+        mAddress = address;
+        mName = name;
+        mDeviceClass = deviceClass;
+        mBondState = bondState;
+        mFirstSeen = firstSeen;
+        mUpdated = updated;
+        mVendor = vendor;
+    }
+
+    /**
+     * The handle to act on the device with. Its getters are binder calls; use the snapshot's.
+     */
+    public D getDevice() {
+        return mDevice;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    /**
+     * Null until the remote name has been resolved.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    public DeviceClass getDeviceClass() {
+        return DeviceClass.fromCode(mDeviceClass);
+    }
+
+    /**
+     * The raw class of device, -1 when unknown.
+     */
+    public int getDeviceClassCode() {
+        return mDeviceClass;
+    }
+
+    /**
+     * One of the BluetoothRadio.BOND_* constants.
+     */
+    public int getBondState() {
+        return mBondState;
+    }
+
+    public long getFirstSeen() {
+        return mFirstSeen;
+    }
+
+    public long getUpdated() {
+        return mUpdated;
+    }
+
+    /**
+     * The manufacturer the address was assigned to, or null if not known.
+     */
+    public String getVendor() {
+        return mVendor;
+    }
+
+    /**
+     * Whether the device has something to be listed under: a name or a known vendor.
+     */
+    public boolean isNamed() {
+        return mName != null || mVendor != null;
+    }
+
+    public DeviceSnapshot<D> withName(String name, long now) {
+        return new DeviceSnapshot<>(mDevice, mAddress, name, mDeviceClass, mBondState,
+                mFirstSeen, now, mVendor);
+    }
+
+    public DeviceSnapshot<D> withDeviceClass(int deviceClass, long now) {
+        return new DeviceSnapshot<>(mDevice, mAddress, mName, deviceClass, mBondState,
+                mFirstSeen, now, mVendor);
+    }
+
+    public DeviceSnapshot<D> withBondState(int bondState, long now) {
+        return new DeviceSnapshot<>(mDevice, mAddress, mName, mDeviceClass, bondState,
+                mFirstSeen, now, mVendor);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof DeviceSnapshot)) {
+            return false;
+        }
+        DeviceSnapshot<?> snapshot = (DeviceSnapshot<?>) other;
+        return mAddress.equals(snapshot.mAddress) &&
+                (mName == null ? snapshot.mName == null : mName.equals(snapshot.mName)) &&
+                mDeviceClass == snapshot.mDeviceClass &&
+                mBondState == snapshot.mBondState;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mAddress.hashCode();
+        result = 31 * result + (mName == null ? 0 : mName.hashCode());
+        result = 31 * result + mDeviceClass;
+        return 31 * result + mBondState;
+    }
+
+    @Override
+    public String toString() {
+        return mAddress + " (" + mName + ")";
+    }
+
+}
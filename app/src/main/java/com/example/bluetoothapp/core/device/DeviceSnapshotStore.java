@@ -0,0 +1,222 @@
+package com.example.bluetoothapp.core.device;
+
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.time.Clock;
+import com.example.bluetoothapp.core.vendor.OuiTable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The current {@link DeviceSnapshot} of every device seen, keyed by address. A device's name,
+ * class and bond state are read from the radio the first time it is captured; after that the
+ * snapshot only changes through the radio's change broadcasts, fed in through the set methods.
+ * Captured snapshots carry the vendor the {@link OuiTable} gives for the address.
+ * <p>
+ * A device that has not been captured, restored or changed for the maximum age is dropped
+ * when another is added, unless it is bonded or the retainer keeps it, so devices passing by,
+ * such as LE devices with rotating random addresses, do not pile up. Thread-safe.
+ */
+public class DeviceSnapshotStore<D> {
+
+    public static final long DEFAULT_MAX_AGE = 10 * 60 * 1000;
+
+    public interface Retainer {
+
+        /**
+         * Whether the device's snapshot is kept however long it goes unseen.
+         */
+        boolean isRetained(String address);
+
+    }
+
+    private static final Retainer RETAIN_NONE = new Retainer() {
+        @Override
+        public boolean isRetained(String address) {
+            return false;
+        }
+    };
+
+    private final BluetoothRadio<D> mRadio;
+    private final Clock mClock;
+    private final OuiTable mVendors;
+    private final long mMaxAge;
+    private Retainer mRetainer = RETAIN_NONE;
+    private final HashMap<String, DeviceSnapshot<D>> mSnapshots = new HashMap<>();
+    // When each device was last seen, least recently seen first.
+    private final LinkedHashMap<String, Long> mLastSeen = new LinkedHashMap<>();
+
+    public DeviceSnapshotStore(BluetoothRadio<D> radio, Clock clock) {
+        this(radio, clock, OuiTable.EMPTY);
+    }
+
+    public DeviceSnapshotStore(BluetoothRadio<D> radio, Clock clock, OuiTable vendors) {
+        this(radio, clock, vendors, DEFAULT_MAX_AGE);
+    }
+
+    public DeviceSnapshotStore(BluetoothRadio<D> radio, Clock clock, OuiTable vendors,
+                               long maxAge) {
+        mRadio = radio;
+        mClock = clock;
+        mVendors = vendors;
+        mMaxAge = maxAge;
+    }
+
+    public synchronized void setRetainer(Retainer retainer) {
+        mRetainer = retainer != null ? retainer : RETAIN_NONE;
+    }
+
+    /**
+     * The device's snapshot, read from the radio only if it has none yet.
+     */
+    public DeviceSnapshot<D> capture(D device) {
+        String address = mRadio.getAddress(device);
+        DeviceSnapshot<D> snapshot = see(address);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        // Read outside the lock; if another thread got there first its snapshot wins.
+        long now = mClock.now();
+        return putIfAbsent(new DeviceSnapshot<>(device, address, mRadio.getName(device),
+                mRadio.getDeviceClass(device), mRadio.getBondState(device), now, now,
+                mVendors.getVendorName(address)));
+    }
+
+    /**
+     * Captures the device, naming it from its advertisement if it has no name yet, as an LE
+     * device may only be named there. Never null, even when the device was named meanwhile.
+     */
+    public DeviceSnapshot<D> capture(D device, String advertisedName) {
+        DeviceSnapshot<D> snapshot = capture(device);
+        if (snapshot.getName() != null || advertisedName == null) {
+            return snapshot;
+        }
+        DeviceSnapshot<D> named = setName(device, advertisedName);
+        if (named == null) {
+            // Named to the same name since the capture; take that snapshot instead.
+            named = get(snapshot.getAddress());
+        }
+        return named != null ? named : snapshot;
+    }
+
+    public synchronized DeviceSnapshot<D> get(String address) {
+        return mSnapshots.get(address);
+    }
+
+    private synchronized DeviceSnapshot<D> see(String address) {
+        DeviceSnapshot<D> snapshot = mSnapshots.get(address);
+        if (snapshot != null) {
+            seen(address, mClock.now());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Adds a snapshot known from elsewhere, such as the device cache, unless the device already
+     * has one. Returns the one kept.
+     */
+    public synchronized DeviceSnapshot<D> putIfAbsent(DeviceSnapshot<D> snapshot) {
+        DeviceSnapshot<D> current = mSnapshots.get(snapshot.getAddress());
+        if (current != null) {
+            return current;
+        }
+        evict();
+        replace(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Drops the device's snapshot unless it is bonded, as when it is known to have gone. It is
+     * read from the radio again if the device is seen again.
+     */
+    public synchronized boolean remove(String address) {
+        DeviceSnapshot<D> snapshot = mSnapshots.get(address);
+        if (snapshot == null || snapshot.getBondState() == BluetoothRadio.BOND_BONDED) {
+            return false;
+        }
+        mSnapshots.remove(address);
+        mLastSeen.remove(address);
+        return true;
+    }
+
+    /**
+     * The methods below return the updated snapshot, or null when the device has not been
+     * captured or nothing changed.
+     */
+    public synchronized DeviceSnapshot<D> setName(D device, String name) {
+        DeviceSnapshot<D> current = mSnapshots.get(mRadio.getAddress(device));
+        if (current == null || name == null || name.equals(current.getName())) {
+            return null;
+        }
+        return replace(current.withName(name, mClock.now()));
+    }
+
+    public synchronized DeviceSnapshot<D> setDeviceClass(D device, int deviceClass) {
+        DeviceSnapshot<D> current = mSnapshots.get(mRadio.getAddress(device));
+        if (current == null || current.getDeviceClassCode() == deviceClass) {
+            return null;
+        }
+        return replace(current.withDeviceClass(deviceClass, mClock.now()));
+    }
+
+    public synchronized DeviceSnapshot<D> setBondState(D device, int bondState) {
+        DeviceSnapshot<D> current = mSnapshots.get(mRadio.getAddress(device));
+        if (current == null || current.getBondState() == bondState) {
+            return null;
+        }
+        return replace(current.withBondState(bondState, mClock.now()));
+    }
+
+    public OuiTable getVendors() {
+        return mVendors;
+    }
+
+    public synchronized int size() {
+        return mSnapshots.size();
+    }
+
+    private DeviceSnapshot<D> replace(DeviceSnapshot<D> snapshot) {
+        mSnapshots.put(snapshot.getAddress(), snapshot);
+        seen(snapshot.getAddress(), mClock.now());
+        return snapshot;
+    }
+
+    private void seen(String address, long now) {
+        // Removed first so that it moves to the end of the order.
+        mLastSeen.remove(address);
+        mLastSeen.put(address, now);
+    }
+
+    // Drops the devices unseen for the maximum age, oldest first; retained ones are kept as if
+    // just seen, so each is only asked about once per maximum age.
+    private void evict() {
+        long now = mClock.now();
+        long oldest = now - mMaxAge;
+        Map<String, Long> retained = null;
+        Iterator<Map.Entry<String, Long>> entries = mLastSeen.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Long> entry = entries.next();
+            if (entry.getValue() > oldest) {
+                break;
+            }
+            String address = entry.getKey();
+            entries.remove();
+            DeviceSnapshot<D> snapshot = mSnapshots.get(address);
+            if (snapshot.getBondState() == BluetoothRadio.BOND_BONDED ||
+                    mRetainer.isRetained(address)) {
+                if (retained == null) {
+                    retained = new LinkedHashMap<>();
+                }
+                retained.put(address, now);
+            } else {
+                mSnapshots.remove(address);
+            }
+        }
+        if (retained != null) {
+            mLastSeen.putAll(retained);
+        }
+    }
+
+}
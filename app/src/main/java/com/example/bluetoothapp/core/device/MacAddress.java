@@ -0,0 +1,66 @@
+package com.example.bluetoothapp.core.device;
+
+/**
+ * Converts between "00:11:22:AA:BB:CC" addresses and the 48-bit value they spell, packed into the
+ * low bits of a long.
+ */
+public final class MacAddress {
+
+    public static final int BYTES = 6;
+
+    private static final int LENGTH = 17;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private MacAddress() {
+    }
+
+    public static long pack(String address) {
+        if (address == null || address.length() != LENGTH) {
+            throw new IllegalArgumentException("Not a MAC address: " + address);
+        }
+        long value = 0;
+        for (int index = 0; index < LENGTH; index++) {
+            char c = address.charAt(index);
+            if (index % 3 == 2) {
+                if (c != ':') {
+                    throw new IllegalArgumentException("Not a MAC address: " + address);
+                }
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not a MAC address: " + address);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    public static String unpack(long value) {
+        char[] chars = new char[LENGTH];
+        for (int octet = 0; octet < BYTES; octet++) {
+            int b = (int) (value >>> (8 * (BYTES - 1 - octet))) & 0xFF;
+            int offset = octet * 3;
+            chars[offset] = HEX[b >>> 4];
+            chars[offset + 1] = HEX[b & 0xF];
+            if (octet < BYTES - 1) {
+                chars[offset + 2] = ':';
+            }
+        }
+        return new String(chars);
+    }
+
+    public static boolean isValid(String address) {
+        if (address == null || address.length() != LENGTH) {
+            return false;
+        }
+        for (int index = 0; index < LENGTH; index++) {
+            char c = address.charAt(index);
+            if (index % 3 == 2 ? c != ':' : Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.example.bluetoothapp.core.device;
+
+/**
+ * Major class of device, the bits 8-12 of a Class of Device value. Codes match
+ * android.bluetooth.BluetoothClass.Device.Major.
+ */
+public enum MajorDeviceClass {
+
+    MISC(0x0000),
+    COMPUTER(0x0100),
+    PHONE(0x0200),
+    NETWORKING(0x0300),
+    AUDIO_VIDEO(0x0400),
+    PERIPHERAL(0x0500),
+    IMAGING(0x0600),
+    WEARABLE(0x0700),
+    TOY(0x0800),
+    HEALTH(0x0900),
+    UNCATEGORIZED(0x1F00),
+    UNKNOWN(-1);
+
+    public static final int BITMASK = 0x1F00;
+
+    private static final MajorDeviceClass[] BY_INDEX = new MajorDeviceClass[0x20];
+
+    static {
+        for (MajorDeviceClass major : values()) {
+            if (major != UNKNOWN) {
+                BY_INDEX[major.mCode >> 8] = major;
+            }
+        }
+    }
+
+    private final int mCode;
+
+    MajorDeviceClass(int code) {
+        mCode = code;
+    }
+
+    public int getCode() {
+        return mCode;
+    }
+
+    public static MajorDeviceClass fromDeviceClass(int deviceClass) {
+        MajorDeviceClass major = BY_INDEX[(deviceClass & BITMASK) >> 8];
+        return major == null ? UNKNOWN : major;
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.example.bluetoothapp.core.discovery;
+
+public final class DiscoveryEvent<D> {
+
+    public enum Type {
+        STARTED,
+        FOUND,
+        FINISHED
+    }
+
+    private final Type mType;
+    private final D mDevice;
+    private final String mAddress;
+    private final String mName;
+
+    private DiscoveryEvent(Type type, D device, String address, String name) {
+        mType = type;
+        mDevice = device;
+        mAddress = address;
+        mName = name;
+    }
+
+    public static <D> DiscoveryEvent<D> started() {
+        return new DiscoveryEvent<>(Type.STARTED, null, null, null);
+    }
+
+    public static <D> DiscoveryEvent<D> finished() {
+        return new DiscoveryEvent<>(Type.FINISHED, null, null, null);
+    }
+
+    public static <D> DiscoveryEvent<D> found(D device, String address, String name) {
+        return new DiscoveryEvent<>(Type.FOUND, device, address, name);
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    public D getDevice() {
+        return mDevice;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+}
@@ -0,0 +1,241 @@
+package com.example.bluetoothapp.core.discovery;
+
+import com.example.bluetoothapp.core.device.DeviceRegistry;
+import com.example.bluetoothapp.core.time.Clock;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves discovery work off the thread that receives the raw events. Events are queued on a
+ * bounded queue and decoded, deduplicated and collected by a single worker, which publishes
+ * immutable {@link DiscoverySnapshot}s through the callback executor. Scan start and end are
+ * published right away; bursts of found devices are coalesced into at most one update per
+ * publish interval.
+ */
+public class DiscoveryPipeline<R, D> {
+
+    public static final long DEFAULT_PUBLISH_INTERVAL = 16;
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final int INITIAL_DEVICE_CAPACITY = 32;
+
+    public interface Decoder<R, D> {
+
+        /**
+         * Called on the worker thread. Returns null for events that should be ignored.
+         */
+        DiscoveryEvent<D> decode(R event);
+
+        /**
+         * Called on the worker thread when a scan starts, to list the devices (the paired ones)
+         * that are shown before anything is found.
+         */
+        List<DiscoveryEvent<D>> getKnownDevices();
+
+    }
+
+    public interface Listener<D> {
+
+        void onScanStarted(DiscoverySnapshot<D> snapshot);
+
+        void onDevicesFound(DiscoverySnapshot<D> snapshot);
+
+        void onScanFinished(DiscoverySnapshot<D> snapshot);
+
+    }
+
+    private final Decoder<R, D> mDecoder;
+    private final Listener<D> mListener;
+    private final Executor mCallbackExecutor;
+    private final Clock mClock;
+    private final BlockingQueue<R> mQueue;
+    private final AtomicLong mDroppedEvents = new AtomicLong();
+    private volatile long mPublishInterval = DEFAULT_PUBLISH_INTERVAL;
+    private volatile boolean mRunning;
+    private Thread mWorker;
+
+    // Owned by the worker thread.
+    private final DeviceRegistry<D> mRegistry = new DeviceRegistry<>();
+    private Object[] mDevices = new Object[INITIAL_DEVICE_CAPACITY];
+    private int mSize;
+    private int mPublishedSize;
+    private boolean mScanning;
+    private long mLastPublishTime;
+    private boolean mPublishedOnce;
+
+    public DiscoveryPipeline(Decoder<R, D> decoder, Listener<D> listener,
+                             Executor callbackExecutor, Clock clock, int capacity) {
+        mDecoder = decoder;
+        mListener = listener;
+        mCallbackExecutor = callbackExecutor;
+        mClock = clock;
+        mQueue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public void setPublishInterval(long millis) {
+        mPublishInterval = millis;
+    }
+
+    public long getPublishInterval() {
+        return mPublishInterval;
+    }
+
+    public synchronized void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runLoop();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "discovery-pipeline");
+        mWorker.setDaemon(true);
+        mWorker.start();
+    }
+
+    public synchronized void stop() {
+        mRunning = false;
+        if (mWorker != null) {
+            mWorker.interrupt();
+            mWorker = null;
+        }
+        mQueue.clear();
+    }
+
+    /**
+     * Never blocks. Returns false, and counts the event as dropped, when the queue is full.
+     */
+    public boolean offer(R event) {
+        if (mQueue.offer(event)) {
+            return true;
+        }
+        mDroppedEvents.incrementAndGet();
+        return false;
+    }
+
+    public long getDroppedEventCount() {
+        return mDroppedEvents.get();
+    }
+
+    /**
+     * Processes every queued event on the calling thread and publishes found devices if the
+     * interval has elapsed. For callers that drive the pipeline without {@link #start()}.
+     */
+    public void drain() {
+        R event;
+        while ((event = mQueue.poll()) != null) {
+            process(event);
+            publishFoundIfDue();
+        }
+        publishFoundIfDue();
+    }
+
+    private void runLoop() throws InterruptedException {
+        while (mRunning) {
+            R event;
+            if (hasUnpublishedDevices()) {
+                long wait = mLastPublishTime + mPublishInterval - mClock.now();
+                event = wait > 0 ? mQueue.poll(wait, TimeUnit.MILLISECONDS) : mQueue.poll();
+            } else {
+                event = mQueue.take();
+            }
+            if (event != null) {
+                process(event);
+            }
+            publishFoundIfDue();
+        }
+    }
+
+    private void process(R rawEvent) {
+        DiscoveryEvent<D> event = mDecoder.decode(rawEvent);
+        if (event == null) {
+            return;
+        }
+        switch (event.getType()) {
+            case STARTED:
+                publishFound();
+                mRegistry.clear();
+                mDevices = new Object[INITIAL_DEVICE_CAPACITY];
+                mSize = 0;
+                mPublishedSize = 0;
+                mScanning = true;
+                for (DiscoveryEvent<D> known : mDecoder.getKnownDevices()) {
+                    add(known);
+                }
+                publish(DiscoveryEvent.Type.STARTED);
+                break;
+            case FOUND:
+                add(event);
+                break;
+            case FINISHED:
+                publishFound();
+                mScanning = false;
+                publish(DiscoveryEvent.Type.FINISHED);
+                break;
+        }
+    }
+
+    private void add(DiscoveryEvent<D> event) {
+        if (!mRegistry.put(event.getAddress(), event.getName(), event.getDevice())) {
+            return;
+        }
+        if (mSize == mDevices.length) {
+            mDevices = Arrays.copyOf(mDevices, mSize * 2);
+        }
+        mDevices[mSize++] = event.getDevice();
+    }
+
+    private boolean hasUnpublishedDevices() {
+        return mSize > mPublishedSize;
+    }
+
+    private void publishFoundIfDue() {
+        if (hasUnpublishedDevices() &&
+                (!mPublishedOnce || mClock.now() - mLastPublishTime >= mPublishInterval)) {
+            publish(DiscoveryEvent.Type.FOUND);
+        }
+    }
+
+    private void publishFound() {
+        if (hasUnpublishedDevices()) {
+            publish(DiscoveryEvent.Type.FOUND);
+        }
+    }
+
+    private void publish(final DiscoveryEvent.Type type) {
+        final DiscoverySnapshot<D> snapshot =
+                new DiscoverySnapshot<>(mDevices, mSize, mPublishedSize, mScanning);
+        mPublishedSize = mSize;
+        mLastPublishTime = mClock.now();
+        mPublishedOnce = true;
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                switch (type) {
+                    case STARTED:
+                        mListener.onScanStarted(snapshot);
+                        break;
+                    case FOUND:
+                        mListener.onDevicesFound(snapshot);
+                        break;
+                    case FINISHED:
+                        mListener.onScanFinished(snapshot);
+                        break;
+                }
+            }
+        });
+    }
+
+}
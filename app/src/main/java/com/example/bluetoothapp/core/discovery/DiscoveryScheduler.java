@@ -0,0 +1,509 @@
+package com.example.bluetoothapp.core.discovery;
+
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.time.Clock;
+import com.example.bluetoothapp.core.time.Scheduler;
+
+import java.util.HashSet;
+
+/**
+ * Decides when a scan ends. Every scan this scheduler started gets a timer-based deadline, as
+ * does one started outside its operation scheduler, such as by another app. In
+ * {@link Mode#ADAPTIVE} the new-device rate is sampled every check interval: a scan that has
+ * stopped turning up new devices ends early, and one that is still finding them gets its
+ * deadline pushed back, up to the maximum window. Background mode runs a short scan every
+ * period while nothing else is scanning.
+ * <p>
+ * Given a {@link RadioOperationScheduler}, scans are started through it rather than on the
+ * radio directly, as user or background discovery, and so wait for other operations on the
+ * controller; a background scan gives way to anything more urgent. A scan another scheduler
+ * started through the same operations is that scheduler's: this one neither times nor cancels
+ * it, and {@link #onDiscoveryStarted()} tells its owner so.
+ * <p>
+ * The owner forwards the radio's discovery events to {@link #onDiscoveryStarted()},
+ * {@link #onDeviceFound(String)} and {@link #onDiscoveryFinished()}.
+ */
+public class DiscoveryScheduler {
+
+    public enum Mode {
+        FIXED,
+        ADAPTIVE
+    }
+
+    public interface Listener {
+
+        void onScanFinished(ScanStatistics statistics);
+
+    }
+
+    private final BluetoothRadio<?> mRadio;
+    private final Clock mClock;
+    private final Scheduler mScheduler;
+    private Policy mPolicy;
+    private Listener mListener;
+
+    private boolean mActive;
+    private boolean mSessionBackground;
+    private boolean mNextSessionBackground;
+    // We asked the radio to discover, and it has not started since.
+    private boolean mNextSessionOwned;
+    private long mSessionStart;
+    private long mDeadline;
+    private long mTimeToFirstDevice;
+    private int mCheckedDevices;
+    private final HashSet<String> mSeenAddresses = new HashSet<>();
+    private Scheduler.Cancellable mTimer;
+    private ScanStatistics mLastStatistics;
+
+    private boolean mBackgroundRunning;
+    private Scheduler.Cancellable mBackgroundTimer;
+
+    private RadioOperationScheduler mOperations;
+    // Our scan waiting or running in mOperations.
+    private ScanOperation mOperation;
+
+    private final class ScanOperation extends RadioOperationScheduler.Operation {
+
+        final boolean mBackground;
+        // Started the radio's discovery, which has not finished since.
+        boolean mScanning;
+
+        ScanOperation(boolean background) {
+            mBackground = background;
+        }
+
+        @Override
+        protected boolean start() {
+            synchronized (DiscoveryScheduler.this) {
+                if (mOperation != this) {
+                    return false;
+                }
+                mNextSessionBackground = mBackground;
+                mScanning = mRadio.startDiscovery();
+                if (!mScanning) {
+                    mNextSessionBackground = false;
+                }
+                mNextSessionOwned = mScanning;
+                return mScanning;
+            }
+        }
+
+        @Override
+        protected void abort() {
+            synchronized (DiscoveryScheduler.this) {
+                if (!mScanning) {
+                    return;
+                }
+                mScanning = false;
+                if (mActive) {
+                    DiscoveryScheduler.this.finish(ScanStatistics.StopReason.CANCELLED);
+                }
+                if (mRadio.isDiscovering()) {
+                    mRadio.cancelDiscovery();
+                }
+            }
+        }
+
+        @Override
+        protected void onEnded(RadioOperationScheduler.Result result) {
+            synchronized (DiscoveryScheduler.this) {
+                if (mOperation == this) {
+                    mOperation = null;
+                }
+            }
+        }
+
+    }
+
+    public DiscoveryScheduler(BluetoothRadio<?> radio, Clock clock, Scheduler scheduler,
+                              Policy policy) {
+        mRadio = radio;
+        mClock = clock;
+        mScheduler = scheduler;
+        mPolicy = policy;
+    }
+
+    public synchronized void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Takes effect from the next scan.
+     */
+    public synchronized void setPolicy(Policy policy) {
+        mPolicy = policy;
+    }
+
+    public synchronized Policy getPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * Starts scans through the operations from now on, or on the radio again if null.
+     */
+    public synchronized void setOperationScheduler(RadioOperationScheduler operations) {
+        cancelOperation();
+        mOperations = operations;
+    }
+
+    /**
+     * Scans now or, with an operation scheduler, queues the scan; a waiting or running
+     * background scan is replaced.
+     */
+    public synchronized boolean startScan() {
+        mNextSessionBackground = false;
+        if (mOperations == null) {
+            mNextSessionOwned = mRadio.startDiscovery();
+            return mNextSessionOwned;
+        }
+        if (mOperation != null) {
+            if (!mOperation.mBackground) {
+                return true;
+            }
+            cancelOperation();
+            if (mActive && mSessionBackground) {
+                finish(ScanStatistics.StopReason.CANCELLED);
+                mRadio.cancelDiscovery();
+            }
+        }
+        submitScan(false);
+        return true;
+    }
+
+    /**
+     * Stops this scheduler's scan, or one started outside its operations; leaves another
+     * scheduler's alone.
+     */
+    public synchronized void cancelScan() {
+        cancelOperation();
+        boolean ours = mActive;
+        if (mActive) {
+            finish(ScanStatistics.StopReason.CANCELLED);
+        }
+        if (mRadio.isDiscovering() && (ours || !isAnotherSchedulersScan())) {
+            mRadio.cancelDiscovery();
+        }
+    }
+
+    public synchronized boolean isScanning() {
+        return mActive;
+    }
+
+    public synchronized ScanStatistics getLastStatistics() {
+        return mLastStatistics;
+    }
+
+    public synchronized void startBackground() {
+        if (mBackgroundRunning) {
+            return;
+        }
+        mBackgroundRunning = true;
+        mBackgroundTimer = mScheduler.schedule(mBackgroundTask, 0);
+    }
+
+    public synchronized void stopBackground() {
+        mBackgroundRunning = false;
+        if (mBackgroundTimer != null) {
+            mBackgroundTimer.cancel();
+            mBackgroundTimer = null;
+        }
+        if (mOperation != null && mOperation.mBackground) {
+            cancelOperation();
+        }
+        if (mActive && mSessionBackground) {
+            cancelScan();
+        }
+    }
+
+    public synchronized boolean isBackgroundRunning() {
+        return mBackgroundRunning;
+    }
+
+    /**
+     * Returns whether the scan is this scheduler's to time, and false for one another
+     * scheduler started through the same operations, which is left to it.
+     */
+    public synchronized boolean onDiscoveryStarted() {
+        boolean owned = mNextSessionOwned || !isAnotherSchedulersScan();
+        mNextSessionOwned = false;
+        if (!owned) {
+            mNextSessionBackground = false;
+            return false;
+        }
+        if (mActive) {
+            cancelTimer();
+        }
+        mActive = true;
+        mSessionBackground = mNextSessionBackground;
+        mNextSessionBackground = false;
+        mSessionStart = mClock.now();
+        mDeadline = mSessionStart +
+                (mSessionBackground ? mPolicy.mBackgroundWindow : mPolicy.mWindow);
+        mTimeToFirstDevice = -1;
+        mCheckedDevices = 0;
+        mSeenAddresses.clear();
+        scheduleCheck();
+        return true;
+    }
+
+    public synchronized void onDeviceFound(String address) {
+        if (!mActive || !mSeenAddresses.add(address)) {
+            return;
+        }
+        if (mTimeToFirstDevice < 0) {
+            mTimeToFirstDevice = mClock.now() - mSessionStart;
+        }
+    }
+
+    public synchronized void onDiscoveryFinished() {
+        if (mActive) {
+            finish(ScanStatistics.StopReason.RADIO_FINISHED);
+        }
+    }
+
+    private void scheduleCheck() {
+        long untilDeadline = mDeadline - mClock.now();
+        long delay = mPolicy.mMode == Mode.ADAPTIVE ?
+                Math.min(mPolicy.mCheckInterval, untilDeadline) : untilDeadline;
+        mTimer = mScheduler.schedule(mCheckTask, delay);
+    }
+
+    private void check() {
+        long now = mClock.now();
+        if (now >= mDeadline) {
+            stop(ScanStatistics.StopReason.DEADLINE);
+            return;
+        }
+        if (mPolicy.mMode == Mode.ADAPTIVE) {
+            int newDevices = mSeenAddresses.size() - mCheckedDevices;
+            mCheckedDevices = mSeenAddresses.size();
+            double rate = newDevices * 1000.0 / mPolicy.mCheckInterval;
+            if (now - mSessionStart >= mPolicy.mMinWindow && rate < mPolicy.mLowRate) {
+                stop(ScanStatistics.StopReason.LOW_RATE);
+                return;
+            }
+            if (rate >= mPolicy.mHighRate) {
+                long limit = mSessionStart +
+                        (mSessionBackground ? mPolicy.mBackgroundWindow : mPolicy.mMaxWindow);
+                mDeadline = Math.max(mDeadline, Math.min(mDeadline + mPolicy.mExtension, limit));
+            }
+        }
+        scheduleCheck();
+    }
+
+    private void stop(ScanStatistics.StopReason reason) {
+        finish(reason);
+        mRadio.cancelDiscovery();
+    }
+
+    private void finish(ScanStatistics.StopReason reason) {
+        if (mOperation != null && mOperation.mScanning) {
+            mOperation.mScanning = false;
+            mOperation.finish(true);
+        }
+        cancelTimer();
+        mActive = false;
+        mLastStatistics = new ScanStatistics(mSessionBackground, mClock.now() - mSessionStart,
+                mSeenAddresses.size(), mTimeToFirstDevice, reason);
+        mSeenAddresses.clear();
+        if (mListener != null) {
+            mListener.onScanFinished(mLastStatistics);
+        }
+    }
+
+    // Discovery running in the operations that is not ours.
+    private boolean isAnotherSchedulersScan() {
+        return mOperations != null && (mOperation == null || !mOperation.isRunning()) &&
+                mOperations.getRunningKind() == RadioOperationScheduler.Kind.DISCOVERY;
+    }
+
+    private void submitScan(boolean background) {
+        mOperation = new ScanOperation(background);
+        mOperations.submit(mOperation, RadioOperationScheduler.Kind.DISCOVERY,
+                background ? RadioOperationScheduler.PRIORITY_BACKGROUND
+                        : RadioOperationScheduler.PRIORITY_USER,
+                background ? mClock.now() + mPolicy.mBackgroundPeriod
+                        : RadioOperationScheduler.NO_DEADLINE);
+    }
+
+    /**
+     * Drops our scan from the operations. Leaves the radio alone.
+     */
+    private void cancelOperation() {
+        ScanOperation operation = mOperation;
+        if (operation == null) {
+            return;
+        }
+        mOperation = null;
+        operation.mScanning = false;
+        operation.cancel();
+    }
+
+    private void cancelTimer() {
+        if (mTimer != null) {
+            mTimer.cancel();
+            mTimer = null;
+        }
+    }
+
+    private final Runnable mCheckTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (DiscoveryScheduler.this) {
+                mTimer = null;
+                if (mActive) {
+                    check();
+                }
+            }
+        }
+    };
+
+    private final Runnable mBackgroundTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (DiscoveryScheduler.this) {
+                if (!mBackgroundRunning) {
+                    return;
+                }
+                if (!mActive && mRadio.isEnabled() && !mRadio.isDiscovering()) {
+                    if (mOperations != null) {
+                        if (mOperation == null) {
+                            submitScan(true);
+                        }
+                    } else {
+                        mNextSessionBackground = true;
+                        mNextSessionOwned = mRadio.startDiscovery();
+                        if (!mNextSessionOwned) {
+                            mNextSessionBackground = false;
+                        }
+                    }
+                }
+                mBackgroundTimer = mScheduler.schedule(this, mPolicy.mBackgroundPeriod);
+            }
+        }
+    };
+
+    /**
+     * Scan timing. Windows and intervals are in milliseconds, rates in new devices per second.
+     */
+    public static final class Policy {
+
+        public static final Policy DEFAULT = new Builder().build();
+
+        final Mode mMode;
+        final long mWindow;
+        final long mMinWindow;
+        final long mMaxWindow;
+        final long mCheckInterval;
+        final double mLowRate;
+        final double mHighRate;
+        final long mExtension;
+        final long mBackgroundWindow;
+        final long mBackgroundPeriod;
+
+        private Policy(Builder builder) {
+            mMode = builder.mMode;
+            mWindow = builder.mWindow;
+            mMinWindow = builder.mMinWindow;
+            mMaxWindow = Math.max(builder.mMaxWindow, builder.mWindow);
+            mCheckInterval = builder.mCheckInterval;
+            mLowRate = builder.mLowRate;
+            mHighRate = builder.mHighRate;
+            mExtension = builder.mExtension;
+            mBackgroundWindow = builder.mBackgroundWindow;
+            mBackgroundPeriod = builder.mBackgroundPeriod;
+        }
+
+        public Mode getMode() {
+            return mMode;
+        }
+
+        public static class Builder {
+
+            private Mode mMode = Mode.ADAPTIVE;
+            private long mWindow = 5000;
+            private long mMinWindow = 3000;
+            private long mMaxWindow = 12000;
+            private long mCheckInterval = 1000;
+            private double mLowRate = 0.5;
+            private double mHighRate = 2;
+            private long mExtension = 2000;
+            private long mBackgroundWindow = 4000;
+            private long mBackgroundPeriod = 5 * 60 * 1000;
+
+            public Builder setMode(Mode mode) {
+                mMode = mode;
+                return this;
+            }
+
+            /**
+             * Deadline of a scan in fixed mode, and the initial deadline in adaptive mode.
+             */
+            public Builder setWindow(long window) {
+                mWindow = window;
+                return this;
+            }
+
+            /**
+             * An adaptive scan never ends for a low rate before this.
+             */
+            public Builder setMinWindow(long minWindow) {
+                mMinWindow = minWindow;
+                return this;
+            }
+
+            /**
+             * An adaptive scan is never extended past this.
+             */
+            public Builder setMaxWindow(long maxWindow) {
+                mMaxWindow = maxWindow;
+                return this;
+            }
+
+            public Builder setCheckInterval(long checkInterval) {
+                mCheckInterval = checkInterval;
+                return this;
+            }
+
+            /**
+             * Below this rate an adaptive scan ends.
+             */
+            public Builder setLowRate(double lowRate) {
+                mLowRate = lowRate;
+                return this;
+            }
+
+            /**
+             * At or above this rate an adaptive scan is extended by the extension.
+             */
+            public Builder setHighRate(double highRate) {
+                mHighRate = highRate;
+                return this;
+            }
+
+            public Builder setExtension(long extension) {
+                mExtension = extension;
+                return this;
+            }
+
+            /**
+             * Deadline, and adaptive limit, of background scans.
+             */
+            public Builder setBackgroundWindow(long backgroundWindow) {
+                mBackgroundWindow = backgroundWindow;
+                return this;
+            }
+
+            public Builder setBackgroundPeriod(long backgroundPeriod) {
+                mBackgroundPeriod = backgroundPeriod;
+                return this;
+            }
+
+            public Policy build() {
+                return new Policy(this);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.example.bluetoothapp.core.discovery;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable view of the discovery results at one point in time, safe to hand across threads.
+ * Snapshots of the same scan share one append-only array, so publishing one costs O(1) no
+ * matter how many devices have been found.
+ */
+public final class DiscoverySnapshot<D> {
+
+    private final List<D> mDevices;
+    private final List<D> mAddedDevices;
+    private final boolean mScanning;
+
+    DiscoverySnapshot(Object[] devices, int size, int addedFrom, boolean scanning) {
+        mDevices = new ArrayView<>(devices, 0, size);
+        mAddedDevices = new ArrayView<>(devices, addedFrom, size);
+        mScanning = scanning;
+    }
+
+    public DiscoverySnapshot(List<D> devices, boolean scanning) {
+        this(devices.toArray(), devices.size(), 0, scanning);
+    }
+
+    public static <D> DiscoverySnapshot<D> empty() {
+        return new DiscoverySnapshot<>(Collections.<D>emptyList(), false);
+    }
+
+    /**
+     * Every device known in this scan, in the order they were found.
+     */
+    public List<D> getDevices() {
+        return mDevices;
+    }
+
+    /**
+     * Devices found since the previous snapshot was published.
+     */
+    public List<D> getAddedDevices() {
+        return mAddedDevices;
+    }
+
+    public boolean isScanning() {
+        return mScanning;
+    }
+
+    public int size() {
+        return mDevices.size();
+    }
+
+    private static class ArrayView<D> extends AbstractList<D> implements RandomAccess {
+
+        private final Object[] mElements;
+        private final int mFrom;
+        private final int mTo;
+
+        ArrayView(Object[] elements, int from, int to) {
+            mElements = elements;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public D get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+            }
+            return (D) mElements[mFrom + index];
+        }
+
+        @Override
+        public int size() {
+            return mTo - mFrom;
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.example.bluetoothapp.core.discovery;
+
+import java.util.Locale;
+
+/**
+ * How one scan went. Times are in milliseconds, measured from the start of the scan.
+ */
+public final class ScanStatistics {
+
+    public enum StopReason {
+        DEADLINE,
+        LOW_RATE,
+        CANCELLED,
+        RADIO_FINISHED
+    }
+
+    private final boolean mBackground;
+    private final long mDuration;
+    private final int mDevicesFound;
+    private final long mTimeToFirstDevice;
+    private final StopReason mStopReason;
+
+    public ScanStatistics(boolean background, long duration, int devicesFound,
+                          long timeToFirstDevice, StopReason stopReason) {
+        mBackground = background;
+        mDuration = duration;
+        mDevicesFound = devicesFound;
+        mTimeToFirstDevice = timeToFirstDevice;
+        mStopReason = stopReason;
+    }
+
+    public boolean isBackground() {
+        return mBackground;
+    }
+
+    public long getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * Distinct devices reported during the scan.
+     */
+    public int getDevicesFound() {
+        return mDevicesFound;
+    }
+
+    public double getDevicesPerSecond() {
+        return mDuration == 0 ? 0 : mDevicesFound * 1000.0 / mDuration;
+    }
+
+    /**
+     * -1 when nothing was found.
+     */
+    public long getTimeToFirstDevice() {
+        return mTimeToFirstDevice;
+    }
+
+    public StopReason getStopReason() {
+        return mStopReason;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s scan, %d ms, %d devices (%.2f/s), first after %d ms, %s",
+                mBackground ? "background" : "foreground", mDuration, mDevicesFound,
+                getDevicesPerSecond(), mTimeToFirstDevice, mStopReason);
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.example.bluetoothapp.core.follow;
+
+import com.example.bluetoothapp.core.time.Clock;
+import com.example.bluetoothapp.core.time.Scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Turns a stream of connects and disconnects into few, settled summaries. A device's change is
+ * only reported once its state has held for the hysteresis window, so a device that flaps and
+ * ends where it started is not reported at all. Changes that settle close together are merged,
+ * and summaries are at least the minimum interval apart. The listener is called on the
+ * scheduler's thread.
+ */
+public class ConnectionNotifier {
+
+    public static final long DEFAULT_HYSTERESIS = 5000;
+    public static final long DEFAULT_MIN_INTERVAL = 3000;
+
+    public interface Listener {
+
+        void onSummary(ConnectionSummary summary);
+
+    }
+
+    private static final class DeviceState {
+        String mName;
+        boolean mConnected;
+        boolean mReportedConnected;
+        boolean mPending;
+        long mDeadline;
+        int mEvents;
+    }
+
+    private final Clock mClock;
+    private final Scheduler mScheduler;
+    private long mHysteresis;
+    private long mMinInterval;
+    private Listener mListener;
+
+    private final HashMap<String, DeviceState> mDevices = new HashMap<>();
+    private final LinkedHashMap<String, ConnectionSummary.Change> mSettled =
+            new LinkedHashMap<>();
+    private int mPendingCount;
+    private long mLastSummary = Long.MIN_VALUE;
+    private long mSuppressedCount;
+    private Scheduler.Cancellable mTimer;
+    private long mTimerDue;
+
+    public ConnectionNotifier(Clock clock, Scheduler scheduler, long hysteresisMillis,
+                              long minIntervalMillis) {
+        mClock = clock;
+        mScheduler = scheduler;
+        mHysteresis = hysteresisMillis;
+        mMinInterval = minIntervalMillis;
+    }
+
+    public synchronized void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Takes effect from the next event.
+     */
+    public synchronized void setHysteresis(long millis) {
+        mHysteresis = millis;
+    }
+
+    public synchronized void setMinInterval(long millis) {
+        mMinInterval = millis;
+    }
+
+    public synchronized void onConnectionChanged(String address, String name,
+                                                 boolean connected) {
+        DeviceState device = mDevices.get(address);
+        if (device == null) {
+            device = new DeviceState();
+            // A connect means it was disconnected before, and the other way round.
+            device.mReportedConnected = !connected;
+            mDevices.put(address, device);
+        }
+        device.mName = name;
+        device.mConnected = connected;
+        device.mEvents++;
+        device.mDeadline = mClock.now() + mHysteresis;
+        if (!device.mPending) {
+            device.mPending = true;
+            mPendingCount++;
+        }
+        scheduleAt(device.mDeadline);
+    }
+
+    /**
+     * Devices whose latest change has not settled yet.
+     */
+    public synchronized int getPendingCount() {
+        return mPendingCount;
+    }
+
+    /**
+     * Connects and disconnects that never reached a summary.
+     */
+    public synchronized long getSuppressedCount() {
+        return mSuppressedCount;
+    }
+
+    /**
+     * Drops everything pending and stops the timer.
+     */
+    public synchronized void cancel() {
+        if (mTimer != null) {
+            mTimer.cancel();
+            mTimer = null;
+        }
+        for (DeviceState device : mDevices.values()) {
+            device.mPending = false;
+            device.mEvents = 0;
+        }
+        mPendingCount = 0;
+        mSettled.clear();
+    }
+
+    private void scheduleAt(long due) {
+        if (mTimer != null) {
+            if (mTimerDue <= due) {
+                return;
+            }
+            mTimer.cancel();
+        }
+        mTimerDue = due;
+        mTimer = mScheduler.schedule(mTimerTask, Math.max(0, due - mClock.now()));
+    }
+
+    private final Runnable mTimerTask = new Runnable() {
+        @Override
+        public void run() {
+            onTimer();
+        }
+    };
+
+    private synchronized void onTimer() {
+        mTimer = null;
+        long now = mClock.now();
+        long next = Long.MAX_VALUE;
+        if (mPendingCount > 0) {
+            for (Map.Entry<String, DeviceState> entry : mDevices.entrySet()) {
+                DeviceState device = entry.getValue();
+                if (!device.mPending) {
+                    continue;
+                }
+                if (device.mDeadline > now) {
+                    next = Math.min(next, device.mDeadline);
+                } else {
+                    settle(entry.getKey(), device);
+                }
+            }
+        }
+        if (!mSettled.isEmpty()) {
+            long allowed = mLastSummary == Long.MIN_VALUE ? now : mLastSummary + mMinInterval;
+            if (allowed <= now) {
+                publish(now);
+            } else {
+                next = Math.min(next, allowed);
+            }
+        }
+        if (next != Long.MAX_VALUE) {
+            scheduleAt(next);
+        }
+    }
+
+    private void settle(String address, DeviceState device) {
+        device.mPending = false;
+        mPendingCount--;
+        int events = device.mEvents;
+        device.mEvents = 0;
+        if (device.mConnected == device.mReportedConnected) {
+            mSuppressedCount += events;
+            return;
+        }
+        device.mReportedConnected = device.mConnected;
+        ConnectionSummary.Change earlier = mSettled.remove(address);
+        if (earlier != null) {
+            // Settled one way and back again before a summary went out.
+            mSuppressedCount += earlier.getFlapCount() + 1 + events;
+            return;
+        }
+        mSuppressedCount += events - 1;
+        mSettled.put(address, new ConnectionSummary.Change(address, device.mName,
+                device.mConnected, events - 1));
+    }
+
+    private void publish(long now) {
+        ConnectionSummary summary =
+                new ConnectionSummary(new ArrayList<>(mSettled.values()), now);
+        mSettled.clear();
+        mLastSummary = now;
+        if (mListener != null) {
+            mListener.onSummary(summary);
+        }
+    }
+
+}
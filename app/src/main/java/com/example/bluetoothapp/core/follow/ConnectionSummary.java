@@ -0,0 +1,84 @@
+package com.example.bluetoothapp.core.follow;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The connection changes that settled since the last summary, one per device, oldest first.
+ */
+public final class ConnectionSummary {
+
+    public static final class Change {
+
+        private final String mAddress;
+        private final String mName;
+        private final boolean mConnected;
+        private final int mFlapCount;
+
+        Change(String address, String name, boolean connected, int flapCount) {
+            mAddress = address;
+            mName = name;
+            mConnected = connected;
+            mFlapCount = flapCount;
+        }
+
+        public String getAddress() {
+            return mAddress;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public boolean isConnected() {
+            return mConnected;
+        }
+
+        /**
+         * Connects and disconnects absorbed into this change because the device flapped.
+         */
+        public int getFlapCount() {
+            return mFlapCount;
+        }
+
+        @Override
+        public String toString() {
+            return mName + (mConnected ? " connected" : " disconnected");
+        }
+    }
+
+    private final List<Change> mChanges;
+    private final long mTime;
+
+    ConnectionSummary(List<Change> changes, long time) {
+        mChanges = Collections.unmodifiableList(changes);
+        mTime = time;
+    }
+
+    public List<Change> getChanges() {
+        return mChanges;
+    }
+
+    public int getConnectedCount() {
+        int connected = 0;
+        for (Change change : mChanges) {
+            if (change.isConnected()) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    /**
+     * When the summary was made, in milliseconds of the notifier's clock.
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    @Override
+    public String toString() {
+        return mChanges.toString();
+    }
+
+}
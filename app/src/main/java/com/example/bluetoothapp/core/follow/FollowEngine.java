@@ -0,0 +1,123 @@
+package com.example.bluetoothapp.core.follow;
+
+import com.example.bluetoothapp.core.device.MacAddress;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The devices the user follows and when to tell them about each one. Changes replace the set
+ * with a modified copy and are saved on the write executor, so the ACL path reads a stable set
+ * without locking, allocating or touching the disk. The write executor must run tasks one at a
+ * time.
+ */
+public class FollowEngine {
+
+    public static final int NOTIFY_CONNECT = 1;
+    public static final int NOTIFY_DISCONNECT = 1 << 1;
+    public static final int NOTIFY_BOTH = NOTIFY_CONNECT | NOTIFY_DISCONNECT;
+
+    private final FollowFile mFile;
+    private final Executor mWriteExecutor;
+    private final AtomicBoolean mWritePending = new AtomicBoolean();
+    private final AtomicLong mWriteErrors = new AtomicLong();
+    private volatile FollowedDeviceSet mDevices = new FollowedDeviceSet();
+
+    public FollowEngine(FollowFile file, Executor writeExecutor) {
+        mFile = file;
+        mWriteExecutor = writeExecutor;
+    }
+
+    public void load() throws IOException {
+        FollowedDeviceSet devices = mFile.read();
+        synchronized (this) {
+            mDevices = devices;
+        }
+    }
+
+    /**
+     * Follows the device with the given NOTIFY_* rules, replacing any it had. No rules unfollows
+     * it.
+     */
+    public synchronized void follow(String address, int rules) {
+        long packed = MacAddress.pack(address);
+        if (rules == 0) {
+            unfollow(address);
+            return;
+        }
+        if (mDevices.getRules(packed) == rules) {
+            return;
+        }
+        FollowedDeviceSet devices = new FollowedDeviceSet(mDevices);
+        devices.put(packed, rules);
+        mDevices = devices;
+        scheduleWrite();
+    }
+
+    public synchronized boolean unfollow(String address) {
+        long packed = MacAddress.pack(address);
+        if (!mDevices.contains(packed)) {
+            return false;
+        }
+        FollowedDeviceSet devices = new FollowedDeviceSet(mDevices);
+        devices.remove(packed);
+        mDevices = devices;
+        scheduleWrite();
+        return true;
+    }
+
+    public int getRules(String address) {
+        return MacAddress.isValid(address) ? mDevices.getRules(MacAddress.pack(address)) : 0;
+    }
+
+    public boolean isFollowed(String address) {
+        return getRules(address) != 0;
+    }
+
+    /**
+     * Whether an ACL connect or disconnect of this device should be reported.
+     */
+    public boolean shouldNotify(String address, boolean connected) {
+        return (getRules(address) & (connected ? NOTIFY_CONNECT : NOTIFY_DISCONNECT)) != 0;
+    }
+
+    public List<String> getFollowedAddresses() {
+        long[] addresses = mDevices.getAddresses();
+        List<String> followed = new ArrayList<>(addresses.length);
+        for (long address : addresses) {
+            followed.add(MacAddress.unpack(address));
+        }
+        return followed;
+    }
+
+    public int size() {
+        return mDevices.size();
+    }
+
+    public long getWriteErrorCount() {
+        return mWriteErrors.get();
+    }
+
+    private void scheduleWrite() {
+        if (mWritePending.compareAndSet(false, true)) {
+            mWriteExecutor.execute(mWriteTask);
+        }
+    }
+
+    private final Runnable mWriteTask = new Runnable() {
+        @Override
+        public void run() {
+            mWritePending.set(false);
+            try {
+                mFile.write(mDevices);
+            } catch (IOException e) {
+                mWriteErrors.incrementAndGet();
+            }
+        }
+    };
+
+}
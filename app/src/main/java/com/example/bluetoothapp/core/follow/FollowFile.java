@@ -0,0 +1,89 @@
+package com.example.bluetoothapp.core.follow;
+
+import com.example.bluetoothapp.core.device.MacAddress;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The followed devices on disk: a header, a count and then 7 bytes per device, the address
+ * followed by its rules. Always rewritten whole, through a temporary file.
+ */
+public class FollowFile {
+
+    private static final int MAGIC = 0x4254464C;
+    private static final int VERSION = 1;
+
+    private final File mFile;
+
+    public FollowFile(File file) {
+        mFile = file;
+    }
+
+    public boolean exists() {
+        return mFile.exists();
+    }
+
+    /**
+     * Returns an empty set when there is no file yet, or when it cannot be parsed.
+     */
+    public FollowedDeviceSet read() throws IOException {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+        } catch (FileNotFoundException e) {
+            return new FollowedDeviceSet();
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return new FollowedDeviceSet();
+            }
+            int count = in.readInt();
+            FollowedDeviceSet devices = new FollowedDeviceSet(count);
+            for (int index = 0; index < count; index++) {
+                long address = 0;
+                for (int b = 0; b < MacAddress.BYTES; b++) {
+                    address = (address << 8) | in.readUnsignedByte();
+                }
+                devices.put(address, in.readByte());
+            }
+            return devices;
+        } catch (EOFException e) {
+            return new FollowedDeviceSet();
+        } finally {
+            in.close();
+        }
+    }
+
+    public void write(FollowedDeviceSet devices) throws IOException {
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            long[] addresses = devices.getAddresses();
+            out.writeInt(addresses.length);
+            for (long address : addresses) {
+                for (int shift = 8 * (MacAddress.BYTES - 1); shift >= 0; shift -= 8) {
+                    out.writeByte((int) (address >>> shift));
+                }
+                out.writeByte(devices.getRules(address));
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Could not replace " + mFile);
+        }
+    }
+
+}
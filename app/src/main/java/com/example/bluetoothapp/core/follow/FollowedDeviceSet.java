@@ -0,0 +1,135 @@
+package com.example.bluetoothapp.core.follow;
+
+import java.util.Arrays;
+
+/**
+ * Followed devices keyed by packed MAC address (see MacAddress), each with its notify rules.
+ * An open-addressing table over primitive arrays, so lookups neither box nor allocate. Not
+ * thread-safe.
+ */
+public class FollowedDeviceSet {
+
+    private static final long EMPTY = -1L;
+
+    private long[] mAddresses;
+    private byte[] mRules;
+    private int mSize;
+
+    public FollowedDeviceSet() {
+        this(8);
+    }
+
+    public FollowedDeviceSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        mAddresses = new long[capacity];
+        Arrays.fill(mAddresses, EMPTY);
+        mRules = new byte[capacity];
+    }
+
+    public FollowedDeviceSet(FollowedDeviceSet other) {
+        mAddresses = other.mAddresses.clone();
+        mRules = other.mRules.clone();
+        mSize = other.mSize;
+    }
+
+    /**
+     * The rules the device is followed with, or 0 when it is not followed.
+     */
+    public int getRules(long address) {
+        int slot = find(mAddresses, address);
+        return mAddresses[slot] == EMPTY ? 0 : mRules[slot];
+    }
+
+    public boolean contains(long address) {
+        return mAddresses[find(mAddresses, address)] != EMPTY;
+    }
+
+    public void put(long address, int rules) {
+        int slot = find(mAddresses, address);
+        if (mAddresses[slot] == EMPTY) {
+            if ((mSize + 1) * 2 > mAddresses.length) {
+                resize(mAddresses.length * 2);
+                slot = find(mAddresses, address);
+            }
+            mAddresses[slot] = address;
+            mSize++;
+        }
+        mRules[slot] = (byte) rules;
+    }
+
+    public boolean remove(long address) {
+        int slot = find(mAddresses, address);
+        if (mAddresses[slot] == EMPTY) {
+            return false;
+        }
+        // Backward-shift deletion keeps every probe sequence unbroken without tombstones.
+        int mask = mAddresses.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (mAddresses[next] != EMPTY) {
+            int home = hash(mAddresses[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                mAddresses[hole] = mAddresses[next];
+                mRules[hole] = mRules[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mAddresses[hole] = EMPTY;
+        mRules[hole] = 0;
+        mSize--;
+        return true;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public long[] getAddresses() {
+        long[] addresses = new long[mSize];
+        int count = 0;
+        for (long address : mAddresses) {
+            if (address != EMPTY) {
+                addresses[count++] = address;
+            }
+        }
+        return addresses;
+    }
+
+    private void resize(int capacity) {
+        long[] oldAddresses = mAddresses;
+        byte[] oldRules = mRules;
+        mAddresses = new long[capacity];
+        Arrays.fill(mAddresses, EMPTY);
+        mRules = new byte[capacity];
+        for (int slot = 0; slot < oldAddresses.length; slot++) {
+            if (oldAddresses[slot] != EMPTY) {
+                int newSlot = find(mAddresses, oldAddresses[slot]);
+                mAddresses[newSlot] = oldAddresses[slot];
+                mRules[newSlot] = oldRules[slot];
+            }
+        }
+    }
+
+    private static int find(long[] addresses, long address) {
+        int mask = addresses.length - 1;
+        int slot = hash(address, mask);
+        while (addresses[slot] != EMPTY && addresses[slot] != address) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long address, int mask) {
+        long mixed = address * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & mask;
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.example.bluetoothapp.core.journal;
+
+import com.example.bluetoothapp.core.device.MacAddress;
+import com.example.bluetoothapp.core.time.Clock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A bounded log of ACL connects and disconnects, oldest entries overwritten first. Records are
+ * fixed-size slots in a ring, written straight into the backing buffer, so recording an event
+ * does not allocate. When the buffer is mapped from a file the kernel keeps the writes even if
+ * the process dies right after.
+ */
+public class ConnectionJournal {
+
+    public static final int CONNECTED = 1;
+    public static final int DISCONNECTED = 2;
+
+    private static final int MAGIC = 0x42544A4E;
+    private static final int VERSION = 1;
+
+    // magic, version, capacity, unused, then the number of records ever written.
+    private static final int HEADER_SIZE = 24;
+    private static final int COUNT_OFFSET = 16;
+    // The time, then the type in the top bits above the 48-bit address.
+    private static final int RECORD_SIZE = 16;
+    private static final int TYPE_SHIFT = 8 * MacAddress.BYTES;
+    private static final long ADDRESS_MASK = (1L << TYPE_SHIFT) - 1;
+
+    private final ByteBuffer mBuffer;
+    private final Clock mClock;
+    private final int mCapacity;
+    private long mCount;
+
+    /**
+     * Keeps the records already in the buffer when it holds a journal of the same capacity,
+     * and starts empty otherwise.
+     */
+    public ConnectionJournal(ByteBuffer buffer, Clock clock) {
+        mBuffer = buffer;
+        mClock = clock;
+        mCapacity = (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE;
+        if (mCapacity <= 0) {
+            throw new IllegalArgumentException("Buffer too small: " + buffer.capacity());
+        }
+        if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION &&
+                buffer.getInt(8) == mCapacity && buffer.getLong(COUNT_OFFSET) >= 0) {
+            mCount = buffer.getLong(COUNT_OFFSET);
+        } else {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, mCapacity);
+            buffer.putLong(COUNT_OFFSET, 0);
+        }
+    }
+
+    public static ConnectionJournal inMemory(int capacity, Clock clock) {
+        return new ConnectionJournal(ByteBuffer.allocate(size(capacity)), clock);
+    }
+
+    /**
+     * Maps the journal from the file, creating it if needed. A file written with another
+     * capacity is started afresh.
+     */
+    public static ConnectionJournal open(File file, int capacity, Clock clock)
+            throws IOException {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            ByteBuffer buffer = access.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, size(capacity));
+            return new ConnectionJournal(buffer, clock);
+        } finally {
+            // The mapping stays valid after the channel is closed.
+            access.close();
+        }
+    }
+
+    private static int size(int capacity) {
+        return HEADER_SIZE + capacity * RECORD_SIZE;
+    }
+
+    public void recordConnected(String address) {
+        record(address, CONNECTED);
+    }
+
+    public void recordDisconnected(String address) {
+        record(address, DISCONNECTED);
+    }
+
+    private synchronized void record(String address, int type) {
+        if (!MacAddress.isValid(address)) {
+            return;
+        }
+        int offset = offset(mCount);
+        mBuffer.putLong(offset, mClock.now());
+        mBuffer.putLong(offset + 8, ((long) type << TYPE_SHIFT) | MacAddress.pack(address));
+        // Published after the record so a torn write is never counted.
+        mCount++;
+        mBuffer.putLong(COUNT_OFFSET, mCount);
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * The number of records currently held.
+     */
+    public synchronized int size() {
+        return (int) Math.min(mCount, mCapacity);
+    }
+
+    /**
+     * The devices with records in [from, to], in the order they first appear.
+     */
+    public synchronized List<String> getAddresses(long from, long to) {
+        Set<Long> addresses = new LinkedHashSet<>();
+        for (long index = first(); index < mCount; index++) {
+            int offset = offset(index);
+            long time = mBuffer.getLong(offset);
+            if (time >= from && time <= to) {
+                addresses.add(mBuffer.getLong(offset + 8) & ADDRESS_MASK);
+            }
+        }
+        List<String> result = new ArrayList<>(addresses.size());
+        for (long address : addresses) {
+            result.add(MacAddress.unpack(address));
+        }
+        return result;
+    }
+
+    /**
+     * Pairs up the device's connects and disconnects in [from, to]. A disconnect with no
+     * connect before it in the range gives a session with an unknown start, and a connect
+     * still open at the end one with an unknown end.
+     */
+    public synchronized DeviceHistory getHistory(String address, long from, long to) {
+        DeviceHistory history = new DeviceHistory(address);
+        if (!MacAddress.isValid(address)) {
+            return history;
+        }
+        long packed = MacAddress.pack(address);
+        long connectedAt = -1;
+        long disconnectedAt = -1;
+        boolean connected = false;
+        for (long index = first(); index < mCount; index++) {
+            int offset = offset(index);
+            long time = mBuffer.getLong(offset);
+            long value = mBuffer.getLong(offset + 8);
+            if (time < from || time > to || (value & ADDRESS_MASK) != packed) {
+                continue;
+            }
+            if ((int) (value >>> TYPE_SHIFT) == CONNECTED) {
+                if (connected) {
+                    // A repeated connect; the earlier one still marks the start.
+                    continue;
+                }
+                if (disconnectedAt >= 0) {
+                    history.addGap(time - disconnectedAt);
+                }
+                connected = true;
+                connectedAt = time;
+            } else {
+                if (connected || disconnectedAt < 0) {
+                    history.addSession(new ConnectionSession(connected ? connectedAt : -1, time));
+                }
+                connected = false;
+                disconnectedAt = time;
+            }
+        }
+        if (connected) {
+            history.addSession(new ConnectionSession(connectedAt, -1));
+        }
+        return history;
+    }
+
+    /**
+     * Prints, for each device with records in [from, to], its sessions, reconnects, connected
+     * time and gap histogram.
+     */
+    public void dump(PrintWriter writer, long from, long to) {
+        List<String> addresses = getAddresses(from, to);
+        writer.println(String.format(Locale.US, "Connections from %tF %<tT, %d devices", from,
+                addresses.size()));
+        if (addresses.isEmpty()) {
+            return;
+        }
+        StringBuilder header = new StringBuilder(String.format(Locale.US, "  %-18s %8s %10s %10s",
+                "device", "sessions", "reconnects", "connected"));
+        for (int bucket = 0; bucket < DeviceHistory.getGapBucketCount(); bucket++) {
+            long limit = DeviceHistory.getGapBucketLimit(bucket);
+            header.append(String.format(Locale.US, " %7s",
+                    limit == Long.MAX_VALUE ? "longer" : "<" + limit / 1000 + "s"));
+        }
+        writer.println(header);
+        for (String address : addresses) {
+            DeviceHistory history = getHistory(address, from, to);
+            StringBuilder line = new StringBuilder(String.format(Locale.US,
+                    "  %-18s %8d %10d %9ds", address, history.getSessions().size(),
+                    history.getReconnectCount(), history.getConnectedTime() / 1000));
+            for (int count : history.getGapHistogram()) {
+                line.append(String.format(Locale.US, " %7d", count));
+            }
+            writer.println(line);
+        }
+    }
+
+    private long first() {
+        return Math.max(0, mCount - mCapacity);
+    }
+
+    private int offset(long index) {
+        return HEADER_SIZE + (int) (index % mCapacity) * RECORD_SIZE;
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.example.bluetoothapp.core.journal;
+
+/**
+ * One stretch of a device being connected, in wall-clock milliseconds. Either end is -1 when it
+ * falls outside what the journal still holds, or, for the disconnect, when it has not happened.
+ */
+public final class ConnectionSession {
+
+    private final long mConnectedAt;
+    private final long mDisconnectedAt;
+
+    public ConnectionSession(long connectedAt, long disconnectedAt) {
+        mConnectedAt = connectedAt;
+        mDisconnectedAt = disconnectedAt;
+    }
+
+    public long getConnectedAt() {
+        return mConnectedAt;
+    }
+
+    public long getDisconnectedAt() {
+        return mDisconnectedAt;
+    }
+
+    public boolean isComplete() {
+        return mConnectedAt >= 0 && mDisconnectedAt >= 0;
+    }
+
+    /**
+     * -1 unless both ends are known.
+     */
+    public long getDuration() {
+        return isComplete() ? mDisconnectedAt - mConnectedAt : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionSession{" + mConnectedAt + ".." + mDisconnectedAt + "}";
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.example.bluetoothapp.core.journal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The sessions of one device over a time range, with how often and how quickly it came back
+ * after dropping.
+ */
+public final class DeviceHistory {
+
+    // Upper bounds of the gap histogram buckets; the last bucket holds everything longer.
+    private static final long[] GAP_LIMITS = {1000, 5000, 30000, 2 * 60000, 10 * 60000, 3600000};
+
+    private final String mAddress;
+    private final List<ConnectionSession> mSessions = new ArrayList<>();
+    private final int[] mGapHistogram = new int[GAP_LIMITS.length + 1];
+    private int mReconnectCount;
+
+    DeviceHistory(String address) {
+        mAddress = address;
+    }
+
+    public static int getGapBucketCount() {
+        return GAP_LIMITS.length + 1;
+    }
+
+    /**
+     * The exclusive upper bound of a gap bucket, Long.MAX_VALUE for the last one.
+     */
+    public static long getGapBucketLimit(int bucket) {
+        return bucket < GAP_LIMITS.length ? GAP_LIMITS[bucket] : Long.MAX_VALUE;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public List<ConnectionSession> getSessions() {
+        return Collections.unmodifiableList(mSessions);
+    }
+
+    /**
+     * Connections that followed a disconnect seen in the same range.
+     */
+    public int getReconnectCount() {
+        return mReconnectCount;
+    }
+
+    /**
+     * The total length of the sessions whose both ends are known.
+     */
+    public long getConnectedTime() {
+        long total = 0;
+        for (ConnectionSession session : mSessions) {
+            if (session.isComplete()) {
+                total += session.getDuration();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * How many reconnects came after a gap in each bucket.
+     */
+    public int[] getGapHistogram() {
+        return mGapHistogram.clone();
+    }
+
+    void addSession(ConnectionSession session) {
+        mSessions.add(session);
+    }
+
+    void addGap(long gap) {
+        int bucket = 0;
+        while (bucket < GAP_LIMITS.length && gap >= GAP_LIMITS[bucket]) {
+            bucket++;
+        }
+        mGapHistogram[bucket]++;
+        mReconnectCount++;
+    }
+
+}
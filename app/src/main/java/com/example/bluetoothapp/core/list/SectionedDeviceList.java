@@ -0,0 +1,301 @@
+package com.example.bluetoothapp.core.list;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * The paired / available device list shown by DeviceAdapter, kept up to date one device at a
+ * time. Each section lists its priority devices first and then the rest, both in the order they
+ * were added. Every change is reported to the {@link Callback} as the smallest range of flat
+ * positions it touched, so the adapter never has to rebuild or rebind the whole list.
+ */
+public class SectionedDeviceList<T> {
+
+    public enum Section {
+        PAIRED,
+        AVAILABLE
+    }
+
+    public interface Classifier<T> {
+
+        String getAddress(T device);
+
+        boolean isPaired(T device);
+
+        boolean hasPriority(T device);
+
+    }
+
+    public interface Callback {
+
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onChanged(int position, int count);
+
+    }
+
+    private static final int PAIRED_PRIORITY = 0;
+    private static final int PAIRED_OTHER = 1;
+    private static final int AVAILABLE_PRIORITY = 2;
+    private static final int AVAILABLE_OTHER = 3;
+    private static final int GROUP_COUNT = 4;
+
+    // Where a device sits: its group and the sequence number it was added with. Groups are kept
+    // in the order devices were added, so each group's sequence numbers ascend and a device is
+    // found by binary search instead of comparing every address.
+    private static class Slot {
+
+        final int group;
+        final long sequence;
+
+        Slot(int group, long sequence) {
+            this.group = group;
+            this.sequence = sequence;
+        }
+
+    }
+
+    private final Classifier<T> mClassifier;
+    private final ArrayList<ArrayList<T>> mGroups;
+    private final ArrayList<ArrayList<Long>> mSequences;
+    private final HashMap<String, Slot> mSlotByAddress;
+    private long mNextSequence;
+    private Callback mCallback;
+    private boolean mScanning;
+
+    public SectionedDeviceList(Classifier<T> classifier) {
+        mClassifier = classifier;
+        mGroups = new ArrayList<>(GROUP_COUNT);
+        mSequences = new ArrayList<>(GROUP_COUNT);
+        for (int group = 0; group < GROUP_COUNT; group++) {
+            mGroups.add(new ArrayList<T>());
+            mSequences.add(new ArrayList<Long>());
+        }
+        mSlotByAddress = new HashMap<>();
+    }
+
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    public void setAll(Iterable<T> devices) {
+        for (int group = 0; group < GROUP_COUNT; group++) {
+            mGroups.get(group).clear();
+            mSequences.get(group).clear();
+        }
+        mSlotByAddress.clear();
+        for (T device : devices) {
+            String address = mClassifier.getAddress(device);
+            if (!mSlotByAddress.containsKey(address)) {
+                append(address, groupOf(device), device);
+            }
+        }
+    }
+
+    public boolean add(T device) {
+        String address = mClassifier.getAddress(device);
+        if (mSlotByAddress.containsKey(address)) {
+            update(device);
+            return false;
+        }
+        int group = groupOf(device);
+        Section section = sectionOf(group);
+        boolean headerShown = isHeaderShown(section);
+        append(address, group, device);
+        ArrayList<T> devices = mGroups.get(group);
+        if (headerShown) {
+            dispatchInserted(getGroupStart(group) + devices.size() - 1, 1);
+        } else {
+            dispatchInserted(getHeaderPosition(section), 2);
+        }
+        return true;
+    }
+
+    public void update(T device) {
+        String address = mClassifier.getAddress(device);
+        Slot slot = mSlotByAddress.get(address);
+        if (slot == null) {
+            add(device);
+            return;
+        }
+        if (slot.group != groupOf(device)) {
+            remove(address);
+            add(device);
+            return;
+        }
+        int index = indexOf(slot);
+        mGroups.get(slot.group).set(index, device);
+        dispatchChanged(getGroupStart(slot.group) + index, 1);
+    }
+
+    public T remove(String address) {
+        Slot slot = mSlotByAddress.remove(address);
+        if (slot == null) {
+            return null;
+        }
+        int index = indexOf(slot);
+        int position = getGroupStart(slot.group) + index;
+        Section section = sectionOf(slot.group);
+        int headerPosition = getHeaderPosition(section);
+        mSequences.get(slot.group).remove(index);
+        T device = mGroups.get(slot.group).remove(index);
+        if (isHeaderShown(section)) {
+            dispatchRemoved(position, 1);
+        } else {
+            dispatchRemoved(headerPosition, 2);
+        }
+        return device;
+    }
+
+    public void setScanning(boolean scanning) {
+        if (mScanning == scanning) {
+            return;
+        }
+        boolean headerShown = isHeaderShown(Section.AVAILABLE);
+        mScanning = scanning;
+        int headerPosition = getHeaderPosition(Section.AVAILABLE);
+        if (headerShown && !isHeaderShown(Section.AVAILABLE)) {
+            dispatchRemoved(headerPosition, 1);
+        } else if (!headerShown && isHeaderShown(Section.AVAILABLE)) {
+            dispatchInserted(headerPosition, 1);
+        } else if (headerShown) {
+            dispatchChanged(headerPosition, 1);
+        }
+    }
+
+    public boolean isScanning() {
+        return mScanning;
+    }
+
+    public boolean contains(String address) {
+        return mSlotByAddress.containsKey(address);
+    }
+
+    public int getDeviceCount() {
+        return mSlotByAddress.size();
+    }
+
+    public int getItemCount() {
+        return getSectionItemCount(Section.PAIRED) + getSectionItemCount(Section.AVAILABLE);
+    }
+
+    public boolean isHeader(int position) {
+        return getItem(position) instanceof Section;
+    }
+
+    /**
+     * Returns the {@link Section} for header rows and the device for every other row.
+     */
+    public Object getItem(int position) {
+        int offset = position;
+        for (Section section : Section.values()) {
+            if (!isHeaderShown(section)) {
+                continue;
+            }
+            if (offset == 0) {
+                return section;
+            }
+            offset--;
+            for (int group = firstGroupOf(section); group <= lastGroupOf(section); group++) {
+                ArrayList<T> devices = mGroups.get(group);
+                if (offset < devices.size()) {
+                    return devices.get(offset);
+                }
+                offset -= devices.size();
+            }
+        }
+        throw new IndexOutOfBoundsException("Position " + position + ", size " + getItemCount());
+    }
+
+    public ArrayList<Object> toList() {
+        ArrayList<Object> items = new ArrayList<>(getItemCount());
+        for (Section section : Section.values()) {
+            if (isHeaderShown(section)) {
+                items.add(section);
+                for (int group = firstGroupOf(section); group <= lastGroupOf(section); group++) {
+                    items.addAll(mGroups.get(group));
+                }
+            }
+        }
+        return items;
+    }
+
+    private int groupOf(T device) {
+        boolean priority = mClassifier.hasPriority(device);
+        if (mClassifier.isPaired(device)) {
+            return priority ? PAIRED_PRIORITY : PAIRED_OTHER;
+        }
+        return priority ? AVAILABLE_PRIORITY : AVAILABLE_OTHER;
+    }
+
+    private static Section sectionOf(int group) {
+        return group <= PAIRED_OTHER ? Section.PAIRED : Section.AVAILABLE;
+    }
+
+    private static int firstGroupOf(Section section) {
+        return section == Section.PAIRED ? PAIRED_PRIORITY : AVAILABLE_PRIORITY;
+    }
+
+    private static int lastGroupOf(Section section) {
+        return section == Section.PAIRED ? PAIRED_OTHER : AVAILABLE_OTHER;
+    }
+
+    private int getSectionDeviceCount(Section section) {
+        return mGroups.get(firstGroupOf(section)).size() + mGroups.get(lastGroupOf(section)).size();
+    }
+
+    private boolean isHeaderShown(Section section) {
+        return getSectionDeviceCount(section) > 0 ||
+                (section == Section.AVAILABLE && mScanning);
+    }
+
+    private int getSectionItemCount(Section section) {
+        return isHeaderShown(section) ? 1 + getSectionDeviceCount(section) : 0;
+    }
+
+    private int getHeaderPosition(Section section) {
+        return section == Section.PAIRED ? 0 : getSectionItemCount(Section.PAIRED);
+    }
+
+    private int getGroupStart(int group) {
+        Section section = sectionOf(group);
+        int start = getHeaderPosition(section) + 1;
+        if (group == lastGroupOf(section)) {
+            start += mGroups.get(firstGroupOf(section)).size();
+        }
+        return start;
+    }
+
+    private void append(String address, int group, T device) {
+        long sequence = mNextSequence++;
+        mGroups.get(group).add(device);
+        mSequences.get(group).add(sequence);
+        mSlotByAddress.put(address, new Slot(group, sequence));
+    }
+
+    private int indexOf(Slot slot) {
+        return Collections.binarySearch(mSequences.get(slot.group), slot.sequence);
+    }
+
+    private void dispatchInserted(int position, int count) {
+        if (mCallback != null) {
+            mCallback.onInserted(position, count);
+        }
+    }
+
+    private void dispatchRemoved(int position, int count) {
+        if (mCallback != null) {
+            mCallback.onRemoved(position, count);
+        }
+    }
+
+    private void dispatchChanged(int position, int count) {
+        if (mCallback != null) {
+            mCallback.onChanged(position, count);
+        }
+    }
+
+}
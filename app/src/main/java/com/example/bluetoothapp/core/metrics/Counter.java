@@ -0,0 +1,52 @@
+package com.example.bluetoothapp.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count added to from many threads. Each thread adds to one of a few cells, each on a cache
+ * line of its own, so threads counting at the same time rarely touch the same line; reading
+ * sums the cells.
+ */
+public final class Counter {
+
+    // Longs per cell, 64 bytes.
+    private static final int CELL_LONGS = 8;
+
+    private final AtomicLongArray mCells;
+    private final int mMask;
+
+    /**
+     * The stripes, a power of two, are the number of cells.
+     */
+    public Counter(int stripes) {
+        if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripes not a power of two: " + stripes);
+        }
+        mCells = new AtomicLongArray(stripes * CELL_LONGS);
+        mMask = stripes - 1;
+    }
+
+    public void increment() {
+        mCells.getAndIncrement(cell());
+    }
+
+    public void add(long delta) {
+        mCells.getAndAdd(cell(), delta);
+    }
+
+    public long get() {
+        long sum = 0;
+        for (int cell = 0; cell < mCells.length(); cell += CELL_LONGS) {
+            sum += mCells.get(cell);
+        }
+        return sum;
+    }
+
+    // Thread ids are handed out in sequence; the multiply spreads neighbours over the cells.
+    private int cell() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash >>> 16) & mMask) * CELL_LONGS;
+    }
+
+}
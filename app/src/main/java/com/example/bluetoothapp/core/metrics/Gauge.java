@@ -0,0 +1,24 @@
+package com.example.bluetoothapp.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A value that goes up and down, such as the links open, read as it is when a snapshot is taken.
+ */
+public final class Gauge {
+
+    private final AtomicLong mValue = new AtomicLong();
+
+    public void set(long value) {
+        mValue.set(value);
+    }
+
+    public void add(long delta) {
+        mValue.addAndGet(delta);
+    }
+
+    public long get() {
+        return mValue.get();
+    }
+
+}
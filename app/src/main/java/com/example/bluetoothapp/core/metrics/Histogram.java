@@ -0,0 +1,151 @@
+package com.example.bluetoothapp.core.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latencies in nanoseconds, counted into fixed buckets by power of two: bucket 0 holds 0 and
+ * bucket i the values from 2^(i-1) to 2^i - 1, the last bucket everything above. Recording
+ * takes no lock and allocates nothing. A percentile is the upper bound of the bucket it falls
+ * in, so at most twice the true value.
+ */
+public final class Histogram {
+
+    public static final int BUCKETS = 48;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * A negative latency, from a clock that went back, counts as 0.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        mCounts.getAndIncrement(bucketOf(nanos));
+        mSum.addAndGet(nanos);
+        long max = mMax.get();
+        while (nanos > max && !mMax.compareAndSet(max, nanos)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * Records the time since the System.nanoTime() reading.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] = mCounts.get(bucket);
+        }
+        return new Snapshot(counts, mSum.get(), mMax.get());
+    }
+
+    public static int bucketOf(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    public static long getUpperBound(int bucket) {
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return (1L << bucket) - 1;
+    }
+
+    /**
+     * The counts at one time. Taken while others record, the sum and maximum may include a
+     * sample or two the counts do not.
+     */
+    public static final class Snapshot {
+
+        private final long[] mCounts;
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+
+        Snapshot(long[] counts, long sum, long max) {
+            if (counts.length != BUCKETS) {
+                throw new IllegalArgumentException("Not " + BUCKETS + " buckets");
+            }
+            mCounts = counts;
+            long count = 0;
+            for (long bucketCount : counts) {
+                count += bucketCount;
+            }
+            mCount = count;
+            mSum = sum;
+            mMax = max;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getBucketCount(int bucket) {
+            return mCounts[bucket];
+        }
+
+        public long getSum() {
+            return mSum;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        /**
+         * 0 when nothing was recorded.
+         */
+        public double getMean() {
+            return mCount == 0 ? 0 : (double) mSum / mCount;
+        }
+
+        /**
+         * The nearest-rank percentile, 0 to 100, to the bucket; -1 when nothing was recorded.
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Not a percentile: " + percentile);
+            }
+            if (mCount == 0) {
+                return -1;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * mCount));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += mCounts[bucket];
+                if (seen >= rank) {
+                    return Math.min(getUpperBound(bucket), mMax);
+                }
+            }
+            return mMax;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Snapshot)) {
+                return false;
+            }
+            Snapshot other = (Snapshot) o;
+            return mSum == other.mSum && mMax == other.mMax &&
+                    Arrays.equals(mCounts, other.mCounts);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(mCounts) + (int) (mSum ^ (mSum >>> 32));
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.example.bluetoothapp.core.metrics;
+
+import com.example.bluetoothapp.core.time.Clock;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Named counters, gauges and latency histograms. A metric is made the first time its name is
+ * asked for and lives as long as the registry, so hot paths look theirs up once and keep it;
+ * recording never touches the registry. Thread-safe.
+ */
+public class MetricsRegistry {
+
+    private final Clock mClock;
+    private final int mStripes;
+    private final TreeMap<String, Object> mMetrics = new TreeMap<>();
+
+    /**
+     * Counters get a cell per processor, rounded up to a power of two, up to 16. The clock
+     * stamps snapshots; a wall clock, so that snapshot files can be placed in time.
+     */
+    public MetricsRegistry(Clock clock) {
+        this(clock, Math.min(16,
+                Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    }
+
+    public MetricsRegistry(Clock clock, int counterStripes) {
+        mClock = clock;
+        mStripes = counterStripes;
+    }
+
+    public synchronized Counter counter(String name) {
+        Counter counter = get(name, Counter.class);
+        if (counter == null) {
+            counter = new Counter(mStripes);
+            mMetrics.put(name, counter);
+        }
+        return counter;
+    }
+
+    public synchronized Gauge gauge(String name) {
+        Gauge gauge = get(name, Gauge.class);
+        if (gauge == null) {
+            gauge = new Gauge();
+            mMetrics.put(name, gauge);
+        }
+        return gauge;
+    }
+
+    public synchronized Histogram histogram(String name) {
+        Histogram histogram = get(name, Histogram.class);
+        if (histogram == null) {
+            histogram = new Histogram();
+            mMetrics.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    public MetricsSnapshot snapshot() {
+        TreeMap<String, Object> metrics;
+        synchronized (this) {
+            metrics = new TreeMap<>(mMetrics);
+        }
+        TreeMap<String, Long> counters = new TreeMap<>();
+        TreeMap<String, Long> gauges = new TreeMap<>();
+        TreeMap<String, Histogram.Snapshot> histograms = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            Object metric = entry.getValue();
+            if (metric instanceof Counter) {
+                counters.put(entry.getKey(), ((Counter) metric).get());
+            } else if (metric instanceof Gauge) {
+                gauges.put(entry.getKey(), ((Gauge) metric).get());
+            } else {
+                histograms.put(entry.getKey(), ((Histogram) metric).snapshot());
+            }
+        }
+        return new MetricsSnapshot(mClock.now(), counters, gauges, histograms);
+    }
+
+    private <M> M get(String name, Class<M> kind) {
+        Object metric = mMetrics.get(name);
+        if (metric != null && !kind.isInstance(metric)) {
+            throw new IllegalArgumentException(name + " is a " +
+                    metric.getClass().getSimpleName());
+        }
+        return kind.cast(metric);
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.example.bluetoothapp.core.metrics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The values of a registry's metrics at one time, printed for dumpsys or kept as a binary file.
+ * The file has a header and the time, then each metric as a kind byte and its name, followed
+ * by a counter's or gauge's value, or a histogram's sum, maximum and nonempty buckets as index
+ * and count. An idle histogram thus takes a few bytes besides its name.
+ */
+public final class MetricsSnapshot {
+
+    private static final int MAGIC = 0x4D545243;
+    private static final int VERSION = 1;
+    private static final int KIND_COUNTER = 1;
+    private static final int KIND_GAUGE = 2;
+    private static final int KIND_HISTOGRAM = 3;
+
+    private final long mTime;
+    private final SortedMap<String, Long> mCounters;
+    private final SortedMap<String, Long> mGauges;
+    private final SortedMap<String, Histogram.Snapshot> mHistograms;
+
+    MetricsSnapshot(long time, TreeMap<String, Long> counters, TreeMap<String, Long> gauges,
+                    TreeMap<String, Histogram.Snapshot> histograms) {
+        mTime = time;
+        mCounters = Collections.unmodifiableSortedMap(counters);
+        mGauges = Collections.unmodifiableSortedMap(gauges);
+        mHistograms = Collections.unmodifiableSortedMap(histograms);
+    }
+
+    /**
+     * The registry clock's time the snapshot was taken.
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    public SortedMap<String, Long> getCounters() {
+        return mCounters;
+    }
+
+    public SortedMap<String, Long> getGauges() {
+        return mGauges;
+    }
+
+    public SortedMap<String, Histogram.Snapshot> getHistograms() {
+        return mHistograms;
+    }
+
+    /**
+     * One line per metric; histograms in microseconds.
+     */
+    public void dump(PrintWriter writer) {
+        writer.println(String.format(Locale.US, "Metrics at %tF %<tT", mTime));
+        for (Map.Entry<String, Long> entry : mCounters.entrySet()) {
+            writer.println(String.format(Locale.US, "  %-36s %12d", entry.getKey(),
+                    entry.getValue()));
+        }
+        for (Map.Entry<String, Long> entry : mGauges.entrySet()) {
+            writer.println(String.format(Locale.US, "  %-36s %12d (now)", entry.getKey(),
+                    entry.getValue()));
+        }
+        if (mHistograms.isEmpty()) {
+            return;
+        }
+        writer.println(String.format(Locale.US, "  %-36s %12s %10s %10s %10s %10s %10s",
+                "latency (us)", "count", "mean", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, Histogram.Snapshot> entry : mHistograms.entrySet()) {
+            Histogram.Snapshot histogram = entry.getValue();
+            writer.println(String.format(Locale.US,
+                    "  %-36s %12d %10.1f %10.1f %10.1f %10.1f %10.1f", entry.getKey(),
+                    histogram.getCount(), histogram.getMean() / 1000,
+                    micros(histogram.getPercentile(50)), micros(histogram.getPercentile(90)),
+                    micros(histogram.getPercentile(99)), micros(histogram.getMax())));
+        }
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(mTime);
+        out.writeInt(mCounters.size() + mGauges.size() + mHistograms.size());
+        for (Map.Entry<String, Long> entry : mCounters.entrySet()) {
+            out.writeByte(KIND_COUNTER);
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : mGauges.entrySet()) {
+            out.writeByte(KIND_GAUGE);
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+        for (Map.Entry<String, Histogram.Snapshot> entry : mHistograms.entrySet()) {
+            Histogram.Snapshot histogram = entry.getValue();
+            out.writeByte(KIND_HISTOGRAM);
+            out.writeUTF(entry.getKey());
+            out.writeLong(histogram.getSum());
+            out.writeLong(histogram.getMax());
+            int buckets = 0;
+            for (int bucket = 0; bucket < Histogram.BUCKETS; bucket++) {
+                if (histogram.getBucketCount(bucket) != 0) {
+                    buckets++;
+                }
+            }
+            out.writeByte(buckets);
+            for (int bucket = 0; bucket < Histogram.BUCKETS; bucket++) {
+                if (histogram.getBucketCount(bucket) != 0) {
+                    out.writeByte(bucket);
+                    out.writeLong(histogram.getBucketCount(bucket));
+                }
+            }
+        }
+        out.flush();
+    }
+
+    public static MetricsSnapshot readFrom(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a metrics snapshot");
+        }
+        long time = in.readLong();
+        int count = in.readInt();
+        TreeMap<String, Long> counters = new TreeMap<>();
+        TreeMap<String, Long> gauges = new TreeMap<>();
+        TreeMap<String, Histogram.Snapshot> histograms = new TreeMap<>();
+        for (int metric = 0; metric < count; metric++) {
+            int kind = in.readUnsignedByte();
+            String name = in.readUTF();
+            switch (kind) {
+                case KIND_COUNTER:
+                    counters.put(name, in.readLong());
+                    break;
+                case KIND_GAUGE:
+                    gauges.put(name, in.readLong());
+                    break;
+                case KIND_HISTOGRAM:
+                    long sum = in.readLong();
+                    long max = in.readLong();
+                    long[] counts = new long[Histogram.BUCKETS];
+                    int buckets = in.readUnsignedByte();
+                    for (int index = 0; index < buckets; index++) {
+                        int bucket = in.readUnsignedByte();
+                        if (bucket >= Histogram.BUCKETS) {
+                            throw new IOException("Bucket " + bucket + " out of range");
+                        }
+                        counts[bucket] = in.readLong();
+                    }
+                    histograms.put(name, new Histogram.Snapshot(counts, sum, max));
+                    break;
+                default:
+                    throw new IOException("Unknown metric kind " + kind);
+            }
+        }
+        return new MetricsSnapshot(time, counters, gauges, histograms);
+    }
+
+    private static double micros(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1000.0;
+    }
+
+}
@@ -0,0 +1,384 @@
+package com.example.bluetoothapp.core.operation;
+
+import com.example.bluetoothapp.core.reconnect.LatencyRecorder;
+import com.example.bluetoothapp.core.time.Clock;
+import com.example.bluetoothapp.core.time.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Runs operations on the Bluetooth controller one at a time. Inquiry, page and SDP share the
+ * one radio, and running them together slows every one of them down; run in turn, each gets
+ * the air to itself. Operations wait in order of priority, then of submission. One that has
+ * not started by its deadline is dropped, and one that runs past the time limit of its kind
+ * is aborted. A running discovery is preempted, and ended, when anything of higher priority
+ * is submitted, so a background scan never holds up a connect.
+ * <p>
+ * Operations are started, aborted and told how they ended on the scheduler's thread, never
+ * with a lock held. The time each kind waited and ran is recorded.
+ */
+public class RadioOperationScheduler {
+
+    public enum Kind {
+        DISCOVERY,
+        SDP,
+        BOND,
+        CONNECT
+    }
+
+    public enum Result {
+        COMPLETED,
+        FAILED,
+        TIMED_OUT,
+        EXPIRED,
+        CANCELLED,
+        PREEMPTED
+    }
+
+    public static final int PRIORITY_BACKGROUND = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_USER = 2;
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final int LATENCY_SAMPLES = 256;
+
+    private enum State {
+        NEW,
+        QUEUED,
+        RUNNING,
+        ENDED
+    }
+
+    /**
+     * Work to run on the controller. Submitted once; not reusable.
+     */
+    public abstract static class Operation {
+
+        // Guarded by the owner's lock.
+        private volatile RadioOperationScheduler mOwner;
+        private State mState = State.NEW;
+        private Kind mKind;
+        private int mPriority;
+        private long mDeadline;
+        private long mSequence;
+        private long mSubmitted;
+        private long mStarted;
+        private Result mResult;
+        private Scheduler.Cancellable mTimer;
+
+        private final Runnable mTimerTask = new Runnable() {
+            @Override
+            public void run() {
+                mOwner.onTimer(Operation.this);
+            }
+        };
+
+        /**
+         * Starts the operation. It runs until {@link #finish(boolean)} or its time limit.
+         * Returns false if it could not be started.
+         */
+        protected abstract boolean start();
+
+        /**
+         * Stops a started operation that was cancelled, preempted or ran out of time.
+         */
+        protected void abort() {
+        }
+
+        /**
+         * Called once, with how the operation ended.
+         */
+        protected void onEnded(Result result) {
+        }
+
+        /**
+         * Ends the operation. One still waiting is dropped without being started.
+         */
+        public final void finish(boolean success) {
+            RadioOperationScheduler owner = mOwner;
+            if (owner != null) {
+                owner.end(this, success ? Result.COMPLETED : Result.FAILED);
+            }
+        }
+
+        public final void cancel() {
+            RadioOperationScheduler owner = mOwner;
+            if (owner != null) {
+                owner.end(this, Result.CANCELLED);
+            }
+        }
+
+        /**
+         * Waiting or running.
+         */
+        public final boolean isPending() {
+            RadioOperationScheduler owner = mOwner;
+            if (owner == null) {
+                return false;
+            }
+            synchronized (owner) {
+                return mState == State.QUEUED || mState == State.RUNNING;
+            }
+        }
+
+        public final boolean isRunning() {
+            RadioOperationScheduler owner = mOwner;
+            if (owner == null) {
+                return false;
+            }
+            synchronized (owner) {
+                return mState == State.RUNNING;
+            }
+        }
+
+    }
+
+    private static final Comparator<Operation> ORDER = new Comparator<Operation>() {
+        @Override
+        public int compare(Operation first, Operation second) {
+            if (first.mPriority != second.mPriority) {
+                return first.mPriority > second.mPriority ? -1 : 1;
+            }
+            return first.mSequence < second.mSequence ? -1
+                    : (first.mSequence == second.mSequence ? 0 : 1);
+        }
+    };
+
+    private final Clock mClock;
+    private final Scheduler mScheduler;
+    private Policy mPolicy;
+    private final PriorityQueue<Operation> mQueue = new PriorityQueue<>(11, ORDER);
+    private Operation mRunning;
+    private long mSequence;
+    // Ended operations whose abort or onEnded is still to be called.
+    private final ArrayList<Operation> mToAbort = new ArrayList<>();
+    private final ArrayList<Operation> mEnded = new ArrayList<>();
+    private boolean mDispatchPosted;
+    private final EnumMap<Kind, LatencyRecorder> mWaitTimes = new EnumMap<>(Kind.class);
+    private final EnumMap<Kind, LatencyRecorder> mRunTimes = new EnumMap<>(Kind.class);
+    private final long[] mResultCounts = new long[Result.values().length];
+
+    public RadioOperationScheduler(Clock clock, Scheduler scheduler, Policy policy) {
+        mClock = clock;
+        mScheduler = scheduler;
+        mPolicy = policy;
+        for (Kind kind : Kind.values()) {
+            mWaitTimes.put(kind, new LatencyRecorder(LATENCY_SAMPLES));
+            mRunTimes.put(kind, new LatencyRecorder(LATENCY_SAMPLES));
+        }
+    }
+
+    /**
+     * Takes effect from the next operation started.
+     */
+    public synchronized void setPolicy(Policy policy) {
+        mPolicy = policy;
+    }
+
+    /**
+     * Queues the operation, to be started once nothing is running and nothing of higher
+     * priority waits, unless the clock passes the deadline first.
+     */
+    public synchronized void submit(Operation operation, Kind kind, int priority,
+                                    long deadline) {
+        if (operation.mState != State.NEW) {
+            throw new IllegalStateException("Operation already submitted");
+        }
+        long now = mClock.now();
+        operation.mOwner = this;
+        operation.mState = State.QUEUED;
+        operation.mKind = kind;
+        operation.mPriority = priority;
+        operation.mDeadline = deadline;
+        operation.mSequence = mSequence++;
+        operation.mSubmitted = now;
+        mQueue.add(operation);
+        if (deadline != NO_DEADLINE) {
+            operation.mTimer = mScheduler.schedule(operation.mTimerTask,
+                    Math.max(0, deadline - now));
+        }
+        postDispatch();
+    }
+
+    public synchronized void cancelAll() {
+        for (Operation operation : new ArrayList<>(mQueue)) {
+            endLocked(operation, Result.CANCELLED);
+        }
+        if (mRunning != null) {
+            endLocked(mRunning, Result.CANCELLED);
+        }
+        postDispatch();
+    }
+
+    /**
+     * The kind of the running operation, or null when the controller is free.
+     */
+    public synchronized Kind getRunningKind() {
+        return mRunning == null ? null : mRunning.mKind;
+    }
+
+    public synchronized int getQueueLength() {
+        return mQueue.size();
+    }
+
+    public synchronized long getCount(Result result) {
+        return mResultCounts[result.ordinal()];
+    }
+
+    /**
+     * Milliseconds from submission to start of the operations of this kind that started.
+     */
+    public LatencyRecorder getWaitTimes(Kind kind) {
+        return mWaitTimes.get(kind);
+    }
+
+    /**
+     * Milliseconds from start to end of the operations of this kind that started.
+     */
+    public LatencyRecorder getRunTimes(Kind kind) {
+        return mRunTimes.get(kind);
+    }
+
+    private synchronized void end(Operation operation, Result result) {
+        if (operation.mState != State.QUEUED && operation.mState != State.RUNNING) {
+            return;
+        }
+        endLocked(operation, result);
+        postDispatch();
+    }
+
+    private synchronized void onTimer(Operation operation) {
+        operation.mTimer = null;
+        if (operation.mState == State.QUEUED) {
+            endLocked(operation, Result.EXPIRED);
+        } else if (operation.mState == State.RUNNING) {
+            endLocked(operation, Result.TIMED_OUT);
+        }
+        postDispatch();
+    }
+
+    private void endLocked(Operation operation, Result result) {
+        if (operation.mTimer != null) {
+            operation.mTimer.cancel();
+            operation.mTimer = null;
+        }
+        if (operation.mState == State.QUEUED) {
+            mQueue.remove(operation);
+        } else {
+            mRunning = null;
+            mRunTimes.get(operation.mKind).record(mClock.now() - operation.mStarted);
+            if (result != Result.COMPLETED && result != Result.FAILED) {
+                mToAbort.add(operation);
+            }
+        }
+        operation.mState = State.ENDED;
+        operation.mResult = result;
+        mResultCounts[result.ordinal()]++;
+        mEnded.add(operation);
+    }
+
+    private void postDispatch() {
+        if (!mDispatchPosted) {
+            mDispatchPosted = true;
+            mScheduler.schedule(mDispatchTask, 0);
+        }
+    }
+
+    private final Runnable mDispatchTask = new Runnable() {
+        @Override
+        public void run() {
+            List<Operation> toAbort;
+            List<Operation> ended;
+            Operation next = null;
+            synchronized (RadioOperationScheduler.this) {
+                mDispatchPosted = false;
+                Operation waiting = mQueue.peek();
+                if (mRunning != null && mRunning.mKind == Kind.DISCOVERY &&
+                        mPolicy.mPreemptDiscovery && waiting != null &&
+                        waiting.mPriority > mRunning.mPriority) {
+                    endLocked(mRunning, Result.PREEMPTED);
+                }
+                if (mRunning == null && !mQueue.isEmpty()) {
+                    next = mQueue.poll();
+                    long now = mClock.now();
+                    if (next.mTimer != null) {
+                        next.mTimer.cancel();
+                    }
+                    next.mState = State.RUNNING;
+                    next.mStarted = now;
+                    next.mTimer = mScheduler.schedule(next.mTimerTask,
+                            mPolicy.mTimeLimits[next.mKind.ordinal()]);
+                    mRunning = next;
+                    mWaitTimes.get(next.mKind).record(now - next.mSubmitted);
+                }
+                toAbort = new ArrayList<>(mToAbort);
+                mToAbort.clear();
+                ended = new ArrayList<>(mEnded);
+                mEnded.clear();
+            }
+            // Whatever was stopped lets go of the radio before the next operation takes it.
+            for (Operation operation : toAbort) {
+                operation.abort();
+            }
+            for (Operation operation : ended) {
+                operation.onEnded(operation.mResult);
+            }
+            if (next != null && !next.start()) {
+                next.finish(false);
+            }
+        }
+    };
+
+    public static final class Policy {
+
+        public static final Policy DEFAULT = new Builder().build();
+
+        final long[] mTimeLimits;
+        final boolean mPreemptDiscovery;
+
+        private Policy(Builder builder) {
+            mTimeLimits = builder.mTimeLimits.clone();
+            mPreemptDiscovery = builder.mPreemptDiscovery;
+        }
+
+        public static class Builder {
+
+            private final long[] mTimeLimits = new long[Kind.values().length];
+            private boolean mPreemptDiscovery = true;
+
+            public Builder() {
+                mTimeLimits[Kind.DISCOVERY.ordinal()] = 20000;
+                mTimeLimits[Kind.SDP.ordinal()] = 10000;
+                mTimeLimits[Kind.BOND.ordinal()] = 30000;
+                mTimeLimits[Kind.CONNECT.ordinal()] = 15000;
+            }
+
+            /**
+             * Longest an operation of the kind may run before it is aborted.
+             */
+            public Builder setTimeLimit(Kind kind, long timeLimit) {
+                if (timeLimit <= 0) {
+                    throw new IllegalArgumentException("timeLimit <= 0: " + timeLimit);
+                }
+                mTimeLimits[kind.ordinal()] = timeLimit;
+                return this;
+            }
+
+            public Builder setPreemptDiscovery(boolean preemptDiscovery) {
+                mPreemptDiscovery = preemptDiscovery;
+                return this;
+            }
+
+            public Policy build() {
+                return new Policy(this);
+            }
+        }
+
+    }
+
+}
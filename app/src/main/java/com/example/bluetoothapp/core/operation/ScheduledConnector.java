@@ -0,0 +1,102 @@
+package com.example.bluetoothapp.core.operation;
+
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.DeviceConnector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A {@link DeviceConnector} whose connects wait their turn in a
+ * {@link RadioOperationScheduler}. A connect runs until the owner reports the device's ACL
+ * connect to {@link #onConnected(String)}, or until the connect time limit. Connecting a
+ * device that already has a connect waiting or running does nothing more.
+ */
+public class ScheduledConnector<D> implements DeviceConnector<D> {
+
+    private final RadioOperationScheduler mOperations;
+    private final BluetoothRadio<D> mRadio;
+    private final DeviceConnector<D> mConnector;
+    private final int mPriority;
+    private final HashMap<String, ConnectOperation> mPending = new HashMap<>();
+
+    private final class ConnectOperation extends RadioOperationScheduler.Operation {
+
+        final String mAddress;
+        final D mDevice;
+
+        ConnectOperation(String address, D device) {
+            mAddress = address;
+            mDevice = device;
+        }
+
+        @Override
+        protected boolean start() {
+            return mConnector.connect(mDevice);
+        }
+
+        @Override
+        protected void onEnded(RadioOperationScheduler.Result result) {
+            synchronized (ScheduledConnector.this) {
+                if (mPending.get(mAddress) == this) {
+                    mPending.remove(mAddress);
+                }
+            }
+        }
+
+    }
+
+    public ScheduledConnector(RadioOperationScheduler operations, BluetoothRadio<D> radio,
+                              DeviceConnector<D> connector, int priority) {
+        mOperations = operations;
+        mRadio = radio;
+        mConnector = connector;
+        mPriority = priority;
+    }
+
+    /**
+     * Queues the connect; true unless it could not be queued.
+     */
+    @Override
+    public synchronized boolean connect(D device) {
+        String address = mRadio.getAddress(device);
+        if (mPending.containsKey(address)) {
+            return true;
+        }
+        ConnectOperation operation = new ConnectOperation(address, device);
+        mPending.put(address, operation);
+        mOperations.submit(operation, RadioOperationScheduler.Kind.CONNECT, mPriority,
+                RadioOperationScheduler.NO_DEADLINE);
+        return true;
+    }
+
+    /**
+     * Any ACL connect. Ends the device's connect, or drops it if it has not started.
+     */
+    public void onConnected(String address) {
+        ConnectOperation operation;
+        synchronized (this) {
+            operation = mPending.remove(address);
+        }
+        if (operation != null) {
+            operation.finish(true);
+        }
+    }
+
+    public void cancelAll() {
+        List<ConnectOperation> operations;
+        synchronized (this) {
+            operations = new ArrayList<>(mPending.values());
+            mPending.clear();
+        }
+        for (ConnectOperation operation : operations) {
+            operation.cancel();
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+}
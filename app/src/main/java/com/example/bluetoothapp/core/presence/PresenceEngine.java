@@ -0,0 +1,388 @@
+package com.example.bluetoothapp.core.presence;
+
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.time.Clock;
+import com.example.bluetoothapp.core.time.Scheduler;
+import com.example.bluetoothapp.core.time.TimerWheel;
+
+import java.util.HashMap;
+
+/**
+ * Whether each tracked device is nearby, from ACL events and from sightings in discovery or LE
+ * scans. A connected device is present. Otherwise a device is present once seen with a signal
+ * of at least the enter RSSI, leaving once its smoothed signal drops below the lower exit RSSI
+ * or it has not been seen for the leave timeout, and absent once not seen for the absent
+ * timeout. A new state is only reported after holding for the debounce time, except a
+ * connect, which is reported at once.
+ * <p>
+ * Every device has at most one pending deadline at a time, kept in a {@link TimerWheel}, so
+ * sightings cost no timer work and many devices share one timer. The listener is called on
+ * whichever thread reports the event that settled a state, or on the scheduler's.
+ */
+public class PresenceEngine {
+
+    public enum State {
+        PRESENT,
+        LEAVING,
+        ABSENT
+    }
+
+    public interface Listener {
+
+        void onPresenceChanged(String address, State previous, State state);
+
+    }
+
+    /**
+     * Decides which devices are tracked. Asked on every event, so it must be cheap; a device
+     * that stops being tracked is dropped at its next event.
+     */
+    public interface Selector {
+
+        boolean isTracked(String address);
+
+    }
+
+    private static final long NONE = Long.MAX_VALUE;
+    private static final int WHEEL_SLOTS = 64;
+
+    private final Clock mClock;
+    private final Selector mSelector;
+    private final TimerWheel<Device> mWheel;
+    private Policy mPolicy;
+    private Listener mListener;
+    private final HashMap<String, Device> mDevices = new HashMap<>();
+
+    private static final class Device {
+
+        final String mAddress;
+        State mState = State.ABSENT;
+        State mCandidate;
+        long mCandidateSince;
+        boolean mConnected;
+        long mLastEvidence;
+        double mRssi = Double.NaN;
+        // Earliest time the wheel holds for this device.
+        long mWheelDue = NONE;
+
+        Device(String address) {
+            mAddress = address;
+        }
+
+    }
+
+    public PresenceEngine(Clock clock, Scheduler scheduler, Policy policy, Selector selector) {
+        mClock = clock;
+        mPolicy = policy;
+        mSelector = selector;
+        mWheel = new TimerWheel<>(clock, scheduler, policy.mTickMillis, WHEEL_SLOTS,
+                new TimerWheel.Callback<Device>() {
+                    @Override
+                    public void onExpired(Device device) {
+                        onDeadline(device);
+                    }
+                });
+    }
+
+    public synchronized void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Takes effect from the next event. The wheel keeps the tick it was created with.
+     */
+    public synchronized void setPolicy(Policy policy) {
+        mPolicy = policy;
+    }
+
+    /**
+     * The device was heard, with an RSSI or BluetoothRadio.RSSI_UNKNOWN.
+     */
+    public void onSighting(String address, int rssi) {
+        Change change;
+        synchronized (this) {
+            Device device = getDevice(address);
+            if (device == null) {
+                return;
+            }
+            long now = mClock.now();
+            device.mLastEvidence = now;
+            if (rssi != BluetoothRadio.RSSI_UNKNOWN) {
+                device.mRssi = Double.isNaN(device.mRssi) ? rssi
+                        : device.mRssi + mPolicy.mSmoothing * (rssi - device.mRssi);
+            }
+            change = evaluate(device, now);
+        }
+        report(change);
+    }
+
+    public void onConnected(String address) {
+        onConnection(address, true);
+    }
+
+    public void onDisconnected(String address) {
+        onConnection(address, false);
+    }
+
+    /**
+     * ABSENT for a device not tracked or never heard of.
+     */
+    public synchronized State getState(String address) {
+        Device device = mDevices.get(address);
+        return device == null ? State.ABSENT : device.mState;
+    }
+
+    public synchronized int getTrackedCount() {
+        return mDevices.size();
+    }
+
+    /**
+     * Devices waiting on a deadline in the wheel.
+     */
+    public int getPendingDeadlineCount() {
+        return mWheel.size();
+    }
+
+    public synchronized void clear() {
+        mDevices.clear();
+        mWheel.clear();
+    }
+
+    private void onConnection(String address, boolean connected) {
+        Change change;
+        synchronized (this) {
+            Device device = getDevice(address);
+            if (device == null) {
+                return;
+            }
+            long now = mClock.now();
+            device.mConnected = connected;
+            // It was in range until just now either way.
+            device.mLastEvidence = now;
+            change = evaluate(device, now);
+        }
+        report(change);
+    }
+
+    private void onDeadline(Device device) {
+        Change change;
+        synchronized (this) {
+            if (mDevices.get(device.mAddress) != device) {
+                return;
+            }
+            long now = mClock.now();
+            if (now >= device.mWheelDue) {
+                device.mWheelDue = NONE;
+            }
+            if (!mSelector.isTracked(device.mAddress)) {
+                mDevices.remove(device.mAddress);
+                return;
+            }
+            change = evaluate(device, now);
+        }
+        report(change);
+    }
+
+    private Device getDevice(String address) {
+        Device device = mDevices.get(address);
+        if (!mSelector.isTracked(address)) {
+            if (device != null) {
+                mDevices.remove(address);
+            }
+            return null;
+        }
+        if (device == null) {
+            device = new Device(address);
+            mDevices.put(address, device);
+        }
+        return device;
+    }
+
+    /**
+     * Moves the device towards what the evidence says and arranges its next deadline. Returns
+     * the settled change, if any.
+     */
+    private Change evaluate(Device device, long now) {
+        State target = target(device, now);
+        Change change = null;
+        if (target == device.mState) {
+            device.mCandidate = null;
+        } else {
+            if (target != device.mCandidate) {
+                device.mCandidate = target;
+                device.mCandidateSince = now;
+            }
+            if (device.mConnected || now - device.mCandidateSince >= mPolicy.mDebounce) {
+                change = new Change(device.mAddress, device.mState, target);
+                device.mState = target;
+                device.mCandidate = null;
+            }
+        }
+        long due = nextDeadline(device, now);
+        if (due < device.mWheelDue) {
+            device.mWheelDue = due;
+            mWheel.schedule(device, due);
+        }
+        return change;
+    }
+
+    private State target(Device device, long now) {
+        if (device.mConnected) {
+            return State.PRESENT;
+        }
+        long silence = now - device.mLastEvidence;
+        if (silence >= mPolicy.mAbsentTimeout) {
+            return State.ABSENT;
+        }
+        if (device.mState == State.ABSENT) {
+            return isStrong(device) && silence < mPolicy.mLeaveTimeout ? State.PRESENT
+                    : State.ABSENT;
+        }
+        if (silence >= mPolicy.mLeaveTimeout) {
+            return State.LEAVING;
+        }
+        if (device.mState == State.PRESENT) {
+            return device.mRssi < mPolicy.mExitRssi ? State.LEAVING : State.PRESENT;
+        }
+        return isStrong(device) ? State.PRESENT : State.LEAVING;
+    }
+
+    private boolean isStrong(Device device) {
+        return Double.isNaN(device.mRssi) || device.mRssi >= mPolicy.mEnterRssi;
+    }
+
+    private long nextDeadline(Device device, long now) {
+        long due = NONE;
+        if (device.mCandidate != null) {
+            due = device.mCandidateSince + mPolicy.mDebounce;
+        }
+        if (!device.mConnected && device.mState != State.ABSENT) {
+            long leave = device.mLastEvidence + mPolicy.mLeaveTimeout;
+            long absent = device.mLastEvidence + mPolicy.mAbsentTimeout;
+            due = Math.min(due, leave > now ? leave : absent);
+        }
+        return due;
+    }
+
+    private void report(Change change) {
+        if (change == null) {
+            return;
+        }
+        Listener listener;
+        synchronized (this) {
+            listener = mListener;
+        }
+        if (listener != null) {
+            listener.onPresenceChanged(change.mAddress, change.mPrevious, change.mState);
+        }
+    }
+
+    private static final class Change {
+
+        final String mAddress;
+        final State mPrevious;
+        final State mState;
+
+        Change(String address, State previous, State state) {
+            mAddress = address;
+            mPrevious = previous;
+            mState = state;
+        }
+
+    }
+
+    public static final class Policy {
+
+        public static final Policy DEFAULT = new Builder().build();
+
+        final int mEnterRssi;
+        final int mExitRssi;
+        final double mSmoothing;
+        final long mLeaveTimeout;
+        final long mAbsentTimeout;
+        final long mDebounce;
+        final long mTickMillis;
+
+        private Policy(Builder builder) {
+            mEnterRssi = builder.mEnterRssi;
+            mExitRssi = Math.min(builder.mExitRssi, builder.mEnterRssi);
+            mSmoothing = builder.mSmoothing;
+            mLeaveTimeout = builder.mLeaveTimeout;
+            mAbsentTimeout = Math.max(builder.mAbsentTimeout, builder.mLeaveTimeout);
+            mDebounce = builder.mDebounce;
+            mTickMillis = builder.mTickMillis;
+        }
+
+        public static class Builder {
+
+            private int mEnterRssi = -80;
+            private int mExitRssi = -90;
+            private double mSmoothing = 0.3;
+            private long mLeaveTimeout = 3 * 60 * 1000;
+            private long mAbsentTimeout = 6 * 60 * 1000;
+            private long mDebounce = 15000;
+            private long mTickMillis = 5000;
+
+            /**
+             * Smoothed RSSI a device must reach to be present. The gap down to the exit RSSI
+             * keeps a device at the edge of range from flapping.
+             */
+            public Builder setEnterRssi(int enterRssi) {
+                mEnterRssi = enterRssi;
+                return this;
+            }
+
+            public Builder setExitRssi(int exitRssi) {
+                mExitRssi = exitRssi;
+                return this;
+            }
+
+            /**
+             * Weight, 0 to 1, of a new reading in the smoothed RSSI.
+             */
+            public Builder setSmoothing(double smoothing) {
+                if (smoothing <= 0 || smoothing > 1) {
+                    throw new IllegalArgumentException("smoothing out of (0, 1]: " + smoothing);
+                }
+                mSmoothing = smoothing;
+                return this;
+            }
+
+            /**
+             * Time unseen after which a device is leaving. Should be longer than the time
+             * between scans.
+             */
+            public Builder setLeaveTimeout(long leaveTimeout) {
+                mLeaveTimeout = leaveTimeout;
+                return this;
+            }
+
+            /**
+             * Time unseen after which a device is absent.
+             */
+            public Builder setAbsentTimeout(long absentTimeout) {
+                mAbsentTimeout = absentTimeout;
+                return this;
+            }
+
+            public Builder setDebounce(long debounce) {
+                mDebounce = debounce;
+                return this;
+            }
+
+            /**
+             * Resolution of the deadlines.
+             */
+            public Builder setTickMillis(long tickMillis) {
+                mTickMillis = tickMillis;
+                return this;
+            }
+
+            public Policy build() {
+                return new Policy(this);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.example.bluetoothapp.core.radio;
+
+import com.example.bluetoothapp.core.device.DeviceSnapshot;
+import com.example.bluetoothapp.core.stream.Streams;
+
+/**
+ * One adapter, discovery, device or connection event, as published by the facade's event
+ * stream. Device events carry the device's snapshot at the time; the others carry none.
+ */
+public final class BluetoothEvent<D> {
+
+    public enum Type {
+        ADAPTER_STATE,
+        SCAN_STARTED,
+        DEVICE_FOUND,
+        SCAN_FINISHED,
+        DEVICE_CHANGED,
+        CONNECTED,
+        DISCONNECTED
+    }
+
+    private static final Streams.Key<BluetoothEvent<?>, String> BY_ADDRESS =
+            new Streams.Key<BluetoothEvent<?>, String>() {
+                @Override
+                public String of(BluetoothEvent<?> event) {
+                    return event.mDevice != null ? event.mDevice.getAddress() : null;
+                }
+            };
+
+    private final Type mType;
+    private final DeviceSnapshot<D> mDevice;
+    private final int mState;
+    private final long mTime;
+
+    private BluetoothEvent(Type type, DeviceSnapshot<D> device, int state, long time) {
+        mType = type;
+        mDevice = device;
+        mState = state;
+        mTime = time;
+    }
+
+    /**
+     * The adapter moved to one of the BluetoothRadio.STATE_* states.
+     */
+    public static <D> BluetoothEvent<D> adapterState(int state, long time) {
+        return new BluetoothEvent<>(Type.ADAPTER_STATE, null, state, time);
+    }
+
+    public static <D> BluetoothEvent<D> scan(Type type, long time) {
+        if (type != Type.SCAN_STARTED && type != Type.SCAN_FINISHED) {
+            throw new IllegalArgumentException("Not a scan event: " + type);
+        }
+        return new BluetoothEvent<>(type, null, -1, time);
+    }
+
+    public static <D> BluetoothEvent<D> device(Type type, DeviceSnapshot<D> device, long time) {
+        if (device == null) {
+            throw new NullPointerException("device");
+        }
+        return new BluetoothEvent<>(type, device, -1, time);
+    }
+
+    /**
+     * Keys device events by address, for {@link Streams#distinct}. Other events all pass.
+     */
+    public static Streams.Key<BluetoothEvent<?>, String> byAddress() {
+        return BY_ADDRESS;
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    /**
+     * Null unless this is a device event.
+     */
+    public DeviceSnapshot<D> getDevice() {
+        return mDevice;
+    }
+
+    /**
+     * The adapter state of an ADAPTER_STATE event, -1 otherwise.
+     */
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * When the event was received, in {@link com.example.bluetoothapp.core.time.Clock#WALL}
+     * milliseconds.
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    @Override
+    public String toString() {
+        if (mDevice != null) {
+            return mType + " " + mDevice.getAddress();
+        }
+        return mState != -1 ? mType + " " + mState : mType.toString();
+    }
+
+}
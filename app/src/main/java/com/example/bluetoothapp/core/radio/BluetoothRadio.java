@@ -0,0 +1,93 @@
+package com.example.bluetoothapp.core.radio;
+
+import java.util.Collection;
+
+/**
+ * The local Bluetooth controller as seen by the facade. Implemented on top of BluetoothAdapter
+ * and its broadcasts on a device, and by {@link SimulatedRadio} on the JVM. The per-device
+ * getters stand in for the BluetoothDevice calls that cross into the Bluetooth process.
+ * Constants match their android.bluetooth counterparts.
+ */
+public interface BluetoothRadio<D> {
+
+    int STATE_OFF = 10;
+    int STATE_TURNING_ON = 11;
+    int STATE_ON = 12;
+    int STATE_TURNING_OFF = 13;
+
+    int BOND_NONE = 10;
+    int BOND_BONDING = 11;
+    int BOND_BONDED = 12;
+
+    /**
+     * The RSSI of a found device that was reported without one.
+     */
+    short RSSI_UNKNOWN = Short.MIN_VALUE;
+
+    int EVENT_ADAPTER = 1;
+    int EVENT_DISCOVERY = 1 << 1;
+    int EVENT_CONNECTION = 1 << 2;
+    int EVENT_DEVICE = 1 << 3;
+    int EVENT_ALL = EVENT_ADAPTER | EVENT_DISCOVERY | EVENT_CONNECTION | EVENT_DEVICE;
+
+    interface Listener<D> {
+
+        void onStateChanged(int state);
+
+        void onDiscoveryStarted();
+
+        void onDiscoveryFinished();
+
+        void onDeviceFound(D device, short rssi);
+
+        void onAclConnected(D device);
+
+        void onAclDisconnected(D device);
+
+        void onNameChanged(D device, String name);
+
+        /**
+         * -1 when the broadcast carried no class.
+         */
+        void onClassChanged(D device, int deviceClass);
+
+        void onBondStateChanged(D device, int bondState);
+
+    }
+
+    /**
+     * Starts delivering the events selected by the EVENT_* mask to the listener. Events may
+     * arrive on any thread, but never on more than one at a time.
+     */
+    void open(Listener<D> listener, int events);
+
+    void close();
+
+    boolean isSupported();
+
+    boolean isEnabled();
+
+    int getState();
+
+    boolean isDiscovering();
+
+    boolean startDiscovery();
+
+    boolean cancelDiscovery();
+
+    Collection<D> getBondedDevices();
+
+    /**
+     * The device with this address, whether or not it has been seen. Does not touch the radio.
+     */
+    D getRemoteDevice(String address);
+
+    String getAddress(D device);
+
+    String getName(D device);
+
+    int getDeviceClass(D device);
+
+    int getBondState(D device);
+
+}
@@ -0,0 +1,14 @@
+package com.example.bluetoothapp.core.radio;
+
+/**
+ * Brings up a link to a remote device through whatever profiles it offers. Success is not
+ * reported here; it shows as an ACL connect from the radio.
+ */
+public interface DeviceConnector<D> {
+
+    /**
+     * Starts connecting, without blocking. Returns false when no attempt could be started.
+     */
+    boolean connect(D device);
+
+}
@@ -0,0 +1,75 @@
+package com.example.bluetoothapp.core.radio;
+
+import java.util.UUID;
+
+/**
+ * Matches advertisements by service UUID or by Bluetooth SIG manufacturer ID. Where the
+ * controller supports it the match runs in the controller, so results that fail every filter
+ * never wake the application processor.
+ */
+public final class LeScanFilter {
+
+    public static final int NO_MANUFACTURER = -1;
+
+    private final UUID mServiceUuid;
+    private final int mManufacturerId;
+
+    private LeScanFilter(UUID serviceUuid, int manufacturerId) {
+        mServiceUuid = serviceUuid;
+        mManufacturerId = manufacturerId;
+    }
+
+    public static LeScanFilter serviceUuid(UUID serviceUuid) {
+        if (serviceUuid == null) {
+            throw new NullPointerException("serviceUuid");
+        }
+        return new LeScanFilter(serviceUuid, NO_MANUFACTURER);
+    }
+
+    public static LeScanFilter manufacturer(int manufacturerId) {
+        if (manufacturerId < 0 || manufacturerId > 0xFFFF) {
+            throw new IllegalArgumentException("Not a manufacturer ID: " + manufacturerId);
+        }
+        return new LeScanFilter(null, manufacturerId);
+    }
+
+    /**
+     * Null for a manufacturer filter.
+     */
+    public UUID getServiceUuid() {
+        return mServiceUuid;
+    }
+
+    /**
+     * {@link #NO_MANUFACTURER} for a service UUID filter.
+     */
+    public int getManufacturerId() {
+        return mManufacturerId;
+    }
+
+    public boolean matches(LeScanResult<?> result) {
+        if (mServiceUuid != null) {
+            return result.hasServiceUuid(mServiceUuid);
+        }
+        return result.hasManufacturerId(mManufacturerId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LeScanFilter)) {
+            return false;
+        }
+        LeScanFilter other = (LeScanFilter) o;
+        return mManufacturerId == other.mManufacturerId && (mServiceUuid == null ?
+                other.mServiceUuid == null : mServiceUuid.equals(other.mServiceUuid));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (mServiceUuid != null ? mServiceUuid.hashCode() : 0) + mManufacturerId;
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.example.bluetoothapp.core.radio;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Shares the one LE scan a process can run between any number of clients, each a
+ * {@link LeScanner} of its own. The scan runs while any client is scanning, with the most
+ * demanding settings among them: the fastest scan mode, the shortest report delay and the
+ * filters of every client, or none if any client has none. It is restarted only when those
+ * change. Each client then gets the results its own filters match, so one client starting,
+ * changing or stopping its scan never stops or replaces another's. A client asking for a
+ * longer report delay than another gets its batches as often as that one.
+ */
+public class LeScanHub<D> {
+
+    private final LeScanner<D> mScanner;
+    // The clients scanning, in the order they started.
+    private final ArrayList<Client> mClients = new ArrayList<>();
+    private LeScanSettings mRunning;
+
+    // Replaced whole whenever a client starts or stops; read without locking on every result.
+    private volatile List<Client> mScanning = new ArrayList<>();
+
+    private final class Client implements LeScanner<D> {
+
+        private LeScanSettings mSettings;
+        private Callback<D> mCallback;
+
+        @Override
+        public boolean isSupported() {
+            return mScanner.isSupported();
+        }
+
+        @Override
+        public boolean isBatchingSupported() {
+            return mScanner.isBatchingSupported();
+        }
+
+        /**
+         * Replaces this client's scan, not any other's.
+         */
+        @Override
+        public void startScan(LeScanSettings settings, Callback<D> callback) {
+            synchronized (LeScanHub.this) {
+                if (mCallback == null) {
+                    mClients.add(this);
+                }
+                mSettings = settings;
+                mCallback = callback;
+                update();
+            }
+        }
+
+        @Override
+        public void stopScan() {
+            synchronized (LeScanHub.this) {
+                if (mCallback != null) {
+                    mSettings = null;
+                    mCallback = null;
+                    mClients.remove(this);
+                    update();
+                }
+            }
+        }
+
+        @Override
+        public boolean isScanning() {
+            synchronized (LeScanHub.this) {
+                return mCallback != null;
+            }
+        }
+
+        void deliver(List<LeScanResult<D>> results) {
+            LeScanSettings settings;
+            Callback<D> callback;
+            synchronized (LeScanHub.this) {
+                settings = mSettings;
+                callback = mCallback;
+            }
+            if (callback == null) {
+                return;
+            }
+            List<LeScanResult<D>> matched = results;
+            if (!settings.getFilters().isEmpty()) {
+                matched = new ArrayList<>(results.size());
+                for (LeScanResult<D> result : results) {
+                    if (settings.matches(result)) {
+                        matched.add(result);
+                    }
+                }
+            }
+            if (!matched.isEmpty()) {
+                callback.onResults(matched);
+            }
+        }
+
+        void fail(int errorCode) {
+            Callback<D> callback;
+            synchronized (LeScanHub.this) {
+                callback = mCallback;
+            }
+            if (callback != null) {
+                callback.onScanFailed(errorCode);
+            }
+        }
+
+    }
+
+    public LeScanHub(LeScanner<D> scanner) {
+        mScanner = scanner;
+    }
+
+    /**
+     * A new client, not scanning until it is started.
+     */
+    public LeScanner<D> newScanner() {
+        return new Client();
+    }
+
+    /**
+     * The settings the shared scan runs with, or null while no client is scanning.
+     */
+    public synchronized LeScanSettings getRunningSettings() {
+        return mRunning;
+    }
+
+    private void update() {
+        mScanning = new ArrayList<>(mClients);
+        if (mClients.isEmpty()) {
+            if (mRunning != null) {
+                mRunning = null;
+                mScanner.stopScan();
+            }
+            return;
+        }
+        int scanMode = LeScanSettings.SCAN_MODE_LOW_POWER;
+        long reportDelay = Long.MAX_VALUE;
+        boolean unfiltered = false;
+        LinkedHashSet<LeScanFilter> filters = new LinkedHashSet<>();
+        for (Client client : mClients) {
+            scanMode = Math.max(scanMode, client.mSettings.getScanMode());
+            reportDelay = Math.min(reportDelay, client.mSettings.getReportDelay());
+            if (client.mSettings.getFilters().isEmpty()) {
+                unfiltered = true;
+            }
+            filters.addAll(client.mSettings.getFilters());
+        }
+        LeScanSettings.Builder merged = new LeScanSettings.Builder()
+                .setScanMode(scanMode)
+                .setReportDelay(reportDelay);
+        if (!unfiltered) {
+            for (LeScanFilter filter : filters) {
+                merged.addFilter(filter);
+            }
+        }
+        LeScanSettings settings = merged.build();
+        if (mRunning == null || !sameSettings(mRunning, settings)) {
+            mRunning = settings;
+            mScanner.startScan(settings, mCallback);
+        }
+    }
+
+    private static boolean sameSettings(LeScanSettings a, LeScanSettings b) {
+        return a.getScanMode() == b.getScanMode() && a.getReportDelay() == b.getReportDelay() &&
+                a.getFilters().equals(b.getFilters());
+    }
+
+    private final LeScanner.Callback<D> mCallback = new LeScanner.Callback<D>() {
+        @Override
+        public void onResults(List<LeScanResult<D>> results) {
+            for (Client client : mScanning) {
+                client.deliver(results);
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            synchronized (LeScanHub.this) {
+                // Started again by the next client that starts or changes its scan.
+                mRunning = null;
+            }
+            for (Client client : mScanning) {
+                client.fail(errorCode);
+            }
+        }
+    };
+
+}
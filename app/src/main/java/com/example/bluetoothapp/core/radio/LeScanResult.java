@@ -0,0 +1,69 @@
+package com.example.bluetoothapp.core.radio;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One advertisement heard by a {@link LeScanner}. The lists are not copied; callers must not
+ * change them after passing them in.
+ */
+public final class LeScanResult<D> {
+
+    private final D mDevice;
+    private final String mName;
+    private final int mRssi;
+    private final long mTime;
+    private final List<UUID> mServiceUuids;
+    private final int[] mManufacturerIds;
+
+    public LeScanResult(D device, String name, int rssi, long time, List<UUID> serviceUuids,
+                        int[] manufacturerIds) {
+        mDevice = device;
+        mName = name;
+        mRssi = rssi;
+        mTime = time;
+        mServiceUuids = serviceUuids != null ? serviceUuids : Collections.<UUID>emptyList();
+        mManufacturerIds = manufacturerIds != null ? manufacturerIds : new int[0];
+    }
+
+    public D getDevice() {
+        return mDevice;
+    }
+
+    /**
+     * The name in the advertisement, or null when it carries none.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    public int getRssi() {
+        return mRssi;
+    }
+
+    /**
+     * When the advertisement was received, in milliseconds of the scanner's clock.
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    public List<UUID> getServiceUuids() {
+        return mServiceUuids;
+    }
+
+    public boolean hasServiceUuid(UUID uuid) {
+        return mServiceUuids.contains(uuid);
+    }
+
+    public boolean hasManufacturerId(int manufacturerId) {
+        for (int id : mManufacturerIds) {
+            if (id == manufacturerId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
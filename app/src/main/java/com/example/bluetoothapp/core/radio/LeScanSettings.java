@@ -0,0 +1,89 @@
+package com.example.bluetoothapp.core.radio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How a {@link LeScanner} scans. Scan mode constants match android.bluetooth.le.ScanSettings.
+ */
+public final class LeScanSettings {
+
+    public static final int SCAN_MODE_LOW_POWER = 0;
+    public static final int SCAN_MODE_BALANCED = 1;
+    public static final int SCAN_MODE_LOW_LATENCY = 2;
+
+    private final int mScanMode;
+    private final long mReportDelay;
+    private final List<LeScanFilter> mFilters;
+
+    private LeScanSettings(Builder builder) {
+        mScanMode = builder.mScanMode;
+        mReportDelay = builder.mReportDelay;
+        mFilters = Collections.unmodifiableList(new ArrayList<>(builder.mFilters));
+    }
+
+    public int getScanMode() {
+        return mScanMode;
+    }
+
+    /**
+     * Milliseconds the controller may hold results before delivering them as one batch; 0
+     * delivers each result as it is heard.
+     */
+    public long getReportDelay() {
+        return mReportDelay;
+    }
+
+    /**
+     * A result is reported if it matches any filter. No filters report everything.
+     */
+    public List<LeScanFilter> getFilters() {
+        return mFilters;
+    }
+
+    public boolean matches(LeScanResult<?> result) {
+        if (mFilters.isEmpty()) {
+            return true;
+        }
+        for (LeScanFilter filter : mFilters) {
+            if (filter.matches(result)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Builder {
+
+        private int mScanMode = SCAN_MODE_BALANCED;
+        private long mReportDelay;
+        private final List<LeScanFilter> mFilters = new ArrayList<>();
+
+        public Builder setScanMode(int scanMode) {
+            if (scanMode < SCAN_MODE_LOW_POWER || scanMode > SCAN_MODE_LOW_LATENCY) {
+                throw new IllegalArgumentException("Unknown scan mode " + scanMode);
+            }
+            mScanMode = scanMode;
+            return this;
+        }
+
+        public Builder setReportDelay(long reportDelay) {
+            if (reportDelay < 0) {
+                throw new IllegalArgumentException("reportDelay < 0: " + reportDelay);
+            }
+            mReportDelay = reportDelay;
+            return this;
+        }
+
+        public Builder addFilter(LeScanFilter filter) {
+            mFilters.add(filter);
+            return this;
+        }
+
+        public LeScanSettings build() {
+            return new LeScanSettings(this);
+        }
+    }
+
+}
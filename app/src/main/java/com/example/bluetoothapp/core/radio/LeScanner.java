@@ -0,0 +1,40 @@
+package com.example.bluetoothapp.core.radio;
+
+import java.util.List;
+
+/**
+ * Bluetooth Low Energy scanning, next to the classic inquiry of {@link BluetoothRadio}.
+ * Implemented on top of BluetoothLeScanner from API 21, and by {@link SimulatedLeScanner} on
+ * the JVM.
+ */
+public interface LeScanner<D> {
+
+    interface Callback<D> {
+
+        /**
+         * One result when the report delay is 0, otherwise a batch. Never empty.
+         */
+        void onResults(List<LeScanResult<D>> results);
+
+        void onScanFailed(int errorCode);
+
+    }
+
+    boolean isSupported();
+
+    /**
+     * Whether the controller can hold results back for a report delay. Without it the delay is
+     * ignored and results arrive one by one.
+     */
+    boolean isBatchingSupported();
+
+    /**
+     * Replaces any scan already running.
+     */
+    void startScan(LeScanSettings settings, Callback<D> callback);
+
+    void stopScan();
+
+    boolean isScanning();
+
+}
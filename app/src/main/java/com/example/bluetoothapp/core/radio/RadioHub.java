@@ -0,0 +1,214 @@
+package com.example.bluetoothapp.core.radio;
+
+import java.util.ArrayList;
+
+/**
+ * Shares one {@link BluetoothRadio} subscription between any number of subscribers. The radio
+ * is opened for every event type when the first subscriber arrives and closed when the last
+ * one leaves, so subscribers changing what they ask for never reopen it and lose the events
+ * that would arrive in between. Listeners are kept in one array per event type, so an event
+ * only reaches, and only costs, the subscribers that asked for its type. Subscribers are called
+ * in the order they subscribed, on the radio's event thread.
+ * <p>
+ * An optional registry listener sees the events it asks for ahead of every subscriber, so
+ * shared state it keeps is already current when they are called. It does not keep the radio
+ * open on its own.
+ */
+public class RadioHub<D> {
+
+    private static final int ADAPTER = 0;
+    private static final int DISCOVERY = 1;
+    private static final int CONNECTION = 2;
+    private static final int DEVICE = 3;
+    private static final int EVENT_TYPES = 4;
+
+    private final BluetoothRadio<D> mRadio;
+    private final BluetoothRadio.Listener<D> mRegistry;
+    private final int mRegistryEvents;
+    private final ArrayList<Subscription> mSubscriptions = new ArrayList<>();
+    private boolean mOpen;
+
+    // Replaced whole whenever a subscription changes; read without locking on every event.
+    private volatile BluetoothRadio.Listener<D>[][] mListeners = createListeners();
+
+    /**
+     * A subscriber's place in the hub. Events stop as soon as it is closed.
+     */
+    public final class Subscription {
+
+        private final BluetoothRadio.Listener<D> mListener;
+        private int mEvents;
+        private boolean mClosed;
+
+        private Subscription(BluetoothRadio.Listener<D> listener, int events) {
+            mListener = listener;
+            mEvents = events;
+        }
+
+        public void setEvents(int events) {
+            synchronized (RadioHub.this) {
+                if (!mClosed && mEvents != events) {
+                    mEvents = events;
+                    update();
+                }
+            }
+        }
+
+        public int getEvents() {
+            synchronized (RadioHub.this) {
+                return mEvents;
+            }
+        }
+
+        public void close() {
+            synchronized (RadioHub.this) {
+                if (!mClosed) {
+                    mClosed = true;
+                    mSubscriptions.remove(this);
+                    update();
+                }
+            }
+        }
+
+    }
+
+    public RadioHub(BluetoothRadio<D> radio) {
+        this(radio, null, 0);
+    }
+
+    public RadioHub(BluetoothRadio<D> radio, BluetoothRadio.Listener<D> registry,
+                    int registryEvents) {
+        mRadio = radio;
+        mRegistry = registry;
+        mRegistryEvents = registry == null ? 0 : registryEvents;
+    }
+
+    /**
+     * The shared radio, for queries and commands. Do not open or close it directly.
+     */
+    public BluetoothRadio<D> getRadio() {
+        return mRadio;
+    }
+
+    /**
+     * Starts delivering the events selected by the BluetoothRadio.EVENT_* mask to the listener.
+     */
+    public synchronized Subscription subscribe(BluetoothRadio.Listener<D> listener, int events) {
+        Subscription subscription = new Subscription(listener, events);
+        mSubscriptions.add(subscription);
+        update();
+        return subscription;
+    }
+
+    public synchronized int getSubscriberCount() {
+        return mSubscriptions.size();
+    }
+
+    /**
+     * Whether the radio is open, and so the registry listener hearing its events.
+     */
+    public synchronized boolean isOpen() {
+        return mOpen;
+    }
+
+    private void update() {
+        boolean open = !mSubscriptions.isEmpty();
+        BluetoothRadio.Listener<D>[][] listeners = createListeners();
+        for (int type = 0; type < EVENT_TYPES; type++) {
+            ArrayList<BluetoothRadio.Listener<D>> typeListeners = new ArrayList<>();
+            if (open && (mRegistryEvents & (1 << type)) != 0) {
+                typeListeners.add(mRegistry);
+            }
+            for (Subscription subscription : mSubscriptions) {
+                if ((subscription.mEvents & (1 << type)) != 0) {
+                    typeListeners.add(subscription.mListener);
+                }
+            }
+            listeners[type] = typeListeners.toArray(listeners[type]);
+        }
+        mListeners = listeners;
+        if (open != mOpen) {
+            if (open) {
+                mRadio.open(mDispatcher, BluetoothRadio.EVENT_ALL);
+            } else {
+                mRadio.close();
+            }
+            mOpen = open;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <D> BluetoothRadio.Listener<D>[][] createListeners() {
+        BluetoothRadio.Listener<D>[][] listeners = new BluetoothRadio.Listener[EVENT_TYPES][];
+        for (int type = 0; type < EVENT_TYPES; type++) {
+            listeners[type] = new BluetoothRadio.Listener[0];
+        }
+        return listeners;
+    }
+
+    private final BluetoothRadio.Listener<D> mDispatcher = new BluetoothRadio.Listener<D>() {
+        @Override
+        public void onStateChanged(int state) {
+            for (BluetoothRadio.Listener<D> listener : mListeners[ADAPTER]) {
+                listener.onStateChanged(state);
+            }
+        }
+
+        @Override
+        public void onDiscoveryStarted() {
+            for (BluetoothRadio.Listener<D> listener : mListeners[DISCOVERY]) {
+                listener.onDiscoveryStarted();
+            }
+        }
+
+        @Override
+        public void onDiscoveryFinished() {
+            for (BluetoothRadio.Listener<D> listener : mListeners[DISCOVERY]) {
+                listener.onDiscoveryFinished();
+            }
+        }
+
+        @Override
+        public void onDeviceFound(D device, short rssi) {
+            for (BluetoothRadio.Listener<D> listener : mListeners[DISCOVERY]) {
+                listener.onDeviceFound(device, rssi);
+            }
+        }
+
+        @Override
+        public void onAclConnected(D device) {
+            for (BluetoothRadio.Listener<D> listener : mListeners[CONNECTION]) {
+                listener.onAclConnected(device);
+            }
+        }
+
+        @Override
+        public void onAclDisconnected(D device) {
+            for (BluetoothRadio.Listener<D> listener : mListeners[CONNECTION]) {
+                listener.onAclDisconnected(device);
+            }
+        }
+
+        @Override
+        public void onNameChanged(D device, String name) {
+            for (BluetoothRadio.Listener<D> listener : mListeners[DEVICE]) {
+                listener.onNameChanged(device, name);
+            }
+        }
+
+        @Override
+        public void onClassChanged(D device, int deviceClass) {
+            for (BluetoothRadio.Listener<D> listener : mListeners[DEVICE]) {
+                listener.onClassChanged(device, deviceClass);
+            }
+        }
+
+        @Override
+        public void onBondStateChanged(D device, int bondState) {
+            for (BluetoothRadio.Listener<D> listener : mListeners[DEVICE]) {
+                listener.onBondStateChanged(device, bondState);
+            }
+        }
+    };
+
+}
@@ -0,0 +1,207 @@
+package com.example.bluetoothapp.core.radio;
+
+import com.example.bluetoothapp.core.device.DeviceClass;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A reproducible sequence of radio events over a synthetic device population. The same builder
+ * settings and seed always produce the same devices and the same events, so a run can be
+ * replayed exactly by {@link SimulatedRadio}.
+ */
+public final class RadioScript {
+
+    public static final byte STEP_DISCOVERY_STARTED = 0;
+    public static final byte STEP_DEVICE_FOUND = 1;
+    public static final byte STEP_ACL_CONNECTED = 2;
+    public static final byte STEP_ACL_DISCONNECTED = 3;
+    public static final byte STEP_DISCOVERY_FINISHED = 4;
+
+    private static final int[] CLASS_CODES;
+
+    static {
+        DeviceClass[] classes = DeviceClass.values();
+        CLASS_CODES = new int[classes.length - 1];
+        for (int index = 0; index < CLASS_CODES.length; index++) {
+            CLASS_CODES[index] = classes[index].getCode();
+        }
+    }
+
+    private final SimulatedDevice[] mDevices;
+    private final byte[] mSteps;
+    private final int[] mStepDevices;
+    private final short[] mStepRssi;
+
+    private RadioScript(SimulatedDevice[] devices, byte[] steps, int[] stepDevices,
+                        short[] stepRssi) {
+        mDevices = devices;
+        mSteps = steps;
+        mStepDevices = stepDevices;
+        mStepRssi = stepRssi;
+    }
+
+    public int getDeviceCount() {
+        return mDevices.length;
+    }
+
+    public SimulatedDevice getDevice(int index) {
+        return mDevices[index];
+    }
+
+    public int getStepCount() {
+        return mSteps.length;
+    }
+
+    public byte getStep(int index) {
+        return mSteps[index];
+    }
+
+    /**
+     * Index of the device the step refers to, or -1 for discovery start and finish.
+     */
+    public int getStepDevice(int index) {
+        return mStepDevices[index];
+    }
+
+    public short getStepRssi(int index) {
+        return mStepRssi[index];
+    }
+
+    public static String address(int index) {
+        return String.format(Locale.US, "00:1A:7D:%02X:%02X:%02X",
+                (index >> 16) & 0xFF, (index >> 8) & 0xFF, index & 0xFF);
+    }
+
+    public static class Builder {
+
+        private long mSeed = 1;
+        private int mDeviceCount = 100;
+        private int mFoundEvents = -1;
+        private int mAclEvents;
+        private double mNameCollisionRate;
+        private double mUnnamedRate;
+        private double mBondedRate = 0.1;
+
+        public Builder setSeed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        public Builder setDeviceCount(int deviceCount) {
+            mDeviceCount = deviceCount;
+            return this;
+        }
+
+        /**
+         * Number of found events in the scan. Devices are reported again once every device has
+         * been seen, as a real inquiry does. Defaults to one event per device.
+         */
+        public Builder setFoundEvents(int foundEvents) {
+            mFoundEvents = foundEvents;
+            return this;
+        }
+
+        /**
+         * Number of connect and disconnect events, interleaved with the scan and only for
+         * bonded devices.
+         */
+        public Builder setAclEvents(int aclEvents) {
+            mAclEvents = aclEvents;
+            return this;
+        }
+
+        /**
+         * Fraction of devices whose name is shared with at least one other device.
+         */
+        public Builder setNameCollisionRate(double nameCollisionRate) {
+            mNameCollisionRate = nameCollisionRate;
+            return this;
+        }
+
+        public Builder setUnnamedRate(double unnamedRate) {
+            mUnnamedRate = unnamedRate;
+            return this;
+        }
+
+        public Builder setBondedRate(double bondedRate) {
+            mBondedRate = bondedRate;
+            return this;
+        }
+
+        public RadioScript build() {
+            Random random = new Random(mSeed);
+            SimulatedDevice[] devices = new SimulatedDevice[mDeviceCount];
+            int bondedCount = 0;
+            int[] bonded = new int[mDeviceCount];
+            int sharedNames = Math.max(1, mDeviceCount / 20);
+            for (int index = 0; index < mDeviceCount; index++) {
+                String name;
+                if (random.nextDouble() < mUnnamedRate) {
+                    name = null;
+                } else if (random.nextDouble() < mNameCollisionRate) {
+                    name = "Shared " + random.nextInt(sharedNames);
+                } else {
+                    name = "Device " + index;
+                }
+                boolean isBonded = random.nextDouble() < mBondedRate;
+                if (isBonded) {
+                    bonded[bondedCount++] = index;
+                }
+                devices[index] = new SimulatedDevice(address(index), name,
+                        CLASS_CODES[random.nextInt(CLASS_CODES.length)],
+                        isBonded ? BluetoothRadio.BOND_BONDED : BluetoothRadio.BOND_NONE);
+            }
+
+            int foundEvents = mFoundEvents < 0 || mDeviceCount == 0 ? mDeviceCount : mFoundEvents;
+            int aclEvents = bondedCount == 0 ? 0 : mAclEvents;
+            int stepCount = foundEvents + aclEvents + 2;
+            byte[] steps = new byte[stepCount];
+            int[] stepDevices = new int[stepCount];
+            short[] stepRssi = new short[stepCount];
+            boolean[] connected = new boolean[mDeviceCount];
+
+            int[] order = shuffledIndexes(random, mDeviceCount);
+            int step = 0;
+            steps[step] = STEP_DISCOVERY_STARTED;
+            stepDevices[step++] = -1;
+            int found = 0;
+            int acl = 0;
+            while (found < foundEvents || acl < aclEvents) {
+                boolean nextIsAcl = acl < aclEvents && (found == foundEvents ||
+                        random.nextInt(foundEvents + aclEvents) < aclEvents);
+                if (nextIsAcl) {
+                    int device = bonded[random.nextInt(bondedCount)];
+                    steps[step] = connected[device] ? STEP_ACL_DISCONNECTED : STEP_ACL_CONNECTED;
+                    connected[device] = !connected[device];
+                    stepDevices[step++] = device;
+                    acl++;
+                } else {
+                    int device = order[found % mDeviceCount];
+                    steps[step] = STEP_DEVICE_FOUND;
+                    stepDevices[step] = device;
+                    stepRssi[step++] = (short) (-30 - random.nextInt(70));
+                    found++;
+                }
+            }
+            steps[step] = STEP_DISCOVERY_FINISHED;
+            stepDevices[step] = -1;
+            return new RadioScript(devices, steps, stepDevices, stepRssi);
+        }
+
+        private static int[] shuffledIndexes(Random random, int count) {
+            int[] indexes = new int[count];
+            for (int index = 0; index < count; index++) {
+                indexes[index] = index;
+            }
+            for (int index = count - 1; index > 0; index--) {
+                int other = random.nextInt(index + 1);
+                int swap = indexes[index];
+                indexes[index] = indexes[other];
+                indexes[other] = swap;
+            }
+            return indexes;
+        }
+    }
+
+}
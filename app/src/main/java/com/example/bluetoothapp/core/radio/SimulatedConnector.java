@@ -0,0 +1,59 @@
+package com.example.bluetoothapp.core.radio;
+
+import com.example.bluetoothapp.core.time.Scheduler;
+
+import java.util.HashSet;
+
+/**
+ * A {@link DeviceConnector} for a {@link SimulatedRadio}. Connecting a reachable device reports
+ * an ACL connect from the radio after the connect delay; an unreachable one is never heard
+ * from. Devices start out reachable.
+ */
+public class SimulatedConnector implements DeviceConnector<SimulatedDevice> {
+
+    private final SimulatedRadio mRadio;
+    private final Scheduler mScheduler;
+    private final HashSet<String> mUnreachable = new HashSet<>();
+    private long mConnectDelay;
+    private int mAttempts;
+
+    public SimulatedConnector(SimulatedRadio radio, Scheduler scheduler, long connectDelay) {
+        mRadio = radio;
+        mScheduler = scheduler;
+        mConnectDelay = connectDelay;
+    }
+
+    public synchronized void setReachable(SimulatedDevice device, boolean reachable) {
+        if (reachable) {
+            mUnreachable.remove(device.getAddress());
+        } else {
+            mUnreachable.add(device.getAddress());
+        }
+    }
+
+    public synchronized void setConnectDelay(long connectDelay) {
+        mConnectDelay = connectDelay;
+    }
+
+    /**
+     * Connects started, reachable or not.
+     */
+    public synchronized int getAttemptCount() {
+        return mAttempts;
+    }
+
+    @Override
+    public synchronized boolean connect(final SimulatedDevice device) {
+        mAttempts++;
+        if (!mUnreachable.contains(device.getAddress())) {
+            mScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    mRadio.emitAclConnected(device);
+                }
+            }, mConnectDelay);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.example.bluetoothapp.core.radio;
+
+import com.example.bluetoothapp.core.time.Clock;
+import com.example.bluetoothapp.core.time.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The air time of a controller, shared by everything running on it at once, for judging how
+ * radio operations are scheduled. A job such as a page, SDP query or pairing needs so many
+ * milliseconds of air time and gets an even share of it while others run. An inquiry runs for
+ * a set time whatever else happens, but while it does it takes the share of several jobs, as
+ * the controller interleaves inquiry with everything else.
+ */
+public class SimulatedController {
+
+    public interface Callback {
+
+        void onDone();
+
+    }
+
+    public final class Job {
+
+        final boolean mInquiry;
+        // Air time still needed, or for an inquiry the time it ends.
+        double mRemaining;
+        final Callback mCallback;
+
+        Job(boolean inquiry, double remaining, Callback callback) {
+            mInquiry = inquiry;
+            mRemaining = remaining;
+            mCallback = callback;
+        }
+
+        /**
+         * Stops the job without calling back.
+         */
+        public void cancel() {
+            synchronized (SimulatedController.this) {
+                if (mJobs.remove(this)) {
+                    advance();
+                    scheduleNext();
+                }
+            }
+        }
+
+    }
+
+    // Air time left below this counts as none, against rounding.
+    private static final double DONE = 0.5;
+
+    private final Clock mClock;
+    private final Scheduler mScheduler;
+    private final double mInquiryLoad;
+    private final List<Job> mJobs = new ArrayList<>();
+    private long mUpdated;
+    private Scheduler.Cancellable mTimer;
+
+    /**
+     * @param inquiryLoad how many jobs' share of air time a running inquiry takes
+     */
+    public SimulatedController(Clock clock, Scheduler scheduler, double inquiryLoad) {
+        mClock = clock;
+        mScheduler = scheduler;
+        mInquiryLoad = inquiryLoad;
+        mUpdated = clock.now();
+    }
+
+    public synchronized Job startInquiry(long duration, Callback callback) {
+        return add(new Job(true, mClock.now() + duration, callback));
+    }
+
+    public synchronized Job start(long airTime, Callback callback) {
+        return add(new Job(false, airTime, callback));
+    }
+
+    public synchronized int getActiveCount() {
+        return mJobs.size();
+    }
+
+    public synchronized boolean isInquiring() {
+        for (Job job : mJobs) {
+            if (job.mInquiry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Job add(Job job) {
+        advance();
+        mJobs.add(job);
+        scheduleNext();
+        return job;
+    }
+
+    /**
+     * Share of the air time each job gets.
+     */
+    private double rate() {
+        double load = 0;
+        for (Job job : mJobs) {
+            load += job.mInquiry ? mInquiryLoad : 1;
+        }
+        return load == 0 ? 1 : 1 / load;
+    }
+
+    /**
+     * Charges the jobs for the air time used since the last update.
+     */
+    private void advance() {
+        long now = mClock.now();
+        double used = (now - mUpdated) * rate();
+        for (Job job : mJobs) {
+            if (!job.mInquiry) {
+                job.mRemaining -= used;
+            }
+        }
+        mUpdated = now;
+    }
+
+    private void scheduleNext() {
+        if (mTimer != null) {
+            mTimer.cancel();
+            mTimer = null;
+        }
+        if (mJobs.isEmpty()) {
+            return;
+        }
+        long now = mClock.now();
+        double rate = rate();
+        long next = Long.MAX_VALUE;
+        for (Job job : mJobs) {
+            long end = job.mInquiry ? (long) job.mRemaining
+                    : now + (long) Math.ceil(Math.max(0, job.mRemaining - DONE) / rate);
+            next = Math.min(next, end);
+        }
+        mTimer = mScheduler.schedule(mTimerTask, Math.max(0, next - now));
+    }
+
+    private final Runnable mTimerTask = new Runnable() {
+        @Override
+        public void run() {
+            List<Job> done = new ArrayList<>();
+            synchronized (SimulatedController.this) {
+                mTimer = null;
+                advance();
+                long now = mClock.now();
+                for (int index = mJobs.size() - 1; index >= 0; index--) {
+                    Job job = mJobs.get(index);
+                    if (job.mInquiry ? job.mRemaining <= now : job.mRemaining <= DONE) {
+                        done.add(0, job);
+                        mJobs.remove(index);
+                    }
+                }
+                scheduleNext();
+            }
+            for (Job job : done) {
+                job.mCallback.onDone();
+            }
+        }
+    };
+
+}
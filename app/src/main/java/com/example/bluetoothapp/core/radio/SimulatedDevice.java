@@ -0,0 +1,61 @@
+package com.example.bluetoothapp.core.radio;
+
+public class SimulatedDevice {
+
+    private final String mAddress;
+    private volatile String mName;
+    private volatile int mDeviceClass;
+    private volatile int mBondState;
+
+    public SimulatedDevice(String address, String name, int deviceClass, int bondState) {
+        mAddress = address;
+        mName = name;
+        mDeviceClass = deviceClass;
+        mBondState = bondState;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getDeviceClass() {
+        return mDeviceClass;
+    }
+
+    public int getBondState() {
+        return mBondState;
+    }
+
+    void setName(String name) {
+        mName = name;
+    }
+
+    void setDeviceClass(int deviceClass) {
+        mDeviceClass = deviceClass;
+    }
+
+    void setBondState(int bondState) {
+        mBondState = bondState;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SimulatedDevice &&
+                mAddress.equals(((SimulatedDevice) other).mAddress);
+    }
+
+    @Override
+    public int hashCode() {
+        return mAddress.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mAddress + " (" + mName + ")";
+    }
+
+}
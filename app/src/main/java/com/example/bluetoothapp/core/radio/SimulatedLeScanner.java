@@ -0,0 +1,150 @@
+package com.example.bluetoothapp.core.radio;
+
+import com.example.bluetoothapp.core.time.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link LeScanner} fed by tests and benchmarks. Filters are applied as the controller
+ * would, before anything is buffered. With a report delay, results are held until the delay
+ * has passed on the scheduler, or until {@link #flush()}.
+ */
+public class SimulatedLeScanner implements LeScanner<SimulatedDevice> {
+
+    private final Scheduler mScheduler;
+    private LeScanSettings mSettings;
+    private Callback<SimulatedDevice> mCallback;
+    private List<LeScanResult<SimulatedDevice>> mPending = new ArrayList<>();
+    private Scheduler.Cancellable mPendingFlush;
+    private long mFilteredCount;
+
+    public SimulatedLeScanner(Scheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    @Override
+    public boolean isSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isBatchingSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void startScan(LeScanSettings settings,
+                                       Callback<SimulatedDevice> callback) {
+        stopScan();
+        mSettings = settings;
+        mCallback = callback;
+    }
+
+    /**
+     * Drops any results still held back, as stopping a real scan does.
+     */
+    @Override
+    public synchronized void stopScan() {
+        mSettings = null;
+        mCallback = null;
+        mPending = new ArrayList<>();
+        if (mPendingFlush != null) {
+            mPendingFlush.cancel();
+            mPendingFlush = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isScanning() {
+        return mCallback != null;
+    }
+
+    /**
+     * Results dropped by the scan's filters so far.
+     */
+    public synchronized long getFilteredCount() {
+        return mFilteredCount;
+    }
+
+    public void emit(LeScanResult<SimulatedDevice> result) {
+        Callback<SimulatedDevice> callback;
+        synchronized (this) {
+            if (mCallback == null) {
+                return;
+            }
+            if (!mSettings.matches(result)) {
+                mFilteredCount++;
+                return;
+            }
+            if (mSettings.getReportDelay() > 0) {
+                mPending.add(result);
+                if (mPendingFlush == null) {
+                    mPendingFlush = mScheduler.schedule(mFlushTask, mSettings.getReportDelay());
+                }
+                return;
+            }
+            callback = mCallback;
+        }
+        callback.onResults(Collections.singletonList(result));
+    }
+
+    /**
+     * Delivers a whole batch at once, as a controller does when its buffer fills, keeping only
+     * the results that pass the filters.
+     */
+    public void emitBatch(List<LeScanResult<SimulatedDevice>> results) {
+        Callback<SimulatedDevice> callback;
+        List<LeScanResult<SimulatedDevice>> batch;
+        synchronized (this) {
+            if (mCallback == null) {
+                return;
+            }
+            callback = mCallback;
+            if (mSettings.getFilters().isEmpty()) {
+                batch = results;
+            } else {
+                batch = new ArrayList<>(results.size());
+                for (LeScanResult<SimulatedDevice> result : results) {
+                    if (mSettings.matches(result)) {
+                        batch.add(result);
+                    }
+                }
+                mFilteredCount += results.size() - batch.size();
+            }
+        }
+        if (!batch.isEmpty()) {
+            callback.onResults(batch);
+        }
+    }
+
+    /**
+     * Delivers the results held back, if any, without waiting for the report delay.
+     */
+    public void flush() {
+        Callback<SimulatedDevice> callback;
+        List<LeScanResult<SimulatedDevice>> batch;
+        synchronized (this) {
+            if (mPendingFlush != null) {
+                mPendingFlush.cancel();
+                mPendingFlush = null;
+            }
+            if (mCallback == null || mPending.isEmpty()) {
+                return;
+            }
+            callback = mCallback;
+            batch = mPending;
+            mPending = new ArrayList<>();
+        }
+        callback.onResults(batch);
+    }
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+}
@@ -0,0 +1,315 @@
+package com.example.bluetoothapp.core.radio;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A deterministic, in-memory radio. Events are delivered synchronously on the thread that
+ * triggers them, either through the emit methods or by replaying a {@link RadioScript}.
+ * Every per-device getter and adapter query is counted as one binder call, so runs can report
+ * how many cross-process calls the same work would cost on a device.
+ */
+public class SimulatedRadio implements BluetoothRadio<SimulatedDevice> {
+
+    private final LinkedHashSet<SimulatedDevice> mBondedDevices = new LinkedHashSet<>();
+    private final HashMap<String, SimulatedDevice> mKnownDevices = new HashMap<>();
+    private final AtomicLong mBinderCalls = new AtomicLong();
+    private volatile Listener<SimulatedDevice> mListener;
+    private volatile int mEvents;
+    private volatile int mState = STATE_ON;
+    private volatile boolean mDiscovering;
+
+    @Override
+    public void open(Listener<SimulatedDevice> listener, int events) {
+        mListener = listener;
+        mEvents = events;
+    }
+
+    @Override
+    public void close() {
+        mListener = null;
+        mEvents = 0;
+    }
+
+    @Override
+    public boolean isSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        mBinderCalls.incrementAndGet();
+        return mState == STATE_ON;
+    }
+
+    @Override
+    public int getState() {
+        mBinderCalls.incrementAndGet();
+        return mState;
+    }
+
+    @Override
+    public boolean isDiscovering() {
+        mBinderCalls.incrementAndGet();
+        return mDiscovering;
+    }
+
+    @Override
+    public boolean startDiscovery() {
+        mBinderCalls.incrementAndGet();
+        if (mState != STATE_ON || mDiscovering) {
+            return false;
+        }
+        emitDiscoveryStarted();
+        return true;
+    }
+
+    @Override
+    public boolean cancelDiscovery() {
+        mBinderCalls.incrementAndGet();
+        if (!mDiscovering) {
+            return false;
+        }
+        emitDiscoveryFinished();
+        return true;
+    }
+
+    @Override
+    public Collection<SimulatedDevice> getBondedDevices() {
+        mBinderCalls.incrementAndGet();
+        synchronized (mBondedDevices) {
+            return new ArrayList<>(mBondedDevices);
+        }
+    }
+
+    @Override
+    public SimulatedDevice getRemoteDevice(String address) {
+        synchronized (mKnownDevices) {
+            SimulatedDevice device = mKnownDevices.get(address);
+            if (device == null) {
+                device = new SimulatedDevice(address, null, -1, BOND_NONE);
+                mKnownDevices.put(address, device);
+            }
+            return device;
+        }
+    }
+
+    @Override
+    public String getAddress(SimulatedDevice device) {
+        return device.getAddress();
+    }
+
+    @Override
+    public String getName(SimulatedDevice device) {
+        mBinderCalls.incrementAndGet();
+        return device.getName();
+    }
+
+    @Override
+    public int getDeviceClass(SimulatedDevice device) {
+        mBinderCalls.incrementAndGet();
+        return device.getDeviceClass();
+    }
+
+    @Override
+    public int getBondState(SimulatedDevice device) {
+        mBinderCalls.incrementAndGet();
+        return device.getBondState();
+    }
+
+    public long getBinderCallCount() {
+        return mBinderCalls.get();
+    }
+
+    public void resetBinderCallCount() {
+        mBinderCalls.set(0);
+    }
+
+    /**
+     * Bonds the device without a bond state broadcast, as if it had been bonded before.
+     */
+    public void addBondedDevice(SimulatedDevice device) {
+        addKnownDevice(device);
+        device.setBondState(BOND_BONDED);
+        synchronized (mBondedDevices) {
+            mBondedDevices.add(device);
+        }
+    }
+
+    public void removeBondedDevice(SimulatedDevice device) {
+        device.setBondState(BOND_NONE);
+        synchronized (mBondedDevices) {
+            mBondedDevices.remove(device);
+        }
+    }
+
+    /**
+     * Renames the device and reports it, as the stack does once a remote name is resolved.
+     */
+    public void emitNameChanged(SimulatedDevice device, String name) {
+        device.setName(name);
+        Listener<SimulatedDevice> listener = listenerFor(EVENT_DEVICE);
+        if (listener != null) {
+            listener.onNameChanged(device, name);
+        }
+    }
+
+    public void emitClassChanged(SimulatedDevice device, int deviceClass) {
+        device.setDeviceClass(deviceClass);
+        Listener<SimulatedDevice> listener = listenerFor(EVENT_DEVICE);
+        if (listener != null) {
+            listener.onClassChanged(device, deviceClass);
+        }
+    }
+
+    /**
+     * Bonds or unbonds the device and reports the new state.
+     */
+    public void emitBondStateChanged(SimulatedDevice device, int bondState) {
+        if (bondState == BOND_BONDED) {
+            addBondedDevice(device);
+        } else {
+            removeBondedDevice(device);
+            device.setBondState(bondState);
+        }
+        Listener<SimulatedDevice> listener = listenerFor(EVENT_DEVICE);
+        if (listener != null) {
+            listener.onBondStateChanged(device, bondState);
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (enabled == (mState == STATE_ON)) {
+            return;
+        }
+        if (!enabled && mDiscovering) {
+            emitDiscoveryFinished();
+        }
+        emitState(enabled ? STATE_TURNING_ON : STATE_TURNING_OFF);
+        emitState(enabled ? STATE_ON : STATE_OFF);
+    }
+
+    public void emitDiscoveryStarted() {
+        mDiscovering = true;
+        Listener<SimulatedDevice> listener = listenerFor(EVENT_DISCOVERY);
+        if (listener != null) {
+            listener.onDiscoveryStarted();
+        }
+    }
+
+    public void emitDiscoveryFinished() {
+        mDiscovering = false;
+        Listener<SimulatedDevice> listener = listenerFor(EVENT_DISCOVERY);
+        if (listener != null) {
+            listener.onDiscoveryFinished();
+        }
+    }
+
+    public void emitDeviceFound(SimulatedDevice device, short rssi) {
+        Listener<SimulatedDevice> listener = listenerFor(EVENT_DISCOVERY);
+        if (listener != null) {
+            listener.onDeviceFound(device, rssi);
+        }
+    }
+
+    public void emitAclConnected(SimulatedDevice device) {
+        Listener<SimulatedDevice> listener = listenerFor(EVENT_CONNECTION);
+        if (listener != null) {
+            listener.onAclConnected(device);
+        }
+    }
+
+    public void emitAclDisconnected(SimulatedDevice device) {
+        Listener<SimulatedDevice> listener = listenerFor(EVENT_CONNECTION);
+        if (listener != null) {
+            listener.onAclDisconnected(device);
+        }
+    }
+
+    /**
+     * Makes the device known to {@link #getRemoteDevice(String)}.
+     */
+    public void addKnownDevice(SimulatedDevice device) {
+        synchronized (mKnownDevices) {
+            mKnownDevices.put(device.getAddress(), device);
+        }
+    }
+
+    /**
+     * Makes the script's devices known and bonds its bonded devices with this radio, so they are
+     * returned by {@link #getBondedDevices()}.
+     */
+    public void load(RadioScript script) {
+        for (int index = 0; index < script.getDeviceCount(); index++) {
+            SimulatedDevice device = script.getDevice(index);
+            addKnownDevice(device);
+            if (device.getBondState() == BOND_BONDED) {
+                addBondedDevice(device);
+            }
+        }
+    }
+
+    /**
+     * Delivers every step of the script as fast as the listener takes them.
+     */
+    public void replay(RadioScript script) {
+        for (int step = 0; step < script.getStepCount(); step++) {
+            emitStep(script, step);
+        }
+    }
+
+    /**
+     * Delivers the steps of the script at a steady rate, sleeping between them when ahead of
+     * schedule. Blocks until the script is done or the thread is interrupted.
+     */
+    public void replay(RadioScript script, int eventsPerSecond) throws InterruptedException {
+        long start = System.nanoTime();
+        double nanosPerEvent = 1e9 / eventsPerSecond;
+        for (int step = 0; step < script.getStepCount(); step++) {
+            long due = start + (long) (step * nanosPerEvent);
+            long ahead = due - System.nanoTime();
+            if (ahead > 1000000L) {
+                Thread.sleep(ahead / 1000000L);
+            }
+            emitStep(script, step);
+        }
+    }
+
+    private void emitStep(RadioScript script, int step) {
+        int deviceIndex = script.getStepDevice(step);
+        SimulatedDevice device = deviceIndex < 0 ? null : script.getDevice(deviceIndex);
+        switch (script.getStep(step)) {
+            case RadioScript.STEP_DISCOVERY_STARTED:
+                emitDiscoveryStarted();
+                break;
+            case RadioScript.STEP_DEVICE_FOUND:
+                emitDeviceFound(device, script.getStepRssi(step));
+                break;
+            case RadioScript.STEP_ACL_CONNECTED:
+                emitAclConnected(device);
+                break;
+            case RadioScript.STEP_ACL_DISCONNECTED:
+                emitAclDisconnected(device);
+                break;
+            case RadioScript.STEP_DISCOVERY_FINISHED:
+                emitDiscoveryFinished();
+                break;
+        }
+    }
+
+    private void emitState(int state) {
+        mState = state;
+        Listener<SimulatedDevice> listener = listenerFor(EVENT_ADAPTER);
+        if (listener != null) {
+            listener.onStateChanged(state);
+        }
+    }
+
+    private Listener<SimulatedDevice> listenerFor(int event) {
+        return (mEvents & event) != 0 ? mListener : null;
+    }
+
+}
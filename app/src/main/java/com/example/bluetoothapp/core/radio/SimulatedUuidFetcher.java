@@ -0,0 +1,77 @@
+package com.example.bluetoothapp.core.radio;
+
+import com.example.bluetoothapp.core.time.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A {@link UuidFetcher} for {@link SimulatedDevice}s. A query is answered after the query
+ * delay with the services set for the device, or with none.
+ */
+public class SimulatedUuidFetcher implements UuidFetcher<SimulatedDevice> {
+
+    private final Scheduler mScheduler;
+    private final HashMap<String, List<UUID>> mServices = new HashMap<>();
+    private long mQueryDelay;
+    private Callback<SimulatedDevice> mCallback;
+    private int mQueries;
+
+    public SimulatedUuidFetcher(Scheduler scheduler, long queryDelay) {
+        mScheduler = scheduler;
+        mQueryDelay = queryDelay;
+    }
+
+    public synchronized void setServices(SimulatedDevice device, UUID... uuids) {
+        mServices.put(device.getAddress(),
+                Collections.unmodifiableList(new ArrayList<>(Arrays.asList(uuids))));
+    }
+
+    public synchronized void setQueryDelay(long queryDelay) {
+        mQueryDelay = queryDelay;
+    }
+
+    public synchronized int getQueryCount() {
+        return mQueries;
+    }
+
+    @Override
+    public boolean isSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void open(Callback<SimulatedDevice> callback) {
+        mCallback = callback;
+    }
+
+    @Override
+    public synchronized void close() {
+        mCallback = null;
+    }
+
+    @Override
+    public synchronized boolean fetchUuids(final SimulatedDevice device) {
+        mQueries++;
+        List<UUID> services = mServices.get(device.getAddress());
+        final List<UUID> answer = services == null ? Collections.<UUID>emptyList() : services;
+        mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Callback<SimulatedDevice> callback;
+                synchronized (SimulatedUuidFetcher.this) {
+                    callback = mCallback;
+                }
+                if (callback != null) {
+                    callback.onUuids(device, answer);
+                }
+            }
+        }, mQueryDelay);
+        return true;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.example.bluetoothapp.core.radio;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Service discovery over SDP, next to {@link BluetoothRadio}. Implemented with
+ * fetchUuidsWithSdp and the ACTION_UUID broadcast from API 15, and by
+ * {@link SimulatedUuidFetcher} on the JVM.
+ */
+public interface UuidFetcher<D> {
+
+    interface Callback<D> {
+
+        /**
+         * The service class UUIDs the device offers; empty when the query failed. Results may
+         * also arrive unasked, as after bonding.
+         */
+        void onUuids(D device, List<UUID> uuids);
+
+    }
+
+    boolean isSupported();
+
+    void open(Callback<D> callback);
+
+    void close();
+
+    /**
+     * Starts a query, answered through the callback. Returns false if it could not be started.
+     */
+    boolean fetchUuids(D device);
+
+}
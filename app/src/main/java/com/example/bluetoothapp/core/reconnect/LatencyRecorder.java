@@ -0,0 +1,68 @@
+package com.example.bluetoothapp.core.reconnect;
+
+import java.util.Arrays;
+
+/**
+ * The most recent latencies, in milliseconds, in a fixed ring, and percentiles over them.
+ * Thread-safe.
+ */
+public class LatencyRecorder {
+
+    private final long[] mSamples;
+    private int mNext;
+    private long mCount;
+
+    public LatencyRecorder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity < 1: " + capacity);
+        }
+        mSamples = new long[capacity];
+    }
+
+    public synchronized void record(long latency) {
+        mSamples[mNext] = latency;
+        mNext = (mNext + 1) % mSamples.length;
+        mCount++;
+    }
+
+    /**
+     * Samples recorded in all, including those since overwritten.
+     */
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * The nearest-rank percentile, 0 to 100, of the samples held; -1 when there are none.
+     */
+    public long getPercentile(double percentile) {
+        return getPercentiles(percentile)[0];
+    }
+
+    public long[] getPercentiles(double... percentiles) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(mSamples, (int) Math.min(mCount, mSamples.length));
+        }
+        Arrays.sort(sorted);
+        long[] values = new long[percentiles.length];
+        for (int index = 0; index < percentiles.length; index++) {
+            if (percentiles[index] < 0 || percentiles[index] > 100) {
+                throw new IllegalArgumentException("Not a percentile: " + percentiles[index]);
+            }
+            if (sorted.length == 0) {
+                values[index] = -1;
+                continue;
+            }
+            int rank = (int) Math.ceil(percentiles[index] / 100 * sorted.length);
+            values[index] = sorted[Math.max(0, rank - 1)];
+        }
+        return values;
+    }
+
+    public synchronized void clear() {
+        mNext = 0;
+        mCount = 0;
+    }
+
+}
@@ -0,0 +1,370 @@
+package com.example.bluetoothapp.core.reconnect;
+
+import com.example.bluetoothapp.core.radio.DeviceConnector;
+import com.example.bluetoothapp.core.time.Clock;
+import com.example.bluetoothapp.core.time.Scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Brings dropped devices back. After a device disconnects, connects are attempted with
+ * exponential backoff, each delay shortened by a random share of up to the jitter so devices
+ * that dropped together do not retry together. An attempt fails if no ACL connect follows
+ * within the attempt timeout; a device is given up on after its attempt budget. At most
+ * {@link Policy#getMaxConcurrent()} attempts are in flight at once; the rest wait their turn.
+ * <p>
+ * The owner forwards ACL events for the devices to reconnect to {@link #onDisconnected} and
+ * {@link #onConnected}. The time from disconnect to connect is recorded for every device that
+ * comes back, whether or not an attempt brought it. The listener is called without the
+ * engine's lock held.
+ */
+public class ReconnectEngine<D> {
+
+    public interface Listener {
+
+        void onReconnected(String address, long latency, int attempts);
+
+        void onGaveUp(String address, int attempts);
+
+    }
+
+    private static final int LATENCY_SAMPLES = 256;
+
+    private final Clock mClock;
+    private final Scheduler mScheduler;
+    private final DeviceConnector<D> mConnector;
+    private final Random mRandom;
+    private Policy mPolicy;
+    private Listener mListener;
+
+    private final HashMap<String, Link> mLinks = new HashMap<>();
+    private final ArrayDeque<Link> mWaiting = new ArrayDeque<>();
+    private final ArrayList<Link> mGivenUp = new ArrayList<>();
+    private int mConnecting;
+    private final LatencyRecorder mLatencies = new LatencyRecorder(LATENCY_SAMPLES);
+    private long mAttemptCount;
+    private long mGaveUpCount;
+
+    private final class Link implements Runnable {
+
+        final String mAddress;
+        final D mDevice;
+        final long mDisconnected;
+        int mAttempts;
+        boolean mInFlight;
+        Scheduler.Cancellable mTimer;
+
+        Link(String address, D device, long disconnected) {
+            mAddress = address;
+            mDevice = device;
+            mDisconnected = disconnected;
+        }
+
+        @Override
+        public void run() {
+            onTimer(this);
+        }
+
+    }
+
+    public ReconnectEngine(Clock clock, Scheduler scheduler, DeviceConnector<D> connector,
+                           Policy policy, Random random) {
+        mClock = clock;
+        mScheduler = scheduler;
+        mConnector = connector;
+        mPolicy = policy;
+        mRandom = random;
+    }
+
+    public synchronized void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Takes effect from the next attempt.
+     */
+    public synchronized void setPolicy(Policy policy) {
+        mPolicy = policy;
+    }
+
+    /**
+     * Starts reconnecting the device, unless it already is being reconnected.
+     */
+    public synchronized void onDisconnected(String address, D device) {
+        if (mLinks.containsKey(address)) {
+            return;
+        }
+        Link link = new Link(address, device, mClock.now());
+        mLinks.put(address, link);
+        link.mTimer = mScheduler.schedule(link, backoff(0));
+    }
+
+    /**
+     * Any ACL connect. Ends the device's reconnection, if it had one.
+     */
+    public void onConnected(String address) {
+        Link link;
+        long latency;
+        Listener listener;
+        synchronized (this) {
+            link = mLinks.get(address);
+            if (link == null) {
+                return;
+            }
+            forget(link);
+            latency = mClock.now() - link.mDisconnected;
+            mLatencies.record(latency);
+            listener = mListener;
+            startWaiting();
+        }
+        if (listener != null) {
+            listener.onReconnected(address, latency, link.mAttempts);
+        }
+        notifyGivenUp();
+    }
+
+    /**
+     * Stops reconnecting the device, as when it is no longer followed.
+     */
+    public void cancel(String address) {
+        synchronized (this) {
+            Link link = mLinks.get(address);
+            if (link == null) {
+                return;
+            }
+            forget(link);
+            startWaiting();
+        }
+        notifyGivenUp();
+    }
+
+    public synchronized void cancelAll() {
+        for (Link link : new ArrayList<>(mLinks.values())) {
+            forget(link);
+        }
+    }
+
+    public synchronized boolean isReconnecting(String address) {
+        return mLinks.containsKey(address);
+    }
+
+    /**
+     * Devices being reconnected, whether waiting, backing off or in an attempt.
+     */
+    public synchronized int getPendingCount() {
+        return mLinks.size();
+    }
+
+    public synchronized int getConnectingCount() {
+        return mConnecting;
+    }
+
+    public synchronized long getAttemptCount() {
+        return mAttemptCount;
+    }
+
+    public synchronized long getGaveUpCount() {
+        return mGaveUpCount;
+    }
+
+    /**
+     * Milliseconds from disconnect to connect of the devices that came back.
+     */
+    public LatencyRecorder getLatencies() {
+        return mLatencies;
+    }
+
+    private void onTimer(Link link) {
+        synchronized (this) {
+            if (mLinks.get(link.mAddress) != link) {
+                return;
+            }
+            link.mTimer = null;
+            if (link.mInFlight) {
+                // No connect within the attempt timeout.
+                fail(link);
+            } else {
+                start(link);
+            }
+        }
+        notifyGivenUp();
+    }
+
+    private void start(Link link) {
+        if (mConnecting >= mPolicy.mMaxConcurrent) {
+            mWaiting.addLast(link);
+            return;
+        }
+        mConnecting++;
+        mAttemptCount++;
+        link.mInFlight = true;
+        link.mAttempts++;
+        link.mTimer = mScheduler.schedule(link, mPolicy.mAttemptTimeout);
+        if (!mConnector.connect(link.mDevice)) {
+            link.mTimer.cancel();
+            link.mTimer = null;
+            fail(link);
+        }
+    }
+
+    private void fail(Link link) {
+        link.mInFlight = false;
+        mConnecting--;
+        if (link.mAttempts >= mPolicy.mMaxAttempts) {
+            mLinks.remove(link.mAddress);
+            mGaveUpCount++;
+            mGivenUp.add(link);
+        } else {
+            link.mTimer = mScheduler.schedule(link, backoff(link.mAttempts));
+        }
+        startWaiting();
+    }
+
+    private void startWaiting() {
+        while (mConnecting < mPolicy.mMaxConcurrent && !mWaiting.isEmpty()) {
+            start(mWaiting.pollFirst());
+        }
+    }
+
+    private void forget(Link link) {
+        mLinks.remove(link.mAddress);
+        mWaiting.remove(link);
+        if (link.mTimer != null) {
+            link.mTimer.cancel();
+            link.mTimer = null;
+        }
+        if (link.mInFlight) {
+            link.mInFlight = false;
+            mConnecting--;
+        }
+    }
+
+    private long backoff(int attempts) {
+        double delay = mPolicy.mInitialDelay * Math.pow(mPolicy.mMultiplier, attempts);
+        delay = Math.min(delay, mPolicy.mMaxDelay);
+        return (long) (delay * (1 - mPolicy.mJitter * mRandom.nextDouble()));
+    }
+
+    private void notifyGivenUp() {
+        List<Link> givenUp;
+        Listener listener;
+        synchronized (this) {
+            if (mGivenUp.isEmpty()) {
+                return;
+            }
+            givenUp = new ArrayList<>(mGivenUp);
+            mGivenUp.clear();
+            listener = mListener;
+        }
+        if (listener != null) {
+            for (Link link : givenUp) {
+                listener.onGaveUp(link.mAddress, link.mAttempts);
+            }
+        }
+    }
+
+    public static final class Policy {
+
+        public static final Policy DEFAULT = new Builder().build();
+
+        final long mInitialDelay;
+        final long mMaxDelay;
+        final double mMultiplier;
+        final double mJitter;
+        final int mMaxAttempts;
+        final int mMaxConcurrent;
+        final long mAttemptTimeout;
+
+        private Policy(Builder builder) {
+            mInitialDelay = builder.mInitialDelay;
+            mMaxDelay = Math.max(builder.mMaxDelay, builder.mInitialDelay);
+            mMultiplier = builder.mMultiplier;
+            mJitter = builder.mJitter;
+            mMaxAttempts = builder.mMaxAttempts;
+            mMaxConcurrent = builder.mMaxConcurrent;
+            mAttemptTimeout = builder.mAttemptTimeout;
+        }
+
+        public int getMaxAttempts() {
+            return mMaxAttempts;
+        }
+
+        public int getMaxConcurrent() {
+            return mMaxConcurrent;
+        }
+
+        public static class Builder {
+
+            private long mInitialDelay = 2000;
+            private long mMaxDelay = 5 * 60 * 1000;
+            private double mMultiplier = 2;
+            private double mJitter = 0.5;
+            private int mMaxAttempts = 8;
+            private int mMaxConcurrent = 2;
+            private long mAttemptTimeout = 15000;
+
+            /**
+             * Delay before the first attempt, and the base of the backoff.
+             */
+            public Builder setInitialDelay(long initialDelay) {
+                mInitialDelay = initialDelay;
+                return this;
+            }
+
+            public Builder setMaxDelay(long maxDelay) {
+                mMaxDelay = maxDelay;
+                return this;
+            }
+
+            public Builder setMultiplier(double multiplier) {
+                if (multiplier < 1) {
+                    throw new IllegalArgumentException("multiplier < 1: " + multiplier);
+                }
+                mMultiplier = multiplier;
+                return this;
+            }
+
+            /**
+             * The largest share, 0 to 1, taken off a delay at random.
+             */
+            public Builder setJitter(double jitter) {
+                if (jitter < 0 || jitter > 1) {
+                    throw new IllegalArgumentException("jitter out of [0, 1]: " + jitter);
+                }
+                mJitter = jitter;
+                return this;
+            }
+
+            /**
+             * Attempts per disconnect before giving up on the device.
+             */
+            public Builder setMaxAttempts(int maxAttempts) {
+                mMaxAttempts = maxAttempts;
+                return this;
+            }
+
+            public Builder setMaxConcurrent(int maxConcurrent) {
+                if (maxConcurrent < 1) {
+                    throw new IllegalArgumentException("maxConcurrent < 1: " + maxConcurrent);
+                }
+                mMaxConcurrent = maxConcurrent;
+                return this;
+            }
+
+            public Builder setAttemptTimeout(long attemptTimeout) {
+                mAttemptTimeout = attemptTimeout;
+                return this;
+            }
+
+            public Policy build() {
+                return new Policy(this);
+            }
+        }
+
+    }
+
+}
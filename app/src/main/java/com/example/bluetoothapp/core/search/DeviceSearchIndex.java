@@ -0,0 +1,627 @@
+package com.example.bluetoothapp.core.search;
+
+import com.example.bluetoothapp.core.device.DeviceSnapshot;
+import com.example.bluetoothapp.core.device.MajorDeviceClass;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An index over device names and addresses for searching as the user types. Every word of a
+ * device's name and address is put in a prefix trie and broken into trigrams; major class and
+ * bond state are kept as bitsets. Devices get dense ids in the order they are first put, which
+ * is also the order results come in.
+ * <p>
+ * A query word matches a device when it starts one of the device's words, or, for words of
+ * {@link #MIN_FUZZY_LENGTH} characters or more, when at least half of its trigrams appear in the
+ * device's words, which lets a mistyped letter through. All query words must match.
+ * <p>
+ * Not thread-safe; keep the index and its searches on one thread.
+ */
+public class DeviceSearchIndex<D> {
+
+    public static final int ANY_BOND_STATE = -1;
+
+    /**
+     * Query words shorter than this only match by prefix.
+     */
+    public static final int MIN_FUZZY_LENGTH = 5;
+
+    private static final MajorDeviceClass[] MAJOR_CLASSES = MajorDeviceClass.values();
+    private static final String[] NO_WORDS = new String[0];
+
+    private final HashMap<String, Integer> mIds = new HashMap<>();
+    private DeviceSnapshot<?>[] mDevices = new DeviceSnapshot<?>[16];
+    private String[][] mWords = new String[16][];
+    private int mCount;
+
+    private final BitSet mLive = new BitSet();
+    private final BitSet[] mByMajorClass = new BitSet[MAJOR_CLASSES.length];
+    private final BitSet[] mByBondState = new BitSet[3];
+
+    private final TrieNode mRoot = new TrieNode();
+    private final HashMap<Long, Postings> mTrigrams = new HashMap<>();
+    // Scratch for counting trigram hits, indexed by id.
+    private int[] mCounts = new int[16];
+
+    // Bumped whenever an indexed device changes or goes, so searches know their cached matches
+    // are stale. New devices alone do not bump it; searches check those one by one.
+    private int mVersion;
+
+    public DeviceSearchIndex() {
+        for (int index = 0; index < mByMajorClass.length; index++) {
+            mByMajorClass[index] = new BitSet();
+        }
+        for (int index = 0; index < mByBondState.length; index++) {
+            mByBondState[index] = new BitSet();
+        }
+    }
+
+    /**
+     * Adds the device, or replaces what is indexed for its address.
+     */
+    public void put(DeviceSnapshot<D> device) {
+        Integer known = mIds.get(device.getAddress());
+        if (known == null) {
+            int id = mCount++;
+            if (id == mDevices.length) {
+                mDevices = Arrays.copyOf(mDevices, id * 2);
+                mWords = Arrays.copyOf(mWords, id * 2);
+                mCounts = new int[id * 2];
+            }
+            mIds.put(device.getAddress(), id);
+            mDevices[id] = device;
+            mLive.set(id);
+            addWords(id, device);
+            addAttributes(id, device);
+            return;
+        }
+        int id = known;
+        DeviceSnapshot<?> previous = mDevices[id];
+        mDevices[id] = device;
+        if (!sameName(previous.getName(), device.getName())) {
+            removeWords(id);
+            addWords(id, device);
+            mVersion++;
+        }
+        if (previous.getDeviceClassCode() != device.getDeviceClassCode() ||
+                previous.getBondState() != device.getBondState()) {
+            removeAttributes(id, previous);
+            addAttributes(id, device);
+            mVersion++;
+        }
+    }
+
+    public void putAll(Iterable<DeviceSnapshot<D>> devices) {
+        for (DeviceSnapshot<D> device : devices) {
+            put(device);
+        }
+    }
+
+    public boolean remove(String address) {
+        Integer known = mIds.remove(address);
+        if (known == null) {
+            return false;
+        }
+        int id = known;
+        removeWords(id);
+        removeAttributes(id, mDevices[id]);
+        mDevices[id] = null;
+        mWords[id] = null;
+        mLive.clear(id);
+        mVersion++;
+        return true;
+    }
+
+    public void clear() {
+        mIds.clear();
+        Arrays.fill(mDevices, 0, mCount, null);
+        Arrays.fill(mWords, 0, mCount, null);
+        mCount = 0;
+        mLive.clear();
+        for (BitSet bits : mByMajorClass) {
+            bits.clear();
+        }
+        for (BitSet bits : mByBondState) {
+            bits.clear();
+        }
+        mRoot.clear();
+        mTrigrams.clear();
+        mVersion++;
+    }
+
+    public int size() {
+        return mIds.size();
+    }
+
+    public boolean contains(String address) {
+        return mIds.containsKey(address);
+    }
+
+    /**
+     * Every indexed device, in the order first put.
+     */
+    public List<DeviceSnapshot<D>> getAll() {
+        ArrayList<DeviceSnapshot<D>> devices = new ArrayList<>(mIds.size());
+        collect(mLive, devices);
+        return devices;
+    }
+
+    /**
+     * Starts a search that keeps its matches between queries. Reuse one per search box.
+     */
+    public Search newSearch() {
+        return new Search();
+    }
+
+    /**
+     * One-off search for the text, with no class or bond filter.
+     */
+    public List<DeviceSnapshot<D>> search(String text) {
+        Search search = newSearch();
+        search.setText(text);
+        return search.getResults();
+    }
+
+    /**
+     * A query against the index. Each query word's matches are kept, so typing into the last
+     * word leaves the others alone, and devices put since the last query are checked one by one
+     * rather than looking everything up again.
+     */
+    public final class Search {
+
+        private Token[] mTokens = new Token[0];
+        private BitSet[] mMatches = new BitSet[0];
+        private EnumSet<MajorDeviceClass> mMajorClasses;
+        private int mBondState = ANY_BOND_STATE;
+        private int mIndexVersion = -1;
+        // Ids below this have been checked against every token.
+        private int mChecked;
+
+        private Search() {
+        }
+
+        public void setText(String text) {
+            String[] words = tokenize(text);
+            Token[] tokens = new Token[words.length];
+            BitSet[] matches = new BitSet[words.length];
+            for (int index = 0; index < words.length; index++) {
+                int previous = indexOf(words[index]);
+                if (previous >= 0) {
+                    tokens[index] = mTokens[previous];
+                    matches[index] = mMatches[previous];
+                } else {
+                    tokens[index] = new Token(words[index]);
+                }
+            }
+            mTokens = tokens;
+            mMatches = matches;
+        }
+
+        /**
+         * Limits results to these major classes; null for any.
+         */
+        public void setMajorClasses(EnumSet<MajorDeviceClass> majorClasses) {
+            mMajorClasses = majorClasses == null ? null : EnumSet.copyOf(majorClasses);
+        }
+
+        /**
+         * Limits results to one of the BluetoothRadio.BOND_* states, or {@link #ANY_BOND_STATE}.
+         */
+        public void setBondState(int bondState) {
+            mBondState = bondState;
+        }
+
+        /**
+         * True when the search has no words and no filters, so everything matches.
+         */
+        public boolean isEmpty() {
+            return mTokens.length == 0 && mMajorClasses == null &&
+                    mBondState == ANY_BOND_STATE;
+        }
+
+        /**
+         * Whether the device would be among the results, whether or not it is indexed.
+         */
+        public boolean matches(DeviceSnapshot<?> device) {
+            if (mMajorClasses != null &&
+                    !mMajorClasses.contains(MajorDeviceClass.fromDeviceClass(
+                            device.getDeviceClassCode()))) {
+                return false;
+            }
+            if (mBondState != ANY_BOND_STATE && device.getBondState() != mBondState) {
+                return false;
+            }
+            if (mTokens.length == 0) {
+                return true;
+            }
+            return matchesAll(wordsOf(device));
+        }
+
+        public List<DeviceSnapshot<D>> getResults() {
+            refresh();
+            BitSet result = (BitSet) mLive.clone();
+            for (BitSet matches : mMatches) {
+                result.and(matches);
+            }
+            if (mMajorClasses != null) {
+                BitSet classes = new BitSet();
+                for (MajorDeviceClass major : mMajorClasses) {
+                    classes.or(mByMajorClass[major.ordinal()]);
+                }
+                result.and(classes);
+            }
+            if (mBondState != ANY_BOND_STATE) {
+                int bond = bondIndex(mBondState);
+                if (bond < 0) {
+                    result.clear();
+                } else {
+                    result.and(mByBondState[bond]);
+                }
+            }
+            ArrayList<DeviceSnapshot<D>> devices = new ArrayList<>();
+            collect(result, devices);
+            return devices;
+        }
+
+        private void refresh() {
+            if (mIndexVersion != mVersion) {
+                Arrays.fill(mMatches, null);
+                mIndexVersion = mVersion;
+            } else if (mChecked < mCount) {
+                for (int id = mChecked; id < mCount; id++) {
+                    if (mWords[id] == null) {
+                        continue;
+                    }
+                    for (int index = 0; index < mTokens.length; index++) {
+                        if (mMatches[index] != null && mTokens[index].matches(mWords[id])) {
+                            mMatches[index].set(id);
+                        }
+                    }
+                }
+            }
+            for (int index = 0; index < mTokens.length; index++) {
+                if (mMatches[index] == null) {
+                    mMatches[index] = lookUp(mTokens[index]);
+                }
+            }
+            mChecked = mCount;
+        }
+
+        private boolean matchesAll(String[] words) {
+            for (Token token : mTokens) {
+                if (!token.matches(words)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int indexOf(String word) {
+            for (int index = 0; index < mTokens.length; index++) {
+                if (mTokens[index].mText.equals(word) && mMatches[index] != null) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+    }
+
+    private BitSet lookUp(Token token) {
+        BitSet matches = new BitSet();
+        TrieNode node = mRoot.find(token.mText);
+        if (node != null) {
+            node.mPostings.setAll(matches);
+        }
+        if (token.mGrams == null) {
+            return matches;
+        }
+        // Counts, per device, how many of the token's trigrams it has. Only ids that reach the
+        // threshold are touched twice.
+        int[] counts = mCounts;
+        for (long gram : token.mGrams) {
+            Postings postings = mTrigrams.get(gram);
+            if (postings == null) {
+                continue;
+            }
+            for (int index = 0; index < postings.mSize; index++) {
+                int id = postings.mIds[index];
+                if (++counts[id] == token.mThreshold) {
+                    matches.set(id);
+                }
+            }
+        }
+        for (long gram : token.mGrams) {
+            Postings postings = mTrigrams.get(gram);
+            if (postings != null) {
+                for (int index = 0; index < postings.mSize; index++) {
+                    counts[postings.mIds[index]] = 0;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private void addWords(int id, DeviceSnapshot<?> device) {
+        String[] words = wordsOf(device);
+        mWords[id] = words;
+        for (String word : words) {
+            mRoot.insert(word, id);
+            for (long gram : trigrams(word)) {
+                Postings postings = mTrigrams.get(gram);
+                if (postings == null) {
+                    postings = new Postings();
+                    mTrigrams.put(gram, postings);
+                }
+                postings.add(id);
+            }
+        }
+    }
+
+    private void removeWords(int id) {
+        for (String word : mWords[id]) {
+            mRoot.delete(word, id);
+            for (long gram : trigrams(word)) {
+                Postings postings = mTrigrams.get(gram);
+                if (postings != null && postings.remove(id) && postings.mSize == 0) {
+                    mTrigrams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private void addAttributes(int id, DeviceSnapshot<?> device) {
+        mByMajorClass[MajorDeviceClass.fromDeviceClass(device.getDeviceClassCode()).ordinal()]
+                .set(id);
+        int bond = bondIndex(device.getBondState());
+        if (bond >= 0) {
+            mByBondState[bond].set(id);
+        }
+    }
+
+    private void removeAttributes(int id, DeviceSnapshot<?> device) {
+        mByMajorClass[MajorDeviceClass.fromDeviceClass(device.getDeviceClassCode()).ordinal()]
+                .clear(id);
+        int bond = bondIndex(device.getBondState());
+        if (bond >= 0) {
+            mByBondState[bond].clear(id);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(BitSet ids, List<DeviceSnapshot<D>> devices) {
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            devices.add((DeviceSnapshot<D>) mDevices[id]);
+        }
+    }
+
+    private static int bondIndex(int bondState) {
+        switch (bondState) {
+            case BluetoothRadio.BOND_NONE:
+                return 0;
+            case BluetoothRadio.BOND_BONDING:
+                return 1;
+            case BluetoothRadio.BOND_BONDED:
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    private static boolean sameName(String first, String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    private static String[] wordsOf(DeviceSnapshot<?> device) {
+        String name = device.getName() != null ? device.getName() : device.getVendor();
+        return tokenize(name == null ? device.getAddress() : name + ' ' + device.getAddress());
+    }
+
+    /**
+     * Lower-cased runs of letters and digits.
+     */
+    static String[] tokenize(String text) {
+        if (text == null) {
+            return NO_WORDS;
+        }
+        ArrayList<String> words = new ArrayList<>();
+        int start = -1;
+        for (int index = 0; index <= text.length(); index++) {
+            boolean inWord = index < text.length() &&
+                    Character.isLetterOrDigit(text.charAt(index));
+            if (inWord && start < 0) {
+                start = index;
+            } else if (!inWord && start >= 0) {
+                words.add(text.substring(start, index).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * The distinct trigrams of the word, marked at its start so a first letter counts, each
+     * packed into a long.
+     */
+    static long[] trigrams(String word) {
+        if (word.length() < 2) {
+            return new long[0];
+        }
+        long[] grams = new long[word.length() - 1];
+        char first = '\0';
+        char second = word.charAt(0);
+        for (int index = 1; index < word.length(); index++) {
+            char third = word.charAt(index);
+            grams[index - 1] = ((long) first << 32) | ((long) second << 16) | third;
+            first = second;
+            second = third;
+        }
+        Arrays.sort(grams);
+        int distinct = 1;
+        for (int index = 1; index < grams.length; index++) {
+            if (grams[index] != grams[distinct - 1]) {
+                grams[distinct++] = grams[index];
+            }
+        }
+        return distinct == grams.length ? grams : Arrays.copyOf(grams, distinct);
+    }
+
+    private static final class Token {
+
+        final String mText;
+        // Null when the token is too short to match fuzzily.
+        final long[] mGrams;
+        final int mThreshold;
+
+        Token(String text) {
+            mText = text;
+            if (text.length() >= MIN_FUZZY_LENGTH) {
+                mGrams = trigrams(text);
+                mThreshold = (mGrams.length + 1) / 2;
+            } else {
+                mGrams = null;
+                mThreshold = 0;
+            }
+        }
+
+        boolean matches(String[] words) {
+            for (String word : words) {
+                if (word.startsWith(mText)) {
+                    return true;
+                }
+            }
+            if (mGrams == null) {
+                return false;
+            }
+            long[][] wordGrams = new long[words.length][];
+            for (int index = 0; index < words.length; index++) {
+                wordGrams[index] = trigrams(words[index]);
+            }
+            int found = 0;
+            for (long gram : mGrams) {
+                for (long[] grams : wordGrams) {
+                    if (Arrays.binarySearch(grams, gram) >= 0) {
+                        if (++found == mThreshold) {
+                            return true;
+                        }
+                        break;
+                    }
+                }
+            }
+            return false;
+        }
+
+    }
+
+    private static final class TrieNode {
+
+        private char[] mKeys = new char[0];
+        private TrieNode[] mChildren = new TrieNode[0];
+        // Every id with a word passing through this node.
+        final Postings mPostings = new Postings();
+
+        void insert(String word, int id) {
+            TrieNode node = this;
+            for (int index = 0; index < word.length(); index++) {
+                node = node.child(word.charAt(index), true);
+                node.mPostings.add(id);
+            }
+        }
+
+        void delete(String word, int id) {
+            TrieNode node = this;
+            for (int index = 0; index < word.length() && node != null; index++) {
+                node = node.child(word.charAt(index), false);
+                if (node != null) {
+                    node.mPostings.remove(id);
+                }
+            }
+        }
+
+        TrieNode find(String prefix) {
+            TrieNode node = this;
+            for (int index = 0; index < prefix.length() && node != null; index++) {
+                node = node.child(prefix.charAt(index), false);
+            }
+            return node;
+        }
+
+        void clear() {
+            mKeys = new char[0];
+            mChildren = new TrieNode[0];
+        }
+
+        private TrieNode child(char key, boolean create) {
+            int index = Arrays.binarySearch(mKeys, key);
+            if (index >= 0) {
+                return mChildren[index];
+            }
+            if (!create) {
+                return null;
+            }
+            index = -index - 1;
+            char[] keys = new char[mKeys.length + 1];
+            TrieNode[] children = new TrieNode[mKeys.length + 1];
+            System.arraycopy(mKeys, 0, keys, 0, index);
+            System.arraycopy(mChildren, 0, children, 0, index);
+            keys[index] = key;
+            children[index] = new TrieNode();
+            System.arraycopy(mKeys, index, keys, index + 1, mKeys.length - index);
+            System.arraycopy(mChildren, index, children, index + 1, mKeys.length - index);
+            mKeys = keys;
+            mChildren = children;
+            return children[index];
+        }
+
+    }
+
+    /**
+     * A sorted set of ids. Ids are mostly added in increasing order, so adding is usually an
+     * append.
+     */
+    private static final class Postings {
+
+        int[] mIds = new int[2];
+        int mSize;
+
+        void add(int id) {
+            int index = mSize == 0 || mIds[mSize - 1] < id ? -mSize - 1
+                    : Arrays.binarySearch(mIds, 0, mSize, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (mSize == mIds.length) {
+                mIds = Arrays.copyOf(mIds, mSize * 2);
+            }
+            System.arraycopy(mIds, index, mIds, index + 1, mSize - index);
+            mIds[index] = id;
+            mSize++;
+        }
+
+        boolean remove(int id) {
+            int index = Arrays.binarySearch(mIds, 0, mSize, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(mIds, index + 1, mIds, index, mSize - index - 1);
+            mSize--;
+            return true;
+        }
+
+        void setAll(BitSet bits) {
+            for (int index = 0; index < mSize; index++) {
+                bits.set(mIds[index]);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.example.bluetoothapp.core.service;
+
+import com.example.bluetoothapp.core.time.Clock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The services of each device, as last queried, persisted to a {@link ServiceCacheFile}. A
+ * record older than the time to live is forgotten, so the device is queried again. An inverted
+ * index from service UUID to addresses answers which devices offer a service without visiting
+ * every record. Changes are written in the background, batched into one rewrite per burst.
+ * When full, the record fetched longest ago is forgotten.
+ */
+public class ServiceCache {
+
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final long DEFAULT_TTL = 24 * 60 * 60 * 1000L;
+
+    private final ServiceCacheFile mFile;
+    private final Executor mWriteExecutor;
+    private final Clock mClock;
+    private final long mTtl;
+    private final int mCapacity;
+    private final AtomicLong mWriteErrors = new AtomicLong();
+
+    // Fetched longest ago first.
+    private final LinkedHashMap<String, ServiceRecord> mRecords = new LinkedHashMap<>();
+    private final HashMap<UUID, HashSet<String>> mIndex = new HashMap<>();
+    private boolean mWritePending;
+    private long mHits;
+    private long mMisses;
+
+    public ServiceCache(ServiceCacheFile file, Executor writeExecutor, Clock clock, long ttl,
+                        int capacity) {
+        mFile = file;
+        mWriteExecutor = writeExecutor;
+        mClock = clock;
+        mTtl = ttl;
+        mCapacity = capacity;
+    }
+
+    /**
+     * Reads the file on the calling thread, leaving out expired records. Records put before
+     * it was read are newer than the file's and are kept over them. A damaged file is read as
+     * far as it goes and then rewritten.
+     */
+    public void load() throws IOException {
+        ArrayList<ServiceRecord> records = new ArrayList<>();
+        boolean clean = mFile.read(records);
+        synchronized (this) {
+            ArrayList<ServiceRecord> newer = new ArrayList<>(mRecords.values());
+            mRecords.clear();
+            mIndex.clear();
+            long now = mClock.now();
+            int loaded = 0;
+            for (ServiceRecord record : records) {
+                if (!isExpired(record, now)) {
+                    putLocked(record);
+                    loaded++;
+                }
+            }
+            for (ServiceRecord record : newer) {
+                putLocked(record);
+            }
+            if (!clean || loaded < records.size() || !newer.isEmpty()) {
+                scheduleWrite();
+            }
+        }
+    }
+
+    /**
+     * The device's services, or null when not known or expired. Counted as a cache hit or
+     * miss.
+     */
+    public synchronized ServiceRecord lookup(String address) {
+        ServiceRecord record = get(address);
+        if (record == null) {
+            mMisses++;
+        } else {
+            mHits++;
+        }
+        return record;
+    }
+
+    /**
+     * Like {@link #lookup(String)}, without counting.
+     */
+    public synchronized ServiceRecord get(String address) {
+        ServiceRecord record = mRecords.get(address);
+        if (record != null && isExpired(record, mClock.now())) {
+            removeLocked(address);
+            scheduleWrite();
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * The addresses of the devices known to offer the service.
+     */
+    public synchronized Set<String> getAddresses(UUID uuid) {
+        HashSet<String> addresses = mIndex.get(uuid);
+        Set<String> offering = new HashSet<>();
+        if (addresses == null) {
+            return offering;
+        }
+        long now = mClock.now();
+        for (String address : addresses) {
+            if (!isExpired(mRecords.get(address), now)) {
+                offering.add(address);
+            }
+        }
+        return offering;
+    }
+
+    public synchronized void put(String address, List<UUID> uuids) {
+        putLocked(new ServiceRecord(address, uuids, mClock.now()));
+        scheduleWrite();
+    }
+
+    public synchronized int size() {
+        return mRecords.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    /**
+     * Share of lookups answered from the cache, or NaN before any.
+     */
+    public synchronized double getHitRate() {
+        long lookups = mHits + mMisses;
+        return lookups == 0 ? Double.NaN : (double) mHits / lookups;
+    }
+
+    public long getWriteErrorCount() {
+        return mWriteErrors.get();
+    }
+
+    private boolean isExpired(ServiceRecord record, long now) {
+        return now - record.getFetchedAt() >= mTtl;
+    }
+
+    private void putLocked(ServiceRecord record) {
+        removeLocked(record.getAddress());
+        mRecords.put(record.getAddress(), record);
+        for (UUID uuid : record.getUuids()) {
+            HashSet<String> addresses = mIndex.get(uuid);
+            if (addresses == null) {
+                addresses = new HashSet<>();
+                mIndex.put(uuid, addresses);
+            }
+            addresses.add(record.getAddress());
+        }
+        while (mRecords.size() > mCapacity) {
+            removeLocked(mRecords.keySet().iterator().next());
+        }
+    }
+
+    private void removeLocked(String address) {
+        ServiceRecord record = mRecords.remove(address);
+        if (record == null) {
+            return;
+        }
+        for (UUID uuid : record.getUuids()) {
+            HashSet<String> addresses = mIndex.get(uuid);
+            if (addresses != null && addresses.remove(address) && addresses.isEmpty()) {
+                mIndex.remove(uuid);
+            }
+        }
+    }
+
+    private void scheduleWrite() {
+        if (!mWritePending) {
+            mWritePending = true;
+            mWriteExecutor.execute(mWriteTask);
+        }
+    }
+
+    private final Runnable mWriteTask = new Runnable() {
+        @Override
+        public void run() {
+            ArrayList<ServiceRecord> records;
+            synchronized (ServiceCache.this) {
+                mWritePending = false;
+                records = new ArrayList<>(mRecords.values());
+            }
+            try {
+                mFile.rewrite(records);
+            } catch (IOException e) {
+                mWriteErrors.incrementAndGet();
+            }
+        }
+    };
+
+}
@@ -0,0 +1,113 @@
+package com.example.bluetoothapp.core.service;
+
+import com.example.bluetoothapp.core.device.MacAddress;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary file of {@link ServiceRecord}s. A record takes the 6 address bytes, the fetch time and
+ * 16 bytes per UUID. Records change rarely and in batches, so the file is always rewritten
+ * whole, next to the old one and renamed over it.
+ */
+public class ServiceCacheFile {
+
+    private static final int MAGIC = 0x42545355;
+    private static final int VERSION = 1;
+
+    private final File mFile;
+
+    public ServiceCacheFile(File file) {
+        mFile = file;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Adds every record in the file to the list. Returns false when the file has an unknown
+     * header or ends in a partly written record; the complete records are still added. A
+     * missing file is empty.
+     */
+    public boolean read(List<ServiceRecord> records) throws IOException {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+        } catch (FileNotFoundException e) {
+            return true;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return false;
+            }
+            while (true) {
+                long address = 0;
+                for (int index = 0; index < MacAddress.BYTES; index++) {
+                    int value = in.read();
+                    if (value < 0) {
+                        if (index == 0) {
+                            return true;
+                        }
+                        throw new EOFException();
+                    }
+                    address = (address << 8) | value;
+                }
+                long fetchedAt = in.readLong();
+                int count = in.readUnsignedShort();
+                List<UUID> uuids = new ArrayList<>(count);
+                for (int index = 0; index < count; index++) {
+                    uuids.add(new UUID(in.readLong(), in.readLong()));
+                }
+                records.add(new ServiceRecord(MacAddress.unpack(address), uuids, fetchedAt));
+            }
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    public void rewrite(Collection<ServiceRecord> records) throws IOException {
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            for (ServiceRecord record : records) {
+                if (!MacAddress.isValid(record.getAddress())) {
+                    continue;
+                }
+                long address = MacAddress.pack(record.getAddress());
+                for (int shift = 8 * (MacAddress.BYTES - 1); shift >= 0; shift -= 8) {
+                    out.writeByte((int) (address >>> shift));
+                }
+                out.writeLong(record.getFetchedAt());
+                out.writeShort(record.getUuids().size());
+                for (UUID uuid : record.getUuids()) {
+                    out.writeLong(uuid.getMostSignificantBits());
+                    out.writeLong(uuid.getLeastSignificantBits());
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Could not replace " + mFile);
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package com.example.bluetoothapp.core.service;
+
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.UuidFetcher;
+import com.example.bluetoothapp.core.reconnect.LatencyRecorder;
+import com.example.bluetoothapp.core.time.Clock;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Finds out which services the devices found by discovery offer. SDP needs the radio that
+ * inquiry is using, so the devices a scan found are only queried once it ends, each one the
+ * {@link ServiceCache} has no fresh record of. Queries run as background operations of the
+ * {@link RadioOperationScheduler}, with no more than the in-flight limit submitted at once so
+ * a long batch never stands in front of a scan or a connect. Answers, asked for or not, go
+ * into the cache; a failed query is not remembered, so the next scan tries again.
+ * <p>
+ * The owner forwards the radio's discovery events and opens the fetcher with this as its
+ * callback.
+ */
+public class ServiceDiscovery<D> implements UuidFetcher.Callback<D> {
+
+    public interface Listener {
+
+        void onServicesFound(String address, List<UUID> uuids);
+
+    }
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 2;
+
+    private static final int LATENCY_SAMPLES = 256;
+
+    private final BluetoothRadio<D> mRadio;
+    private final UuidFetcher<D> mFetcher;
+    private final RadioOperationScheduler mOperations;
+    private final ServiceCache mCache;
+    private final Clock mClock;
+    private final int mMaxInFlight;
+    private Listener mListener;
+
+    // Found since the scan started.
+    private final LinkedHashMap<String, D> mFound = new LinkedHashMap<>();
+    private final ArrayDeque<D> mWaiting = new ArrayDeque<>();
+    private final HashMap<String, Query> mQueries = new HashMap<>();
+    private int mInFlight;
+    private final LatencyRecorder mRoundTrips = new LatencyRecorder(LATENCY_SAMPLES);
+    private long mFailedCount;
+
+    private final class Query extends RadioOperationScheduler.Operation {
+
+        final String mAddress;
+        final D mDevice;
+        // Set while submitted to the operations.
+        boolean mSubmitted;
+        long mStarted;
+
+        Query(String address, D device) {
+            mAddress = address;
+            mDevice = device;
+        }
+
+        @Override
+        protected boolean start() {
+            synchronized (ServiceDiscovery.this) {
+                mStarted = mClock.now();
+            }
+            return mFetcher.fetchUuids(mDevice);
+        }
+
+        @Override
+        protected void onEnded(RadioOperationScheduler.Result result) {
+            synchronized (ServiceDiscovery.this) {
+                if (result != RadioOperationScheduler.Result.COMPLETED) {
+                    mFailedCount++;
+                }
+                if (mQueries.get(mAddress) == this) {
+                    mQueries.remove(mAddress);
+                }
+                mInFlight--;
+                submitWaiting();
+            }
+        }
+
+    }
+
+    public ServiceDiscovery(BluetoothRadio<D> radio, UuidFetcher<D> fetcher,
+                            RadioOperationScheduler operations, ServiceCache cache, Clock clock,
+                            int maxInFlight) {
+        mRadio = radio;
+        mFetcher = fetcher;
+        mOperations = operations;
+        mCache = cache;
+        mClock = clock;
+        mMaxInFlight = maxInFlight;
+    }
+
+    public synchronized void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public synchronized void onDiscoveryStarted() {
+        mFound.clear();
+    }
+
+    public synchronized void onDeviceFound(D device) {
+        String address = mRadio.getAddress(device);
+        if (!mFound.containsKey(address)) {
+            mFound.put(address, device);
+        }
+    }
+
+    /**
+     * Queues the devices the scan found for a query.
+     */
+    public synchronized void onDiscoveryFinished() {
+        for (D device : mFound.values()) {
+            request(device);
+        }
+        mFound.clear();
+    }
+
+    /**
+     * Queries the device unless its services are cached or a query is already waiting.
+     */
+    public synchronized void request(D device) {
+        String address = mRadio.getAddress(device);
+        if (mQueries.containsKey(address) || mCache.lookup(address) != null) {
+            return;
+        }
+        mQueries.put(address, new Query(address, device));
+        mWaiting.addLast(device);
+        submitWaiting();
+    }
+
+    @Override
+    public void onUuids(D device, List<UUID> uuids) {
+        String address = mRadio.getAddress(device);
+        Query query;
+        Listener listener;
+        synchronized (this) {
+            query = mQueries.get(address);
+            if (query != null && query.mSubmitted && query.isRunning() && !uuids.isEmpty()) {
+                mRoundTrips.record(mClock.now() - query.mStarted);
+            }
+            if (!uuids.isEmpty()) {
+                mCache.put(address, uuids);
+                if (query != null && !query.mSubmitted) {
+                    // Answered before its turn; the waiting entry is skipped.
+                    mQueries.remove(address);
+                }
+            }
+            listener = uuids.isEmpty() ? null : mListener;
+        }
+        if (query != null && query.mSubmitted) {
+            query.finish(!uuids.isEmpty());
+        }
+        if (listener != null) {
+            listener.onServicesFound(address, uuids);
+        }
+    }
+
+    /**
+     * Drops the queries not yet answered.
+     */
+    public void cancelAll() {
+        HashMap<String, Query> queries;
+        synchronized (this) {
+            queries = new HashMap<>(mQueries);
+            mQueries.clear();
+            mWaiting.clear();
+            mFound.clear();
+        }
+        for (Query query : queries.values()) {
+            query.cancel();
+        }
+    }
+
+    /**
+     * Devices waiting for or in a query.
+     */
+    public synchronized int getPendingCount() {
+        return mQueries.size();
+    }
+
+    public synchronized long getFailedCount() {
+        return mFailedCount;
+    }
+
+    /**
+     * Milliseconds from the start of a query to its answer, for those answered.
+     */
+    public LatencyRecorder getRoundTrips() {
+        return mRoundTrips;
+    }
+
+    public ServiceCache getCache() {
+        return mCache;
+    }
+
+    private void submitWaiting() {
+        while (mInFlight < mMaxInFlight && !mWaiting.isEmpty()) {
+            Query query = mQueries.get(mRadio.getAddress(mWaiting.pollFirst()));
+            if (query == null || query.mSubmitted) {
+                continue;
+            }
+            query.mSubmitted = true;
+            mInFlight++;
+            mOperations.submit(query, RadioOperationScheduler.Kind.SDP,
+                    RadioOperationScheduler.PRIORITY_BACKGROUND,
+                    RadioOperationScheduler.NO_DEADLINE);
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.example.bluetoothapp.core.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The services a device offered when it was last queried. fetchedAt is wall-clock
+ * milliseconds.
+ */
+public final class ServiceRecord {
+
+    private final String mAddress;
+    private final List<UUID> mUuids;
+    private final long mFetchedAt;
+
+    public ServiceRecord(String address, List<UUID> uuids, long fetchedAt) {
+        mAddress = address;
+        mUuids = Collections.unmodifiableList(new ArrayList<>(uuids));
+        mFetchedAt = fetchedAt;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public List<UUID> getUuids() {
+        return mUuids;
+    }
+
+    public long getFetchedAt() {
+        return mFetchedAt;
+    }
+
+    public boolean offers(UUID uuid) {
+        return mUuids.contains(uuid);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ServiceRecord)) {
+            return false;
+        }
+        ServiceRecord record = (ServiceRecord) other;
+        return mAddress.equals(record.mAddress) && mUuids.equals(record.mUuids) &&
+                mFetchedAt == record.mFetchedAt;
+    }
+
+    @Override
+    public int hashCode() {
+        return mAddress.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mAddress + " " + mUuids;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.example.bluetoothapp.core.service;
+
+import java.util.UUID;
+
+/**
+ * Service class UUIDs of the profiles the app cares about, from the Bluetooth assigned numbers.
+ */
+public final class ServiceUuids {
+
+    private static final long BASE_LEAST_SIGNIFICANT = 0x800000805F9B34FBL;
+
+    public static final UUID SERIAL_PORT = fromShort(0x1101);
+    public static final UUID OBEX_OBJECT_PUSH = fromShort(0x1105);
+    public static final UUID HEADSET = fromShort(0x1108);
+    public static final UUID AUDIO_SOURCE = fromShort(0x110A);
+    public static final UUID AUDIO_SINK = fromShort(0x110B);
+    public static final UUID AV_REMOTE_CONTROL = fromShort(0x110E);
+    public static final UUID PANU = fromShort(0x1115);
+    public static final UUID HANDSFREE = fromShort(0x111E);
+    public static final UUID HID = fromShort(0x1124);
+
+    private ServiceUuids() {
+    }
+
+    /**
+     * The full UUID of a 16-bit assigned number.
+     */
+    public static UUID fromShort(int shortUuid) {
+        return new UUID(((long) (shortUuid & 0xFFFF) << 32) | 0x1000L, BASE_LEAST_SIGNIFICANT);
+    }
+
+}
@@ -0,0 +1,342 @@
+package com.example.bluetoothapp.core.signal;
+
+import java.util.Arrays;
+
+/**
+ * A running estimate of each device's RSSI, smoothed by a one-dimensional Kalman filter, and the
+ * devices ordered by it. Devices are keyed by packed address (see MacAddress) and given a slot
+ * in primitive arrays; an indexed max-heap over the slots is adjusted on every sample, so the
+ * nearest devices are read without sorting. Samples for known devices allocate nothing.
+ * <p>
+ * With a maximum age, devices not sampled for that long are dropped before the arrays grow and
+ * when the nearest are read, so the tracker stays sized to the devices actually around.
+ */
+public class SignalTracker {
+
+    /**
+     * Variance, in dBm squared, a device's signal is assumed to drift by per millisecond.
+     */
+    public static final double DEFAULT_PROCESS_NOISE = 0.02;
+
+    /**
+     * Variance, in dBm squared, of a single RSSI reading.
+     */
+    public static final double DEFAULT_MEASUREMENT_NOISE = 16;
+
+    public static final long NO_MAX_AGE = Long.MAX_VALUE;
+
+    private static final int EMPTY = -1;
+    private static final long NO_ADDRESS = -1L;
+
+    private final double mProcessNoise;
+    private final double mMeasurementNoise;
+    private final long mMaxAge;
+    // The time of the latest sample.
+    private long mNow = Long.MIN_VALUE;
+
+    // Open-addressing table from address to slot.
+    private int[] mTable;
+
+    private long[] mAddresses;
+    private double[] mEstimates;
+    private double[] mVariances;
+    private long[] mUpdated;
+    private int[] mSamples;
+    private int[] mHeapPositions;
+    private int mSize;
+
+    // mHeap[0] is the slot with the strongest signal.
+    private int[] mHeap;
+    // Heap positions still to visit while reading the nearest devices.
+    private int[] mCandidates;
+
+    public SignalTracker(int expectedDevices) {
+        this(expectedDevices, NO_MAX_AGE);
+    }
+
+    public SignalTracker(int expectedDevices, long maxAge) {
+        this(expectedDevices, maxAge, DEFAULT_PROCESS_NOISE, DEFAULT_MEASUREMENT_NOISE);
+    }
+
+    public SignalTracker(int expectedDevices, double processNoise, double measurementNoise) {
+        this(expectedDevices, NO_MAX_AGE, processNoise, measurementNoise);
+    }
+
+    public SignalTracker(int expectedDevices, long maxAge, double processNoise,
+                         double measurementNoise) {
+        if (processNoise < 0 || measurementNoise <= 0) {
+            throw new IllegalArgumentException("Noise must be positive");
+        }
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException("Maximum age must be positive");
+        }
+        mProcessNoise = processNoise;
+        mMeasurementNoise = measurementNoise;
+        mMaxAge = maxAge;
+        allocate(Math.max(8, expectedDevices));
+    }
+
+    /**
+     * Folds in one reading of the device's signal, taken at now milliseconds.
+     */
+    public synchronized void update(long address, int rssi, long now) {
+        mNow = Math.max(mNow, now);
+        int index = find(mTable, address);
+        int slot = mTable[index];
+        if (slot == EMPTY) {
+            if (mSize == mAddresses.length) {
+                if (evictStale() == 0) {
+                    grow();
+                }
+                index = find(mTable, address);
+            }
+            slot = mSize++;
+            mTable[index] = slot;
+            mAddresses[slot] = address;
+            mEstimates[slot] = rssi;
+            mVariances[slot] = mMeasurementNoise;
+            mUpdated[slot] = now;
+            mSamples[slot] = 1;
+            mHeap[slot] = slot;
+            mHeapPositions[slot] = slot;
+            siftUp(slot);
+            return;
+        }
+        double previous = mEstimates[slot];
+        double variance = mVariances[slot] + mProcessNoise * Math.max(0, now - mUpdated[slot]);
+        double gain = variance / (variance + mMeasurementNoise);
+        mEstimates[slot] = previous + gain * (rssi - previous);
+        mVariances[slot] = (1 - gain) * variance;
+        mUpdated[slot] = Math.max(now, mUpdated[slot]);
+        mSamples[slot]++;
+        if (mEstimates[slot] > previous) {
+            siftUp(mHeapPositions[slot]);
+        } else {
+            siftDown(mHeapPositions[slot]);
+        }
+    }
+
+    /**
+     * The smoothed RSSI in dBm, or NaN for a device never sampled.
+     */
+    public synchronized double getRssi(long address) {
+        int slot = mTable[find(mTable, address)];
+        return slot == EMPTY ? Double.NaN : mEstimates[slot];
+    }
+
+    public synchronized int getSampleCount(long address) {
+        int slot = mTable[find(mTable, address)];
+        return slot == EMPTY ? 0 : mSamples[slot];
+    }
+
+    /**
+     * Fills addresses with up to its length of the devices with the strongest signal, strongest
+     * first, skipping those not sampled since the given time. Returns how many were written.
+     */
+    public synchronized int getNearest(long[] addresses, long since) {
+        evictStale();
+        if (mSize == 0 || addresses.length == 0) {
+            return 0;
+        }
+        // Walks the heap best-first: the next strongest is always the root or a child of one
+        // already taken, so only about k positions are looked at.
+        int found = 0;
+        int candidates = 0;
+        mCandidates[candidates++] = 0;
+        while (candidates > 0 && found < addresses.length) {
+            int position = mCandidates[0];
+            mCandidates[0] = mCandidates[--candidates];
+            siftDownCandidate(candidates);
+            int slot = mHeap[position];
+            if (mUpdated[slot] >= since) {
+                addresses[found++] = mAddresses[slot];
+            }
+            for (int child = 2 * position + 1; child <= 2 * position + 2; child++) {
+                if (child < mSize) {
+                    mCandidates[candidates] = child;
+                    siftUpCandidate(candidates++);
+                }
+            }
+        }
+        return found;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Forgets the device, as when it is known to have gone. Returns whether it was tracked.
+     */
+    public synchronized boolean remove(long address) {
+        return mTable[find(mTable, address)] != EMPTY && removeWhere(Long.MIN_VALUE, address) > 0;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(mTable, EMPTY);
+        mSize = 0;
+    }
+
+    private int evictStale() {
+        if (mMaxAge == NO_MAX_AGE || mNow == Long.MIN_VALUE) {
+            return 0;
+        }
+        return removeWhere(mNow - mMaxAge, NO_ADDRESS);
+    }
+
+    // Drops the device and those last sampled before the given time, then rebuilds the table
+    // and the heap over the slots left.
+    private int removeWhere(long before, long address) {
+        int kept = 0;
+        for (int slot = 0; slot < mSize; slot++) {
+            if (mUpdated[slot] < before || mAddresses[slot] == address) {
+                continue;
+            }
+            mAddresses[kept] = mAddresses[slot];
+            mEstimates[kept] = mEstimates[slot];
+            mVariances[kept] = mVariances[slot];
+            mUpdated[kept] = mUpdated[slot];
+            mSamples[kept] = mSamples[slot];
+            kept++;
+        }
+        int removed = mSize - kept;
+        if (removed == 0) {
+            return 0;
+        }
+        mSize = kept;
+        Arrays.fill(mTable, EMPTY);
+        for (int slot = 0; slot < mSize; slot++) {
+            mTable[find(mTable, mAddresses[slot])] = slot;
+            place(slot, slot);
+        }
+        for (int position = mSize / 2 - 1; position >= 0; position--) {
+            siftDown(position);
+        }
+        return removed;
+    }
+
+    private void allocate(int capacity) {
+        int tableSize = 16;
+        while (tableSize < capacity * 2) {
+            tableSize <<= 1;
+        }
+        mTable = new int[tableSize];
+        Arrays.fill(mTable, EMPTY);
+        mAddresses = new long[capacity];
+        mEstimates = new double[capacity];
+        mVariances = new double[capacity];
+        mUpdated = new long[capacity];
+        mSamples = new int[capacity];
+        mHeapPositions = new int[capacity];
+        mHeap = new int[capacity];
+        mCandidates = new int[capacity + 1];
+    }
+
+    private void grow() {
+        long[] addresses = mAddresses;
+        double[] estimates = mEstimates;
+        double[] variances = mVariances;
+        long[] updated = mUpdated;
+        int[] samples = mSamples;
+        int[] heapPositions = mHeapPositions;
+        int[] heap = mHeap;
+        allocate(addresses.length * 2);
+        System.arraycopy(addresses, 0, mAddresses, 0, mSize);
+        System.arraycopy(estimates, 0, mEstimates, 0, mSize);
+        System.arraycopy(variances, 0, mVariances, 0, mSize);
+        System.arraycopy(updated, 0, mUpdated, 0, mSize);
+        System.arraycopy(samples, 0, mSamples, 0, mSize);
+        System.arraycopy(heapPositions, 0, mHeapPositions, 0, mSize);
+        System.arraycopy(heap, 0, mHeap, 0, mSize);
+        for (int slot = 0; slot < mSize; slot++) {
+            mTable[find(mTable, mAddresses[slot])] = slot;
+        }
+    }
+
+    private int find(int[] table, long address) {
+        int mask = table.length - 1;
+        int index = (int) ((address * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (table[index] != EMPTY && mAddresses[table[index]] != address) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void siftUp(int position) {
+        int slot = mHeap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (mEstimates[mHeap[parent]] >= mEstimates[slot]) {
+                break;
+            }
+            place(mHeap[parent], position);
+            position = parent;
+        }
+        place(slot, position);
+    }
+
+    private void siftDown(int position) {
+        int slot = mHeap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= mSize) {
+                break;
+            }
+            if (child + 1 < mSize && mEstimates[mHeap[child + 1]] > mEstimates[mHeap[child]]) {
+                child++;
+            }
+            if (mEstimates[mHeap[child]] <= mEstimates[slot]) {
+                break;
+            }
+            place(mHeap[child], position);
+            position = child;
+        }
+        place(slot, position);
+    }
+
+    private void place(int slot, int position) {
+        mHeap[position] = slot;
+        mHeapPositions[slot] = position;
+    }
+
+    private double candidateRssi(int candidate) {
+        return mEstimates[mHeap[mCandidates[candidate]]];
+    }
+
+    private void siftUpCandidate(int candidate) {
+        int position = mCandidates[candidate];
+        while (candidate > 0) {
+            int parent = (candidate - 1) >>> 1;
+            if (candidateRssi(parent) >= mEstimates[mHeap[position]]) {
+                break;
+            }
+            mCandidates[candidate] = mCandidates[parent];
+            candidate = parent;
+        }
+        mCandidates[candidate] = position;
+    }
+
+    private void siftDownCandidate(int count) {
+        if (count == 0) {
+            return;
+        }
+        int position = mCandidates[0];
+        int candidate = 0;
+        while (true) {
+            int child = 2 * candidate + 1;
+            if (child >= count) {
+                break;
+            }
+            if (child + 1 < count && candidateRssi(child + 1) > candidateRssi(child)) {
+                child++;
+            }
+            if (candidateRssi(child) <= mEstimates[mHeap[position]]) {
+                break;
+            }
+            mCandidates[candidate] = mCandidates[child];
+            candidate = child;
+        }
+        mCandidates[candidate] = position;
+    }
+
+}
@@ -0,0 +1,291 @@
+package com.example.bluetoothapp.core.stream;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A hot publisher: every item published goes to the subscribers present at the time. Each
+ * subscriber has its own bounded buffer, drained on the delivery executor only as far as it has
+ * requested, so a slow subscriber costs the publisher nothing unless it chose
+ * {@link OverflowPolicy#BLOCK}.
+ */
+public class EventPublisher<T> implements Publisher<T> {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64;
+
+    /**
+     * Delivers on the thread that publishes, requests or subscribes.
+     */
+    public static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Executor mDeliveryExecutor;
+    private final AtomicLong mDropped = new AtomicLong();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private volatile Inner[] mSubscribers = new EventPublisher.Inner[0];
+    private boolean mDone;
+    private Throwable mError;
+
+    public EventPublisher(Executor deliveryExecutor) {
+        mDeliveryExecutor = deliveryExecutor;
+    }
+
+    /**
+     * Subscribes with a buffer of {@link #DEFAULT_BUFFER_SIZE} that drops the oldest item when
+     * full.
+     */
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        subscribe(subscriber, DEFAULT_BUFFER_SIZE, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * With {@link OverflowPolicy#LATEST} the buffer size is ignored; it holds a single item.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void subscribe(Subscriber<? super T> subscriber, int bufferSize,
+                          OverflowPolicy policy) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize < 1: " + bufferSize);
+        }
+        Inner inner = new Inner(subscriber,
+                policy == OverflowPolicy.LATEST ? 1 : bufferSize, policy);
+        synchronized (this) {
+            if (mDone) {
+                inner.terminate(mError);
+            } else {
+                Inner[] subscribers = mSubscribers;
+                Inner[] added = new EventPublisher.Inner[subscribers.length + 1];
+                System.arraycopy(subscribers, 0, added, 0, subscribers.length);
+                added[subscribers.length] = inner;
+                mSubscribers = added;
+            }
+        }
+        inner.drain();
+    }
+
+    /**
+     * Hands the item to every subscriber. Returns at once unless a subscriber with
+     * {@link OverflowPolicy#BLOCK} has a full buffer.
+     */
+    public void publish(T item) {
+        if (item == null) {
+            throw new NullPointerException("item");
+        }
+        for (Inner inner : mSubscribers) {
+            inner.offer(item);
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return mSubscribers.length > 0;
+    }
+
+    public int getSubscriberCount() {
+        return mSubscribers.length;
+    }
+
+    /**
+     * Items thrown away by full DROP_OLDEST and LATEST buffers, over all subscribers.
+     */
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    /**
+     * Completes every subscriber once its buffer is drained. Later subscribers complete at once.
+     */
+    public void close() {
+        terminate(null);
+    }
+
+    public void fail(Throwable error) {
+        if (error == null) {
+            throw new NullPointerException("error");
+        }
+        terminate(error);
+    }
+
+    private void terminate(Throwable error) {
+        Inner[] subscribers;
+        synchronized (this) {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            mError = error;
+            subscribers = mSubscribers;
+        }
+        for (Inner inner : subscribers) {
+            inner.terminate(error);
+            inner.drain();
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private synchronized void remove(Inner inner) {
+        Inner[] subscribers = mSubscribers;
+        for (int index = 0; index < subscribers.length; index++) {
+            if (subscribers[index] == inner) {
+                Inner[] removed = new EventPublisher.Inner[subscribers.length - 1];
+                System.arraycopy(subscribers, 0, removed, 0, index);
+                System.arraycopy(subscribers, index + 1, removed, index,
+                        subscribers.length - index - 1);
+                mSubscribers = removed;
+                return;
+            }
+        }
+    }
+
+    private final class Inner implements Subscription, Runnable {
+
+        private final Subscriber<? super T> mSubscriber;
+        private final int mCapacity;
+        private final OverflowPolicy mPolicy;
+        private final ArrayDeque<T> mBuffer;
+        private final AtomicInteger mWork = new AtomicInteger();
+        private long mRequested;
+        private boolean mSubscribed;
+        private boolean mDone;
+        private Throwable mError;
+        private volatile boolean mCancelled;
+
+        Inner(Subscriber<? super T> subscriber, int capacity, OverflowPolicy policy) {
+            mSubscriber = subscriber;
+            mCapacity = capacity;
+            mPolicy = policy;
+            mBuffer = new ArrayDeque<>(Math.min(capacity, DEFAULT_BUFFER_SIZE));
+        }
+
+        void offer(T item) {
+            synchronized (this) {
+                if (mCancelled || mDone) {
+                    return;
+                }
+                if (mPolicy == OverflowPolicy.BLOCK) {
+                    boolean interrupted = false;
+                    while (mBuffer.size() >= mCapacity && !mCancelled) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (mCancelled) {
+                        return;
+                    }
+                } else if (mBuffer.size() >= mCapacity) {
+                    mBuffer.pollFirst();
+                    mDropped.incrementAndGet();
+                }
+                mBuffer.addLast(item);
+            }
+            drain();
+        }
+
+        synchronized void terminate(Throwable error) {
+            mDone = true;
+            mError = error;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                mSubscriber.onError(new IllegalArgumentException("request " + n));
+                return;
+            }
+            synchronized (this) {
+                mRequested += n;
+                if (mRequested < 0) {
+                    mRequested = Long.MAX_VALUE;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                mCancelled = true;
+                mBuffer.clear();
+                notifyAll();
+            }
+            remove(this);
+        }
+
+        void drain() {
+            if (mWork.getAndIncrement() == 0) {
+                mDeliveryExecutor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                if (!mSubscribed) {
+                    mSubscribed = true;
+                    mSubscriber.onSubscribe(this);
+                }
+                if (deliver()) {
+                    return;
+                }
+                missed = mWork.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Delivers what demand allows. Returns true once the subscriber is finished with.
+         */
+        private boolean deliver() {
+            while (true) {
+                T item;
+                Throwable error;
+                synchronized (this) {
+                    if (mCancelled) {
+                        return true;
+                    }
+                    item = mBuffer.isEmpty() || mRequested == 0 ? null : mBuffer.pollFirst();
+                    if (item == null && !(mDone && mBuffer.isEmpty())) {
+                        return false;
+                    }
+                    if (item != null) {
+                        if (mRequested != Long.MAX_VALUE) {
+                            mRequested--;
+                        }
+                        notifyAll();
+                    } else {
+                        mCancelled = true;
+                    }
+                    error = mError;
+                }
+                if (item != null) {
+                    mSubscriber.onNext(item);
+                    continue;
+                }
+                remove(this);
+                if (error != null) {
+                    mSubscriber.onError(error);
+                } else {
+                    mSubscriber.onComplete();
+                }
+                return true;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.example.bluetoothapp.core.stream;
+
+/**
+ * What happens when an item arrives for a subscriber whose buffer is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Drop the oldest buffered item to make room.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Keep only the most recent item; the buffer holds one.
+     */
+    LATEST,
+
+    /**
+     * Make the publishing thread wait for room.
+     */
+    BLOCK
+
+}
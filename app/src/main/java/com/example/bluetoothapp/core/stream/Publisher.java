@@ -0,0 +1,12 @@
+package com.example.bluetoothapp.core.stream;
+
+/**
+ * A source of items for any number of subscribers, in the style of the Reactive Streams
+ * interfaces, which java.util.concurrent.Flow only gained on API levels this app does not
+ * require.
+ */
+public interface Publisher<T> {
+
+    void subscribe(Subscriber<? super T> subscriber);
+
+}
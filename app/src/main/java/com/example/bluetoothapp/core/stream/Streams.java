@@ -0,0 +1,198 @@
+package com.example.bluetoothapp.core.stream;
+
+import com.example.bluetoothapp.core.time.Scheduler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Operators over publishers. Each subscriber to an operator gets its own subscription to the
+ * source, taken with unbounded demand; the operator's output is buffered per subscriber like
+ * any {@link EventPublisher}. The source subscription ends when the subscriber cancels, on the
+ * next item after.
+ */
+public final class Streams {
+
+    public interface Key<T, K> {
+
+        /**
+         * Null keys are never considered duplicates.
+         */
+        K of(T item);
+
+    }
+
+    private Streams() {
+    }
+
+    /**
+     * Batches items into lists, each holding what arrived within windowMillis of the first.
+     * Empty windows are not published.
+     */
+    public static <T> Publisher<List<T>> window(final Publisher<T> source,
+                                                final long windowMillis,
+                                                final Scheduler scheduler) {
+        return new Publisher<List<T>>() {
+            @Override
+            public void subscribe(Subscriber<? super List<T>> subscriber) {
+                EventPublisher<List<T>> windows = new EventPublisher<>(EventPublisher.DIRECT);
+                windows.subscribe(subscriber);
+                source.subscribe(new WindowSubscriber<>(windows, windowMillis, scheduler));
+            }
+        };
+    }
+
+    /**
+     * Passes on only the first item for each key.
+     */
+    public static <T, K> Publisher<T> distinct(final Publisher<T> source,
+                                               final Key<? super T, K> key) {
+        return new Publisher<T>() {
+            @Override
+            public void subscribe(Subscriber<? super T> subscriber) {
+                EventPublisher<T> distinct = new EventPublisher<>(EventPublisher.DIRECT);
+                distinct.subscribe(subscriber);
+                source.subscribe(new DistinctSubscriber<>(distinct, key));
+            }
+        };
+    }
+
+    /**
+     * Forwards to an output publisher, giving up the source once nobody is subscribed to it.
+     */
+    private abstract static class OperatorSubscriber<T, R> implements Subscriber<T> {
+
+        final EventPublisher<R> mOutput;
+        private Subscription mSubscription;
+
+        OperatorSubscriber(EventPublisher<R> output) {
+            mOutput = output;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            mSubscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public final void onNext(T item) {
+            if (!mOutput.hasSubscribers()) {
+                mSubscription.cancel();
+                onCancel();
+                return;
+            }
+            onItem(item);
+        }
+
+        abstract void onItem(T item);
+
+        void onCancel() {
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            mOutput.fail(error);
+        }
+
+        @Override
+        public void onComplete() {
+            mOutput.close();
+        }
+
+    }
+
+    private static final class WindowSubscriber<T> extends OperatorSubscriber<T, List<T>>
+            implements Runnable {
+
+        private final long mWindowMillis;
+        private final Scheduler mScheduler;
+        private List<T> mWindow = new ArrayList<>();
+        private Scheduler.Cancellable mFlush;
+
+        WindowSubscriber(EventPublisher<List<T>> output, long windowMillis, Scheduler scheduler) {
+            super(output);
+            mWindowMillis = windowMillis;
+            mScheduler = scheduler;
+        }
+
+        @Override
+        void onItem(T item) {
+            synchronized (this) {
+                mWindow.add(item);
+                if (mFlush == null) {
+                    mFlush = mScheduler.schedule(this, mWindowMillis);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            List<T> window;
+            synchronized (this) {
+                mFlush = null;
+                if (mWindow.isEmpty()) {
+                    return;
+                }
+                window = mWindow;
+                mWindow = new ArrayList<>();
+            }
+            mOutput.publish(window);
+        }
+
+        @Override
+        void onCancel() {
+            synchronized (this) {
+                if (mFlush != null) {
+                    mFlush.cancel();
+                    mFlush = null;
+                }
+                mWindow.clear();
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            flushNow();
+            super.onError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            flushNow();
+            super.onComplete();
+        }
+
+        private void flushNow() {
+            synchronized (this) {
+                if (mFlush != null) {
+                    mFlush.cancel();
+                }
+            }
+            run();
+        }
+
+    }
+
+    private static final class DistinctSubscriber<T, K> extends OperatorSubscriber<T, T> {
+
+        private final Key<? super T, K> mKey;
+        private final HashSet<K> mSeen = new HashSet<>();
+
+        DistinctSubscriber(EventPublisher<T> output, Key<? super T, K> key) {
+            super(output);
+            mKey = key;
+        }
+
+        @Override
+        void onItem(T item) {
+            K key = mKey.of(item);
+            if (key == null || mSeen.add(key)) {
+                mOutput.publish(item);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.example.bluetoothapp.core.stream;
+
+/**
+ * Receives items from a {@link Publisher}: onSubscribe first, then onNext for as many items as
+ * requested, then at most one of onError or onComplete. Calls are never concurrent.
+ */
+public interface Subscriber<T> {
+
+    void onSubscribe(Subscription subscription);
+
+    void onNext(T item);
+
+    void onError(Throwable error);
+
+    void onComplete();
+
+}
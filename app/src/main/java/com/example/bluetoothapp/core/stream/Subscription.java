@@ -0,0 +1,12 @@
+package com.example.bluetoothapp.core.stream;
+
+public interface Subscription {
+
+    /**
+     * Allows n more items to be delivered. Long.MAX_VALUE asks for everything.
+     */
+    void request(long n);
+
+    void cancel();
+
+}
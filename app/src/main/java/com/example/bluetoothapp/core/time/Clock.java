@@ -0,0 +1,25 @@
+package com.example.bluetoothapp.core.time;
+
+public interface Clock {
+
+    Clock MONOTONIC = new Clock() {
+        @Override
+        public long now() {
+            return System.nanoTime() / 1000000L;
+        }
+    };
+
+    Clock WALL = new Clock() {
+        @Override
+        public long now() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * Milliseconds. {@link #MONOTONIC} readings only make sense as differences; {@link #WALL}
+     * readings can be stored and compared across runs.
+     */
+    long now();
+
+}
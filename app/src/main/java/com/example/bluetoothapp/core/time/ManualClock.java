@@ -0,0 +1,31 @@
+package com.example.bluetoothapp.core.time;
+
+/**
+ * A clock that only moves when told to, for tests and simulations.
+ */
+public class ManualClock implements Clock {
+
+    private volatile long mNow;
+
+    public ManualClock() {
+        this(0);
+    }
+
+    public ManualClock(long now) {
+        mNow = now;
+    }
+
+    @Override
+    public long now() {
+        return mNow;
+    }
+
+    public synchronized void advance(long millis) {
+        mNow += millis;
+    }
+
+    public synchronized void set(long now) {
+        mNow = now;
+    }
+
+}
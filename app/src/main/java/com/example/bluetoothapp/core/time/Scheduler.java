@@ -0,0 +1,16 @@
+package com.example.bluetoothapp.core.time;
+
+/**
+ * Runs tasks after a delay. Implementations run their tasks one at a time.
+ */
+public interface Scheduler {
+
+    interface Cancellable {
+
+        void cancel();
+
+    }
+
+    Cancellable schedule(Runnable task, long delayMillis);
+
+}
@@ -0,0 +1,144 @@
+package com.example.bluetoothapp.core.time;
+
+import java.util.ArrayList;
+
+/**
+ * Many coarse deadlines behind a single scheduler timer. Time is cut into ticks and each
+ * deadline is hashed into the slot of its tick, so adding one is constant time whatever the
+ * number pending. The timer only wakes for the next slot holding anything, and due items are
+ * handed to the callback, outside the lock, up to a tick late. There is no cancelling: an item
+ * that no longer needs its deadline is expected to ignore it.
+ */
+public class TimerWheel<T> {
+
+    public interface Callback<T> {
+
+        void onExpired(T item);
+
+    }
+
+    private static final class Entry<T> {
+
+        final T mItem;
+        final long mTick;
+
+        Entry(T item, long tick) {
+            mItem = item;
+            mTick = tick;
+        }
+
+    }
+
+    private final Clock mClock;
+    private final Scheduler mScheduler;
+    private final long mTickMillis;
+    private final ArrayList<Entry<T>>[] mSlots;
+    private final Callback<T> mCallback;
+    // Ticks up to and including this one have been expired.
+    private long mTick;
+    private int mSize;
+    private Scheduler.Cancellable mTimer;
+    private long mTimerTick = Long.MAX_VALUE;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel(Clock clock, Scheduler scheduler, long tickMillis, int slots,
+                      Callback<T> callback) {
+        if (tickMillis <= 0 || slots <= 0) {
+            throw new IllegalArgumentException("tickMillis and slots must be positive");
+        }
+        mClock = clock;
+        mScheduler = scheduler;
+        mTickMillis = tickMillis;
+        mCallback = callback;
+        mSlots = new ArrayList[slots];
+        for (int index = 0; index < slots; index++) {
+            mSlots[index] = new ArrayList<>();
+        }
+        mTick = clock.now() / tickMillis;
+    }
+
+    /**
+     * Hands the item to the callback once the clock passes the deadline.
+     */
+    public synchronized void schedule(T item, long deadline) {
+        long tick = Math.max(mTick + 1, (deadline + mTickMillis - 1) / mTickMillis);
+        mSlots[(int) (tick % mSlots.length)].add(new Entry<>(item, tick));
+        mSize++;
+        if (tick < mTimerTick) {
+            startTimer(tick);
+        }
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public synchronized void clear() {
+        for (ArrayList<Entry<T>> slot : mSlots) {
+            slot.clear();
+        }
+        mSize = 0;
+        stopTimer();
+    }
+
+    private void startTimer(long tick) {
+        stopTimer();
+        mTimerTick = tick;
+        mTimer = mScheduler.schedule(mTimerTask, Math.max(0, tick * mTickMillis - mClock.now()));
+    }
+
+    private void stopTimer() {
+        if (mTimer != null) {
+            mTimer.cancel();
+            mTimer = null;
+        }
+        mTimerTick = Long.MAX_VALUE;
+    }
+
+    private final Runnable mTimerTask = new Runnable() {
+        @Override
+        public void run() {
+            ArrayList<T> expired = new ArrayList<>();
+            synchronized (TimerWheel.this) {
+                mTimer = null;
+                mTimerTick = Long.MAX_VALUE;
+                long now = mClock.now() / mTickMillis;
+                // Past a full turn every slot is visited once.
+                long first = Math.max(mTick + 1, now - mSlots.length + 1);
+                for (long tick = first; tick <= now; tick++) {
+                    ArrayList<Entry<T>> slot = mSlots[(int) (tick % mSlots.length)];
+                    for (int index = slot.size() - 1; index >= 0; index--) {
+                        Entry<T> entry = slot.get(index);
+                        if (entry.mTick <= now) {
+                            expired.add(entry.mItem);
+                            slot.set(index, slot.get(slot.size() - 1));
+                            slot.remove(slot.size() - 1);
+                        }
+                    }
+                }
+                mTick = Math.max(mTick, now);
+                mSize -= expired.size();
+                if (mSize > 0) {
+                    startTimer(nextOccupiedTick());
+                }
+            }
+            for (T item : expired) {
+                mCallback.onExpired(item);
+            }
+        }
+    };
+
+    /**
+     * The next tick whose slot holds anything. Entries a turn or more away only make the
+     * timer wake early once per turn.
+     */
+    private long nextOccupiedTick() {
+        for (long tick = mTick + 1; tick <= mTick + mSlots.length; tick++) {
+            if (!mSlots[(int) (tick % mSlots.length)].isEmpty()) {
+                return tick;
+            }
+        }
+        return mTick + mSlots.length;
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.example.bluetoothapp.core.time;
+
+import java.util.PriorityQueue;
+
+/**
+ * A clock and scheduler on virtual time, for tests and simulations. Nothing runs until
+ * {@link #advance(long)} moves time forward; tasks then run on the calling thread, in due order,
+ * each seeing the clock at its due time.
+ */
+public class VirtualScheduler implements Clock, Scheduler {
+
+    private final PriorityQueue<Task> mTasks = new PriorityQueue<>();
+    private long mNow;
+    private long mSequence;
+
+    public VirtualScheduler() {
+        this(0);
+    }
+
+    public VirtualScheduler(long now) {
+        mNow = now;
+    }
+
+    @Override
+    public synchronized long now() {
+        return mNow;
+    }
+
+    @Override
+    public synchronized Cancellable schedule(Runnable task, long delayMillis) {
+        Task scheduled = new Task(task, mNow + Math.max(0, delayMillis), mSequence++);
+        mTasks.add(scheduled);
+        return scheduled;
+    }
+
+    public void advance(long millis) {
+        long target;
+        synchronized (this) {
+            target = mNow + millis;
+        }
+        while (true) {
+            Task task;
+            synchronized (this) {
+                task = mTasks.peek();
+                if (task == null || task.mDue > target) {
+                    mNow = target;
+                    return;
+                }
+                mTasks.poll();
+                mNow = task.mDue;
+            }
+            task.mTask.run();
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return mTasks.size();
+    }
+
+    private class Task implements Cancellable, Comparable<Task> {
+
+        final Runnable mTask;
+        final long mDue;
+        final long mSequence;
+
+        Task(Runnable task, long due, long sequence) {
+            mTask = task;
+            mDue = due;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (VirtualScheduler.this) {
+                mTasks.remove(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (mDue != other.mDue) {
+                return mDue < other.mDue ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+
+}
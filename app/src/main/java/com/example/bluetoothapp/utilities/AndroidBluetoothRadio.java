@@ -0,0 +1,232 @@
+package com.example.bluetoothapp.utilities;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.example.bluetoothapp.core.metrics.Histogram;
+import com.example.bluetoothapp.core.metrics.MetricsRegistry;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * {@link BluetoothRadio} backed by the default BluetoothAdapter. Broadcasts are received and
+ * decoded on a background thread, so the listener is never called on the main thread. The time
+ * each broadcast takes to handle, listener included, goes to a histogram per action, such as
+ * "broadcast.acl_connected".
+ */
+public class AndroidBluetoothRadio implements BluetoothRadio<BluetoothDevice> {
+
+    private static final String[] ACTIONS = {
+            BluetoothAdapter.ACTION_STATE_CHANGED,
+            BluetoothAdapter.ACTION_DISCOVERY_STARTED,
+            BluetoothAdapter.ACTION_DISCOVERY_FINISHED,
+            BluetoothDevice.ACTION_FOUND,
+            BluetoothDevice.ACTION_ACL_CONNECTED,
+            BluetoothDevice.ACTION_ACL_DISCONNECTED,
+            BluetoothDevice.ACTION_NAME_CHANGED,
+            BluetoothDevice.ACTION_CLASS_CHANGED,
+            BluetoothDevice.ACTION_BOND_STATE_CHANGED
+    };
+
+    private final Context mContext;
+    private final BluetoothAdapter mBluetoothAdapter;
+    private final HashMap<String, Histogram> mHandlingTimes = new HashMap<>();
+    private HandlerThread mThread;
+    private Listener<BluetoothDevice> mListener;
+
+    public AndroidBluetoothRadio(Context context) {
+        mContext = context.getApplicationContext();
+        mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        MetricsRegistry metrics = Metrics.get();
+        for (String action : ACTIONS) {
+            mHandlingTimes.put(action, metrics.histogram(getMetricName(action)));
+        }
+    }
+
+    private static String getMetricName(String action) {
+        return "broadcast." + action.substring(action.lastIndexOf('.') + 1)
+                .toLowerCase(Locale.US);
+    }
+
+    @Override
+    public synchronized void open(Listener<BluetoothDevice> listener, int events) {
+        if (mThread != null) {
+            return;
+        }
+        mListener = listener;
+        IntentFilter filter = new IntentFilter();
+        if ((events & EVENT_ADAPTER) != 0) {
+            filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
+        }
+        if ((events & EVENT_DISCOVERY) != 0) {
+            filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_STARTED);
+            filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
+            filter.addAction(BluetoothDevice.ACTION_FOUND);
+        }
+        if ((events & EVENT_CONNECTION) != 0) {
+            filter.addAction(BluetoothDevice.ACTION_ACL_CONNECTED);
+            filter.addAction(BluetoothDevice.ACTION_ACL_DISCONNECTED);
+        }
+        if ((events & EVENT_DEVICE) != 0) {
+            filter.addAction(BluetoothDevice.ACTION_NAME_CHANGED);
+            filter.addAction(BluetoothDevice.ACTION_CLASS_CHANGED);
+            filter.addAction(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
+        }
+        mThread = new HandlerThread("bluetooth-radio");
+        mThread.start();
+        mContext.registerReceiver(mReceiver, filter, null, new Handler(mThread.getLooper()));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mThread == null) {
+            return;
+        }
+        mContext.unregisterReceiver(mReceiver);
+        mThread.quit();
+        mThread = null;
+    }
+
+    @Override
+    public boolean isSupported() {
+        return mBluetoothAdapter != null;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return mBluetoothAdapter.isEnabled();
+    }
+
+    @Override
+    public int getState() {
+        return mBluetoothAdapter.getState();
+    }
+
+    @Override
+    public boolean isDiscovering() {
+        return mBluetoothAdapter.isDiscovering();
+    }
+
+    @Override
+    public boolean startDiscovery() {
+        return mBluetoothAdapter.startDiscovery();
+    }
+
+    @Override
+    public boolean cancelDiscovery() {
+        return mBluetoothAdapter.cancelDiscovery();
+    }
+
+    @Override
+    public Collection<BluetoothDevice> getBondedDevices() {
+        Collection<BluetoothDevice> devices = mBluetoothAdapter.getBondedDevices();
+        return devices == null ? Collections.<BluetoothDevice>emptySet() : devices;
+    }
+
+    @Override
+    public BluetoothDevice getRemoteDevice(String address) {
+        return mBluetoothAdapter.getRemoteDevice(address);
+    }
+
+    @Override
+    public String getAddress(BluetoothDevice device) {
+        return device.getAddress();
+    }
+
+    @Override
+    public String getName(BluetoothDevice device) {
+        return device.getName();
+    }
+
+    @Override
+    public int getDeviceClass(BluetoothDevice device) {
+        BluetoothClass bluetoothClass = device.getBluetoothClass();
+        return bluetoothClass == null ? -1 : bluetoothClass.getDeviceClass();
+    }
+
+    @Override
+    public int getBondState(BluetoothDevice device) {
+        return device.getBondState();
+    }
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            Histogram handlingTimes = action == null ? null : mHandlingTimes.get(action);
+            if (handlingTimes == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            BluetoothDevice device;
+            switch (action) {
+                case BluetoothAdapter.ACTION_STATE_CHANGED:
+                    mListener.onStateChanged(intent.getIntExtra(BluetoothAdapter.EXTRA_STATE,
+                            BluetoothAdapter.ERROR));
+                    break;
+                case BluetoothAdapter.ACTION_DISCOVERY_STARTED:
+                    mListener.onDiscoveryStarted();
+                    break;
+                case BluetoothAdapter.ACTION_DISCOVERY_FINISHED:
+                    mListener.onDiscoveryFinished();
+                    break;
+                case BluetoothDevice.ACTION_FOUND:
+                    device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                    if (device != null) {
+                        mListener.onDeviceFound(device,
+                                intent.getShortExtra(BluetoothDevice.EXTRA_RSSI,
+                                        BluetoothRadio.RSSI_UNKNOWN));
+                    }
+                    break;
+                case BluetoothDevice.ACTION_ACL_CONNECTED:
+                    device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                    if (device != null) {
+                        mListener.onAclConnected(device);
+                    }
+                    break;
+                case BluetoothDevice.ACTION_ACL_DISCONNECTED:
+                    device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                    if (device != null) {
+                        mListener.onAclDisconnected(device);
+                    }
+                    break;
+                case BluetoothDevice.ACTION_NAME_CHANGED:
+                    device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                    if (device != null) {
+                        mListener.onNameChanged(device,
+                                intent.getStringExtra(BluetoothDevice.EXTRA_NAME));
+                    }
+                    break;
+                case BluetoothDevice.ACTION_CLASS_CHANGED:
+                    device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                    if (device != null) {
+                        BluetoothClass bluetoothClass =
+                                intent.getParcelableExtra(BluetoothDevice.EXTRA_CLASS);
+                        mListener.onClassChanged(device,
+                                bluetoothClass == null ? -1 : bluetoothClass.getDeviceClass());
+                    }
+                    break;
+                case BluetoothDevice.ACTION_BOND_STATE_CHANGED:
+                    device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                    if (device != null) {
+                        mListener.onBondStateChanged(device, intent.getIntExtra(
+                                BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.ERROR));
+                    }
+                    break;
+            }
+            handlingTimes.recordSince(start);
+        }
+    };
+
+}
@@ -0,0 +1,150 @@
+package com.example.bluetoothapp.utilities;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.util.Log;
+
+import com.example.bluetoothapp.core.radio.DeviceConnector;
+import com.example.bluetoothapp.core.service.ServiceCache;
+import com.example.bluetoothapp.core.service.ServiceRecord;
+import com.example.bluetoothapp.core.service.ServiceUuids;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+
+/**
+ * Connects devices through the A2DP and headset profile proxies, which bring up the audio a
+ * dropped device was carrying. Their connect methods are hidden, so they are called by
+ * reflection. A device neither profile takes is not connected here: a link with nothing on it
+ * idles out and drops again, so such a device is best reached through a data link to its
+ * serial port that stays open. Given a {@link ServiceCache}, a device whose services are known
+ * is only tried with the profiles it offers.
+ */
+public class AndroidDeviceConnector implements DeviceConnector<BluetoothDevice> {
+
+    private static final String DEVICE_CONNECTOR_TAG = "device_connector";
+    private static final int[] PROFILES = {BluetoothProfile.A2DP, BluetoothProfile.HEADSET};
+    // Indexed like PROFILES; a device offering any of these takes the profile.
+    private static final UUID[][] PROFILE_SERVICES = {
+            {ServiceUuids.AUDIO_SINK},
+            {ServiceUuids.HEADSET, ServiceUuids.HANDSFREE}};
+
+    private final BluetoothAdapter mBluetoothAdapter;
+    // Indexed like PROFILES; null until the proxy is bound.
+    private final BluetoothProfile[] mProxies = new BluetoothProfile[PROFILES.length];
+    private volatile ServiceCache mServices;
+
+    public AndroidDeviceConnector(Context context) {
+        mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (mBluetoothAdapter == null) {
+            return;
+        }
+        for (int profile : PROFILES) {
+            mBluetoothAdapter.getProfileProxy(context.getApplicationContext(), mProxyListener,
+                    profile);
+        }
+    }
+
+    public void setServiceCache(ServiceCache services) {
+        mServices = services;
+    }
+
+    @Override
+    public boolean connect(BluetoothDevice device) {
+        if (mBluetoothAdapter == null || !mBluetoothAdapter.isEnabled()) {
+            return false;
+        }
+        ServiceRecord record = getRecord(device);
+        boolean started = false;
+        BluetoothProfile[] proxies = getProxies();
+        for (int index = 0; index < PROFILES.length; index++) {
+            if (proxies[index] != null && offersAny(record, PROFILE_SERVICES[index]) &&
+                    connectProfile(proxies[index], device)) {
+                started = true;
+            }
+        }
+        return started;
+    }
+
+    /**
+     * Whether one of the profiles may take the device, as far as its known services tell.
+     */
+    public boolean mayConnect(BluetoothDevice device) {
+        ServiceRecord record = getRecord(device);
+        for (UUID[] services : PROFILE_SERVICES) {
+            if (offersAny(record, services)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void close() {
+        if (mBluetoothAdapter == null) {
+            return;
+        }
+        BluetoothProfile[] proxies = getProxies();
+        for (int index = 0; index < PROFILES.length; index++) {
+            if (proxies[index] != null) {
+                mBluetoothAdapter.closeProfileProxy(PROFILES[index], proxies[index]);
+            }
+        }
+    }
+
+    private ServiceRecord getRecord(BluetoothDevice device) {
+        ServiceCache services = mServices;
+        return services != null ? services.get(device.getAddress()) : null;
+    }
+
+    private synchronized BluetoothProfile[] getProxies() {
+        return mProxies.clone();
+    }
+
+    // An unknown device might offer anything.
+    private static boolean offersAny(ServiceRecord record, UUID[] uuids) {
+        if (record == null) {
+            return true;
+        }
+        for (UUID uuid : uuids) {
+            if (record.offers(uuid)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean connectProfile(BluetoothProfile proxy, BluetoothDevice device) {
+        try {
+            Method connect = proxy.getClass().getMethod("connect", BluetoothDevice.class);
+            return (Boolean) connect.invoke(proxy, device);
+        } catch (Exception e) {
+            Log.w(DEVICE_CONNECTOR_TAG, "Could not connect " + proxy.getClass().getSimpleName(),
+                    e);
+            return false;
+        }
+    }
+
+    private final BluetoothProfile.ServiceListener mProxyListener =
+            new BluetoothProfile.ServiceListener() {
+                @Override
+                public void onServiceConnected(int profile, BluetoothProfile proxy) {
+                    setProxy(profile, proxy);
+                }
+
+                @Override
+                public void onServiceDisconnected(int profile) {
+                    setProxy(profile, null);
+                }
+            };
+
+    private synchronized void setProxy(int profile, BluetoothProfile proxy) {
+        for (int index = 0; index < PROFILES.length; index++) {
+            if (PROFILES[index] == profile) {
+                mProxies[index] = proxy;
+            }
+        }
+    }
+
+}
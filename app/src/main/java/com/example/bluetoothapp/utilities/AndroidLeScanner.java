@@ -0,0 +1,169 @@
+package com.example.bluetoothapp.utilities;
+
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.os.Build;
+import android.os.ParcelUuid;
+import android.util.SparseArray;
+
+import com.example.bluetoothapp.core.radio.LeScanFilter;
+import com.example.bluetoothapp.core.radio.LeScanResult;
+import com.example.bluetoothapp.core.radio.LeScanSettings;
+import com.example.bluetoothapp.core.radio.LeScanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link LeScanner} backed by BluetoothLeScanner. Unsupported below API 21. Results are
+ * delivered on the main thread, as the platform delivers them.
+ */
+public class AndroidLeScanner implements LeScanner<BluetoothDevice> {
+
+    private static final byte[] ANY_DATA = new byte[0];
+
+    private final BluetoothAdapter mBluetoothAdapter;
+    private Object mScanCallback;
+
+    public AndroidLeScanner() {
+        mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+    }
+
+    @Override
+    public boolean isSupported() {
+        return mBluetoothAdapter != null &&
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
+    @Override
+    public boolean isBatchingSupported() {
+        return isSupported() && Api21.isBatchingSupported(mBluetoothAdapter);
+    }
+
+    @Override
+    public synchronized void startScan(LeScanSettings settings,
+                                       Callback<BluetoothDevice> callback) {
+        if (!isSupported()) {
+            return;
+        }
+        stopScan();
+        mScanCallback = Api21.startScan(mBluetoothAdapter, settings, callback);
+    }
+
+    @Override
+    public synchronized void stopScan() {
+        if (mScanCallback != null) {
+            Api21.stopScan(mBluetoothAdapter, mScanCallback);
+            mScanCallback = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isScanning() {
+        return mScanCallback != null;
+    }
+
+    /**
+     * Kept apart so the class loads on API levels without the LE scanner classes.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static final class Api21 {
+
+        static boolean isBatchingSupported(BluetoothAdapter adapter) {
+            return adapter.isOffloadedScanBatchingSupported();
+        }
+
+        static Object startScan(BluetoothAdapter adapter, LeScanSettings settings,
+                                final Callback<BluetoothDevice> callback) {
+            BluetoothLeScanner scanner = adapter.getBluetoothLeScanner();
+            if (scanner == null) {
+                // The adapter is off.
+                return null;
+            }
+            List<ScanFilter> filters = new ArrayList<>(settings.getFilters().size());
+            for (LeScanFilter filter : settings.getFilters()) {
+                ScanFilter.Builder builder = new ScanFilter.Builder();
+                if (filter.getServiceUuid() != null) {
+                    builder.setServiceUuid(new ParcelUuid(filter.getServiceUuid()));
+                } else {
+                    builder.setManufacturerData(filter.getManufacturerId(), ANY_DATA);
+                }
+                filters.add(builder.build());
+            }
+            ScanSettings.Builder scanSettings = new ScanSettings.Builder()
+                    .setScanMode(settings.getScanMode());
+            if (adapter.isOffloadedScanBatchingSupported()) {
+                scanSettings.setReportDelay(settings.getReportDelay());
+            }
+            ScanCallback scanCallback = new ScanCallback() {
+                @Override
+                public void onScanResult(int callbackType, ScanResult result) {
+                    callback.onResults(Collections.singletonList(convert(result)));
+                }
+
+                @Override
+                public void onBatchScanResults(List<ScanResult> results) {
+                    if (results.isEmpty()) {
+                        return;
+                    }
+                    List<LeScanResult<BluetoothDevice>> converted =
+                            new ArrayList<>(results.size());
+                    for (ScanResult result : results) {
+                        converted.add(convert(result));
+                    }
+                    callback.onResults(converted);
+                }
+
+                @Override
+                public void onScanFailed(int errorCode) {
+                    callback.onScanFailed(errorCode);
+                }
+            };
+            scanner.startScan(filters, scanSettings.build(), scanCallback);
+            return scanCallback;
+        }
+
+        static void stopScan(BluetoothAdapter adapter, Object scanCallback) {
+            BluetoothLeScanner scanner = adapter.getBluetoothLeScanner();
+            if (scanner != null) {
+                scanner.stopScan((ScanCallback) scanCallback);
+            }
+        }
+
+        private static LeScanResult<BluetoothDevice> convert(ScanResult result) {
+            ScanRecord record = result.getScanRecord();
+            String name = null;
+            List<UUID> serviceUuids = null;
+            int[] manufacturerIds = null;
+            if (record != null) {
+                name = record.getDeviceName();
+                List<ParcelUuid> uuids = record.getServiceUuids();
+                if (uuids != null) {
+                    serviceUuids = new ArrayList<>(uuids.size());
+                    for (ParcelUuid uuid : uuids) {
+                        serviceUuids.add(uuid.getUuid());
+                    }
+                }
+                SparseArray<byte[]> data = record.getManufacturerSpecificData();
+                if (data != null) {
+                    manufacturerIds = new int[data.size()];
+                    for (int index = 0; index < manufacturerIds.length; index++) {
+                        manufacturerIds[index] = data.keyAt(index);
+                    }
+                }
+            }
+            return new LeScanResult<>(result.getDevice(), name, result.getRssi(),
+                    result.getTimestampNanos() / 1000000L, serviceUuids, manufacturerIds);
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.example.bluetoothapp.utilities;
+
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.ParcelUuid;
+import android.os.Parcelable;
+
+import com.example.bluetoothapp.core.metrics.Histogram;
+import com.example.bluetoothapp.core.radio.UuidFetcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link UuidFetcher} backed by BluetoothDevice.fetchUuidsWithSdp. Unsupported below API 15.
+ * Results are delivered on the main thread.
+ */
+public class AndroidUuidFetcher implements UuidFetcher<BluetoothDevice> {
+
+    private final Context mContext;
+    private final BluetoothAdapter mBluetoothAdapter;
+    private final Histogram mHandlingTimes = Metrics.get().histogram("broadcast.uuid");
+    private Callback<BluetoothDevice> mCallback;
+
+    public AndroidUuidFetcher(Context context) {
+        mContext = context.getApplicationContext();
+        mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+    }
+
+    @Override
+    public boolean isSupported() {
+        return mBluetoothAdapter != null &&
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1;
+    }
+
+    @Override
+    public synchronized void open(Callback<BluetoothDevice> callback) {
+        if (mCallback != null || !isSupported()) {
+            return;
+        }
+        mCallback = callback;
+        mContext.registerReceiver(mReceiver, new IntentFilter(BluetoothDevice.ACTION_UUID));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mCallback == null) {
+            return;
+        }
+        mContext.unregisterReceiver(mReceiver);
+        mCallback = null;
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
+    @Override
+    public boolean fetchUuids(BluetoothDevice device) {
+        return isSupported() && device.fetchUuidsWithSdp();
+    }
+
+    private synchronized Callback<BluetoothDevice> getCallback() {
+        return mCallback;
+    }
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+            Callback<BluetoothDevice> callback = getCallback();
+            if (device == null || callback == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            Parcelable[] extras = intent.getParcelableArrayExtra(BluetoothDevice.EXTRA_UUID);
+            List<UUID> uuids = new ArrayList<>();
+            if (extras != null) {
+                for (Parcelable extra : extras) {
+                    if (extra instanceof ParcelUuid) {
+                        uuids.add(((ParcelUuid) extra).getUuid());
+                    }
+                }
+            }
+            callback.onUuids(device, uuids);
+            mHandlingTimes.recordSince(start);
+        }
+    };
+
+}
@@ -1,70 +1,219 @@
 package com.example.bluetoothapp.utilities;
 
-import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothClass;
 import android.bluetooth.BluetoothDevice;
-import android.content.Intent;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import com.example.bluetoothapp.core.cache.CachedDevice;
+import com.example.bluetoothapp.core.cache.DeviceCache;
+import com.example.bluetoothapp.core.channel.BufferPool;
+import com.example.bluetoothapp.core.channel.DataLinks;
+import com.example.bluetoothapp.core.channel.FrameChannel;
+import com.example.bluetoothapp.core.device.DeviceRegistry;
+import com.example.bluetoothapp.core.device.DeviceSnapshot;
+import com.example.bluetoothapp.core.device.DeviceSnapshotStore;
+import com.example.bluetoothapp.core.device.MacAddress;
+import com.example.bluetoothapp.core.discovery.DiscoveryEvent;
+import com.example.bluetoothapp.core.discovery.DiscoveryPipeline;
+import com.example.bluetoothapp.core.discovery.DiscoveryScheduler;
+import com.example.bluetoothapp.core.discovery.DiscoverySnapshot;
+import com.example.bluetoothapp.core.discovery.ScanStatistics;
+import com.example.bluetoothapp.core.journal.ConnectionJournal;
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler;
+import com.example.bluetoothapp.core.operation.ScheduledConnector;
+import com.example.bluetoothapp.core.presence.PresenceEngine;
+import com.example.bluetoothapp.core.radio.BluetoothEvent;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.DeviceConnector;
+import com.example.bluetoothapp.core.radio.LeScanResult;
+import com.example.bluetoothapp.core.radio.LeScanSettings;
+import com.example.bluetoothapp.core.radio.LeScanner;
+import com.example.bluetoothapp.core.radio.RadioHub;
+import com.example.bluetoothapp.core.service.ServiceDiscovery;
+import com.example.bluetoothapp.core.service.ServiceRecord;
+import com.example.bluetoothapp.core.signal.SignalTracker;
+import com.example.bluetoothapp.core.stream.EventPublisher;
+import com.example.bluetoothapp.core.time.Clock;
+
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class BluetoothFacade {
 
-    private BluetoothAdapter mBluetoothAdapter;
-    private ArrayList<BluetoothDevice> mBluetoothDevices;
+    static final Executor BACKGROUND_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final BluetoothHub mHub;
+    private final BluetoothRadio<BluetoothDevice> mRadio;
+    private final LeScanner<BluetoothDevice> mLeScanner;
+    private boolean mLeScanning;
+    private RadioHub<BluetoothDevice>.Subscription mSubscription;
+    private final Handler mMainHandler;
+    private final Executor mMainExecutor;
+    private final Clock mClock;
+    private final DeviceSnapshotStore<BluetoothDevice> mDeviceSnapshots;
+    private DiscoverySnapshot<DeviceSnapshot<BluetoothDevice>> mDiscoverySnapshot;
+    private final DiscoveryPipeline<DiscoveryEvent<BluetoothDevice>,
+            DeviceSnapshot<BluetoothDevice>> mDiscoveryPipeline;
+    private boolean mDiscoveryPipelineStarted;
+    // Our scheduler's classic scan is running; on the radio thread only.
+    private boolean mOwnDiscovery;
+    private final DiscoveryScheduler mDiscoveryScheduler;
+    private final SignalTracker mSignals;
+    private boolean mReleased;
+    private volatile ConnectionJournal mConnectionJournal;
+    private volatile PresenceEngine mPresence;
+    private volatile OnConnectionChangedListener mConnectionListener;
+    // Only touched on the background executor.
+    private List<DeviceSnapshot<BluetoothDevice>> mReconciledBondedDevices;
+    private final EventPublisher<BluetoothEvent<BluetoothDevice>> mEvents;
+    private final ThreadPoolExecutor mEventRelay;
 
     private OnBluetoothDeviceScanListener mScanListener;
-    private OnDeviceFollowedNotificationListener mNotificationListener;
     private OnBluetoothAdapterListener mAdapterListener;
+    private OnDevicesReconciledListener mReconciledListener;
+    private OnPresenceChangedListener mPresenceListener;
 
     public static final int REQUEST_ENABLE_BLUETOOTH = 1;
     public static final int REQUEST_FINE_LOCATION = 2;
     public static final String BLUETOOTH_PREFS_FILE = "bluetooth.facade.preferences";
-    public static final String PAIRED_BLUETOOTH_DEVICE = "paired_bluetooth_device";
-    public static final String AVAILABLE_BLUETOOTH_DEVICE = "available_bluetooth_device";
 
     private static final String BLUETOOTH_FACADE_TAG = "bluetooth_facade";
     private static final String DISCOVERING_TAG = "discovering_tag";
     private static final String NOTIFICATIONS_TAG = "notifications_tag";
+    private static final int EVENT_RELAY_CAPACITY = 256;
+    private static final int EXPECTED_DEVICES = 64;
+    // Devices not heard from for this long are left out of the nearest devices and forgotten.
+    private static final long NEAREST_MAX_AGE = 2 * 60 * 1000L;
 
-    private long mDiscoveryStartTime;
-    private static final long mDiscoveryTimeout = 5000;
 
     public interface OnBluetoothDeviceScanListener {
 
-        void onScanStarted(ArrayList<BluetoothDevice> devices);
+        void onScanStarted(DiscoverySnapshot<DeviceSnapshot<BluetoothDevice>> snapshot);
 
-        void onDeviceFound(ArrayList<BluetoothDevice> devices);
+        void onDeviceFound(DiscoverySnapshot<DeviceSnapshot<BluetoothDevice>> snapshot);
 
-        void onScanFinishedAndDevicesFound(ArrayList<BluetoothDevice> devices);
+        void onScanFinishedAndDevicesFound(
+                DiscoverySnapshot<DeviceSnapshot<BluetoothDevice>> snapshot);
 
         void onScanFinishedAndDevicesNoFound();
 
     }
 
-    public interface OnDeviceFollowedNotificationListener {
+    public interface OnBluetoothAdapterListener {
 
-        void onDeviceConnected(BluetoothDevice device);
+        void onEnable();
 
-        void onDeviceDisconnected(BluetoothDevice device);
+        void onDisable();
 
     }
 
-    public interface OnBluetoothAdapterListener {
+    public interface OnDevicesReconciledListener {
 
-        void onEnable();
+        void onDevicesReconciled(List<DeviceSnapshot<BluetoothDevice>> devices);
 
-        void onDisable();
+    }
+
+    public interface OnConnectionChangedListener {
+
+        void onConnectionChanged(DeviceSnapshot<BluetoothDevice> device, boolean connected);
 
     }
 
-    public BluetoothFacade() {
-        mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-        mBluetoothDevices = new ArrayList<>();
-        mBluetoothDevices = getPairedBluetoothDevices();
+    public interface OnPresenceChangedListener {
+
+        void onPresenceChanged(String address, PresenceEngine.State previous,
+                               PresenceEngine.State state);
+
+    }
+
+    public BluetoothFacade(Context context) {
+        this(BluetoothHub.get(context));
+    }
+
+    public BluetoothFacade(BluetoothHub hub) {
+        mHub = hub;
+        mRadio = hub.getRadio();
+        mLeScanner = hub.newLeScanner();
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mMainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mMainHandler.post(command);
+            }
+        };
+        mClock = Clock.MONOTONIC;
+        mDeviceSnapshots = hub.getDeviceSnapshots();
+        mDiscoverySnapshot = DiscoverySnapshot.empty();
+        mSignals = new SignalTracker(EXPECTED_DEVICES, NEAREST_MAX_AGE);
+        mDiscoveryPipeline = new DiscoveryPipeline<>(mDiscoveryDecoder, mDiscoveryListener,
+                mMainExecutor, mClock, DiscoveryPipeline.DEFAULT_CAPACITY);
+        mDiscoveryScheduler = new DiscoveryScheduler(mRadio, mClock,
+                new HandlerScheduler(mMainHandler), DiscoveryScheduler.Policy.DEFAULT);
+        mDiscoveryScheduler.setOperationScheduler(hub.getOperations());
+        mDiscoveryScheduler.setListener(new DiscoveryScheduler.Listener() {
+            @Override
+            public void onScanFinished(ScanStatistics statistics) {
+                Log.v(DISCOVERING_TAG, statistics.toString());
+                // Only the scheduler that started a scan times it, so each early stop is
+                // counted once.
+                if (statistics.getStopReason() != ScanStatistics.StopReason.RADIO_FINISHED) {
+                    Metrics.get().counter("scan.stopped." +
+                            statistics.getStopReason().name().toLowerCase(Locale.US))
+                            .increment();
+                }
+            }
+        });
+        mEvents = new EventPublisher<>(mMainExecutor);
+        // Events reach the publisher through a thread of their own, so a subscriber that blocks
+        // holds up this relay at worst, never the radio or main thread. A full relay drops the
+        // oldest event, so the publisher is for consumers that can miss one, such as screens;
+        // the connection listener gets every connect and disconnect.
+        mEventRelay = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(EVENT_RELAY_CAPACITY), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "bluetooth-events");
+                    }
+                }, new ThreadPoolExecutor.DiscardOldestPolicy());
+        mEventRelay.allowCoreThreadTimeOut(true);
+        if (!hub.isDeviceCacheLoaded()) {
+            // Runs after the hub has read the device cache, so the cached devices are shown.
+            BACKGROUND_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    postDevices();
+                }
+            });
+        }
+    }
+
+    /**
+     * Starts listening to the radio events selected by the BluetoothRadio.EVENT_* mask, or
+     * changes the mask if already started.
+     */
+    public void start(int events) {
+        if ((events & BluetoothRadio.EVENT_DISCOVERY) != 0 && !mDiscoveryPipelineStarted) {
+            mDiscoveryPipeline.start();
+            mDiscoveryPipelineStarted = true;
+        }
+        if (mSubscription == null) {
+            mSubscription = mHub.getRadioHub().subscribe(mRadioListener, events);
+        } else {
+            mSubscription.setEvents(events);
+        }
     }
 
     public void setScanListener(OnBluetoothDeviceScanListener scanListener) {
@@ -75,231 +224,653 @@ public class BluetoothFacade {
         mAdapterListener = adapterListener;
     }
 
-    public void setNotificationListener(OnDeviceFollowedNotificationListener notificationListener) {
-        mNotificationListener = notificationListener;
+    /**
+     * Also handed the device list once the device cache has been read from disk.
+     */
+    public void setReconciledListener(OnDevicesReconciledListener reconciledListener) {
+        mReconciledListener = reconciledListener;
     }
 
-    public boolean isSupported() {
-        return mBluetoothAdapter != null;
+    public void setPresenceListener(OnPresenceChangedListener presenceListener) {
+        mPresenceListener = presenceListener;
     }
 
-    public boolean isEnabled() {
-        return mBluetoothAdapter.isEnabled();
+    /**
+     * Hears every ACL connect and disconnect, in order, on the main thread. Unlike
+     * {@link #getEvents()} it never drops one, so it is the one to drive connections from.
+     */
+    public void setConnectionListener(OnConnectionChangedListener connectionListener) {
+        mConnectionListener = connectionListener;
     }
 
-    public boolean isDiscovering() {
-        return mBluetoothAdapter.isDiscovering();
+    /**
+     * Adapter, discovery, device and connection events, delivered on the main thread. Which of
+     * them arrive depends on the events passed to {@link #start(int)}; device changes only
+     * arrive this way. Completes on {@link #release()}.
+     */
+    public EventPublisher<BluetoothEvent<BluetoothDevice>> getEvents() {
+        return mEvents;
     }
 
-    public void startDiscovery() {
-        mBluetoothAdapter.startDiscovery();
+    /**
+     * Records every ACL connect and disconnect, followed or not, as it is received.
+     */
+    public void setConnectionJournal(ConnectionJournal connectionJournal) {
+        mConnectionJournal = connectionJournal;
     }
 
-    public void cancelDiscovery() {
-        if (mBluetoothAdapter.isDiscovering()) {
-            mBluetoothAdapter.cancelDiscovery();
-        }
+    public void setDiscoveryUpdateInterval(long millis) {
+        mDiscoveryPipeline.setPublishInterval(millis);
     }
 
-    public ArrayList<BluetoothDevice> getBluetoothDevices() {
-        mBluetoothDevices.addAll(getPairedBluetoothDevices());
-        return mBluetoothDevices;
+    public void setDiscoveryPolicy(DiscoveryScheduler.Policy policy) {
+        mDiscoveryScheduler.setPolicy(policy);
     }
 
-    public static String getDeviceClassDescription(BluetoothDevice device) {
-        Map<Integer, String> deviceClasses = getDeviceClasses();
-        int deviceClass = device.getBluetoothClass().getDeviceClass();
-        return deviceClasses.get(deviceClass) == null ? "UNKNOWN" : deviceClasses.get(deviceClass);
+    /**
+     * Scans briefly every background period while nothing else is scanning, until
+     * {@link #stopBackgroundDiscovery()} or {@link #release()}.
+     */
+    public void startBackgroundDiscovery() {
+        mDiscoveryScheduler.startBackground();
     }
 
-    public static String getDeviceType(BluetoothDevice device) {
-        return device.getBondState() == BluetoothDevice.BOND_BONDED ? PAIRED_BLUETOOTH_DEVICE :
-                AVAILABLE_BLUETOOTH_DEVICE;
+    public void stopBackgroundDiscovery() {
+        mDiscoveryScheduler.stopBackground();
     }
 
-    public void manageDeviceDiscovery(Intent intent) {
-
-        String action = intent.getAction();
+    /**
+     * The connector's connects, queued behind the process's other radio operations. The
+     * caller reports ACL connects to the returned connector.
+     */
+    public ScheduledConnector<BluetoothDevice> scheduleConnects(
+            DeviceConnector<BluetoothDevice> connector, int priority) {
+        return new ScheduledConnector<>(mHub.getOperations(), mRadio, connector, priority);
+    }
 
-        Log.v(DISCOVERING_TAG, "Action: " + action);
+    /**
+     * Framed data links to devices, opened through the connector on the executor once the
+     * process's other radio operations allow.
+     */
+    public DataLinks<BluetoothDevice> createDataLinks(
+            DataLinks.StreamConnector<BluetoothDevice> connector, Executor connectExecutor,
+            BufferPool pool, FrameChannel.Policy policy, int priority) {
+        return new DataLinks<>(mHub.getOperations(), mRadio, connector, connectExecutor, pool,
+                policy, priority);
+    }
 
-        switch (action) {
-            case BluetoothAdapter.ACTION_DISCOVERY_STARTED:
+    public RadioOperationScheduler getOperations() {
+        return mHub.getOperations();
+    }
 
-                Log.v(DISCOVERING_TAG, "ACTION_DISCOVERY_STARTED");
-                mDiscoveryStartTime = System.currentTimeMillis();
-                mBluetoothDevices.clear();
-                mBluetoothDevices.addAll(getPairedBluetoothDevices());
-                mScanListener.onScanStarted(mBluetoothDevices);
-                break;
-            case BluetoothAdapter.ACTION_DISCOVERY_FINISHED:
+    public boolean isLeScanSupported() {
+        return mLeScanner.isSupported();
+    }
 
-                Log.v(DISCOVERING_TAG, "ACTION_DISCOVERY_FINISHED");
-                toFinishDiscovery();
-                break;
-            case BluetoothDevice.ACTION_FOUND:
-
-                Log.v(DISCOVERING_TAG, "ACTION_FOUND");
-                BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
-                Log.v(BLUETOOTH_FACADE_TAG, "Dev-name: " + device.getName() +
-                        " / Dev-class: " + getDeviceClassDescription(device));
-                if (device.getName() != null && isNewDevice(device.getName())) {
-                    Log.v(DISCOVERING_TAG, "NEW DEVICE: " + device.getName());
-                    mBluetoothDevices.add(device);
-                    mScanListener.onDeviceFound(mBluetoothDevices);
-                }
-                if (isDiscoveryTimeFinished()) toFinishDiscovery();
-                break;
-            default:
-                break;
+    /**
+     * Scans for Bluetooth Low Energy devices until {@link #stopLeScan()}. Results are listed
+     * with the classic ones, through the scan listener, and their RSSI is tracked alike.
+     */
+    public void startLeScan(LeScanSettings settings) {
+        if (!mLeScanner.isSupported()) {
+            return;
+        }
+        if (!mDiscoveryPipelineStarted) {
+            mDiscoveryPipeline.start();
+            mDiscoveryPipelineStarted = true;
+        }
+        if (!mLeScanning) {
+            mLeScanning = true;
+            offerDiscoveryEvent(DiscoveryEvent.<BluetoothDevice>started());
+        }
+        mLeScanner.startScan(settings, mLeScanCallback);
+    }
 
+    public void stopLeScan() {
+        if (!mLeScanning) {
+            return;
         }
+        mLeScanning = false;
+        mLeScanner.stopScan();
+        offerDiscoveryEvent(DiscoveryEvent.<BluetoothDevice>finished());
+    }
 
+    public boolean isLeScanning() {
+        return mLeScanning;
     }
 
-    private ArrayList<BluetoothDevice> getPairedBluetoothDevices() {
-        Set<BluetoothDevice> devices = mBluetoothAdapter.getBondedDevices();
-        ArrayList<BluetoothDevice> pairedDevices = new ArrayList<>();
-        for (BluetoothDevice device : devices) {
-            Log.v(BLUETOOTH_FACADE_TAG, "Dev-name: " + device.getName() +
-                    " / Dev-class: " + getDeviceClassDescription(device));
-            if (device.getName() != null && isNewDevice(device.getName())) {
-                Log.v(BLUETOOTH_FACADE_TAG, "PAIRED DEVICE: " + device.getName());
-                pairedDevices.add(device);
+    /**
+     * Up to count listed devices with the strongest recent signal, nearest first.
+     */
+    public List<DeviceSnapshot<BluetoothDevice>> getNearestDevices(int count) {
+        long[] addresses = new long[count];
+        int found = mSignals.getNearest(addresses, mClock.now() - NEAREST_MAX_AGE);
+        List<DeviceSnapshot<BluetoothDevice>> nearest = new ArrayList<>(found);
+        for (int index = 0; index < found; index++) {
+            DeviceSnapshot<BluetoothDevice> snapshot =
+                    mDeviceSnapshots.get(MacAddress.unpack(addresses[index]));
+            if (snapshot != null && snapshot.isNamed()) {
+                nearest.add(snapshot);
             }
         }
-        return pairedDevices;
+        return nearest;
     }
 
-    private boolean isDiscoveryTimeFinished() {
-        long discoveryEndTime = System.currentTimeMillis();
-        return (discoveryEndTime - mDiscoveryStartTime) >= mDiscoveryTimeout;
+    /**
+     * The device's smoothed RSSI in dBm, or NaN if it has not been found with one.
+     */
+    public double getSignalStrength(String address) {
+        return MacAddress.isValid(address) ? mSignals.getRssi(MacAddress.pack(address))
+                : Double.NaN;
     }
 
-    private void toFinishDiscovery() {
-        cancelDiscovery();
-        if (mBluetoothDevices.size() > 0) {
-            mScanListener.onScanFinishedAndDevicesFound(mBluetoothDevices);
-        } else {
-            mScanListener.onScanFinishedAndDevicesNoFound();
+    /**
+     * Tracks whether the devices the selector picks are nearby, from ACL events and from the
+     * sightings of every classic or LE scan, until {@link #stopPresenceDetection()} or
+     * {@link #release()}. Needs the connection events and, for sightings, the discovery
+     * events; background discovery or a low power LE scan keeps the sightings coming. A device
+     * that goes absent is also dropped from the snapshot store, unless bonded, and from the
+     * signal tracker.
+     */
+    public void startPresenceDetection(PresenceEngine.Policy policy,
+                                       PresenceEngine.Selector selector) {
+        stopPresenceDetection();
+        PresenceEngine presence = new PresenceEngine(mClock, new HandlerScheduler(mMainHandler),
+                policy, selector);
+        presence.setListener(mPresenceEngineListener);
+        mPresence = presence;
+    }
+
+    public void stopPresenceDetection() {
+        PresenceEngine presence = mPresence;
+        mPresence = null;
+        if (presence != null) {
+            presence.clear();
         }
     }
 
-    private boolean isNewDevice(String deviceName) {
-        for (int index = 0; index < mBluetoothDevices.size(); index++) {
-            if (mBluetoothDevices.get(index).getName().equals(deviceName)) {
-                return false;
-            }
+    /**
+     * ABSENT as well while presence detection is stopped.
+     */
+    public PresenceEngine.State getPresence(String address) {
+        PresenceEngine presence = mPresence;
+        return presence == null ? PresenceEngine.State.ABSENT : presence.getState(address);
+    }
+
+    public ScanStatistics getLastScanStatistics() {
+        return mDiscoveryScheduler.getLastStatistics();
+    }
+
+    public void release() {
+        stopLeScan();
+        stopPresenceDetection();
+        mReleased = true;
+        mDiscoveryScheduler.stopBackground();
+        // Drops a scan still waiting for the controller.
+        mDiscoveryScheduler.setOperationScheduler(null);
+        if (mSubscription != null) {
+            mSubscription.close();
         }
-        return true;
+        mDiscoveryPipeline.stop();
+        mEventRelay.execute(new Runnable() {
+            @Override
+            public void run() {
+                mEvents.close();
+            }
+        });
+        mEventRelay.shutdown();
     }
 
-    public void manageConnectionNotifications(Intent intent) {
+    public boolean isSupported() {
+        return mRadio.isSupported();
+    }
 
-        String action = intent.getAction();
-        BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+    public boolean isEnabled() {
+        return mRadio.isEnabled();
+    }
 
-        switch (action) {
-            case BluetoothDevice.ACTION_ACL_CONNECTED:
-                mNotificationListener.onDeviceConnected(device);
-                Log.v(NOTIFICATIONS_TAG, "ACTION_ACL_CONNECTED");
-                break;
-            case BluetoothDevice.ACTION_ACL_DISCONNECTED:
-                mNotificationListener.onDeviceDisconnected(device);
-                Log.v(NOTIFICATIONS_TAG, "ACTION_ACL_DISCONNECTED");
-                break;
+    public boolean isDiscovering() {
+        return mRadio.isDiscovering();
+    }
+
+    public void startDiscovery() {
+        mDiscoveryScheduler.startScan();
+    }
+
+    public void cancelDiscovery() {
+        mDiscoveryScheduler.cancelScan();
+    }
+
+    /**
+     * The devices of the last scan followed by the cached ones, without querying the adapter.
+     * There are no cached ones until the device cache has been read.
+     */
+    public List<DeviceSnapshot<BluetoothDevice>> getBluetoothDevices() {
+        DeviceRegistry<DeviceSnapshot<BluetoothDevice>> devices = new DeviceRegistry<>();
+        for (DeviceSnapshot<BluetoothDevice> device : mDiscoverySnapshot.getDevices()) {
+            DeviceSnapshot<BluetoothDevice> current = mDeviceSnapshots.get(device.getAddress());
+            // Gone from the store once unseen for long enough; the scan's copy is still valid.
+            devices.put(device.getAddress(), null, current != null ? current : device);
+        }
+        if (mRadio.isSupported()) {
+            for (CachedDevice cached : getDeviceCache().getDevices()) {
+                if (cached.getName() != null && !devices.contains(cached.getAddress())) {
+                    devices.put(cached.getAddress(), cached.getName(),
+                            mDeviceSnapshots.putIfAbsent(restoreSnapshot(cached)));
+                }
+            }
         }
+        return devices.toList();
+    }
+
+    public DeviceCache getDeviceCache() {
+        return mHub.getDeviceCache();
+    }
+
+    /**
+     * The queries of the services of found devices, with their cache hit rate and round trip
+     * times, or null where SDP is not supported.
+     */
+    public ServiceDiscovery<BluetoothDevice> getServiceDiscovery() {
+        return mHub.getServiceDiscovery();
+    }
 
+    /**
+     * The services the device offered when last queried, or null if not known.
+     */
+    public List<UUID> getServices(String address) {
+        ServiceDiscovery<BluetoothDevice> services = mHub.getServiceDiscovery();
+        ServiceRecord record = services != null ? services.getCache().get(address) : null;
+        return record != null ? record.getUuids() : null;
     }
 
-    public void manageAdapter(Intent intent) {
+    /**
+     * The addresses of the devices known to offer the service.
+     */
+    public Set<String> getDevicesOffering(UUID service) {
+        ServiceDiscovery<BluetoothDevice> services = mHub.getServiceDiscovery();
+        return services != null ? services.getCache().getAddresses(service) :
+                Collections.<String>emptySet();
+    }
 
-        String action = intent.getAction();
+    /**
+     * Brings the cached bonded devices in line with the adapter in the background, then hands
+     * the updated device list to the reconciled listener. Does nothing if the bonded devices
+     * have not changed since the last time; changes to them are reported as they happen.
+     */
+    public void reconcileDevices() {
+        BACKGROUND_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!mRadio.isSupported() || !mRadio.isEnabled()) {
+                    return;
+                }
+                List<DeviceSnapshot<BluetoothDevice>> bonded = mHub.getBondedDevices();
+                if (bonded == mReconciledBondedDevices) {
+                    return;
+                }
+                mReconciledBondedDevices = bonded;
+                reconcileBondedDevices(bonded);
+                postDevices();
+            }
+        });
+    }
+
+    /**
+     * Hands the device list to the reconciled listener on the main thread.
+     */
+    private void postDevices() {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mReleased && mReconciledListener != null) {
+                    mReconciledListener.onDevicesReconciled(getBluetoothDevices());
+                }
+            }
+        });
+    }
+
+    /**
+     * The bonded devices with a name or a known vendor, from the hub's bonded set.
+     */
+    private List<DiscoveryEvent<DeviceSnapshot<BluetoothDevice>>> getPairedBluetoothDevices() {
+        List<DeviceSnapshot<BluetoothDevice>> devices = mHub.getBondedDevices();
+        List<DiscoveryEvent<DeviceSnapshot<BluetoothDevice>>> pairedDevices =
+                new ArrayList<>(devices.size());
+        for (DeviceSnapshot<BluetoothDevice> snapshot : devices) {
+            if (snapshot.isNamed()) {
+                pairedDevices.add(DiscoveryEvent.found(snapshot, snapshot.getAddress(),
+                        snapshot.getName()));
+            }
+        }
+        return pairedDevices;
+    }
 
-        if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(action)) {
-            switch (mBluetoothAdapter.getState()) {
-                case BluetoothAdapter.STATE_ON:
-                    Log.v(BLUETOOTH_FACADE_TAG, "STATE_ON");
-                    mAdapterListener.onEnable();
-                    break;
-                case BluetoothAdapter.STATE_OFF:
-                    Log.v(BLUETOOTH_FACADE_TAG, "STATE_OFF");
-                    mAdapterListener.onDisable();
-                    break;
-                case BluetoothAdapter.STATE_TURNING_OFF:
-                    Log.v(BLUETOOTH_FACADE_TAG, "STATE_TURNING_OFF");
-                    break;
-                case BluetoothAdapter.STATE_TURNING_ON:
-                    Log.v(BLUETOOTH_FACADE_TAG, "STATE_TURNING_ON");
-                    break;
+    private void reconcileBondedDevices(List<DeviceSnapshot<BluetoothDevice>> devices) {
+        DeviceCache cache = getDeviceCache();
+        HashSet<String> bonded = new HashSet<>();
+        for (DeviceSnapshot<BluetoothDevice> device : devices) {
+            bonded.add(device.getAddress());
+            CachedDevice cached = cache.get(device.getAddress());
+            mHub.cacheDevice(device, cached != null ? cached.getLastSeen() : Clock.WALL.now());
+        }
+        for (CachedDevice cached : cache.getDevices()) {
+            if (cached.getBondState() == BluetoothRadio.BOND_BONDED &&
+                    !bonded.contains(cached.getAddress())) {
+                cache.setBondState(cached.getAddress(), BluetoothRadio.BOND_NONE);
+                DeviceSnapshot<BluetoothDevice> snapshot =
+                        mDeviceSnapshots.get(cached.getAddress());
+                if (snapshot != null) {
+                    mDeviceSnapshots.setBondState(snapshot.getDevice(), BluetoothRadio.BOND_NONE);
+                }
             }
         }
+    }
+
+    private DeviceSnapshot<BluetoothDevice> restoreSnapshot(CachedDevice cached) {
+        return new DeviceSnapshot<>(mRadio.getRemoteDevice(cached.getAddress()),
+                cached.getAddress(), cached.getName(), cached.getDeviceClass(),
+                cached.getBondState(), cached.getLastSeen(), cached.getLastSeen(),
+                mDeviceSnapshots.getVendors().getVendorName(cached.getAddress()));
+    }
 
+    /**
+     * Called on the radio thread once the hub has updated the device's snapshot; published
+     * as a DEVICE_CHANGED event: a device already seen was renamed, changed class or was
+     * bonded or unbonded.
+     */
+    private void onDeviceChanged(BluetoothDevice device) {
+        if (!mEvents.hasSubscribers()) {
+            return;
+        }
+        DeviceSnapshot<BluetoothDevice> snapshot =
+                mDeviceSnapshots.get(mRadio.getAddress(device));
+        if (snapshot != null) {
+            emit(BluetoothEvent.device(BluetoothEvent.Type.DEVICE_CHANGED, snapshot,
+                    Clock.WALL.now()));
+        }
     }
 
-    private static Map<Integer, String> getDeviceClasses() {
-        Map<Integer, String> deviceClasses = new HashMap<>();
-        deviceClasses.put(BluetoothClass.Device.COMPUTER_UNCATEGORIZED, "COMPUTER_UNCATEGORIZED");
-        deviceClasses.put(BluetoothClass.Device.COMPUTER_DESKTOP, "COMPUTER_DESKTOP");
-        deviceClasses.put(BluetoothClass.Device.COMPUTER_SERVER, "COMPUTER_SERVER");
-        deviceClasses.put(BluetoothClass.Device.COMPUTER_LAPTOP, "COMPUTER_LAPTOP");
-        deviceClasses.put(BluetoothClass.Device.COMPUTER_HANDHELD_PC_PDA,
-                "COMPUTER_HANDHELD_PC_PDA");
-        deviceClasses.put(BluetoothClass.Device.COMPUTER_PALM_SIZE_PC_PDA,
-                "COMPUTER_PALM_SIZE_PC_PDA");
-        deviceClasses.put(BluetoothClass.Device.COMPUTER_WEARABLE, "COMPUTER_WEARABLE");
-        deviceClasses.put(BluetoothClass.Device.PHONE_UNCATEGORIZED, "PHONE_UNCATEGORIZED");
-        deviceClasses.put(BluetoothClass.Device.PHONE_CELLULAR, "PHONE_CELLULAR");
-        deviceClasses.put(BluetoothClass.Device.PHONE_CORDLESS, "PHONE_CORDLESS");
-        deviceClasses.put(BluetoothClass.Device.PHONE_SMART, "PHONE_SMART");
-        deviceClasses.put(BluetoothClass.Device.PHONE_MODEM_OR_GATEWAY, "PHONE_MODEM_OR_GATEWAY");
-        deviceClasses.put(BluetoothClass.Device.PHONE_ISDN, "PHONE_ISDN");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_UNCATEGORIZED,
-                "AUDIO_VIDEO_UNCATEGORIZED");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_WEARABLE_HEADSET,
-                "AUDIO_VIDEO_WEARABLE_HEADSET");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_HANDSFREE, "AUDIO_VIDEO_HANDSFREE");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_MICROPHONE, "AUDIO_VIDEO_MICROPHONE");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_LOUDSPEAKER, "AUDIO_VIDEO_LOUDSPEAKER");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_HEADPHONES, "AUDIO_VIDEO_HEADPHONES");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_PORTABLE_AUDIO,
-                "AUDIO_VIDEO_PORTABLE_AUDIO");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_CAR_AUDIO, "AUDIO_VIDEO_CAR_AUDIO");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_SET_TOP_BOX, "AUDIO_VIDEO_SET_TOP_BOX");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_HIFI_AUDIO, "AUDIO_VIDEO_HIFI_AUDIO");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_VCR, "AUDIO_VIDEO_VCR");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_VIDEO_CAMERA,
-                "AUDIO_VIDEO_VIDEO_CAMERA");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_CAMCORDER, "AUDIO_VIDEO_CAMCORDER");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_VIDEO_MONITOR,
-                "AUDIO_VIDEO_VIDEO_MONITOR");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_VIDEO_DISPLAY_AND_LOUDSPEAKER,
-                "AUDIO_VIDEO_VIDEO_DISPLAY_AND_LOUDSPEAKER");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_VIDEO_CONFERENCING,
-                "AUDIO_VIDEO_VIDEO_CONFERENCING");
-        deviceClasses.put(BluetoothClass.Device.AUDIO_VIDEO_VIDEO_GAMING_TOY,
-                "AUDIO_VIDEO_VIDEO_GAMING_TOY");
-        deviceClasses.put(BluetoothClass.Device.WEARABLE_UNCATEGORIZED, "WEARABLE_UNCATEGORIZED");
-        deviceClasses.put(BluetoothClass.Device.WEARABLE_WRIST_WATCH, "WEARABLE_WRIST_WATCH");
-        deviceClasses.put(BluetoothClass.Device.WEARABLE_PAGER, "WEARABLE_PAGER");
-        deviceClasses.put(BluetoothClass.Device.WEARABLE_JACKET, "WEARABLE_JACKET");
-        deviceClasses.put(BluetoothClass.Device.WEARABLE_HELMET, "WEARABLE_HELMET");
-        deviceClasses.put(BluetoothClass.Device.WEARABLE_GLASSES, "WEARABLE_GLASSES");
-        deviceClasses.put(BluetoothClass.Device.TOY_UNCATEGORIZED, "TOY_UNCATEGORIZED");
-        deviceClasses.put(BluetoothClass.Device.TOY_ROBOT, "TOY_ROBOT");
-        deviceClasses.put(BluetoothClass.Device.TOY_VEHICLE, "TOY_VEHICLE");
-        deviceClasses.put(BluetoothClass.Device.TOY_DOLL_ACTION_FIGURE, "TOY_DOLL_ACTION_FIGURE");
-        deviceClasses.put(BluetoothClass.Device.TOY_CONTROLLER, "TOY_CONTROLLER");
-        deviceClasses.put(BluetoothClass.Device.TOY_GAME, "TOY_GAME");
-        deviceClasses.put(BluetoothClass.Device.HEALTH_UNCATEGORIZED, "HEALTH_UNCATEGORIZED");
-        deviceClasses.put(BluetoothClass.Device.HEALTH_BLOOD_PRESSURE, "HEALTH_BLOOD_PRESSURE");
-        deviceClasses.put(BluetoothClass.Device.HEALTH_THERMOMETER, "HEALTH_THERMOMETER");
-        deviceClasses.put(BluetoothClass.Device.HEALTH_WEIGHING, "HEALTH_WEIGHING");
-        deviceClasses.put(BluetoothClass.Device.HEALTH_GLUCOSE, "HEALTH_GLUCOSE");
-        deviceClasses.put(BluetoothClass.Device.HEALTH_PULSE_OXIMETER, "HEALTH_PULSE_OXIMETER");
-        deviceClasses.put(BluetoothClass.Device.HEALTH_PULSE_RATE, "HEALTH_PULSE_RATE");
-        deviceClasses.put(BluetoothClass.Device.HEALTH_DATA_DISPLAY, "HEALTH_DATA_DISPLAY");
-        return deviceClasses;
+    /**
+     * Called on the radio thread for each ACL connect and disconnect.
+     */
+    private void onConnectionChanged(BluetoothDevice device, final boolean connected) {
+        final OnConnectionChangedListener listener = mConnectionListener;
+        if (listener == null && !mEvents.hasSubscribers()) {
+            return;
+        }
+        final DeviceSnapshot<BluetoothDevice> snapshot = mDeviceSnapshots.capture(device);
+        emit(BluetoothEvent.device(connected ? BluetoothEvent.Type.CONNECTED
+                : BluetoothEvent.Type.DISCONNECTED, snapshot, Clock.WALL.now()));
+        if (listener != null) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mReleased) {
+                        listener.onConnectionChanged(snapshot, connected);
+                    }
+                }
+            });
+        }
+    }
+
+    private void emit(final BluetoothEvent<BluetoothDevice> event) {
+        if (!mEvents.hasSubscribers()) {
+            return;
+        }
+        mEventRelay.execute(new Runnable() {
+            @Override
+            public void run() {
+                mEvents.publish(event);
+            }
+        });
+    }
+
+    private final BluetoothRadio.Listener<BluetoothDevice> mRadioListener =
+            new BluetoothRadio.Listener<BluetoothDevice>() {
+                @Override
+                public void onStateChanged(final int state) {
+                    emit(BluetoothEvent.<BluetoothDevice>adapterState(state, Clock.WALL.now()));
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onAdapterStateChanged(state);
+                        }
+                    });
+                }
+
+                @Override
+                public void onDiscoveryStarted() {
+                    Log.v(DISCOVERING_TAG, "ACTION_DISCOVERY_STARTED");
+                    // Another facade's scan only adds what it finds to our list; it does not
+                    // start a new list or end ours.
+                    mOwnDiscovery = mDiscoveryScheduler.onDiscoveryStarted();
+                    if (mOwnDiscovery) {
+                        offerDiscoveryEvent(DiscoveryEvent.<BluetoothDevice>started());
+                    }
+                }
+
+                @Override
+                public void onDiscoveryFinished() {
+                    Log.v(DISCOVERING_TAG, "ACTION_DISCOVERY_FINISHED");
+                    mDiscoveryScheduler.onDiscoveryFinished();
+                    if (mOwnDiscovery) {
+                        mOwnDiscovery = false;
+                        offerDiscoveryEvent(DiscoveryEvent.<BluetoothDevice>finished());
+                    }
+                }
+
+                @Override
+                public void onDeviceFound(BluetoothDevice device, short rssi) {
+                    String address = mRadio.getAddress(device);
+                    mDiscoveryScheduler.onDeviceFound(address);
+                    if (rssi != BluetoothRadio.RSSI_UNKNOWN) {
+                        mSignals.update(MacAddress.pack(address), rssi, mClock.now());
+                    }
+                    PresenceEngine presence = mPresence;
+                    if (presence != null) {
+                        presence.onSighting(address, rssi);
+                    }
+                    offerDiscoveryEvent(DiscoveryEvent.found(device, null, null));
+                }
+
+                @Override
+                public void onAclConnected(BluetoothDevice device) {
+                    Log.v(NOTIFICATIONS_TAG, "ACTION_ACL_CONNECTED");
+                    ConnectionJournal journal = mConnectionJournal;
+                    if (journal != null) {
+                        journal.recordConnected(mRadio.getAddress(device));
+                    }
+                    PresenceEngine presence = mPresence;
+                    if (presence != null) {
+                        presence.onConnected(mRadio.getAddress(device));
+                    }
+                    onConnectionChanged(device, true);
+                }
+
+                @Override
+                public void onAclDisconnected(BluetoothDevice device) {
+                    Log.v(NOTIFICATIONS_TAG, "ACTION_ACL_DISCONNECTED");
+                    ConnectionJournal journal = mConnectionJournal;
+                    if (journal != null) {
+                        journal.recordDisconnected(mRadio.getAddress(device));
+                    }
+                    PresenceEngine presence = mPresence;
+                    if (presence != null) {
+                        presence.onDisconnected(mRadio.getAddress(device));
+                    }
+                    onConnectionChanged(device, false);
+                }
+
+                @Override
+                public void onNameChanged(BluetoothDevice device, String name) {
+                    onDeviceChanged(device);
+                    if (mDiscoveryPipelineStarted) {
+                        // A device found while still unnamed was dropped; it can be listed now.
+                        // One already listed is ignored by the pipeline.
+                        offerDiscoveryEvent(DiscoveryEvent.found(device, null, null));
+                    }
+                }
+
+                @Override
+                public void onClassChanged(BluetoothDevice device, int deviceClass) {
+                    onDeviceChanged(device);
+                }
+
+                @Override
+                public void onBondStateChanged(BluetoothDevice device, int bondState) {
+                    onDeviceChanged(device);
+                }
+            };
+
+    private final LeScanner.Callback<BluetoothDevice> mLeScanCallback =
+            new LeScanner.Callback<BluetoothDevice>() {
+                @Override
+                public void onResults(List<LeScanResult<BluetoothDevice>> results) {
+                    long now = mClock.now();
+                    PresenceEngine presence = mPresence;
+                    for (LeScanResult<BluetoothDevice> result : results) {
+                        BluetoothDevice device = result.getDevice();
+                        String address = mRadio.getAddress(device);
+                        mSignals.update(MacAddress.pack(address), result.getRssi(), now);
+                        if (presence != null) {
+                            presence.onSighting(address, result.getRssi());
+                        }
+                        offerDiscoveryEvent(DiscoveryEvent.found(device, null,
+                                result.getName()));
+                    }
+                }
+
+                @Override
+                public void onScanFailed(int errorCode) {
+                    Log.w(DISCOVERING_TAG, "LE scan failed with error " + errorCode);
+                    stopLeScan();
+                }
+            };
+
+    private final PresenceEngine.Listener mPresenceEngineListener =
+            new PresenceEngine.Listener() {
+                @Override
+                public void onPresenceChanged(final String address,
+                                              final PresenceEngine.State previous,
+                                              final PresenceEngine.State state) {
+                    if (state == PresenceEngine.State.ABSENT) {
+                        // Gone; release what is kept about it until it is seen again.
+                        mDeviceSnapshots.remove(address);
+                        if (MacAddress.isValid(address)) {
+                            mSignals.remove(MacAddress.pack(address));
+                        }
+                    }
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!mReleased && mPresenceListener != null) {
+                                mPresenceListener.onPresenceChanged(address, previous, state);
+                            }
+                        }
+                    });
+                }
+            };
+
+    private void offerDiscoveryEvent(DiscoveryEvent<BluetoothDevice> event) {
+        if (!mDiscoveryPipeline.offer(event)) {
+            Log.w(DISCOVERING_TAG, "Discovery queue full, dropped " + event.getType());
+        }
+    }
+
+    private final DiscoveryPipeline.Decoder<DiscoveryEvent<BluetoothDevice>,
+            DeviceSnapshot<BluetoothDevice>> mDiscoveryDecoder =
+            new DiscoveryPipeline.Decoder<DiscoveryEvent<BluetoothDevice>,
+                    DeviceSnapshot<BluetoothDevice>>() {
+                @Override
+                public DiscoveryEvent<DeviceSnapshot<BluetoothDevice>> decode(
+                        DiscoveryEvent<BluetoothDevice> event) {
+                    switch (event.getType()) {
+                        case STARTED:
+                            return DiscoveryEvent.started();
+                        case FINISHED:
+                            return DiscoveryEvent.finished();
+                    }
+                    DeviceSnapshot<BluetoothDevice> snapshot =
+                            mDeviceSnapshots.capture(event.getDevice(), event.getName());
+                    if (!snapshot.isNamed()) {
+                        return null;
+                    }
+                    mHub.cacheDevice(snapshot, Clock.WALL.now());
+                    return DiscoveryEvent.found(snapshot, snapshot.getAddress(),
+                            snapshot.getName());
+                }
+
+                @Override
+                public List<DiscoveryEvent<DeviceSnapshot<BluetoothDevice>>> getKnownDevices() {
+                    return getPairedBluetoothDevices();
+                }
+            };
+
+    private final DiscoveryPipeline.Listener<DeviceSnapshot<BluetoothDevice>> mDiscoveryListener =
+            new DiscoveryPipeline.Listener<DeviceSnapshot<BluetoothDevice>>() {
+                @Override
+                public void onScanStarted(
+                        DiscoverySnapshot<DeviceSnapshot<BluetoothDevice>> snapshot) {
+                    mDiscoverySnapshot = snapshot;
+                    emit(BluetoothEvent.<BluetoothDevice>scan(BluetoothEvent.Type.SCAN_STARTED,
+                            Clock.WALL.now()));
+                    if (!mReleased && mScanListener != null) {
+                        mScanListener.onScanStarted(snapshot);
+                    }
+                }
+
+                @Override
+                public void onDevicesFound(
+                        DiscoverySnapshot<DeviceSnapshot<BluetoothDevice>> snapshot) {
+                    mDiscoverySnapshot = snapshot;
+                    long now = Clock.WALL.now();
+                    for (DeviceSnapshot<BluetoothDevice> device : snapshot.getAddedDevices()) {
+                        emit(BluetoothEvent.device(BluetoothEvent.Type.DEVICE_FOUND, device,
+                                now));
+                    }
+                    if (!mReleased && mScanListener != null) {
+                        mScanListener.onDeviceFound(snapshot);
+                    }
+                }
+
+                @Override
+                public void onScanFinished(
+                        DiscoverySnapshot<DeviceSnapshot<BluetoothDevice>> snapshot) {
+                    mDiscoverySnapshot = snapshot;
+                    emit(BluetoothEvent.<BluetoothDevice>scan(BluetoothEvent.Type.SCAN_FINISHED,
+                            Clock.WALL.now()));
+                    if (mReleased || mScanListener == null) {
+                        return;
+                    }
+                    if (snapshot.size() > 0) {
+                        mScanListener.onScanFinishedAndDevicesFound(snapshot);
+                    } else {
+                        mScanListener.onScanFinishedAndDevicesNoFound();
+                    }
+                }
+            };
+
+    private void onAdapterStateChanged(int state) {
+        if (mReleased || mAdapterListener == null) {
+            return;
+        }
+        switch (state) {
+            case BluetoothRadio.STATE_ON:
+                Log.v(BLUETOOTH_FACADE_TAG, "STATE_ON");
+                mAdapterListener.onEnable();
+                break;
+            case BluetoothRadio.STATE_OFF:
+                Log.v(BLUETOOTH_FACADE_TAG, "STATE_OFF");
+                mAdapterListener.onDisable();
+                break;
+            case BluetoothRadio.STATE_TURNING_OFF:
+                Log.v(BLUETOOTH_FACADE_TAG, "STATE_TURNING_OFF");
+                break;
+            case BluetoothRadio.STATE_TURNING_ON:
+                Log.v(BLUETOOTH_FACADE_TAG, "STATE_TURNING_ON");
+                break;
+        }
     }
 
 }
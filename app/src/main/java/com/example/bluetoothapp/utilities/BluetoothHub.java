@@ -0,0 +1,345 @@
+package com.example.bluetoothapp.utilities;
+
+import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.bluetoothapp.core.cache.CachedDevice;
+import com.example.bluetoothapp.core.cache.DeviceCache;
+import com.example.bluetoothapp.core.cache.DeviceCacheFile;
+import com.example.bluetoothapp.core.device.BondedDeviceSet;
+import com.example.bluetoothapp.core.device.DeviceSnapshot;
+import com.example.bluetoothapp.core.device.DeviceSnapshotStore;
+import com.example.bluetoothapp.core.metrics.Counter;
+import com.example.bluetoothapp.core.metrics.Gauge;
+import com.example.bluetoothapp.core.metrics.Histogram;
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.LeScanHub;
+import com.example.bluetoothapp.core.radio.LeScanner;
+import com.example.bluetoothapp.core.radio.RadioHub;
+import com.example.bluetoothapp.core.radio.UuidFetcher;
+import com.example.bluetoothapp.core.service.ServiceCache;
+import com.example.bluetoothapp.core.service.ServiceCacheFile;
+import com.example.bluetoothapp.core.service.ServiceDiscovery;
+import com.example.bluetoothapp.core.time.Clock;
+import com.example.bluetoothapp.core.vendor.OuiTable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * The Bluetooth state shared by every component of the process: one radio and one set of
+ * receivers behind a {@link RadioHub}, one LE scan behind a {@link LeScanHub}, one registry
+ * of device snapshots, the bonded devices and one device cache, one queue of operations on
+ * the controller, one record of the services of devices and the table of device vendors.
+ * Each {@link BluetoothFacade} subscribes to the hub for the events it needs.
+ */
+public final class BluetoothHub {
+
+    public static final String DEVICE_CACHE_FILE = "bluetooth.facade.devices";
+    public static final String SERVICE_CACHE_FILE = "bluetooth.facade.services";
+    // Stored uncompressed, so it can be mapped straight out of the APK.
+    public static final String OUI_TABLE_ASSET = "oui_table.bin";
+
+    private static final String DEVICE_CACHE_TAG = "device_cache_tag";
+    private static final String SERVICE_CACHE_TAG = "service_cache_tag";
+    private static final String OUI_TABLE_TAG = "oui_table_tag";
+
+    private static BluetoothHub sHub;
+
+    private final BluetoothRadio<BluetoothDevice> mRadio;
+    private final RadioHub<BluetoothDevice> mRadioHub;
+    private final LeScanHub<BluetoothDevice> mLeScanHub;
+    private final DeviceSnapshotStore<BluetoothDevice> mDeviceSnapshots;
+    private final BondedDeviceSet<BluetoothDevice> mBondedDevices;
+    private final DeviceCache mDeviceCache;
+    private volatile boolean mDeviceCacheLoaded;
+    private final RadioOperationScheduler mOperations;
+    // Null where SDP is not supported.
+    private final ServiceDiscovery<BluetoothDevice> mServiceDiscovery;
+
+    // Every scan the radio reports, whoever started it; on the radio thread only.
+    private final Gauge mScanActive = Metrics.get().gauge("scan.active");
+    private final Counter mScans = Metrics.get().counter("scan.count");
+    private final Counter mDevicesReported = Metrics.get().counter("scan.devices_reported");
+    private final Histogram mScanDurations = Metrics.get().histogram("scan.duration");
+    private final Histogram mFirstDeviceTimes = Metrics.get().histogram("scan.first_device");
+    private long mScanStart = -1;
+    private boolean mScanFoundDevice;
+
+    public static synchronized BluetoothHub get(Context context) {
+        if (sHub == null) {
+            final Context appContext = context.getApplicationContext();
+            sHub = new BluetoothHub(new AndroidBluetoothRadio(appContext),
+                    new AndroidLeScanner(), new DeviceCache(new DeviceCacheFile(
+                            new File(appContext.getFilesDir(), DEVICE_CACHE_FILE)),
+                            BluetoothFacade.BACKGROUND_EXECUTOR, DeviceCache.DEFAULT_CAPACITY),
+                    new AndroidUuidFetcher(appContext), new ServiceCache(new ServiceCacheFile(
+                            new File(appContext.getFilesDir(), SERVICE_CACHE_FILE)),
+                            BluetoothFacade.BACKGROUND_EXECUTOR, Clock.WALL,
+                            ServiceCache.DEFAULT_TTL, ServiceCache.DEFAULT_CAPACITY),
+                    mapOuiTable(appContext));
+            sHub.mDeviceSnapshots.setRetainer(new DeviceSnapshotStore.Retainer() {
+                @Override
+                public boolean isRetained(String address) {
+                    return FollowedDevices.get(appContext).isFollowed(address);
+                }
+            });
+        }
+        return sHub;
+    }
+
+    /**
+     * Maps the vendor table asset, or returns the empty table if the APK has none.
+     */
+    private static OuiTable mapOuiTable(Context context) {
+        long start = Clock.MONOTONIC.now();
+        try {
+            AssetFileDescriptor descriptor = context.getAssets().openFd(OUI_TABLE_ASSET);
+            try {
+                FileInputStream in = descriptor.createInputStream();
+                try {
+                    OuiTable table = OuiTable.wrap(in.getChannel().map(
+                            FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(),
+                            descriptor.getLength()));
+                    Log.v(OUI_TABLE_TAG, table.size() + " OUIs mapped in " +
+                            (Clock.MONOTONIC.now() - start) + " ms");
+                    return table;
+                } finally {
+                    in.close();
+                }
+            } finally {
+                descriptor.close();
+            }
+        } catch (FileNotFoundException e) {
+            Log.v(OUI_TABLE_TAG, "No vendor table in this build");
+        } catch (IOException e) {
+            Log.w(OUI_TABLE_TAG, "Could not map the vendor table", e);
+        }
+        return OuiTable.EMPTY;
+    }
+
+    BluetoothHub(BluetoothRadio<BluetoothDevice> radio, LeScanner<BluetoothDevice> leScanner,
+                 DeviceCache deviceCache, UuidFetcher<BluetoothDevice> uuidFetcher,
+                 ServiceCache serviceCache, OuiTable vendors) {
+        mRadio = radio;
+        mLeScanHub = new LeScanHub<>(leScanner);
+        mDeviceCache = deviceCache;
+        loadDeviceCache();
+        mDeviceSnapshots = new DeviceSnapshotStore<>(radio, Clock.WALL, vendors);
+        mBondedDevices = new BondedDeviceSet<>(radio, mDeviceSnapshots);
+        mRadioHub = new RadioHub<>(radio, mRegistryListener, BluetoothRadio.EVENT_ADAPTER |
+                BluetoothRadio.EVENT_DISCOVERY | BluetoothRadio.EVENT_DEVICE);
+        mOperations = new RadioOperationScheduler(Clock.MONOTONIC,
+                new HandlerScheduler(new Handler(Looper.getMainLooper())),
+                RadioOperationScheduler.Policy.DEFAULT);
+        mServiceDiscovery = uuidFetcher.isSupported() ? new ServiceDiscovery<>(radio,
+                uuidFetcher, mOperations, serviceCache, Clock.MONOTONIC,
+                ServiceDiscovery.DEFAULT_MAX_IN_FLIGHT) : null;
+        if (mServiceDiscovery != null) {
+            loadServiceCache(serviceCache);
+            uuidFetcher.open(mServiceDiscovery);
+        }
+    }
+
+    /**
+     * Reads the device cache in the background, first of all the background work, so the
+     * device list can be shown before the disk is read.
+     */
+    private void loadDeviceCache() {
+        BluetoothFacade.BACKGROUND_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mDeviceCache.load();
+                } catch (IOException e) {
+                    Log.w(DEVICE_CACHE_TAG, "Could not read the device cache", e);
+                }
+                mDeviceCacheLoaded = true;
+            }
+        });
+    }
+
+    /**
+     * Reads the service cache in the background, ahead of any write of it. Records fetched
+     * before it is read are kept.
+     */
+    private static void loadServiceCache(final ServiceCache serviceCache) {
+        BluetoothFacade.BACKGROUND_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    serviceCache.load();
+                } catch (IOException e) {
+                    Log.w(SERVICE_CACHE_TAG, "Could not read the service cache", e);
+                }
+            }
+        });
+    }
+
+    public BluetoothRadio<BluetoothDevice> getRadio() {
+        return mRadio;
+    }
+
+    /**
+     * A scanner for one caller, sharing the process's one LE scan with every other. Starting
+     * or stopping it leaves the others' scans running.
+     */
+    public LeScanner<BluetoothDevice> newLeScanner() {
+        return mLeScanHub.newScanner();
+    }
+
+    public RadioHub<BluetoothDevice> getRadioHub() {
+        return mRadioHub;
+    }
+
+    /**
+     * Discovery, SDP, bonding and connects, run one at a time on the main thread.
+     */
+    public RadioOperationScheduler getOperations() {
+        return mOperations;
+    }
+
+    public DeviceSnapshotStore<BluetoothDevice> getDeviceSnapshots() {
+        return mDeviceSnapshots;
+    }
+
+    /**
+     * The bonded devices. Queries the radio only after the adapter state changed, or while
+     * nothing is subscribed to the hub and so bond changes go unheard.
+     */
+    public List<DeviceSnapshot<BluetoothDevice>> getBondedDevices() {
+        boolean observed = mRadioHub.isOpen();
+        List<DeviceSnapshot<BluetoothDevice>> devices = mBondedDevices.get();
+        if (!observed) {
+            mBondedDevices.invalidate();
+        }
+        return devices;
+    }
+
+    /**
+     * What was last known about the devices shown. Read from disk in the background, so it may
+     * still be empty at first; see {@link #isDeviceCacheLoaded()}.
+     */
+    public DeviceCache getDeviceCache() {
+        return mDeviceCache;
+    }
+
+    /**
+     * Whether the device cache has been read. Work queued on the background executor after
+     * the hub was created runs once it has.
+     */
+    public boolean isDeviceCacheLoaded() {
+        return mDeviceCacheLoaded;
+    }
+
+    /**
+     * Queries the services of found devices, or null where SDP is not supported. The service
+     * cache is read from disk in the background, so it may still be empty at first.
+     */
+    public ServiceDiscovery<BluetoothDevice> getServiceDiscovery() {
+        return mServiceDiscovery;
+    }
+
+    /**
+     * Remembers the device if it has a name.
+     */
+    void cacheDevice(DeviceSnapshot<BluetoothDevice> snapshot, long lastSeen) {
+        if (snapshot.getName() != null) {
+            getDeviceCache().put(new CachedDevice(snapshot.getAddress(), snapshot.getName(),
+                    snapshot.getDeviceClassCode(), snapshot.getBondState(), lastSeen));
+        }
+    }
+
+    private void onDeviceChanged(DeviceSnapshot<BluetoothDevice> snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        mBondedDevices.onDeviceChanged(snapshot);
+        CachedDevice cached = getDeviceCache().get(snapshot.getAddress());
+        if (cached != null) {
+            cacheDevice(snapshot, cached.getLastSeen());
+        }
+    }
+
+    // Keeps the snapshots and the caches current before any subscriber hears of a change, and
+    // queues the services of found devices for a query once discovery ends.
+    private final BluetoothRadio.Listener<BluetoothDevice> mRegistryListener =
+            new BluetoothRadio.Listener<BluetoothDevice>() {
+                @Override
+                public void onStateChanged(int state) {
+                    mBondedDevices.onStateChanged(state);
+                }
+
+                @Override
+                public void onDiscoveryStarted() {
+                    mScans.increment();
+                    mScanActive.set(1);
+                    mScanStart = System.nanoTime();
+                    mScanFoundDevice = false;
+                    if (mServiceDiscovery != null) {
+                        mServiceDiscovery.onDiscoveryStarted();
+                    }
+                }
+
+                @Override
+                public void onDiscoveryFinished() {
+                    mScanActive.set(0);
+                    if (mScanStart >= 0) {
+                        mScanDurations.recordSince(mScanStart);
+                        mScanStart = -1;
+                    }
+                    if (mServiceDiscovery != null) {
+                        mServiceDiscovery.onDiscoveryFinished();
+                    }
+                }
+
+                @Override
+                public void onDeviceFound(BluetoothDevice device, short rssi) {
+                    mDevicesReported.increment();
+                    if (mScanStart >= 0 && !mScanFoundDevice) {
+                        mFirstDeviceTimes.recordSince(mScanStart);
+                        mScanFoundDevice = true;
+                    }
+                    if (mServiceDiscovery != null) {
+                        mServiceDiscovery.onDeviceFound(device);
+                    }
+                }
+
+                @Override
+                public void onAclConnected(BluetoothDevice device) {
+                }
+
+                @Override
+                public void onAclDisconnected(BluetoothDevice device) {
+                }
+
+                @Override
+                public void onNameChanged(BluetoothDevice device, String name) {
+                    onDeviceChanged(mDeviceSnapshots.setName(device, name));
+                }
+
+                @Override
+                public void onClassChanged(BluetoothDevice device, int deviceClass) {
+                    onDeviceChanged(mDeviceSnapshots.setDeviceClass(device, deviceClass));
+                }
+
+                @Override
+                public void onBondStateChanged(BluetoothDevice device, int bondState) {
+                    if (bondState >= BluetoothRadio.BOND_NONE &&
+                            bondState <= BluetoothRadio.BOND_BONDED) {
+                        onDeviceChanged(mDeviceSnapshots.setBondState(device, bondState));
+                        mBondedDevices.onBondStateChanged(device, bondState);
+                    }
+                }
+            };
+
+}
@@ -0,0 +1,42 @@
+package com.example.bluetoothapp.utilities;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.bluetoothapp.core.journal.ConnectionJournal;
+import com.example.bluetoothapp.core.time.Clock;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The process-wide {@link ConnectionJournal}, mapped from a file so the history outlives the
+ * process. Falls back to memory when the file cannot be mapped.
+ */
+public final class ConnectionHistory {
+
+    public static final String CONNECTION_JOURNAL_FILE = "bluetooth.facade.connections";
+    public static final int CONNECTION_JOURNAL_CAPACITY = 4096;
+
+    private static final String CONNECTION_HISTORY_TAG = "connection_history_tag";
+
+    private static ConnectionJournal sJournal;
+
+    private ConnectionHistory() {
+    }
+
+    public static synchronized ConnectionJournal get(Context context) {
+        if (sJournal == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(),
+                    CONNECTION_JOURNAL_FILE);
+            try {
+                sJournal = ConnectionJournal.open(file, CONNECTION_JOURNAL_CAPACITY, Clock.WALL);
+            } catch (IOException e) {
+                Log.w(CONNECTION_HISTORY_TAG, "Could not map the connection journal", e);
+                sJournal = ConnectionJournal.inMemory(CONNECTION_JOURNAL_CAPACITY, Clock.WALL);
+            }
+        }
+        return sJournal;
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.example.bluetoothapp.utilities;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.bluetoothapp.core.follow.FollowEngine;
+import com.example.bluetoothapp.core.follow.FollowFile;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.example.bluetoothapp.utilities.BluetoothFacade.BLUETOOTH_PREFS_FILE;
+
+/**
+ * The process-wide {@link FollowEngine}, shared by the activity and the connection service so a
+ * device followed in one is matched by the other straight away.
+ */
+public final class FollowedDevices {
+
+    public static final String FOLLOWED_DEVICES_FILE = "bluetooth.facade.followed";
+
+    // The single followed address kept in preferences before devices had their own file.
+    private static final String LEGACY_FOLLOWED_DEVICE = "bluetooth_device_followed";
+    private static final String FOLLOWED_DEVICES_TAG = "followed_devices_tag";
+
+    private static FollowEngine sEngine;
+
+    private FollowedDevices() {
+    }
+
+    public static synchronized FollowEngine get(Context context) {
+        if (sEngine == null) {
+            Context appContext = context.getApplicationContext();
+            FollowFile file = new FollowFile(
+                    new File(appContext.getFilesDir(), FOLLOWED_DEVICES_FILE));
+            boolean migrate = !file.exists();
+            sEngine = new FollowEngine(file, BluetoothFacade.BACKGROUND_EXECUTOR);
+            try {
+                sEngine.load();
+            } catch (IOException e) {
+                Log.w(FOLLOWED_DEVICES_TAG, "Could not read the followed devices", e);
+            }
+            if (migrate) {
+                migrateLegacyPreference(appContext, sEngine);
+            }
+        }
+        return sEngine;
+    }
+
+    private static void migrateLegacyPreference(Context context, FollowEngine engine) {
+        SharedPreferences preferences =
+                context.getSharedPreferences(BLUETOOTH_PREFS_FILE, Context.MODE_PRIVATE);
+        String address = preferences.getString(LEGACY_FOLLOWED_DEVICE, null);
+        if (address != null && !address.isEmpty()) {
+            try {
+                engine.follow(address, FollowEngine.NOTIFY_BOTH);
+            } catch (IllegalArgumentException e) {
+                Log.w(FOLLOWED_DEVICES_TAG, "Ignoring followed device " + address, e);
+            }
+            preferences.edit().remove(LEGACY_FOLLOWED_DEVICE).apply();
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.example.bluetoothapp.utilities;
+
+import android.os.Handler;
+
+import com.example.bluetoothapp.core.time.Scheduler;
+
+public class HandlerScheduler implements Scheduler {
+
+    private final Handler mHandler;
+
+    public HandlerScheduler(Handler handler) {
+        mHandler = handler;
+    }
+
+    @Override
+    public Cancellable schedule(final Runnable task, long delayMillis) {
+        mHandler.postDelayed(task, delayMillis);
+        return new Cancellable() {
+            @Override
+            public void cancel() {
+                mHandler.removeCallbacks(task);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.example.bluetoothapp.utilities;
+
+import android.content.Context;
+
+import com.example.bluetoothapp.core.metrics.MetricsRegistry;
+import com.example.bluetoothapp.core.time.Clock;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The process-wide {@link MetricsRegistry}, recorded into from the radio, main and service
+ * threads alike, and read by the service's dump and the metrics screen.
+ */
+public final class Metrics {
+
+    public static final String METRICS_SNAPSHOT_FILE = "bluetooth.metrics";
+
+    private static MetricsRegistry sRegistry;
+
+    private Metrics() {
+    }
+
+    public static synchronized MetricsRegistry get() {
+        if (sRegistry == null) {
+            sRegistry = new MetricsRegistry(Clock.WALL);
+        }
+        return sRegistry;
+    }
+
+    /**
+     * Writes a snapshot of the metrics over the snapshot file, returning the file.
+     */
+    public static File writeSnapshot(Context context) throws IOException {
+        File file = new File(context.getApplicationContext().getFilesDir(),
+                METRICS_SNAPSHOT_FILE);
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+        try {
+            get().snapshot().writeTo(out);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        return file;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.example.bluetoothapp.utilities;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import com.example.bluetoothapp.core.channel.DataLinks;
+import com.example.bluetoothapp.core.service.ServiceUuids;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Opens RFCOMM sockets to a service of remote devices, the serial port service unless told
+ * otherwise. Run through {@link DataLinks}, a connect never overlaps our own discovery, and one
+ * that is aborted closes its socket to stop paging.
+ */
+public class RfcommConnector implements DataLinks.StreamConnector<BluetoothDevice> {
+
+    private final UUID mService;
+
+    public RfcommConnector() {
+        this(ServiceUuids.SERIAL_PORT);
+    }
+
+    public RfcommConnector(UUID service) {
+        mService = service;
+    }
+
+    @Override
+    public DataLinks.PendingStream newStream(BluetoothDevice device) throws IOException {
+        return new SocketStream(device.createRfcommSocketToServiceRecord(mService));
+    }
+
+    private static final class SocketStream implements DataLinks.PendingStream {
+
+        private final BluetoothSocket mSocket;
+
+        SocketStream(BluetoothSocket socket) {
+            mSocket = socket;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            mSocket.connect();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return mSocket.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return mSocket.getOutputStream();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mSocket.close();
+        }
+
+    }
+
+}
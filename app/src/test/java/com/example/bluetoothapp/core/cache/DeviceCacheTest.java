@@ -0,0 +1,189 @@
+package com.example.bluetoothapp.core.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class DeviceCacheTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("devices", ".bin");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        new File(mFile.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void load_missingFile_isEmpty() throws IOException {
+        DeviceCache cache = newCache(8);
+        cache.load();
+
+        assertEquals(0, cache.size());
+        assertFalse(mFile.exists());
+    }
+
+    @Test
+    public void put_survivesReload() throws IOException {
+        DeviceCache cache = newCache(8);
+        cache.load();
+        cache.put(device("00:11:22:33:44:55", "Headset", 1000));
+        cache.put(device("00:11:22:33:44:66", null, 2000));
+
+        DeviceCache reloaded = newCache(8);
+        reloaded.load();
+
+        assertEquals(2, reloaded.size());
+        assertEquals(device("00:11:22:33:44:55", "Headset", 1000),
+                reloaded.get("00:11:22:33:44:55"));
+        assertNull(reloaded.get("00:11:22:33:44:66").getName());
+        assertEquals("00:11:22:33:44:66", reloaded.getDevices().get(0).getAddress());
+    }
+
+    @Test
+    public void load_keepsDevicesPutBeforeIt() throws IOException {
+        DeviceCache cache = newCache(8);
+        cache.load();
+        cache.put(device("00:11:22:33:44:55", "Headset", 1000));
+        cache.put(device("00:11:22:33:44:66", "Speaker", 2000));
+
+        DeviceCache reloaded = new DeviceCache(new DeviceCacheFile(mFile), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+            }
+        }, 8);
+        reloaded.put(device("00:11:22:33:44:55", "Renamed", 3000));
+        reloaded.load();
+
+        assertEquals(2, reloaded.size());
+        assertEquals("Renamed", reloaded.get("00:11:22:33:44:55").getName());
+        assertEquals("00:11:22:33:44:55", reloaded.getDevices().get(0).getAddress());
+    }
+
+    @Test
+    public void put_unchangedWithinResolution_isNotWritten() throws IOException {
+        DeviceCache cache = newCache(8);
+        cache.load();
+        assertTrue(cache.put(device("00:11:22:33:44:55", "Headset", 1000)));
+        long length = mFile.length();
+
+        assertFalse(cache.put(device("00:11:22:33:44:55", "Headset", 2000)));
+        assertEquals(length, mFile.length());
+
+        assertTrue(cache.put(device("00:11:22:33:44:55", "Headset",
+                1000 + DeviceCache.LAST_SEEN_RESOLUTION)));
+        assertTrue(cache.put(device("00:11:22:33:44:55", "Renamed", 1000)));
+        assertTrue(mFile.length() > length);
+    }
+
+    @Test
+    public void put_beyondCapacity_forgetsLeastRecentlySeen() throws IOException {
+        DeviceCache cache = newCache(2);
+        cache.load();
+        cache.put(device("00:00:00:00:00:01", "One", 1000));
+        cache.put(device("00:00:00:00:00:02", "Two", 2000));
+        cache.put(device("00:00:00:00:00:01", "One", 100000));
+        cache.put(device("00:00:00:00:00:03", "Three", 100001));
+
+        assertNull(cache.get("00:00:00:00:00:02"));
+        DeviceCache reloaded = newCache(2);
+        reloaded.load();
+        assertEquals(2, reloaded.size());
+        assertNull(reloaded.get("00:00:00:00:00:02"));
+    }
+
+    @Test
+    public void setBondState_keepsLastSeen() throws IOException {
+        DeviceCache cache = newCache(8);
+        cache.load();
+        cache.put(device("00:11:22:33:44:55", "Headset", 1000));
+        assertTrue(cache.setBondState("00:11:22:33:44:55", 10));
+        assertFalse(cache.setBondState("00:11:22:33:44:55", 10));
+
+        DeviceCache reloaded = newCache(8);
+        reloaded.load();
+        CachedDevice device = reloaded.get("00:11:22:33:44:55");
+        assertEquals(10, device.getBondState());
+        assertEquals(1000, device.getLastSeen());
+    }
+
+    @Test
+    public void load_truncatedRecord_keepsCompleteRecordsAndRepairs() throws IOException {
+        DeviceCache cache = newCache(8);
+        cache.load();
+        cache.put(device("00:11:22:33:44:55", "Headset", 1000));
+        long length = mFile.length();
+        cache.put(device("00:11:22:33:44:66", "Speaker", 2000));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(mFile.length() - 3);
+        file.close();
+
+        DeviceCache reloaded = newCache(8);
+        reloaded.load();
+
+        assertEquals(1, reloaded.size());
+        assertEquals(length, mFile.length());
+        assertTrue(new DeviceCacheFile(mFile).read(new ArrayList<CachedDevice>()));
+    }
+
+    @Test
+    public void load_unknownHeader_startsEmpty() throws IOException {
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write("<map></map>".getBytes("UTF-8"));
+        out.close();
+
+        DeviceCache cache = newCache(8);
+        cache.load();
+
+        assertEquals(0, cache.size());
+        List<CachedDevice> records = new ArrayList<>();
+        assertTrue(new DeviceCacheFile(mFile).read(records));
+        assertTrue(records.isEmpty());
+    }
+
+    @Test
+    public void manyUpdates_compactTheFile() throws IOException {
+        DeviceCache cache = newCache(8);
+        cache.load();
+        for (int round = 0; round < 100; round++) {
+            cache.put(device("00:11:22:33:44:55", "Headset " + round, round));
+        }
+
+        List<CachedDevice> records = new ArrayList<>();
+        new DeviceCacheFile(mFile).read(records);
+        assertTrue(records.size() < 100);
+        assertEquals("Headset 99", records.get(records.size() - 1).getName());
+    }
+
+    private DeviceCache newCache(int capacity) {
+        return new DeviceCache(new DeviceCacheFile(mFile), DIRECT, capacity);
+    }
+
+    private static CachedDevice device(String address, String name, long lastSeen) {
+        return new CachedDevice(address, name, 0x0408, 12, lastSeen);
+    }
+
+}
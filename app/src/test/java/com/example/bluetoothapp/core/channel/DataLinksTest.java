@@ -0,0 +1,281 @@
+package com.example.bluetoothapp.core.channel;
+
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler;
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler.Result;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedRadio;
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DataLinksTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private final SimulatedDevice mDevice = new SimulatedDevice("00:11:22:33:44:55", "Meter", 0,
+            BluetoothRadio.BOND_BONDED);
+    private VirtualScheduler mScheduler;
+    private RadioOperationScheduler mOperations;
+    // Stands in for the connect thread, run by the test.
+    private final ArrayDeque<Runnable> mConnects = new ArrayDeque<>();
+    private final List<FrameChannel> mPeers = new ArrayList<>();
+    private final BlockingQueue<PeerStream> mStreams = new LinkedBlockingQueue<>();
+    private IOException mConnectError;
+    // Connects block until the stream is closed.
+    private volatile boolean mHang;
+    private volatile int mConnectCount;
+    private DataLinks<SimulatedDevice> mLinks;
+
+    private final List<String> mOpened = new ArrayList<>();
+    private final BlockingQueue<String> mFrames = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Object> mClosed = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        mScheduler = new VirtualScheduler();
+        mOperations = new RadioOperationScheduler(mScheduler, mScheduler,
+                RadioOperationScheduler.Policy.DEFAULT);
+        DataLinks.StreamConnector<SimulatedDevice> connector =
+                new DataLinks.StreamConnector<SimulatedDevice>() {
+                    @Override
+                    public DataLinks.PendingStream newStream(SimulatedDevice device) {
+                        PeerStream stream = new PeerStream();
+                        mStreams.add(stream);
+                        return stream;
+                    }
+                };
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mConnects.add(command);
+            }
+        };
+        mLinks = new DataLinks<>(mOperations, new SimulatedRadio(), connector, executor, pool(),
+                FrameChannel.Policy.DEFAULT, RadioOperationScheduler.PRIORITY_NORMAL);
+        mLinks.setListener(new DataLinks.Listener() {
+            @Override
+            public void onLinkOpened(String address, FrameChannel channel) {
+                mOpened.add(address);
+            }
+
+            @Override
+            public void onFrame(String address, ByteBuffer frame) {
+                mFrames.add(address + ":" + frame.remaining());
+            }
+
+            @Override
+            public void onLinkClosed(String address, FrameChannel channel, IOException cause) {
+                mClosed.add(channel == null ? "failed" : cause == null ? "closed" : cause);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mLinks.closeAll();
+        for (FrameChannel peer : mPeers) {
+            peer.close();
+        }
+    }
+
+    @Test
+    public void open_connectsAsOneRadioOperation() throws Exception {
+        mLinks.open(mDevice);
+        mLinks.open(mDevice);
+        assertEquals(1, mLinks.getOpeningCount());
+        assertTrue(mConnects.isEmpty());
+
+        mScheduler.advance(0);
+        assertEquals(RadioOperationScheduler.Kind.CONNECT, mOperations.getRunningKind());
+        runConnects();
+
+        assertEquals(1, mConnectCount);
+        assertEquals(1, mLinks.getOpenCount());
+        assertEquals(0, mLinks.getOpeningCount());
+        assertEquals(1, mOperations.getCount(Result.COMPLETED));
+        assertEquals(1, mOpened.size());
+
+        mLinks.open(mDevice);
+        mScheduler.advance(0);
+        assertTrue(mConnects.isEmpty());
+    }
+
+    @Test
+    public void framesFromThePeer_reachTheListener() throws Exception {
+        mLinks.open(mDevice);
+        mScheduler.advance(0);
+        runConnects();
+
+        assertTrue(mPeers.get(0).send(ByteBuffer.allocate(12), TIMEOUT));
+
+        assertEquals("00:11:22:33:44:55:12", mFrames.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(mLinks.get("00:11:22:33:44:55").send(ByteBuffer.allocate(3), TIMEOUT));
+    }
+
+    @Test
+    public void failedConnect_reportsAndAllowsRetry() throws Exception {
+        mConnectError = new IOException("Page timeout");
+        mLinks.open(mDevice);
+        mScheduler.advance(0);
+        runConnects();
+
+        assertEquals("failed", mClosed.poll());
+        assertEquals(1, mOperations.getCount(Result.FAILED));
+        assertEquals(0, mLinks.getOpeningCount());
+
+        mConnectError = null;
+        mLinks.open(mDevice);
+        mScheduler.advance(0);
+        runConnects();
+        assertEquals(1, mLinks.getOpenCount());
+    }
+
+    @Test
+    public void closeWhileConnecting_dropsTheStream() throws Exception {
+        mLinks.open(mDevice);
+        mScheduler.advance(0);
+
+        mLinks.close("00:11:22:33:44:55");
+        runConnects();
+
+        assertEquals(1, mConnectCount);
+        assertEquals(0, mLinks.getOpenCount());
+        assertTrue(mOpened.isEmpty());
+    }
+
+    @Test
+    public void connectOutOfTime_closesItsStream() throws Exception {
+        mOperations.setPolicy(new RadioOperationScheduler.Policy.Builder()
+                .setTimeLimit(RadioOperationScheduler.Kind.CONNECT, 1000)
+                .build());
+        mHang = true;
+        mLinks.open(mDevice);
+        mScheduler.advance(0);
+        Thread connectThread = new Thread(mConnects.poll());
+        connectThread.start();
+        PeerStream stream = mStreams.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        mScheduler.advance(1000);
+        connectThread.join(TIMEOUT);
+
+        assertFalse(connectThread.isAlive());
+        assertTrue(stream.isClosed());
+        assertEquals("failed", mClosed.poll());
+        assertEquals(1, mOperations.getCount(Result.TIMED_OUT));
+        assertEquals(0, mLinks.getOpeningCount());
+        assertTrue(mOpened.isEmpty());
+    }
+
+    @Test
+    public void peerClosing_removesTheLink() throws Exception {
+        mLinks.open(mDevice);
+        mScheduler.advance(0);
+        runConnects();
+
+        mPeers.get(0).close();
+
+        assertTrue(mClosed.poll(TIMEOUT, TimeUnit.MILLISECONDS) instanceof IOException);
+        assertNull(mLinks.get("00:11:22:33:44:55"));
+        assertEquals(0, mLinks.getOpenCount());
+    }
+
+    private final class PeerStream implements DataLinks.PendingStream {
+
+        private ByteStream mStream;
+        private boolean mClosed;
+
+        @Override
+        public void connect() throws IOException {
+            mConnectCount++;
+            synchronized (this) {
+                while (mHang && !mClosed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                if (mClosed) {
+                    throw new IOException("Closed");
+                }
+            }
+            if (mConnectError != null) {
+                throw mConnectError;
+            }
+            SocketByteStream[] streams = SocketByteStream.pair();
+            FrameChannel peer = new FrameChannel("peer", streams[1], pool(),
+                    FrameChannel.Policy.DEFAULT, new FrameChannel.Listener() {
+                        @Override
+                        public void onFrame(FrameChannel channel, ByteBuffer frame) {
+                        }
+
+                        @Override
+                        public void onClosed(FrameChannel channel, IOException cause) {
+                        }
+                    });
+            peer.start();
+            mPeers.add(peer);
+            synchronized (this) {
+                mStream = streams[0];
+            }
+        }
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            return mStream.getInputStream();
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            return mStream.getOutputStream();
+        }
+
+        @Override
+        public void close() throws IOException {
+            ByteStream stream;
+            synchronized (this) {
+                mClosed = true;
+                stream = mStream;
+                notifyAll();
+            }
+            if (stream != null) {
+                stream.close();
+            }
+        }
+
+        synchronized boolean isClosed() {
+            return mClosed;
+        }
+
+    }
+
+    private static BufferPool pool() {
+        return new BufferPool(FrameChannel.Policy.DEFAULT.getMaxFrameSize() +
+                FrameChannel.HEADER_BYTES, 4);
+    }
+
+    private void runConnects() {
+        Runnable connect;
+        while ((connect = mConnects.poll()) != null) {
+            connect.run();
+        }
+    }
+
+}
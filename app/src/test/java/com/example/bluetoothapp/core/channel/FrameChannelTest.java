@@ -0,0 +1,315 @@
+package com.example.bluetoothapp.core.channel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FrameChannelTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private final BufferPool mPool = new BufferPool(1024, 8);
+    private final Recorder mLocal = new Recorder();
+    private final Recorder mRemote = new Recorder();
+    private FrameChannel mChannel;
+    private FrameChannel mPeer;
+
+    private static final class Recorder implements FrameChannel.Listener {
+
+        final BlockingQueue<byte[]> mFrames = new LinkedBlockingQueue<>();
+        final BlockingQueue<Object> mClosed = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onFrame(FrameChannel channel, ByteBuffer frame) {
+            byte[] bytes = new byte[frame.remaining()];
+            frame.get(bytes);
+            mFrames.add(bytes);
+        }
+
+        @Override
+        public void onClosed(FrameChannel channel, IOException cause) {
+            mClosed.add(cause != null ? cause : "closed");
+        }
+
+        byte[] next() throws InterruptedException {
+            byte[] frame = mFrames.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            assertNotNull("No frame", frame);
+            return frame;
+        }
+
+        Object awaitClosed() throws InterruptedException {
+            Object cause = mClosed.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            assertNotNull("Not closed", cause);
+            return cause;
+        }
+
+    }
+
+    // Holds the first write until released, so later frames pile up behind it.
+    private static class GatedStream implements ByteStream {
+
+        final CountDownLatch mEntered = new CountDownLatch(1);
+        final CountDownLatch mRelease = new CountDownLatch(1);
+        final CountDownLatch mClosed = new CountDownLatch(1);
+        final BlockingQueue<Integer> mWrites = new LinkedBlockingQueue<>();
+
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    try {
+                        mClosed.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return -1;
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    mEntered.countDown();
+                    try {
+                        mRelease.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    mWrites.add(length);
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            mClosed.countDown();
+        }
+
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        SocketByteStream[] streams = SocketByteStream.pair();
+        FrameChannel.Policy policy = new FrameChannel.Policy.Builder()
+                .setMaxFrameSize(1000)
+                .build();
+        mChannel = new FrameChannel("local", streams[0], mPool, policy, mLocal);
+        mPeer = new FrameChannel("remote", streams[1], new BufferPool(1024, 8), policy,
+                mRemote);
+    }
+
+    @After
+    public void tearDown() {
+        mChannel.close();
+        mPeer.close();
+    }
+
+    @Test
+    public void frames_arriveWholeAndInOrder() throws Exception {
+        mChannel.start();
+        mPeer.start();
+
+        for (int length = 0; length <= 1000; length += 125) {
+            assertTrue(mChannel.send(payload(length), TIMEOUT));
+        }
+        for (int length = 0; length <= 1000; length += 125) {
+            assertArrayEquals(payload(length).array(), mRemote.next());
+        }
+
+        assertTrue(mPeer.send(ByteBuffer.wrap(new byte[]{7}), TIMEOUT));
+        assertArrayEquals(new byte[]{7}, mLocal.next());
+    }
+
+    @Test
+    public void send_copiesOnlyRemainingBytes() throws Exception {
+        mChannel.start();
+        mPeer.start();
+        ByteBuffer payload = payload(10);
+        payload.position(4);
+
+        assertTrue(mChannel.send(payload, TIMEOUT));
+
+        assertEquals(4, payload.position());
+        byte[] frame = mRemote.next();
+        assertEquals(6, frame.length);
+        assertEquals(4, frame[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void send_overMaxFrameSize_throws() throws Exception {
+        mChannel.send(payload(1001), TIMEOUT);
+    }
+
+    @Test
+    public void framesQueuedDuringAWrite_leaveInOneWrite() throws Exception {
+        GatedStream stream = new GatedStream();
+        FrameChannel channel = new FrameChannel("gated", stream, mPool,
+                new FrameChannel.Policy.Builder().setMaxFrameSize(1000).build(), mLocal);
+        channel.start();
+        assertTrue(channel.send(payload(100), TIMEOUT));
+        assertTrue(stream.mEntered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        for (int frame = 0; frame < 9; frame++) {
+            assertTrue(channel.send(payload(100), TIMEOUT));
+        }
+        assertEquals(10 * 104, channel.getQueuedBytes());
+        stream.mRelease.countDown();
+
+        assertEquals(Integer.valueOf(104),
+                stream.mWrites.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(Integer.valueOf(9 * 104),
+                stream.mWrites.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        awaitQueuedBytes(channel, 0);
+        assertEquals(2, channel.getWriteCount());
+        assertEquals(10, channel.getFramesSent());
+        channel.close();
+    }
+
+    @Test
+    public void fullQueue_refusesUntilWritten() throws Exception {
+        GatedStream stream = new GatedStream();
+        FrameChannel channel = new FrameChannel("gated", stream, mPool,
+                new FrameChannel.Policy.Builder()
+                        .setMaxFrameSize(1000)
+                        .setMaxQueuedBytes(500)
+                        .build(),
+                mLocal);
+        channel.start();
+        assertTrue(channel.send(payload(200), TIMEOUT));
+        assertTrue(stream.mEntered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(channel.offer(payload(200)));
+
+        assertFalse(channel.offer(payload(200)));
+        assertFalse(channel.send(payload(200), 50));
+        assertTrue(channel.offer(payload(80)));
+
+        stream.mRelease.countDown();
+        assertTrue(channel.send(payload(200), TIMEOUT));
+        channel.close();
+    }
+
+    @Test
+    public void emptyQueue_takesAFrameOverTheLimit() throws Exception {
+        FrameChannel channel = new FrameChannel("small", new GatedStream(), mPool,
+                new FrameChannel.Policy.Builder()
+                        .setMaxFrameSize(1000)
+                        .setMaxQueuedBytes(10)
+                        .build(),
+                mLocal);
+
+        assertTrue(channel.offer(payload(500)));
+        assertFalse(channel.offer(payload(1)));
+    }
+
+    @Test
+    public void remoteClose_endsWithEof() throws Exception {
+        mChannel.start();
+        mPeer.start();
+
+        mPeer.close();
+
+        assertEquals("closed", mRemote.awaitClosed());
+        assertTrue(mLocal.awaitClosed() instanceof EOFException);
+        assertFalse(mChannel.isOpen());
+        assertFalse(mChannel.offer(payload(1)));
+    }
+
+    @Test
+    public void frameLengthOutOfRange_endsLink() throws Exception {
+        ByteBuffer bad = ByteBuffer.allocate(8);
+        bad.putInt(5000).putInt(0);
+        final InputStream in = new ByteArrayInputStream(bad.array());
+        FrameChannel channel = new FrameChannel("bad", new GatedStream() {
+            @Override
+            public InputStream getInputStream() {
+                return in;
+            }
+        }, mPool, new FrameChannel.Policy.Builder().setMaxFrameSize(1000).build(), mLocal);
+        channel.start();
+
+        Object cause = mLocal.awaitClosed();
+        assertTrue(cause instanceof IOException);
+        assertFalse(cause instanceof EOFException);
+        assertTrue(mLocal.mFrames.isEmpty());
+    }
+
+    @Test
+    public void close_returnsBuffersToPool() throws Exception {
+        mChannel.start();
+        mPeer.start();
+        assertTrue(mChannel.send(payload(10), TIMEOUT));
+        mRemote.next();
+
+        mChannel.close();
+        assertEquals("closed", mLocal.awaitClosed());
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (mPool.getFreeCount() < mPool.getAllocatedCount() &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(mPool.getAllocatedCount(), mPool.getFreeCount());
+    }
+
+    @Test
+    public void pool_reusesReleasedBuffers() {
+        BufferPool pool = new BufferPool(64, 1);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        first.put((byte) 1);
+        pool.release(first);
+        pool.release(second);
+
+        ByteBuffer reused = pool.acquire();
+        assertSame(first, reused);
+        assertEquals(0, reused.position());
+        assertEquals(2, pool.getAllocatedCount());
+        assertEquals(1, pool.getReusedCount());
+        assertEquals(0, pool.getFreeCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pool_rejectsForeignBuffers() {
+        new BufferPool(64, 1).release(ByteBuffer.allocate(32));
+    }
+
+    private static ByteBuffer payload(int length) {
+        byte[] bytes = new byte[length];
+        for (int index = 0; index < length; index++) {
+            bytes[index] = (byte) index;
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void awaitQueuedBytes(FrameChannel channel, int bytes)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (channel.getQueuedBytes() != bytes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(bytes, channel.getQueuedBytes());
+    }
+
+}
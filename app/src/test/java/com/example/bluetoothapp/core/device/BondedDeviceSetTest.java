@@ -0,0 +1,190 @@
+package com.example.bluetoothapp.core.device;
+
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedRadio;
+import com.example.bluetoothapp.core.time.ManualClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BondedDeviceSetTest {
+
+    private static final int HANDSFREE = 0x0408;
+
+    private SimulatedRadio mRadio;
+    private DeviceSnapshotStore<SimulatedDevice> mStore;
+    private BondedDeviceSet<SimulatedDevice> mBonded;
+    private SimulatedDevice mCarKit;
+    private SimulatedDevice mHeadset;
+
+    @Before
+    public void setUp() {
+        mRadio = new SimulatedRadio();
+        mStore = new DeviceSnapshotStore<>(mRadio, new ManualClock(1000));
+        mBonded = new BondedDeviceSet<>(mRadio, mStore);
+        mRadio.open(mRegistry, BluetoothRadio.EVENT_ADAPTER | BluetoothRadio.EVENT_DEVICE);
+        mCarKit = device(1, "Car kit");
+        mHeadset = device(2, "Headset");
+        mRadio.addBondedDevice(mCarKit);
+    }
+
+    @Test
+    public void get_readsRadioOnlyAfterStateChanges() {
+        List<DeviceSnapshot<SimulatedDevice>> first = mBonded.get();
+        long calls = mRadio.getBinderCallCount();
+
+        assertSame(first, mBonded.get());
+        assertEquals(calls, mRadio.getBinderCallCount());
+        assertEquals(1, mBonded.getLoadCount());
+
+        mRadio.setEnabled(false);
+        assertTrue(mBonded.get().isEmpty());
+        mRadio.setEnabled(true);
+        assertEquals(addresses(mCarKit), addressesOf(mBonded.get()));
+        assertEquals(3, mBonded.getLoadCount());
+    }
+
+    @Test
+    public void bondChanges_updateWithoutReading() {
+        mBonded.get();
+
+        mRadio.emitBondStateChanged(mHeadset, BluetoothRadio.BOND_BONDING);
+        assertEquals(addresses(mCarKit), addressesOf(mBonded.get()));
+        mRadio.emitBondStateChanged(mHeadset, BluetoothRadio.BOND_BONDED);
+        assertEquals(addresses(mCarKit, mHeadset), addressesOf(mBonded.get()));
+        mRadio.emitBondStateChanged(mCarKit, BluetoothRadio.BOND_NONE);
+        assertEquals(addresses(mHeadset), addressesOf(mBonded.get()));
+
+        assertEquals(1, mBonded.getLoadCount());
+        assertEquals(BluetoothRadio.BOND_BONDED, mBonded.get().get(0).getBondState());
+    }
+
+    @Test
+    public void rename_replacesBondedSnapshot() {
+        mBonded.get();
+
+        mRadio.emitNameChanged(mCarKit, "Car kit 2");
+
+        assertEquals("Car kit 2", mBonded.get().get(0).getName());
+        assertEquals(1, mBonded.getLoadCount());
+    }
+
+    @Test
+    public void randomSequence_matchesRadio() {
+        Random random = new Random(3);
+        List<SimulatedDevice> devices = new ArrayList<>();
+        for (int index = 0; index < 8; index++) {
+            devices.add(device(10 + index, "Device " + index));
+        }
+        LinkedHashSet<SimulatedDevice> expected = new LinkedHashSet<>();
+        expected.add(mCarKit);
+        boolean enabled = true;
+        int toggles = 0;
+        for (int step = 0; step < 500; step++) {
+            int action = random.nextInt(10);
+            SimulatedDevice device = devices.get(random.nextInt(devices.size()));
+            if (action == 0) {
+                enabled = !enabled;
+                mRadio.setEnabled(enabled);
+                toggles++;
+            } else if (enabled && action < 6) {
+                mRadio.emitBondStateChanged(device, BluetoothRadio.BOND_BONDED);
+                expected.add(device);
+            } else if (enabled) {
+                mRadio.emitBondStateChanged(device, BluetoothRadio.BOND_NONE);
+                expected.remove(device);
+            }
+            List<String> actual = addressesOf(mBonded.get());
+            if (enabled) {
+                assertEquals(new LinkedHashSet<>(addressesOf(expected)),
+                        new LinkedHashSet<>(actual));
+            } else {
+                assertTrue(actual.isEmpty());
+            }
+        }
+        // One read at the start and one after every toggle, however many bond changes.
+        assertEquals(1 + toggles, mBonded.getLoadCount());
+    }
+
+    private SimulatedDevice device(int index, String name) {
+        SimulatedDevice device = new SimulatedDevice(
+                String.format("00:1A:7D:DA:71:%02X", index), name, HANDSFREE,
+                BluetoothRadio.BOND_NONE);
+        mRadio.addKnownDevice(device);
+        return device;
+    }
+
+    private static List<String> addresses(SimulatedDevice... devices) {
+        List<String> addresses = new ArrayList<>();
+        for (SimulatedDevice device : devices) {
+            addresses.add(device.getAddress());
+        }
+        return addresses;
+    }
+
+    private static List<String> addressesOf(Iterable<?> devices) {
+        List<String> addresses = new ArrayList<>();
+        for (Object device : devices) {
+            addresses.add(device instanceof SimulatedDevice
+                    ? ((SimulatedDevice) device).getAddress()
+                    : ((DeviceSnapshot<?>) device).getAddress());
+        }
+        return addresses;
+    }
+
+    // Feeds the snapshots and the bonded set as the process-wide hub does.
+    private final BluetoothRadio.Listener<SimulatedDevice> mRegistry =
+            new BluetoothRadio.Listener<SimulatedDevice>() {
+                @Override
+                public void onStateChanged(int state) {
+                    mBonded.onStateChanged(state);
+                }
+
+                @Override
+                public void onDiscoveryStarted() {
+                }
+
+                @Override
+                public void onDiscoveryFinished() {
+                }
+
+                @Override
+                public void onDeviceFound(SimulatedDevice device, short rssi) {
+                }
+
+                @Override
+                public void onAclConnected(SimulatedDevice device) {
+                }
+
+                @Override
+                public void onAclDisconnected(SimulatedDevice device) {
+                }
+
+                @Override
+                public void onNameChanged(SimulatedDevice device, String name) {
+                    DeviceSnapshot<SimulatedDevice> snapshot = mStore.setName(device, name);
+                    if (snapshot != null) {
+                        mBonded.onDeviceChanged(snapshot);
+                    }
+                }
+
+                @Override
+                public void onClassChanged(SimulatedDevice device, int deviceClass) {
+                }
+
+                @Override
+                public void onBondStateChanged(SimulatedDevice device, int bondState) {
+                    mStore.setBondState(device, bondState);
+                    mBonded.onBondStateChanged(device, bondState);
+                }
+            };
+
+}
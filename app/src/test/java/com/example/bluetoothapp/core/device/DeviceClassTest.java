@@ -0,0 +1,35 @@
+package com.example.bluetoothapp.core.device;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DeviceClassTest {
+
+    @Test
+    public void everyKnownCodeResolvesToItself() throws Exception {
+        for (DeviceClass deviceClass : DeviceClass.values()) {
+            if (deviceClass != DeviceClass.UNKNOWN) {
+                assertSame(deviceClass, DeviceClass.fromCode(deviceClass.getCode()));
+            }
+        }
+    }
+
+    @Test
+    public void unlistedCodesAreUnknown() throws Exception {
+        assertSame(DeviceClass.UNKNOWN, DeviceClass.fromCode(0x0000));
+        assertSame(DeviceClass.UNKNOWN, DeviceClass.fromCode(0x040C));
+        assertSame(DeviceClass.UNKNOWN, DeviceClass.fromCode(0x1F00));
+        assertEquals("UNKNOWN", DeviceClass.fromCode(-1).name());
+    }
+
+    @Test
+    public void decodesMajorAndMinor() throws Exception {
+        assertSame(MajorDeviceClass.AUDIO_VIDEO, DeviceClass.AUDIO_VIDEO_HANDSFREE.getMajor());
+        assertEquals(0x08, DeviceClass.AUDIO_VIDEO_HANDSFREE.getMinor());
+        assertSame(MajorDeviceClass.PHONE, DeviceClass.PHONE_SMART.getMajor());
+        assertSame(MajorDeviceClass.UNCATEGORIZED, MajorDeviceClass.fromDeviceClass(0x1F00));
+        assertSame(MajorDeviceClass.UNKNOWN, MajorDeviceClass.fromDeviceClass(0x0A00));
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.example.bluetoothapp.core.device;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DeviceRegistryTest {
+
+    @Test
+    public void devicesWithTheSameNameAreKeptApart() throws Exception {
+        DeviceRegistry<String> registry = new DeviceRegistry<>();
+        assertTrue(registry.put("00:00:00:00:00:01", "JBL", "first"));
+        assertTrue(registry.put("00:00:00:00:00:02", "JBL", "second"));
+
+        assertEquals(2, registry.size());
+        List<String> named = registry.findByName("JBL");
+        assertEquals(2, named.size());
+        assertTrue(named.contains("first"));
+        assertTrue(named.contains("second"));
+    }
+
+    @Test
+    public void sameAddressIsNotAddedTwice() throws Exception {
+        DeviceRegistry<String> registry = new DeviceRegistry<>();
+        assertTrue(registry.put("00:00:00:00:00:01", "Car", "old"));
+        assertFalse(registry.put("00:00:00:00:00:01", "Car kit", "new"));
+
+        assertEquals(1, registry.size());
+        assertEquals("new", registry.get("00:00:00:00:00:01"));
+        assertTrue(registry.findByName("Car").isEmpty());
+        assertEquals(1, registry.findByName("Car kit").size());
+    }
+
+    @Test
+    public void iteratesInInsertionOrder() throws Exception {
+        DeviceRegistry<String> registry = new DeviceRegistry<>();
+        registry.put("C", "c", "c");
+        registry.put("A", "a", "a");
+        registry.put("B", "b", "b");
+        registry.put("A", "a", "a");
+
+        List<String> order = new ArrayList<>();
+        for (String device : registry) {
+            order.add(device);
+        }
+        assertEquals(registry.toList(), order);
+        assertEquals("c", order.get(0));
+        assertEquals("a", order.get(1));
+        assertEquals("b", order.get(2));
+    }
+
+    @Test
+    public void removeDropsNameIndex() throws Exception {
+        DeviceRegistry<String> registry = new DeviceRegistry<>();
+        registry.put("A", "Phone", "a");
+
+        assertEquals("a", registry.remove("A"));
+        assertNull(registry.remove("A"));
+        assertFalse(registry.contains("A"));
+        assertTrue(registry.findByName("Phone").isEmpty());
+    }
+
+}
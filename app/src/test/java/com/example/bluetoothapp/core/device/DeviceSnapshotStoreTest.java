@@ -0,0 +1,169 @@
+package com.example.bluetoothapp.core.device;
+
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedRadio;
+import com.example.bluetoothapp.core.time.ManualClock;
+import com.example.bluetoothapp.core.vendor.OuiTable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DeviceSnapshotStoreTest {
+
+    private static final int HANDSFREE = 0x0408;
+
+    private SimulatedRadio mRadio;
+    private ManualClock mClock;
+    private DeviceSnapshotStore<SimulatedDevice> mStore;
+    private SimulatedDevice mDevice;
+
+    @Before
+    public void setUp() {
+        mRadio = new SimulatedRadio();
+        mClock = new ManualClock(1000);
+        mStore = new DeviceSnapshotStore<>(mRadio, mClock);
+        mDevice = new SimulatedDevice("00:1A:7D:DA:71:13", "Car kit", HANDSFREE,
+                BluetoothRadio.BOND_NONE);
+    }
+
+    @Test
+    public void capture_readsRadioOnce() {
+        DeviceSnapshot<SimulatedDevice> first = mStore.capture(mDevice);
+        long calls = mRadio.getBinderCallCount();
+        DeviceSnapshot<SimulatedDevice> second = mStore.capture(mDevice);
+
+        assertEquals(3, calls);
+        assertEquals(calls, mRadio.getBinderCallCount());
+        assertSame(first, second);
+        assertEquals("Car kit", first.getName());
+        assertEquals(DeviceClass.AUDIO_VIDEO_HANDSFREE, first.getDeviceClass());
+        assertEquals(1000, first.getFirstSeen());
+    }
+
+    @Test
+    public void changes_replaceSnapshotWithoutRadio() {
+        mStore.capture(mDevice);
+        mRadio.resetBinderCallCount();
+        mClock.advance(500);
+
+        DeviceSnapshot<SimulatedDevice> renamed = mStore.setName(mDevice, "Car kit 2");
+        DeviceSnapshot<SimulatedDevice> bonded =
+                mStore.setBondState(mDevice, BluetoothRadio.BOND_BONDED);
+
+        assertEquals("Car kit 2", renamed.getName());
+        assertEquals(1500, renamed.getUpdated());
+        assertEquals(1000, renamed.getFirstSeen());
+        assertEquals("Car kit 2", bonded.getName());
+        assertEquals(BluetoothRadio.BOND_BONDED, mStore.get(mDevice.getAddress()).getBondState());
+        assertEquals(0, mRadio.getBinderCallCount());
+    }
+
+    @Test
+    public void changes_ignoredWhenNothingChangesOrNotCaptured() {
+        assertNull(mStore.setName(mDevice, "Car kit"));
+        mStore.capture(mDevice);
+
+        assertNull(mStore.setName(mDevice, "Car kit"));
+        assertNull(mStore.setName(mDevice, null));
+        assertNull(mStore.setDeviceClass(mDevice, HANDSFREE));
+        assertNull(mStore.setBondState(mDevice, BluetoothRadio.BOND_NONE));
+        assertEquals(1, mStore.size());
+    }
+
+    @Test
+    public void captureAdvertised_namesUnnamedDevice() {
+        SimulatedDevice beacon = new SimulatedDevice("C0:11:22:33:44:55", null, 0,
+                BluetoothRadio.BOND_NONE);
+
+        assertEquals("Meter", mStore.capture(beacon, "Meter").getName());
+        assertEquals("Car kit", mStore.capture(mDevice, "Advertised").getName());
+        assertNull(mStore.capture(new SimulatedDevice("C0:11:22:33:44:66", null, 0,
+                BluetoothRadio.BOND_NONE), null).getName());
+    }
+
+    @Test
+    public void captureAdvertised_alreadyNamedMeanwhile_keepsTheNamedSnapshot() {
+        final SimulatedDevice beacon = new SimulatedDevice("C0:11:22:33:44:55", null, 0,
+                BluetoothRadio.BOND_NONE);
+        // The radio's name broadcast lands between the capture and the advertised name.
+        SimulatedRadio radio = new SimulatedRadio() {
+            private int mLookups;
+
+            @Override
+            public String getAddress(SimulatedDevice device) {
+                if (++mLookups == 2) {
+                    mStore.setName(device, "Meter");
+                }
+                return super.getAddress(device);
+            }
+        };
+        mStore = new DeviceSnapshotStore<>(radio, mClock);
+
+        DeviceSnapshot<SimulatedDevice> snapshot = mStore.capture(beacon, "Meter");
+
+        assertNotNull(snapshot);
+        assertEquals("Meter", snapshot.getName());
+        assertSame(mStore.get(beacon.getAddress()), snapshot);
+    }
+
+    @Test
+    public void unseenDevices_areDroppedAfterMaxAge() {
+        mStore = new DeviceSnapshotStore<>(mRadio, mClock, OuiTable.EMPTY, 1000);
+        mStore.setRetainer(new DeviceSnapshotStore.Retainer() {
+            @Override
+            public boolean isRetained(String address) {
+                return address.equals("C0:00:00:00:00:03");
+            }
+        });
+        mStore.capture(mDevice);
+        mStore.capture(device(1));
+        mStore.capture(device(2));
+        mStore.capture(device(3));
+        mStore.setBondState(device(2), BluetoothRadio.BOND_BONDED);
+        mClock.advance(600);
+        // Seen again, so younger than the maximum age.
+        mStore.capture(mDevice);
+        mClock.advance(600);
+
+        mStore.capture(device(4));
+
+        assertNotNull(mStore.get(mDevice.getAddress()));
+        assertNull(mStore.get("C0:00:00:00:00:01"));
+        assertNotNull(mStore.get("C0:00:00:00:00:02"));
+        assertNotNull(mStore.get("C0:00:00:00:00:03"));
+        assertEquals(4, mStore.size());
+    }
+
+    @Test
+    public void remove_keepsBondedDevices() {
+        mStore.capture(mDevice);
+        mStore.capture(device(1));
+        mStore.setBondState(mDevice, BluetoothRadio.BOND_BONDED);
+
+        assertFalse(mStore.remove(mDevice.getAddress()));
+        assertTrue(mStore.remove("C0:00:00:00:00:01"));
+        assertFalse(mStore.remove("C0:00:00:00:00:01"));
+        assertEquals(1, mStore.size());
+        assertEquals("Device 1", mStore.capture(device(1)).getName());
+    }
+
+    @Test
+    public void putIfAbsent_keepsCapturedSnapshot() {
+        DeviceSnapshot<SimulatedDevice> captured = mStore.capture(mDevice);
+        DeviceSnapshot<SimulatedDevice> restored = new DeviceSnapshot<>(mDevice,
+                mDevice.getAddress(), "Old name", -1, BluetoothRadio.BOND_BONDED, 0, 0);
+
+        assertSame(captured, mStore.putIfAbsent(restored));
+        assertFalse(captured.equals(restored));
+        assertEquals(captured, captured.withName("Car kit", 2000));
+    }
+
+    private static SimulatedDevice device(int index) {
+        return new SimulatedDevice("C0:00:00:00:00:0" + index, "Device " + index, 0,
+                BluetoothRadio.BOND_NONE);
+    }
+
+}
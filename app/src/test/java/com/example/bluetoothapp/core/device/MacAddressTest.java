@@ -0,0 +1,30 @@
+package com.example.bluetoothapp.core.device;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MacAddressTest {
+
+    @Test
+    public void pack_roundTrips() {
+        assertEquals(0x001122AABBCCL, MacAddress.pack("00:11:22:AA:BB:CC"));
+        assertEquals("00:11:22:AA:BB:CC", MacAddress.unpack(0x001122AABBCCL));
+        assertEquals("FF:FF:FF:FF:FF:FF", MacAddress.unpack(MacAddress.pack("ff:ff:ff:ff:ff:ff")));
+    }
+
+    @Test
+    public void isValid_rejectsMalformedAddresses() {
+        assertTrue(MacAddress.isValid("00:11:22:aa:bb:cc"));
+        assertFalse(MacAddress.isValid(null));
+        assertFalse(MacAddress.isValid("00:11:22:AA:BB"));
+        assertFalse(MacAddress.isValid("00-11-22-AA-BB-CC"));
+        assertFalse(MacAddress.isValid("00:11:22:AA:BB:CG"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pack_malformedAddress_throws() {
+        MacAddress.pack("not an address");
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.example.bluetoothapp.core.discovery;
+
+import com.example.bluetoothapp.core.time.Clock;
+import com.example.bluetoothapp.core.time.ManualClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DiscoveryPipelineTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ManualClock mClock;
+    private RecordingListener mListener;
+    private List<String> mKnownDevices;
+
+    // Raw events are "started", "finished" or "found <address> [name]".
+    private final DiscoveryPipeline.Decoder<String, String> mDecoder =
+            new DiscoveryPipeline.Decoder<String, String>() {
+                @Override
+                public DiscoveryEvent<String> decode(String event) {
+                    String[] parts = event.split(" ");
+                    switch (parts[0]) {
+                        case "started":
+                            return DiscoveryEvent.started();
+                        case "finished":
+                            return DiscoveryEvent.finished();
+                        case "found":
+                            if (parts.length < 3) {
+                                return null;
+                            }
+                            return DiscoveryEvent.found(parts[1], parts[1], parts[2]);
+                        default:
+                            return null;
+                    }
+                }
+
+                @Override
+                public List<DiscoveryEvent<String>> getKnownDevices() {
+                    List<DiscoveryEvent<String>> known = new ArrayList<>();
+                    for (String address : mKnownDevices) {
+                        known.add(DiscoveryEvent.found(address, address, "paired"));
+                    }
+                    return known;
+                }
+            };
+
+    @Before
+    public void setUp() throws Exception {
+        mClock = new ManualClock(1000);
+        mListener = new RecordingListener();
+        mKnownDevices = Collections.emptyList();
+    }
+
+    @Test
+    public void foundBurstIsCoalescedIntoOneUpdatePerInterval() throws Exception {
+        DiscoveryPipeline<String, String> pipeline = newPipeline(16);
+        pipeline.offer("started");
+        pipeline.drain();
+        mClock.advance(20);
+        pipeline.offer("found A a");
+        pipeline.drain();
+        pipeline.offer("found B b");
+        pipeline.offer("found C c");
+        pipeline.offer("found A a");
+        mClock.advance(10);
+        pipeline.drain();
+
+        assertEquals(Arrays.asList("started[]", "found[A]"), mListener.mCalls);
+
+        mClock.advance(6);
+        pipeline.drain();
+
+        assertEquals(Arrays.asList("started[]", "found[A]", "found[B, C]"), mListener.mCalls);
+        assertEquals(Arrays.asList("A", "B", "C"), mListener.mLast.getDevices());
+    }
+
+    @Test
+    public void finishFlushesPendingDevices() throws Exception {
+        DiscoveryPipeline<String, String> pipeline = newPipeline(16);
+        pipeline.offer("started");
+        pipeline.offer("found A a");
+        pipeline.offer("found B b");
+        pipeline.offer("finished");
+        pipeline.drain();
+
+        assertEquals(Arrays.asList("started[]", "found[A, B]", "finished[]"), mListener.mCalls);
+        assertFalse(mListener.mLast.isScanning());
+        assertEquals(2, mListener.mLast.size());
+    }
+
+    @Test
+    public void scanStartSeedsKnownDevicesAndResets() throws Exception {
+        mKnownDevices = Arrays.asList("P");
+        DiscoveryPipeline<String, String> pipeline = newPipeline(0);
+        pipeline.offer("started");
+        pipeline.offer("found A a");
+        pipeline.offer("found P p");
+        pipeline.offer("finished");
+        pipeline.offer("started");
+        pipeline.drain();
+
+        assertEquals(Arrays.asList("started[P]", "found[A]", "finished[]", "started[P]"),
+                mListener.mCalls);
+        assertEquals(Arrays.asList("P"), mListener.mLast.getDevices());
+    }
+
+    @Test
+    public void unnamedDevicesAreIgnored() throws Exception {
+        DiscoveryPipeline<String, String> pipeline = newPipeline(0);
+        pipeline.offer("started");
+        pipeline.offer("found A");
+        pipeline.drain();
+
+        assertEquals(Arrays.asList("started[]"), mListener.mCalls);
+    }
+
+    @Test
+    public void olderSnapshotsDoNotChange() throws Exception {
+        DiscoveryPipeline<String, String> pipeline = newPipeline(0);
+        pipeline.offer("started");
+        pipeline.offer("found A a");
+        pipeline.drain();
+        DiscoverySnapshot<String> first = mListener.mLast;
+        for (int index = 0; index < 100; index++) {
+            pipeline.offer("found D" + index + " d");
+            pipeline.drain();
+        }
+
+        assertEquals(Arrays.asList("A"), first.getDevices());
+        assertEquals(101, mListener.mLast.size());
+    }
+
+    @Test
+    public void fullQueueDropsInsteadOfBlocking() throws Exception {
+        DiscoveryPipeline<String, String> pipeline =
+                new DiscoveryPipeline<>(mDecoder, mListener, DIRECT, mClock, 2);
+        assertTrue(pipeline.offer("started"));
+        assertTrue(pipeline.offer("found A a"));
+        assertFalse(pipeline.offer("found B b"));
+
+        assertEquals(1, pipeline.getDroppedEventCount());
+    }
+
+    @Test
+    public void workerThreadPublishesOffTheCallingThread() throws Exception {
+        final CountDownLatch finished = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        DiscoveryPipeline<String, String> pipeline = new DiscoveryPipeline<>(mDecoder,
+                new RecordingListener() {
+                    @Override
+                    public void onScanFinished(DiscoverySnapshot<String> snapshot) {
+                        super.onScanFinished(snapshot);
+                        threads.add(Thread.currentThread());
+                        finished.countDown();
+                    }
+                }, DIRECT, Clock.MONOTONIC, DiscoveryPipeline.DEFAULT_CAPACITY);
+        pipeline.start();
+        pipeline.offer("started");
+        for (int index = 0; index < 50; index++) {
+            pipeline.offer("found D" + index + " d");
+        }
+        pipeline.offer("finished");
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        pipeline.stop();
+        assertNotSame(Thread.currentThread(), threads.get(0));
+    }
+
+    private DiscoveryPipeline<String, String> newPipeline(long interval) {
+        DiscoveryPipeline<String, String> pipeline = new DiscoveryPipeline<>(mDecoder, mListener,
+                DIRECT, mClock, DiscoveryPipeline.DEFAULT_CAPACITY);
+        pipeline.setPublishInterval(interval);
+        return pipeline;
+    }
+
+    private static class RecordingListener implements DiscoveryPipeline.Listener<String> {
+
+        final List<String> mCalls = new ArrayList<>();
+        DiscoverySnapshot<String> mLast;
+
+        @Override
+        public void onScanStarted(DiscoverySnapshot<String> snapshot) {
+            record("started", snapshot);
+        }
+
+        @Override
+        public void onDevicesFound(DiscoverySnapshot<String> snapshot) {
+            record("found", snapshot);
+        }
+
+        @Override
+        public void onScanFinished(DiscoverySnapshot<String> snapshot) {
+            record("finished", snapshot);
+        }
+
+        private void record(String call, DiscoverySnapshot<String> snapshot) {
+            mCalls.add(call + snapshot.getAddedDevices());
+            mLast = snapshot;
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+package com.example.bluetoothapp.core.discovery;
+
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.RadioScript;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedRadio;
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DiscoverySchedulerTest {
+
+    private VirtualScheduler mTime;
+    private SimulatedRadio mRadio;
+    private DiscoveryScheduler mScheduler;
+    // Another component's scheduler on the same radio, when a test has one.
+    private DiscoveryScheduler mOther;
+    private List<ScanStatistics> mFinished;
+    private RadioScript mDevices;
+    private int mNextDevice;
+
+    @Before
+    public void setUp() {
+        mTime = new VirtualScheduler();
+        mRadio = new SimulatedRadio();
+        mFinished = new ArrayList<>();
+        mDevices = new RadioScript.Builder().setDeviceCount(100).build();
+        useMode(DiscoveryScheduler.Mode.ADAPTIVE);
+        mRadio.open(new BluetoothRadio.Listener<SimulatedDevice>() {
+            @Override
+            public void onStateChanged(int state) {
+            }
+
+            @Override
+            public void onDiscoveryStarted() {
+                mScheduler.onDiscoveryStarted();
+                if (mOther != null) {
+                    mOther.onDiscoveryStarted();
+                }
+            }
+
+            @Override
+            public void onDiscoveryFinished() {
+                mScheduler.onDiscoveryFinished();
+                if (mOther != null) {
+                    mOther.onDiscoveryFinished();
+                }
+            }
+
+            @Override
+            public void onDeviceFound(SimulatedDevice device, short rssi) {
+                mScheduler.onDeviceFound(device.getAddress());
+                if (mOther != null) {
+                    mOther.onDeviceFound(device.getAddress());
+                }
+            }
+
+            @Override
+            public void onAclConnected(SimulatedDevice device) {
+            }
+
+            @Override
+            public void onAclDisconnected(SimulatedDevice device) {
+            }
+
+            @Override
+            public void onNameChanged(SimulatedDevice device, String name) {
+            }
+
+            @Override
+            public void onClassChanged(SimulatedDevice device, int deviceClass) {
+            }
+
+            @Override
+            public void onBondStateChanged(SimulatedDevice device, int bondState) {
+            }
+        }, BluetoothRadio.EVENT_DISCOVERY);
+    }
+
+    @Test
+    public void fixed_endsAtDeadlineWithoutDevices() {
+        useMode(DiscoveryScheduler.Mode.FIXED);
+        assertTrue(mScheduler.startScan());
+
+        mTime.advance(4999);
+        assertTrue(mRadio.isDiscovering());
+        mTime.advance(1);
+
+        assertFalse(mRadio.isDiscovering());
+        ScanStatistics statistics = mFinished.get(0);
+        assertEquals(ScanStatistics.StopReason.DEADLINE, statistics.getStopReason());
+        assertEquals(5000, statistics.getDuration());
+        assertEquals(0, statistics.getDevicesFound());
+        assertEquals(-1, statistics.getTimeToFirstDevice());
+    }
+
+    @Test
+    public void adaptive_endsEarlyOnceNewDevicesStop() {
+        mScheduler.startScan();
+        mTime.advance(300);
+        findNewDevices(3);
+        mTime.advance(2700);
+
+        assertFalse(mRadio.isDiscovering());
+        ScanStatistics statistics = mFinished.get(0);
+        assertEquals(ScanStatistics.StopReason.LOW_RATE, statistics.getStopReason());
+        assertEquals(3000, statistics.getDuration());
+        assertEquals(300, statistics.getTimeToFirstDevice());
+        assertEquals(1.0, statistics.getDevicesPerSecond(), 1e-9);
+    }
+
+    @Test
+    public void adaptive_extendsWhileDevicesArriveUpToMaxWindow() {
+        mScheduler.startScan();
+        for (int second = 0; second < 20 && mRadio.isDiscovering(); second++) {
+            findNewDevices(3);
+            mTime.advance(1000);
+        }
+
+        ScanStatistics statistics = mFinished.get(0);
+        assertEquals(ScanStatistics.StopReason.DEADLINE, statistics.getStopReason());
+        assertEquals(12000, statistics.getDuration());
+        assertEquals(36, statistics.getDevicesFound());
+    }
+
+    @Test
+    public void repeatedReports_countOnce() {
+        mScheduler.startScan();
+        SimulatedDevice device = mDevices.getDevice(0);
+        for (int report = 0; report < 10; report++) {
+            mRadio.emitDeviceFound(device, (short) -50);
+        }
+        mScheduler.cancelScan();
+
+        assertEquals(1, mFinished.get(0).getDevicesFound());
+        assertEquals(ScanStatistics.StopReason.CANCELLED, mFinished.get(0).getStopReason());
+    }
+
+    @Test
+    public void radioFinishingFirst_endsScan() {
+        mScheduler.startScan();
+        mTime.advance(2000);
+        mRadio.emitDiscoveryFinished();
+        mTime.advance(10000);
+
+        assertEquals(1, mFinished.size());
+        assertEquals(ScanStatistics.StopReason.RADIO_FINISHED, mFinished.get(0).getStopReason());
+        assertEquals(0, mTime.getPendingCount());
+    }
+
+    @Test
+    public void background_runsShortScansEveryPeriod() {
+        mScheduler.setPolicy(new DiscoveryScheduler.Policy.Builder()
+                .setMode(DiscoveryScheduler.Mode.FIXED)
+                .setBackgroundWindow(2000)
+                .setBackgroundPeriod(10000)
+                .build());
+        mScheduler.startBackground();
+        mTime.advance(35000);
+        mScheduler.stopBackground();
+        mTime.advance(60000);
+
+        assertEquals(4, mFinished.size());
+        for (ScanStatistics statistics : mFinished) {
+            assertTrue(statistics.isBackground());
+            assertEquals(2000, statistics.getDuration());
+        }
+        assertEquals(0, mTime.getPendingCount());
+    }
+
+    @Test
+    public void background_skipsWhileForegroundScanRuns() {
+        mScheduler.setPolicy(new DiscoveryScheduler.Policy.Builder()
+                .setMode(DiscoveryScheduler.Mode.FIXED)
+                .setWindow(12000)
+                .setBackgroundPeriod(10000)
+                .build());
+        mScheduler.startScan();
+        mScheduler.startBackground();
+        mTime.advance(15000);
+
+        assertEquals(1, mFinished.size());
+        assertFalse(mFinished.get(0).isBackground());
+        assertFalse(mRadio.isDiscovering());
+        mTime.advance(5000);
+        assertTrue(mRadio.isDiscovering());
+    }
+
+    @Test
+    public void withOperations_backgroundScanGivesWayAndUserScanWaits() {
+        RadioOperationScheduler operations = new RadioOperationScheduler(mTime, mTime,
+                RadioOperationScheduler.Policy.DEFAULT);
+        mScheduler.setOperationScheduler(operations);
+        mScheduler.setPolicy(new DiscoveryScheduler.Policy.Builder()
+                .setMode(DiscoveryScheduler.Mode.FIXED)
+                .setBackgroundPeriod(10000)
+                .build());
+        mScheduler.startBackground();
+        mTime.advance(1000);
+        assertTrue(mRadio.isDiscovering());
+
+        RadioOperationScheduler.Operation connect = new RadioOperationScheduler.Operation() {
+            @Override
+            protected boolean start() {
+                return true;
+            }
+        };
+        operations.submit(connect, RadioOperationScheduler.Kind.CONNECT,
+                RadioOperationScheduler.PRIORITY_NORMAL, RadioOperationScheduler.NO_DEADLINE);
+        mTime.advance(0);
+        assertFalse(mRadio.isDiscovering());
+        assertEquals(ScanStatistics.StopReason.CANCELLED, mFinished.get(0).getStopReason());
+
+        assertTrue(mScheduler.startScan());
+        mTime.advance(500);
+        assertFalse(mRadio.isDiscovering());
+        connect.finish(true);
+        mTime.advance(0);
+
+        assertTrue(mRadio.isDiscovering());
+        assertTrue(mScheduler.isScanning());
+        mScheduler.stopBackground();
+        mTime.advance(60000);
+        assertEquals(2, mFinished.size());
+        assertFalse(mFinished.get(1).isBackground());
+        assertNull(operations.getRunningKind());
+        assertEquals(1, operations.getCount(RadioOperationScheduler.Result.PREEMPTED));
+    }
+
+    @Test
+    public void anotherSchedulersScan_isOnlyObserved() {
+        RadioOperationScheduler operations = new RadioOperationScheduler(mTime, mTime,
+                RadioOperationScheduler.Policy.DEFAULT);
+        mScheduler.setOperationScheduler(operations);
+        mOther = new DiscoveryScheduler(mRadio, mTime, mTime,
+                new DiscoveryScheduler.Policy.Builder()
+                        .setMode(DiscoveryScheduler.Mode.FIXED)
+                        .setWindow(8000)
+                        .build());
+        mOther.setOperationScheduler(operations);
+
+        assertTrue(mOther.startScan());
+        mTime.advance(0);
+        assertTrue(mRadio.isDiscovering());
+        assertTrue(mOther.isScanning());
+        assertFalse(mScheduler.isScanning());
+
+        // Finding nothing would have ended a scan of ours by now.
+        mScheduler.cancelScan();
+        mTime.advance(6000);
+        assertTrue(mRadio.isDiscovering());
+
+        mTime.advance(2000);
+        assertFalse(mRadio.isDiscovering());
+        assertTrue(mFinished.isEmpty());
+        assertEquals(ScanStatistics.StopReason.DEADLINE,
+                mOther.getLastStatistics().getStopReason());
+    }
+
+    private void useMode(DiscoveryScheduler.Mode mode) {
+        mScheduler = new DiscoveryScheduler(mRadio, mTime, mTime,
+                new DiscoveryScheduler.Policy.Builder().setMode(mode).build());
+        mScheduler.setListener(new DiscoveryScheduler.Listener() {
+            @Override
+            public void onScanFinished(ScanStatistics statistics) {
+                mFinished.add(statistics);
+            }
+        });
+    }
+
+    private void findNewDevices(int count) {
+        for (int index = 0; index < count; index++) {
+            mRadio.emitDeviceFound(mDevices.getDevice(mNextDevice++), (short) -60);
+        }
+    }
+
+}
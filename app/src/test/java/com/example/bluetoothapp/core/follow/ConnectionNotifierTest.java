@@ -0,0 +1,127 @@
+package com.example.bluetoothapp.core.follow;
+
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConnectionNotifierTest {
+
+    private static final String CAR_KIT = "00:1A:7D:DA:71:13";
+    private static final String HEADSET = "00:1A:7D:DA:71:14";
+    private static final String WATCH = "00:1A:7D:DA:71:15";
+
+    private final List<ConnectionSummary> mSummaries = new ArrayList<>();
+    private VirtualScheduler mScheduler;
+    private ConnectionNotifier mNotifier;
+
+    @Before
+    public void setUp() {
+        mScheduler = new VirtualScheduler();
+        mNotifier = new ConnectionNotifier(mScheduler, mScheduler, 5000, 3000);
+        mNotifier.setListener(new ConnectionNotifier.Listener() {
+            @Override
+            public void onSummary(ConnectionSummary summary) {
+                mSummaries.add(summary);
+            }
+        });
+    }
+
+    @Test
+    public void change_isReportedOnceItHasHeld() {
+        mNotifier.onConnectionChanged(CAR_KIT, "Car kit", true);
+        mScheduler.advance(4999);
+
+        assertTrue(mSummaries.isEmpty());
+
+        mScheduler.advance(1);
+
+        assertEquals(Collections.singletonList("[Car kit connected]"), texts());
+        assertEquals(5000, mSummaries.get(0).getTime());
+        assertEquals(0, mNotifier.getPendingCount());
+    }
+
+    @Test
+    public void flapping_endingWhereItStarted_isNotReported() {
+        for (int flap = 0; flap < 20; flap++) {
+            mNotifier.onConnectionChanged(CAR_KIT, "Car kit", true);
+            mScheduler.advance(1000);
+            mNotifier.onConnectionChanged(CAR_KIT, "Car kit", false);
+            mScheduler.advance(1000);
+        }
+        mScheduler.advance(60000);
+
+        assertTrue(mSummaries.isEmpty());
+        assertEquals(40, mNotifier.getSuppressedCount());
+        assertEquals(0, mScheduler.getPendingCount());
+    }
+
+    @Test
+    public void flapping_thenSettling_isOneChange() {
+        mNotifier.onConnectionChanged(CAR_KIT, "Car kit", true);
+        mScheduler.advance(500);
+        mNotifier.onConnectionChanged(CAR_KIT, "Car kit", false);
+        mScheduler.advance(500);
+        mNotifier.onConnectionChanged(CAR_KIT, "Car kit", true);
+        mScheduler.advance(10000);
+
+        assertEquals(Collections.singletonList("[Car kit connected]"), texts());
+        assertEquals(2, mSummaries.get(0).getChanges().get(0).getFlapCount());
+    }
+
+    @Test
+    public void burst_isMergedIntoOneSummary() {
+        mNotifier.onConnectionChanged(CAR_KIT, "Car kit", true);
+        mScheduler.advance(100);
+        mNotifier.onConnectionChanged(HEADSET, "Headset", true);
+        mScheduler.advance(100);
+        mNotifier.onConnectionChanged(WATCH, "Watch", false);
+        mScheduler.advance(10000);
+
+        assertEquals(Arrays.asList("[Car kit connected]",
+                "[Headset connected, Watch disconnected]"), texts());
+        assertEquals(1, mSummaries.get(1).getConnectedCount());
+    }
+
+    @Test
+    public void summaries_areAtLeastTheMinimumIntervalApart() {
+        mNotifier.onConnectionChanged(CAR_KIT, "Car kit", true);
+        mScheduler.advance(1000);
+        mNotifier.onConnectionChanged(HEADSET, "Headset", true);
+        mScheduler.advance(4000);
+        mScheduler.advance(1000);
+
+        assertEquals(1, mSummaries.size());
+
+        mScheduler.advance(2000);
+
+        assertEquals(Arrays.asList("[Car kit connected]", "[Headset connected]"), texts());
+        assertEquals(8000, mSummaries.get(1).getTime());
+    }
+
+    @Test
+    public void cancel_dropsPendingChanges() {
+        mNotifier.onConnectionChanged(CAR_KIT, "Car kit", true);
+        mNotifier.cancel();
+        mScheduler.advance(10000);
+
+        assertTrue(mSummaries.isEmpty());
+        assertEquals(0, mScheduler.getPendingCount());
+    }
+
+    private List<String> texts() {
+        List<String> texts = new ArrayList<>();
+        for (ConnectionSummary summary : mSummaries) {
+            texts.add(summary.toString());
+        }
+        return texts;
+    }
+
+}
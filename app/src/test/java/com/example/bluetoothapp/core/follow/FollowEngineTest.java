@@ -0,0 +1,100 @@
+package com.example.bluetoothapp.core.follow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class FollowEngineTest {
+
+    private static final String HEADSET = "00:1A:7D:DA:71:13";
+    private static final String WATCH = "00:1A:7D:DA:71:14";
+
+    private final List<Runnable> mPendingWrites = new ArrayList<>();
+    private final Executor mQueuedExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mPendingWrites.add(command);
+        }
+    };
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("followed", ".bin");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        new File(mFile.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void shouldNotify_followsRules() {
+        FollowEngine engine = new FollowEngine(new FollowFile(mFile), mQueuedExecutor);
+        engine.follow(HEADSET, FollowEngine.NOTIFY_CONNECT);
+        engine.follow(WATCH, FollowEngine.NOTIFY_BOTH);
+
+        assertTrue(engine.shouldNotify(HEADSET, true));
+        assertFalse(engine.shouldNotify(HEADSET, false));
+        assertTrue(engine.shouldNotify(WATCH, false));
+        assertFalse(engine.shouldNotify("00:1A:7D:DA:71:15", true));
+        assertFalse(engine.shouldNotify("not an address", true));
+    }
+
+    @Test
+    public void follow_withNoRulesUnfollows() {
+        FollowEngine engine = new FollowEngine(new FollowFile(mFile), mQueuedExecutor);
+        engine.follow(HEADSET, FollowEngine.NOTIFY_BOTH);
+        engine.follow(HEADSET, 0);
+
+        assertFalse(engine.isFollowed(HEADSET));
+        assertEquals(0, engine.size());
+    }
+
+    @Test
+    public void changes_coalesceIntoOneWrite() throws IOException {
+        FollowEngine engine = new FollowEngine(new FollowFile(mFile), mQueuedExecutor);
+        engine.follow(HEADSET, FollowEngine.NOTIFY_BOTH);
+        engine.follow(WATCH, FollowEngine.NOTIFY_DISCONNECT);
+        engine.unfollow(HEADSET);
+
+        assertEquals(1, mPendingWrites.size());
+        assertFalse(mFile.exists());
+        mPendingWrites.remove(0).run();
+
+        FollowEngine reloaded = new FollowEngine(new FollowFile(mFile), mQueuedExecutor);
+        reloaded.load();
+        assertEquals(1, reloaded.size());
+        assertEquals(FollowEngine.NOTIFY_DISCONNECT, reloaded.getRules(WATCH));
+        assertFalse(reloaded.isFollowed(HEADSET));
+    }
+
+    @Test
+    public void load_ignoresCorruptFile() throws IOException {
+        FollowFile file = new FollowFile(mFile);
+        FollowEngine engine = new FollowEngine(file, mQueuedExecutor);
+        engine.follow(HEADSET, FollowEngine.NOTIFY_BOTH);
+        mPendingWrites.remove(0).run();
+        assertTrue(mFile.length() > 4);
+        RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        raf.setLength(9);
+        raf.close();
+
+        FollowEngine reloaded = new FollowEngine(file, mQueuedExecutor);
+        reloaded.load();
+        assertEquals(0, reloaded.size());
+    }
+
+}
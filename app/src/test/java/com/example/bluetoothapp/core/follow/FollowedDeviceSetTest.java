@@ -0,0 +1,69 @@
+package com.example.bluetoothapp.core.follow;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class FollowedDeviceSetTest {
+
+    @Test
+    public void put_replacesRules() {
+        FollowedDeviceSet set = new FollowedDeviceSet();
+        set.put(0x001A7D000001L, 1);
+        set.put(0x001A7D000001L, 3);
+
+        assertEquals(1, set.size());
+        assertEquals(3, set.getRules(0x001A7D000001L));
+        assertEquals(0, set.getRules(0x001A7D000002L));
+    }
+
+    @Test
+    public void put_growsPastInitialCapacity() {
+        FollowedDeviceSet set = new FollowedDeviceSet();
+        for (long address = 0; address < 1000; address++) {
+            set.put(address, 1 + (int) (address % 3));
+        }
+
+        assertEquals(1000, set.size());
+        for (long address = 0; address < 1000; address++) {
+            assertEquals(1 + (int) (address % 3), set.getRules(address));
+        }
+    }
+
+    @Test
+    public void remove_keepsOtherEntriesReachable() {
+        FollowedDeviceSet set = new FollowedDeviceSet();
+        for (long address = 0; address < 64; address++) {
+            set.put(address, 1);
+        }
+        for (long address = 0; address < 64; address += 2) {
+            assertTrue(set.remove(address));
+        }
+
+        assertFalse(set.remove(0));
+        assertEquals(32, set.size());
+        for (long address = 0; address < 64; address++) {
+            assertEquals(address % 2 == 1, set.contains(address));
+        }
+        long[] addresses = set.getAddresses();
+        Arrays.sort(addresses);
+        assertEquals(1, addresses[0]);
+        assertEquals(63, addresses[31]);
+    }
+
+    @Test
+    public void copy_isIndependent() {
+        FollowedDeviceSet set = new FollowedDeviceSet();
+        set.put(7, 1);
+        FollowedDeviceSet copy = new FollowedDeviceSet(set);
+        copy.remove(7);
+        copy.put(8, 2);
+
+        assertTrue(set.contains(7));
+        assertFalse(set.contains(8));
+        assertEquals(1, copy.size());
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.example.bluetoothapp.core.journal;
+
+import com.example.bluetoothapp.core.time.ManualClock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConnectionJournalTest {
+
+    private static final String CAR_KIT = "00:1A:7D:DA:71:13";
+    private static final String HEADSET = "00:1A:7D:DA:71:14";
+
+    private final ManualClock mClock = new ManualClock(1000000);
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("connections", ".bin");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void dump_summarizesEachDevice() {
+        ConnectionJournal journal = ConnectionJournal.inMemory(64, mClock);
+        long start = mClock.now();
+        journal.recordConnected(CAR_KIT);
+        mClock.advance(60000);
+        journal.recordDisconnected(CAR_KIT);
+        mClock.advance(2000);
+        journal.recordConnected(CAR_KIT);
+        journal.recordConnected(HEADSET);
+
+        StringWriter text = new StringWriter();
+        PrintWriter writer = new PrintWriter(text);
+        journal.dump(writer, start, mClock.now());
+        writer.flush();
+
+        String[] lines = text.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0], lines[0].endsWith("2 devices"));
+        assertTrue(lines[2], lines[2].matches(
+                " +00:1A:7D:DA:71:13 +2 +1 +60s +0 +1 +0 +0 +0 +0 +0"));
+        assertTrue(lines[3], lines[3].matches(" +00:1A:7D:DA:71:14 +1 +0 +0s( +0){7}"));
+    }
+
+    @Test
+    public void history_pairsSessionsAndBucketsGaps() {
+        ConnectionJournal journal = ConnectionJournal.inMemory(64, mClock);
+        long start = mClock.now();
+        journal.recordConnected(CAR_KIT);
+        mClock.advance(60000);
+        journal.recordDisconnected(CAR_KIT);
+        mClock.advance(2000);
+        journal.recordConnected(CAR_KIT);
+        journal.recordConnected(HEADSET);
+        mClock.advance(30000);
+        journal.recordDisconnected(CAR_KIT);
+        mClock.advance(45000);
+        journal.recordConnected(CAR_KIT);
+
+        DeviceHistory history = journal.getHistory(CAR_KIT, start, mClock.now());
+
+        List<ConnectionSession> sessions = history.getSessions();
+        assertEquals(3, sessions.size());
+        assertEquals(60000, sessions.get(0).getDuration());
+        assertEquals(30000, sessions.get(1).getDuration());
+        assertEquals(-1, sessions.get(2).getDisconnectedAt());
+        assertEquals(90000, history.getConnectedTime());
+        assertEquals(2, history.getReconnectCount());
+        int[] gaps = history.getGapHistogram();
+        assertEquals(1, gaps[1]);
+        assertEquals(1, gaps[3]);
+        assertEquals(Arrays.asList(CAR_KIT, HEADSET), journal.getAddresses(start, mClock.now()));
+    }
+
+    @Test
+    public void history_rangeCutsSessionStart() {
+        ConnectionJournal journal = ConnectionJournal.inMemory(64, mClock);
+        journal.recordConnected(CAR_KIT);
+        mClock.advance(10000);
+        long from = mClock.now();
+        mClock.advance(10000);
+        journal.recordDisconnected(CAR_KIT);
+
+        DeviceHistory history = journal.getHistory(CAR_KIT, from, mClock.now());
+
+        assertEquals(1, history.getSessions().size());
+        assertEquals(-1, history.getSessions().get(0).getConnectedAt());
+        assertEquals(0, history.getConnectedTime());
+    }
+
+    @Test
+    public void ring_overwritesOldestRecords() {
+        ConnectionJournal journal = ConnectionJournal.inMemory(4, mClock);
+        for (int i = 0; i < 10; i++) {
+            mClock.advance(1000);
+            journal.recordConnected(CAR_KIT);
+            mClock.advance(1000);
+            journal.recordDisconnected(CAR_KIT);
+        }
+
+        assertEquals(4, journal.size());
+        DeviceHistory history = journal.getHistory(CAR_KIT, 0, Long.MAX_VALUE);
+        assertEquals(2, history.getSessions().size());
+        assertEquals(1, history.getReconnectCount());
+    }
+
+    @Test
+    public void open_keepsRecordsAcrossReopen() throws IOException {
+        ConnectionJournal journal = ConnectionJournal.open(mFile, 16, mClock);
+        journal.recordConnected(HEADSET);
+        mClock.advance(5000);
+        journal.recordDisconnected(HEADSET);
+
+        ConnectionJournal reopened = ConnectionJournal.open(mFile, 16, mClock);
+        assertEquals(2, reopened.size());
+        assertEquals(5000, reopened.getHistory(HEADSET, 0, Long.MAX_VALUE).getConnectedTime());
+
+        ConnectionJournal resized = ConnectionJournal.open(mFile, 32, mClock);
+        assertEquals(0, resized.size());
+    }
+
+    @Test
+    public void record_ignoresInvalidAddress() {
+        ConnectionJournal journal = ConnectionJournal.inMemory(4, mClock);
+        journal.recordConnected(null);
+        journal.recordConnected("not an address");
+
+        assertEquals(0, journal.size());
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.example.bluetoothapp.core.list;
+
+import com.example.bluetoothapp.core.list.SectionedDeviceList.Section;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SectionedDeviceListTest {
+
+    private SectionedDeviceList<String> mList;
+    private List<String> mEvents;
+
+    // Devices are "<address>:<p|a>[!]", where p is paired, a is available and ! has priority.
+    private static final SectionedDeviceList.Classifier<String> CLASSIFIER =
+            new SectionedDeviceList.Classifier<String>() {
+                @Override
+                public String getAddress(String device) {
+                    return device.substring(0, device.indexOf(':'));
+                }
+
+                @Override
+                public boolean isPaired(String device) {
+                    return device.charAt(device.indexOf(':') + 1) == 'p';
+                }
+
+                @Override
+                public boolean hasPriority(String device) {
+                    return device.endsWith("!");
+                }
+            };
+
+    @Before
+    public void setUp() throws Exception {
+        mList = new SectionedDeviceList<>(CLASSIFIER);
+        mEvents = new ArrayList<>();
+        mList.setCallback(new SectionedDeviceList.Callback() {
+            @Override
+            public void onInserted(int position, int count) {
+                mEvents.add("+" + position + "x" + count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                mEvents.add("-" + position + "x" + count);
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                mEvents.add("~" + position + "x" + count);
+            }
+        });
+    }
+
+    @Test
+    public void firstDeviceOfASectionInsertsItsHeader() throws Exception {
+        mList.add("1:a");
+        mList.add("2:a");
+        mList.add("3:p");
+
+        assertEquals(Arrays.asList("+0x2", "+2x1", "+0x2"), mEvents);
+        assertEquals(Arrays.<Object>asList(Section.PAIRED, "3:p", Section.AVAILABLE, "1:a", "2:a"),
+                mList.toList());
+    }
+
+    @Test
+    public void priorityDevicesGoBeforeTheRestOfTheirSection() throws Exception {
+        mList.add("1:a");
+        mList.add("2:a!");
+        mList.add("3:a");
+        mList.add("4:a!");
+
+        assertEquals(Arrays.<Object>asList(Section.AVAILABLE, "2:a!", "4:a!", "1:a", "3:a"),
+                mList.toList());
+        assertEquals(Arrays.asList("+0x2", "+1x1", "+3x1", "+2x1"), mEvents);
+    }
+
+    @Test
+    public void bondChangeMovesDeviceAcrossSections() throws Exception {
+        mList.add("1:a");
+        mList.add("2:a");
+        mEvents.clear();
+
+        mList.update("1:p");
+
+        assertEquals(Arrays.asList("-1x1", "+0x2"), mEvents);
+        assertEquals(Arrays.<Object>asList(Section.PAIRED, "1:p", Section.AVAILABLE, "2:a"),
+                mList.toList());
+    }
+
+    @Test
+    public void sameSectionUpdateIsAChange() throws Exception {
+        mList.add("1:p");
+        mList.add("2:p");
+        mEvents.clear();
+
+        assertFalse(mList.add("2:p"));
+
+        assertEquals(Arrays.asList("~2x1"), mEvents);
+    }
+
+    @Test
+    public void removingLastDeviceDropsHeader() throws Exception {
+        mList.add("1:p");
+        mList.add("2:a");
+        mEvents.clear();
+
+        assertEquals("1:p", mList.remove("1"));
+
+        assertEquals(Arrays.asList("-0x2"), mEvents);
+        assertEquals(Arrays.<Object>asList(Section.AVAILABLE, "2:a"), mList.toList());
+    }
+
+    @Test
+    public void movedDevicesAreFoundAtTheirNewPosition() throws Exception {
+        mList.setAll(Arrays.asList("1:a", "2:a", "3:a", "4:a"));
+        mList.update("2:p");
+        mList.update("2:a");
+        mEvents.clear();
+
+        mList.update("3:a");
+        mList.update("2:a");
+        assertEquals("1:a", mList.remove("1"));
+
+        assertEquals(Arrays.asList("~2x1", "~4x1", "-1x1"), mEvents);
+        assertEquals(Arrays.<Object>asList(Section.AVAILABLE, "3:a", "4:a", "2:a"),
+                mList.toList());
+    }
+
+    @Test
+    public void scanningKeepsAvailableHeaderVisible() throws Exception {
+        mList.add("1:p");
+        mList.setScanning(true);
+        mList.add("2:a");
+        mList.remove("2");
+        mList.setScanning(false);
+
+        assertEquals(Arrays.asList("+0x2", "+2x1", "+3x1", "-3x1", "-2x1"), mEvents);
+        assertEquals(2, mList.getItemCount());
+    }
+
+    @Test
+    public void getItemMatchesFlattenedList() throws Exception {
+        mList.setAll(Arrays.asList("1:a", "2:p", "3:a!", "4:p!", "5:a", "2:p"));
+
+        List<Object> items = mList.toList();
+        assertEquals(7, mList.getItemCount());
+        for (int position = 0; position < items.size(); position++) {
+            assertEquals(items.get(position), mList.getItem(position));
+        }
+        assertTrue(mEvents.isEmpty());
+    }
+
+}
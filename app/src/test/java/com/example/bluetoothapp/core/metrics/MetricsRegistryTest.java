@@ -0,0 +1,173 @@
+package com.example.bluetoothapp.core.metrics;
+
+import com.example.bluetoothapp.core.time.ManualClock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    private ManualClock mClock;
+    private MetricsRegistry mMetrics;
+
+    @Before
+    public void setUp() {
+        mClock = new ManualClock(1000);
+        mMetrics = new MetricsRegistry(mClock, 4);
+    }
+
+    @Test
+    public void sameName_sameMetric() {
+        assertSame(mMetrics.counter("scan.count"), mMetrics.counter("scan.count"));
+        assertSame(mMetrics.gauge("links.open"), mMetrics.gauge("links.open"));
+        assertSame(mMetrics.histogram("adapter.bind"), mMetrics.histogram("adapter.bind"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nameOfAnotherKind_throws() {
+        mMetrics.counter("scan.count");
+        mMetrics.histogram("scan.count");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void counterStripes_mustBePowerOfTwo() {
+        new Counter(3);
+    }
+
+    @Test
+    public void counter_sumsEveryThread() throws Exception {
+        final Counter counter = mMetrics.counter("frames");
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int index = 0; index < threads.length; index++) {
+            threads[index] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int count = 0; count < 10000; count++) {
+                        counter.increment();
+                    }
+                    counter.add(5);
+                }
+            });
+            threads[index].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(8 * 10005, counter.get());
+    }
+
+    @Test
+    public void gauge_keepsLatestValue() {
+        Gauge gauge = mMetrics.gauge("links.open");
+        gauge.add(2);
+        gauge.add(-1);
+        assertEquals(1, gauge.get());
+        gauge.set(7);
+        assertEquals(7, gauge.get());
+    }
+
+    @Test
+    public void histogram_bucketsByPowerOfTwo() {
+        assertEquals(0, Histogram.bucketOf(0));
+        assertEquals(1, Histogram.bucketOf(1));
+        assertEquals(2, Histogram.bucketOf(2));
+        assertEquals(2, Histogram.bucketOf(3));
+        assertEquals(11, Histogram.bucketOf(1024));
+        assertEquals(Histogram.BUCKETS - 1, Histogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(2047, Histogram.getUpperBound(11));
+    }
+
+    @Test
+    public void histogram_percentilesToTheBucket() {
+        Histogram histogram = mMetrics.histogram("adapter.bind");
+        for (int sample = 0; sample < 90; sample++) {
+            histogram.record(1000);
+        }
+        for (int sample = 0; sample < 10; sample++) {
+            histogram.record(100000);
+        }
+        histogram.record(-5);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(101, snapshot.getCount());
+        assertEquals(1, snapshot.getBucketCount(0));
+        assertEquals(90 * 1000 + 10 * 100000, snapshot.getSum());
+        assertEquals(100000, snapshot.getMax());
+        assertEquals(1023, snapshot.getPercentile(50));
+        assertEquals(1023, snapshot.getPercentile(90));
+        // The top bucket's bound is past the largest sample.
+        assertEquals(100000, snapshot.getPercentile(99));
+        assertEquals(0, snapshot.getPercentile(0));
+    }
+
+    @Test
+    public void emptyHistogram_hasNoPercentiles() {
+        Histogram.Snapshot snapshot = mMetrics.histogram("idle").snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(-1, snapshot.getPercentile(50));
+        assertEquals(0, snapshot.getMean(), 0);
+    }
+
+    @Test
+    public void snapshot_roundTripsThroughBytes() throws IOException {
+        mMetrics.counter("scan.count").add(3);
+        mMetrics.gauge("scan.active").set(1);
+        mMetrics.histogram("broadcast.found").record(40000);
+        mMetrics.histogram("broadcast.found").record(1 << 20);
+        mMetrics.histogram("idle");
+        mClock.advance(500);
+        MetricsSnapshot snapshot = mMetrics.snapshot();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(bytes);
+        MetricsSnapshot read =
+                MetricsSnapshot.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(1500, read.getTime());
+        assertEquals(snapshot.getCounters(), read.getCounters());
+        assertEquals(snapshot.getGauges(), read.getGauges());
+        assertEquals(snapshot.getHistograms(), read.getHistograms());
+        assertEquals(2, read.getHistograms().get("broadcast.found").getCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_rejectsOtherFiles() throws IOException {
+        MetricsSnapshot.readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}));
+    }
+
+    @Test
+    public void dump_listsEveryMetric() {
+        mMetrics.counter("scan.count").increment();
+        mMetrics.gauge("links.open").set(2);
+        mMetrics.histogram("adapter.bind").record(2500);
+
+        StringWriter text = new StringWriter();
+        PrintWriter writer = new PrintWriter(text);
+        mMetrics.snapshot().dump(writer);
+        writer.flush();
+
+        String dump = text.toString();
+        assertTrue(dump, dump.contains("scan.count"));
+        assertTrue(dump, dump.contains("links.open"));
+        assertTrue(dump, dump.contains("adapter.bind"));
+        assertTrue(dump, dump.contains("2.5"));
+    }
+
+}
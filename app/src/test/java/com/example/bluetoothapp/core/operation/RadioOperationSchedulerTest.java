@@ -0,0 +1,356 @@
+package com.example.bluetoothapp.core.operation;
+
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler.Kind;
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler.Result;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.SimulatedConnector;
+import com.example.bluetoothapp.core.radio.SimulatedController;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedRadio;
+import com.example.bluetoothapp.core.reconnect.LatencyRecorder;
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RadioOperationSchedulerTest {
+
+    private VirtualScheduler mScheduler;
+    private RadioOperationScheduler mOperations;
+    private final List<String> mLog = new ArrayList<>();
+    private final List<TestOperation> mTestOperations = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mScheduler = new VirtualScheduler();
+        mOperations = new RadioOperationScheduler(mScheduler, mScheduler,
+                new RadioOperationScheduler.Policy.Builder()
+                        .setTimeLimit(Kind.CONNECT, 5000)
+                        .build());
+    }
+
+    @Test
+    public void operations_runOneAtATimeByPriorityThenOrder() {
+        TestOperation first = submit("first", Kind.SDP, RadioOperationScheduler.PRIORITY_NORMAL);
+        mScheduler.advance(0);
+        submit("background", Kind.SDP, RadioOperationScheduler.PRIORITY_BACKGROUND);
+        submit("normal", Kind.CONNECT, RadioOperationScheduler.PRIORITY_NORMAL);
+        submit("user", Kind.CONNECT, RadioOperationScheduler.PRIORITY_USER);
+        mScheduler.advance(0);
+        assertEquals(Arrays.asList("start first"), mLog);
+        assertEquals(Kind.SDP, mOperations.getRunningKind());
+
+        first.finish(true);
+        mScheduler.advance(0);
+        assertEquals(Arrays.asList("start first", "start user"), mLog);
+        assertEquals(Result.COMPLETED, first.mResult);
+
+        finishRunning();
+        finishRunning();
+        assertEquals(Arrays.asList("start first", "start user", "start normal",
+                "start background"), mLog);
+    }
+
+    @Test
+    public void waitingPastDeadline_expires() {
+        submit("running", Kind.CONNECT, RadioOperationScheduler.PRIORITY_NORMAL);
+        TestOperation late = new TestOperation("late");
+        mOperations.submit(late, Kind.SDP, RadioOperationScheduler.PRIORITY_NORMAL, 1000);
+
+        mScheduler.advance(1000);
+
+        assertEquals(Result.EXPIRED, late.mResult);
+        assertEquals(0, mOperations.getQueueLength());
+        assertEquals(Arrays.asList("start running"), mLog);
+    }
+
+    @Test
+    public void runningPastTimeLimit_isAborted() {
+        TestOperation connect = submit("connect", Kind.CONNECT,
+                RadioOperationScheduler.PRIORITY_NORMAL);
+        submit("next", Kind.SDP, RadioOperationScheduler.PRIORITY_NORMAL);
+
+        mScheduler.advance(4999);
+        assertNull(connect.mResult);
+        mScheduler.advance(1);
+
+        assertEquals(Result.TIMED_OUT, connect.mResult);
+        assertEquals(Arrays.asList("start connect", "abort connect", "start next"), mLog);
+        assertEquals(5000, mOperations.getRunTimes(Kind.CONNECT).getPercentile(100));
+        assertEquals(5000, mOperations.getWaitTimes(Kind.SDP).getPercentile(100));
+    }
+
+    @Test
+    public void backgroundDiscovery_givesWayToConnect() {
+        TestOperation scan = submit("scan", Kind.DISCOVERY,
+                RadioOperationScheduler.PRIORITY_BACKGROUND);
+        mScheduler.advance(2000);
+
+        submit("connect", Kind.CONNECT, RadioOperationScheduler.PRIORITY_NORMAL);
+        mScheduler.advance(0);
+
+        assertEquals(Result.PREEMPTED, scan.mResult);
+        assertEquals(Arrays.asList("start scan", "abort scan", "start connect"), mLog);
+        assertEquals(0, mOperations.getWaitTimes(Kind.CONNECT).getPercentile(100));
+    }
+
+    @Test
+    public void userDiscovery_isNotPreemptedByReconnects() {
+        TestOperation scan = submit("scan", Kind.DISCOVERY, RadioOperationScheduler.PRIORITY_USER);
+        submit("connect", Kind.CONNECT, RadioOperationScheduler.PRIORITY_NORMAL);
+        mScheduler.advance(3000);
+
+        assertNull(scan.mResult);
+        scan.finish(true);
+        mScheduler.advance(0);
+        assertEquals(Arrays.asList("start scan", "start connect"), mLog);
+        assertEquals(3000, mOperations.getWaitTimes(Kind.CONNECT).getPercentile(100));
+    }
+
+    @Test
+    public void cancel_dropsWaitingAndAbortsRunning() {
+        TestOperation running = submit("running", Kind.BOND,
+                RadioOperationScheduler.PRIORITY_NORMAL);
+        TestOperation waiting = submit("waiting", Kind.SDP,
+                RadioOperationScheduler.PRIORITY_NORMAL);
+        submit("last", Kind.SDP, RadioOperationScheduler.PRIORITY_NORMAL);
+        mScheduler.advance(0);
+
+        waiting.cancel();
+        running.cancel();
+        mScheduler.advance(0);
+
+        assertEquals(Result.CANCELLED, waiting.mResult);
+        assertEquals(Result.CANCELLED, running.mResult);
+        assertEquals(Arrays.asList("start running", "abort running", "start last"), mLog);
+        assertEquals(2, mOperations.getCount(Result.CANCELLED));
+    }
+
+    @Test
+    public void failedStart_movesOn() {
+        TestOperation broken = new TestOperation("broken");
+        broken.mStarts = false;
+        mOperations.submit(broken, Kind.CONNECT, RadioOperationScheduler.PRIORITY_NORMAL,
+                RadioOperationScheduler.NO_DEADLINE);
+        submit("next", Kind.CONNECT, RadioOperationScheduler.PRIORITY_NORMAL);
+
+        mScheduler.advance(0);
+
+        assertEquals(Result.FAILED, broken.mResult);
+        assertEquals(Arrays.asList("start broken", "start next"), mLog);
+    }
+
+    @Test
+    public void resubmitting_isRejected() {
+        TestOperation operation = submit("once", Kind.SDP, RadioOperationScheduler.PRIORITY_NORMAL);
+        try {
+            mOperations.submit(operation, Kind.SDP, RadioOperationScheduler.PRIORITY_NORMAL,
+                    RadioOperationScheduler.NO_DEADLINE);
+            fail();
+        } catch (IllegalStateException expected) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void scheduledConnector_queuesOneConnectPerDevice() {
+        SimulatedRadio radio = new SimulatedRadio();
+        SimulatedConnector connector = new SimulatedConnector(radio, mScheduler, 1000);
+        final ScheduledConnector<SimulatedDevice> scheduled = new ScheduledConnector<>(
+                mOperations, radio, connector, RadioOperationScheduler.PRIORITY_NORMAL);
+        SimulatedDevice headset = new SimulatedDevice("00:1A:7D:DA:71:01", "Headset", 0x0404,
+                BluetoothRadio.BOND_BONDED);
+        SimulatedDevice speaker = new SimulatedDevice("00:1A:7D:DA:71:02", "Speaker", 0x0414,
+                BluetoothRadio.BOND_BONDED);
+        final List<String> connected = new ArrayList<>();
+        radio.open(new AclListener() {
+            @Override
+            public void onAclConnected(SimulatedDevice device) {
+                connected.add(device.getAddress() + "@" + mScheduler.now());
+                scheduled.onConnected(device.getAddress());
+            }
+        }, BluetoothRadio.EVENT_CONNECTION);
+
+        assertTrue(scheduled.connect(headset));
+        assertTrue(scheduled.connect(headset));
+        assertTrue(scheduled.connect(speaker));
+        mScheduler.advance(5000);
+
+        assertEquals(2, connector.getAttemptCount());
+        assertEquals(Arrays.asList(headset.getAddress() + "@1000",
+                speaker.getAddress() + "@2000"), connected);
+        assertEquals(0, scheduled.getPendingCount());
+    }
+
+    /**
+     * Background inquiry plus a burst of connects and SDP queries on a shared controller,
+     * started all at once as before, and through the scheduler.
+     */
+    @Test
+    public void contention_scheduledConnectsFinishSooner() {
+        LatencyRecorder unscheduled = runWorkload(false);
+        LatencyRecorder scheduled = runWorkload(true);
+
+        assertEquals(6, unscheduled.getCount());
+        assertEquals(6, scheduled.getCount());
+        long[] before = unscheduled.getPercentiles(50, 90);
+        long[] after = scheduled.getPercentiles(50, 90);
+        assertTrue(after[0] * 2 < before[0]);
+        assertTrue(after[1] < before[1]);
+    }
+
+    private LatencyRecorder runWorkload(boolean useScheduler) {
+        VirtualScheduler time = new VirtualScheduler();
+        SimulatedController controller = new SimulatedController(time, time, 3);
+        RadioOperationScheduler operations = new RadioOperationScheduler(time, time,
+                RadioOperationScheduler.Policy.DEFAULT);
+        LatencyRecorder latencies = new LatencyRecorder(16);
+        submitWork(controller, operations, time, true, 12000, Kind.DISCOVERY,
+                RadioOperationScheduler.PRIORITY_BACKGROUND, null, useScheduler);
+        time.advance(1000);
+        for (int index = 0; index < 6; index++) {
+            submitWork(controller, operations, time, false, 800, Kind.CONNECT,
+                    RadioOperationScheduler.PRIORITY_NORMAL, latencies, useScheduler);
+            if (index % 2 == 0) {
+                submitWork(controller, operations, time, false, 400, Kind.SDP,
+                        RadioOperationScheduler.PRIORITY_NORMAL, null, useScheduler);
+            }
+        }
+        time.advance(60000);
+        assertEquals(0, controller.getActiveCount());
+        return latencies;
+    }
+
+    private void submitWork(final SimulatedController controller,
+                            RadioOperationScheduler operations, final VirtualScheduler time,
+                            final boolean inquiry, final long duration, Kind kind, int priority,
+                            final LatencyRecorder latencies, boolean useScheduler) {
+        final long submitted = time.now();
+        final SimulatedController.Callback done = new SimulatedController.Callback() {
+            @Override
+            public void onDone() {
+                if (latencies != null) {
+                    latencies.record(time.now() - submitted);
+                }
+            }
+        };
+        if (!useScheduler) {
+            if (inquiry) {
+                controller.startInquiry(duration, done);
+            } else {
+                controller.start(duration, done);
+            }
+            return;
+        }
+        operations.submit(new RadioOperationScheduler.Operation() {
+            SimulatedController.Job mJob;
+
+            @Override
+            protected boolean start() {
+                SimulatedController.Callback finish = new SimulatedController.Callback() {
+                    @Override
+                    public void onDone() {
+                        done.onDone();
+                        finish(true);
+                    }
+                };
+                mJob = inquiry ? controller.startInquiry(duration, finish)
+                        : controller.start(duration, finish);
+                return true;
+            }
+
+            @Override
+            protected void abort() {
+                mJob.cancel();
+            }
+        }, kind, priority, RadioOperationScheduler.NO_DEADLINE);
+    }
+
+    private TestOperation submit(String name, Kind kind, int priority) {
+        TestOperation operation = new TestOperation(name);
+        mOperations.submit(operation, kind, priority, RadioOperationScheduler.NO_DEADLINE);
+        return operation;
+    }
+
+    private void finishRunning() {
+        for (TestOperation operation : mTestOperations) {
+            if (operation.isRunning()) {
+                operation.finish(true);
+                break;
+            }
+        }
+        mScheduler.advance(0);
+    }
+
+    private final class TestOperation extends RadioOperationScheduler.Operation {
+
+        final String mName;
+        boolean mStarts = true;
+        Result mResult;
+
+        TestOperation(String name) {
+            mName = name;
+            mTestOperations.add(this);
+        }
+
+        @Override
+        protected boolean start() {
+            mLog.add("start " + mName);
+            return mStarts;
+        }
+
+        @Override
+        protected void abort() {
+            mLog.add("abort " + mName);
+        }
+
+        @Override
+        protected void onEnded(Result result) {
+            mResult = result;
+        }
+
+    }
+
+    private abstract static class AclListener implements BluetoothRadio.Listener<SimulatedDevice> {
+
+        @Override
+        public void onStateChanged(int state) {
+        }
+
+        @Override
+        public void onDiscoveryStarted() {
+        }
+
+        @Override
+        public void onDiscoveryFinished() {
+        }
+
+        @Override
+        public void onDeviceFound(SimulatedDevice device, short rssi) {
+        }
+
+        @Override
+        public void onAclDisconnected(SimulatedDevice device) {
+        }
+
+        @Override
+        public void onNameChanged(SimulatedDevice device, String name) {
+        }
+
+        @Override
+        public void onClassChanged(SimulatedDevice device, int deviceClass) {
+        }
+
+        @Override
+        public void onBondStateChanged(SimulatedDevice device, int bondState) {
+        }
+
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.example.bluetoothapp.core.presence;
+
+import com.example.bluetoothapp.core.presence.PresenceEngine.State;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PresenceEngineTest {
+
+    private static final String PHONE = "00:1A:7D:DA:71:01";
+    private static final String WATCH = "00:1A:7D:DA:71:02";
+
+    private VirtualScheduler mScheduler;
+    private final Set<String> mTracked = new HashSet<>();
+    private final List<String> mChanges = new ArrayList<>();
+    private PresenceEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mScheduler = new VirtualScheduler();
+        mTracked.add(PHONE);
+        mTracked.add(WATCH);
+        mEngine = new PresenceEngine(mScheduler, mScheduler, new PresenceEngine.Policy.Builder()
+                .setEnterRssi(-70)
+                .setExitRssi(-80)
+                .setSmoothing(1)
+                .setLeaveTimeout(30000)
+                .setAbsentTimeout(60000)
+                .setDebounce(5000)
+                .setTickMillis(1000)
+                .build(), new PresenceEngine.Selector() {
+                    @Override
+                    public boolean isTracked(String address) {
+                        return mTracked.contains(address);
+                    }
+                });
+        mEngine.setListener(new PresenceEngine.Listener() {
+            @Override
+            public void onPresenceChanged(String address, State previous, State state) {
+                mChanges.add(address + " " + previous + " " + state);
+            }
+        });
+    }
+
+    @Test
+    public void strongSighting_isPresentAfterDebounce() {
+        mEngine.onSighting(PHONE, -60);
+        mScheduler.advance(4999);
+        assertEquals(State.ABSENT, mEngine.getState(PHONE));
+
+        mScheduler.advance(1);
+
+        assertEquals(State.PRESENT, mEngine.getState(PHONE));
+        assertEquals(1, mChanges.size());
+        assertEquals(PHONE + " ABSENT PRESENT", mChanges.get(0));
+    }
+
+    @Test
+    public void weakSighting_staysAbsent() {
+        mEngine.onSighting(PHONE, -75);
+        mScheduler.advance(10000);
+
+        assertEquals(State.ABSENT, mEngine.getState(PHONE));
+        assertTrue(mChanges.isEmpty());
+    }
+
+    @Test
+    public void signalBetweenThresholds_keepsState() {
+        present(PHONE);
+
+        // Below the enter RSSI but above the exit RSSI.
+        for (int step = 0; step < 10; step++) {
+            mEngine.onSighting(PHONE, -75);
+            mScheduler.advance(2000);
+        }
+
+        assertEquals(State.PRESENT, mEngine.getState(PHONE));
+        assertEquals(1, mChanges.size());
+    }
+
+    @Test
+    public void briefDip_isDebounced() {
+        present(PHONE);
+
+        mEngine.onSighting(PHONE, -90);
+        mScheduler.advance(3000);
+        mEngine.onSighting(PHONE, -65);
+        mScheduler.advance(10000);
+
+        assertEquals(State.PRESENT, mEngine.getState(PHONE));
+        assertEquals(1, mChanges.size());
+    }
+
+    @Test
+    public void silence_leavesThenGoesAbsent() {
+        present(PHONE);
+        long seen = mScheduler.now();
+
+        mScheduler.advance(30000 + 5000 - 1);
+        assertEquals(State.PRESENT, mEngine.getState(PHONE));
+        mScheduler.advance(1);
+        assertEquals(State.LEAVING, mEngine.getState(PHONE));
+        mScheduler.advance(seen + 60000 + 5000 - mScheduler.now());
+
+        assertEquals(State.ABSENT, mEngine.getState(PHONE));
+        assertEquals(3, mChanges.size());
+        assertEquals(PHONE + " PRESENT LEAVING", mChanges.get(1));
+        assertEquals(PHONE + " LEAVING ABSENT", mChanges.get(2));
+        assertEquals(0, mEngine.getPendingDeadlineCount());
+    }
+
+    @Test
+    public void leaving_returnsOnStrongSighting() {
+        present(PHONE);
+        mScheduler.advance(40000);
+        assertEquals(State.LEAVING, mEngine.getState(PHONE));
+
+        mEngine.onSighting(PHONE, -60);
+        mScheduler.advance(5000);
+
+        assertEquals(State.PRESENT, mEngine.getState(PHONE));
+        assertEquals(PHONE + " LEAVING PRESENT", mChanges.get(mChanges.size() - 1));
+    }
+
+    @Test
+    public void connect_isPresentAtOnce_andHoldsWithoutSightings() {
+        mEngine.onConnected(WATCH);
+        assertEquals(State.PRESENT, mEngine.getState(WATCH));
+
+        mScheduler.advance(10 * 60 * 1000);
+        assertEquals(State.PRESENT, mEngine.getState(WATCH));
+        assertEquals(0, mEngine.getPendingDeadlineCount());
+
+        mEngine.onDisconnected(WATCH);
+        mScheduler.advance(30000 + 5000);
+
+        assertEquals(State.LEAVING, mEngine.getState(WATCH));
+    }
+
+    @Test
+    public void unknownRssi_countsAsSighting() {
+        mEngine.onSighting(PHONE, BluetoothRadio.RSSI_UNKNOWN);
+        mScheduler.advance(5000);
+
+        assertEquals(State.PRESENT, mEngine.getState(PHONE));
+    }
+
+    @Test
+    public void untrackedDevice_isIgnoredAndDropped() {
+        mEngine.onSighting("00:1A:7D:DA:71:03", -50);
+        mScheduler.advance(10000);
+        assertEquals(State.ABSENT, mEngine.getState("00:1A:7D:DA:71:03"));
+
+        present(PHONE);
+        mTracked.remove(PHONE);
+        mScheduler.advance(60000);
+
+        assertEquals(0, mEngine.getTrackedCount());
+        assertEquals(1, mChanges.size());
+    }
+
+    @Test
+    public void manyDevices_shareOneTimer() {
+        for (int index = 0; index < 500; index++) {
+            String address = String.format("00:1A:7D:DA:%02X:%02X", index / 256, index % 256);
+            mTracked.add(address);
+            mEngine.onSighting(address, -60);
+            mScheduler.advance(10);
+        }
+
+        assertEquals(1, mScheduler.getPendingCount());
+        mScheduler.advance(70000);
+        assertEquals(500 * 3, mChanges.size());
+    }
+
+    @Test
+    public void noisySightings_neverFlapWithinDebounce() {
+        Random random = new Random(3);
+        present(PHONE);
+        long lastChange = mScheduler.now();
+        int changes = mChanges.size();
+        for (int step = 0; step < 1000; step++) {
+            if (random.nextInt(3) != 0) {
+                mEngine.onSighting(PHONE, -95 + random.nextInt(40));
+            }
+            mScheduler.advance(random.nextInt(4000));
+            if (mChanges.size() > changes) {
+                assertTrue(mScheduler.now() - lastChange >= 5000);
+                lastChange = mScheduler.now();
+                changes = mChanges.size();
+            }
+        }
+    }
+
+    private void present(String address) {
+        mEngine.onSighting(address, -60);
+        mScheduler.advance(5000);
+        mEngine.onSighting(address, -60);
+        assertEquals(State.PRESENT, mEngine.getState(address));
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.example.bluetoothapp.core.radio;
+
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class LeScanHubTest {
+
+    private static final UUID HEART_RATE = UUID.fromString("0000180d-0000-1000-8000-00805f9b34fb");
+
+    private SimulatedLeScanner mScanner;
+    private LeScanHub<SimulatedDevice> mHub;
+    private final List<String> mService = new ArrayList<>();
+    private final List<String> mActivity = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mScanner = new SimulatedLeScanner(new VirtualScheduler());
+        mHub = new LeScanHub<>(mScanner);
+    }
+
+    @Test
+    public void clients_shareTheMostDemandingScan() {
+        LeScanner<SimulatedDevice> service = mHub.newScanner();
+        LeScanner<SimulatedDevice> activity = mHub.newScanner();
+        service.startScan(new LeScanSettings.Builder()
+                .setScanMode(LeScanSettings.SCAN_MODE_LOW_POWER)
+                .setReportDelay(10000)
+                .build(), new Recorder(mService));
+        activity.startScan(new LeScanSettings.Builder()
+                .setScanMode(LeScanSettings.SCAN_MODE_BALANCED)
+                .build(), new Recorder(mActivity));
+
+        LeScanSettings running = mHub.getRunningSettings();
+        assertEquals(LeScanSettings.SCAN_MODE_BALANCED, running.getScanMode());
+        assertEquals(0, running.getReportDelay());
+        assertTrue(running.getFilters().isEmpty());
+
+        mScanner.emit(result(1, null));
+        assertEquals(Collections.singletonList(RadioScript.address(1)), mService);
+        assertEquals(Collections.singletonList(RadioScript.address(1)), mActivity);
+    }
+
+    @Test
+    public void stoppingOneClient_leavesTheOthersScan() {
+        LeScanner<SimulatedDevice> service = mHub.newScanner();
+        LeScanner<SimulatedDevice> activity = mHub.newScanner();
+        LeScanSettings lowPower = new LeScanSettings.Builder()
+                .setScanMode(LeScanSettings.SCAN_MODE_LOW_POWER)
+                .build();
+        service.startScan(lowPower, new Recorder(mService));
+        activity.startScan(new LeScanSettings.Builder()
+                .setScanMode(LeScanSettings.SCAN_MODE_LOW_LATENCY)
+                .build(), new Recorder(mActivity));
+        activity.stopScan();
+        activity.stopScan();
+
+        assertTrue(mScanner.isScanning());
+        assertTrue(service.isScanning());
+        assertFalse(activity.isScanning());
+        assertEquals(LeScanSettings.SCAN_MODE_LOW_POWER, mHub.getRunningSettings().getScanMode());
+        mScanner.emit(result(2, null));
+        assertEquals(Collections.singletonList(RadioScript.address(2)), mService);
+        assertTrue(mActivity.isEmpty());
+
+        service.stopScan();
+        assertFalse(mScanner.isScanning());
+        assertNull(mHub.getRunningSettings());
+    }
+
+    @Test
+    public void filteredClient_onlyGetsItsMatches() {
+        LeScanner<SimulatedDevice> service = mHub.newScanner();
+        LeScanner<SimulatedDevice> activity = mHub.newScanner();
+        service.startScan(new LeScanSettings.Builder()
+                .addFilter(LeScanFilter.serviceUuid(HEART_RATE))
+                .build(), new Recorder(mService));
+        assertEquals(1, mHub.getRunningSettings().getFilters().size());
+        activity.startScan(new LeScanSettings.Builder().build(), new Recorder(mActivity));
+        assertTrue(mHub.getRunningSettings().getFilters().isEmpty());
+
+        mScanner.emitBatch(Arrays.asList(result(1, HEART_RATE), result(2, null)));
+
+        assertEquals(Collections.singletonList(RadioScript.address(1)), mService);
+        assertEquals(Arrays.asList(RadioScript.address(1), RadioScript.address(2)), mActivity);
+    }
+
+    private static LeScanResult<SimulatedDevice> result(int index, UUID serviceUuid) {
+        return new LeScanResult<>(new SimulatedDevice(RadioScript.address(index), null, -1,
+                BluetoothRadio.BOND_NONE), "Beacon " + index, -60, 0,
+                serviceUuid != null ? Collections.singletonList(serviceUuid) : null, null);
+    }
+
+    private static class Recorder implements LeScanner.Callback<SimulatedDevice> {
+
+        private final List<String> mAddresses;
+
+        Recorder(List<String> addresses) {
+            mAddresses = addresses;
+        }
+
+        @Override
+        public void onResults(List<LeScanResult<SimulatedDevice>> results) {
+            for (LeScanResult<SimulatedDevice> result : results) {
+                mAddresses.add(result.getDevice().getAddress());
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            fail("Scan failed: " + errorCode);
+        }
+    }
+
+}
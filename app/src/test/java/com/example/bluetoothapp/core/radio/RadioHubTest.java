@@ -0,0 +1,151 @@
+package com.example.bluetoothapp.core.radio;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RadioHubTest {
+
+    private final List<String> mEvents = new ArrayList<>();
+    private int mOpenCount;
+    private SimulatedRadio mRadio;
+    private RadioHub<SimulatedDevice> mHub;
+    private SimulatedDevice mDevice;
+
+    @Before
+    public void setUp() {
+        mRadio = new SimulatedRadio() {
+            @Override
+            public void open(Listener<SimulatedDevice> listener, int events) {
+                mOpenCount++;
+                super.open(listener, events);
+            }
+        };
+        mHub = new RadioHub<>(mRadio, new NamedListener("registry"), BluetoothRadio.EVENT_DEVICE);
+        mDevice = new SimulatedDevice("00:1A:7D:DA:71:13", "Car kit", -1,
+                BluetoothRadio.BOND_BONDED);
+    }
+
+    @Test
+    public void events_reachOnlySubscribersOfTheirType() {
+        mHub.subscribe(new NamedListener("activity"),
+                BluetoothRadio.EVENT_DISCOVERY | BluetoothRadio.EVENT_DEVICE);
+        mHub.subscribe(new NamedListener("service"), BluetoothRadio.EVENT_CONNECTION);
+
+        mRadio.emitDiscoveryStarted();
+        mRadio.emitAclConnected(mDevice);
+        mRadio.emitNameChanged(mDevice, "Car kit 2");
+        mRadio.setEnabled(false);
+
+        assertEquals(Arrays.asList("activity started", "service acl+",
+                "registry name", "activity name", "activity finished"), mEvents);
+    }
+
+    @Test
+    public void close_stopsEventsAndLastOneClosesRadio() {
+        RadioHub<SimulatedDevice>.Subscription activity =
+                mHub.subscribe(new NamedListener("activity"), BluetoothRadio.EVENT_CONNECTION);
+        RadioHub<SimulatedDevice>.Subscription service =
+                mHub.subscribe(new NamedListener("service"), BluetoothRadio.EVENT_CONNECTION);
+
+        activity.close();
+        mRadio.emitAclConnected(mDevice);
+        service.close();
+        mRadio.emitAclConnected(mDevice);
+        mRadio.emitNameChanged(mDevice, "Car kit 2");
+
+        assertEquals(Collections.singletonList("service acl+"), mEvents);
+        assertEquals(0, mHub.getSubscriberCount());
+    }
+
+    @Test
+    public void setEvents_changesWhatIsDelivered() {
+        RadioHub<SimulatedDevice>.Subscription subscription =
+                mHub.subscribe(new NamedListener("activity"), BluetoothRadio.EVENT_ADAPTER);
+        mRadio.emitAclConnected(mDevice);
+
+        subscription.setEvents(BluetoothRadio.EVENT_CONNECTION);
+        mRadio.emitAclConnected(mDevice);
+        mRadio.setEnabled(false);
+
+        assertEquals(Collections.singletonList("activity acl+"), mEvents);
+        assertEquals(BluetoothRadio.EVENT_CONNECTION, subscription.getEvents());
+    }
+
+    @Test
+    public void changingSubscriptions_keepsTheRadioOpen() {
+        RadioHub<SimulatedDevice>.Subscription activity =
+                mHub.subscribe(new NamedListener("activity"), BluetoothRadio.EVENT_DISCOVERY);
+        RadioHub<SimulatedDevice>.Subscription service =
+                mHub.subscribe(new NamedListener("service"), BluetoothRadio.EVENT_CONNECTION);
+        activity.setEvents(BluetoothRadio.EVENT_ADAPTER);
+        activity.close();
+        mRadio.emitAclConnected(mDevice);
+
+        assertEquals(1, mOpenCount);
+        assertEquals(Collections.singletonList("service acl+"), mEvents);
+        service.close();
+        assertFalse(mHub.isOpen());
+    }
+
+    private class NamedListener implements BluetoothRadio.Listener<SimulatedDevice> {
+
+        private final String mName;
+
+        NamedListener(String name) {
+            mName = name;
+        }
+
+        @Override
+        public void onStateChanged(int state) {
+            mEvents.add(mName + " state");
+        }
+
+        @Override
+        public void onDiscoveryStarted() {
+            mEvents.add(mName + " started");
+        }
+
+        @Override
+        public void onDiscoveryFinished() {
+            mEvents.add(mName + " finished");
+        }
+
+        @Override
+        public void onDeviceFound(SimulatedDevice device, short rssi) {
+            mEvents.add(mName + " found");
+        }
+
+        @Override
+        public void onAclConnected(SimulatedDevice device) {
+            mEvents.add(mName + " acl+");
+        }
+
+        @Override
+        public void onAclDisconnected(SimulatedDevice device) {
+            mEvents.add(mName + " acl-");
+        }
+
+        @Override
+        public void onNameChanged(SimulatedDevice device, String name) {
+            mEvents.add(mName + " name");
+        }
+
+        @Override
+        public void onClassChanged(SimulatedDevice device, int deviceClass) {
+            mEvents.add(mName + " class");
+        }
+
+        @Override
+        public void onBondStateChanged(SimulatedDevice device, int bondState) {
+            mEvents.add(mName + " bond");
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.example.bluetoothapp.core.radio;
+
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class SimulatedLeScannerTest {
+
+    private static final UUID HEART_RATE = UUID.fromString("0000180d-0000-1000-8000-00805f9b34fb");
+    private static final int APPLE = 0x004C;
+
+    private final List<Integer> mBatchSizes = new ArrayList<>();
+    private final List<String> mAddresses = new ArrayList<>();
+    private VirtualScheduler mScheduler;
+    private SimulatedLeScanner mScanner;
+
+    @Before
+    public void setUp() {
+        mScheduler = new VirtualScheduler();
+        mScanner = new SimulatedLeScanner(mScheduler);
+    }
+
+    @Test
+    public void noReportDelay_deliversEachResult() {
+        mScanner.startScan(new LeScanSettings.Builder().build(), mCallback);
+        mScanner.emit(result(1, null));
+        mScanner.emit(result(2, null));
+
+        assertEquals(Arrays.asList(1, 1), mBatchSizes);
+    }
+
+    @Test
+    public void reportDelay_batchesUntilTheDelayPasses() {
+        mScanner.startScan(new LeScanSettings.Builder().setReportDelay(500).build(), mCallback);
+        mScanner.emit(result(1, null));
+        mScheduler.advance(400);
+        mScanner.emit(result(2, null));
+
+        assertTrue(mBatchSizes.isEmpty());
+
+        mScheduler.advance(100);
+        mScanner.emit(result(3, null));
+        mScheduler.advance(500);
+
+        assertEquals(Arrays.asList(2, 1), mBatchSizes);
+        assertEquals(Arrays.asList(RadioScript.address(1), RadioScript.address(2),
+                RadioScript.address(3)), mAddresses);
+    }
+
+    @Test
+    public void filters_matchServiceOrManufacturer() {
+        mScanner.startScan(new LeScanSettings.Builder()
+                .addFilter(LeScanFilter.serviceUuid(HEART_RATE))
+                .addFilter(LeScanFilter.manufacturer(APPLE))
+                .build(), mCallback);
+        mScanner.emitBatch(Arrays.asList(
+                result(1, HEART_RATE),
+                result(2, null),
+                new LeScanResult<>(device(3), null, -50, 0, null, new int[] {APPLE}),
+                new LeScanResult<>(device(4), null, -50, 0, null, new int[] {0x0006})));
+
+        assertEquals(Collections.singletonList(2), mBatchSizes);
+        assertEquals(Arrays.asList(RadioScript.address(1), RadioScript.address(3)), mAddresses);
+        assertEquals(2, mScanner.getFilteredCount());
+    }
+
+    @Test
+    public void stopScan_dropsHeldResults() {
+        mScanner.startScan(new LeScanSettings.Builder().setReportDelay(500).build(), mCallback);
+        mScanner.emit(result(1, null));
+        mScanner.stopScan();
+        mScheduler.advance(1000);
+        mScanner.emit(result(2, null));
+
+        assertTrue(mBatchSizes.isEmpty());
+        assertFalse(mScanner.isScanning());
+    }
+
+    private static SimulatedDevice device(int index) {
+        return new SimulatedDevice(RadioScript.address(index), null, -1,
+                BluetoothRadio.BOND_NONE);
+    }
+
+    private static LeScanResult<SimulatedDevice> result(int index, UUID serviceUuid) {
+        return new LeScanResult<>(device(index), "Beacon " + index, -60, 0,
+                serviceUuid != null ? Collections.singletonList(serviceUuid) : null, null);
+    }
+
+    private final LeScanner.Callback<SimulatedDevice> mCallback =
+            new LeScanner.Callback<SimulatedDevice>() {
+                @Override
+                public void onResults(List<LeScanResult<SimulatedDevice>> results) {
+                    mBatchSizes.add(results.size());
+                    for (LeScanResult<SimulatedDevice> result : results) {
+                        mAddresses.add(result.getDevice().getAddress());
+                    }
+                }
+
+                @Override
+                public void onScanFailed(int errorCode) {
+                    fail("Scan failed: " + errorCode);
+                }
+            };
+
+}
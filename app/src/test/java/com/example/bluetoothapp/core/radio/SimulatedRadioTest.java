@@ -0,0 +1,189 @@
+package com.example.bluetoothapp.core.radio;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SimulatedRadioTest {
+
+    private SimulatedRadio mRadio;
+    private RecordingListener mListener;
+
+    @Before
+    public void setUp() {
+        mRadio = new SimulatedRadio();
+        mListener = new RecordingListener();
+    }
+
+    @Test
+    public void sameSeed_replaysSameEvents() {
+        RadioScript.Builder builder = new RadioScript.Builder()
+                .setSeed(42)
+                .setDeviceCount(200)
+                .setFoundEvents(500)
+                .setAclEvents(50)
+                .setNameCollisionRate(0.2);
+        mRadio.open(mListener, BluetoothRadio.EVENT_ALL);
+        mRadio.replay(builder.build());
+
+        RecordingListener other = new RecordingListener();
+        SimulatedRadio otherRadio = new SimulatedRadio();
+        otherRadio.open(other, BluetoothRadio.EVENT_ALL);
+        otherRadio.replay(builder.build());
+
+        assertEquals(552, mListener.mEvents.size());
+        assertEquals(mListener.mEvents, other.mEvents);
+    }
+
+    @Test
+    public void script_startsAndFinishesDiscovery() {
+        RadioScript script = new RadioScript.Builder().setDeviceCount(10).build();
+        mRadio.open(mListener, BluetoothRadio.EVENT_ALL);
+        mRadio.replay(script);
+
+        assertEquals("started", mListener.mEvents.get(0));
+        assertEquals("finished", mListener.mEvents.get(mListener.mEvents.size() - 1));
+        assertEquals(12, mListener.mEvents.size());
+        assertFalse(mRadio.isDiscovering());
+    }
+
+    @Test
+    public void aclEvents_onlyForBondedDevices() {
+        RadioScript script = new RadioScript.Builder()
+                .setDeviceCount(100)
+                .setAclEvents(100)
+                .setBondedRate(0.2)
+                .build();
+        for (int step = 0; step < script.getStepCount(); step++) {
+            byte type = script.getStep(step);
+            if (type == RadioScript.STEP_ACL_CONNECTED ||
+                    type == RadioScript.STEP_ACL_DISCONNECTED) {
+                SimulatedDevice device = script.getDevice(script.getStepDevice(step));
+                assertEquals(BluetoothRadio.BOND_BONDED, device.getBondState());
+            }
+        }
+    }
+
+    @Test
+    public void eventMask_filtersEvents() {
+        RadioScript script = new RadioScript.Builder()
+                .setDeviceCount(50)
+                .setAclEvents(20)
+                .setBondedRate(0.5)
+                .build();
+        mRadio.open(mListener, BluetoothRadio.EVENT_CONNECTION);
+        mRadio.replay(script);
+
+        assertEquals(20, mListener.mEvents.size());
+        for (String event : mListener.mEvents) {
+            assertTrue(event, event.startsWith("acl"));
+        }
+    }
+
+    @Test
+    public void setEnabled_reportsTransitions() {
+        mRadio.open(mListener, BluetoothRadio.EVENT_ADAPTER);
+        mRadio.setEnabled(false);
+        mRadio.setEnabled(false);
+        mRadio.setEnabled(true);
+
+        assertEquals(Arrays.asList("state 13", "state 10", "state 11", "state 12"),
+                mListener.mEvents);
+        assertTrue(mRadio.isEnabled());
+    }
+
+    @Test
+    public void close_stopsEvents() {
+        mRadio.open(mListener, BluetoothRadio.EVENT_ALL);
+        mRadio.close();
+        mRadio.replay(new RadioScript.Builder().setDeviceCount(5).build());
+
+        assertTrue(mListener.mEvents.isEmpty());
+    }
+
+    @Test
+    public void deviceQueries_countBinderCalls() {
+        RadioScript script = new RadioScript.Builder().setDeviceCount(10).build();
+        SimulatedDevice device = script.getDevice(0);
+        mRadio.getName(device);
+        mRadio.getDeviceClass(device);
+        mRadio.getBondState(device);
+        mRadio.getAddress(device);
+
+        assertEquals(3, mRadio.getBinderCallCount());
+    }
+
+    @Test
+    public void deviceChanges_updateDeviceAndReport() {
+        SimulatedDevice device = new SimulatedDevice("00:1A:7D:DA:71:13", null, -1,
+                BluetoothRadio.BOND_NONE);
+        mRadio.open(mListener, BluetoothRadio.EVENT_DEVICE);
+        mRadio.emitNameChanged(device, "Car kit");
+        mRadio.emitClassChanged(device, 0x0408);
+        mRadio.emitBondStateChanged(device, BluetoothRadio.BOND_BONDED);
+
+        assertEquals(Arrays.asList("name 00:1A:7D:DA:71:13 Car kit",
+                "class 00:1A:7D:DA:71:13 1032", "bond 00:1A:7D:DA:71:13 12"), mListener.mEvents);
+        assertEquals("Car kit", device.getName());
+        assertTrue(mRadio.getBondedDevices().contains(device));
+
+        mRadio.emitBondStateChanged(device, BluetoothRadio.BOND_NONE);
+        assertFalse(mRadio.getBondedDevices().contains(device));
+    }
+
+    private static class RecordingListener implements BluetoothRadio.Listener<SimulatedDevice> {
+
+        final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void onStateChanged(int state) {
+            mEvents.add("state " + state);
+        }
+
+        @Override
+        public void onDiscoveryStarted() {
+            mEvents.add("started");
+        }
+
+        @Override
+        public void onDiscoveryFinished() {
+            mEvents.add("finished");
+        }
+
+        @Override
+        public void onDeviceFound(SimulatedDevice device, short rssi) {
+            mEvents.add("found " + device.getAddress() + " " + device.getName() + " " + rssi);
+        }
+
+        @Override
+        public void onAclConnected(SimulatedDevice device) {
+            mEvents.add("acl+ " + device.getAddress());
+        }
+
+        @Override
+        public void onAclDisconnected(SimulatedDevice device) {
+            mEvents.add("acl- " + device.getAddress());
+        }
+
+        @Override
+        public void onNameChanged(SimulatedDevice device, String name) {
+            mEvents.add("name " + device.getAddress() + " " + name);
+        }
+
+        @Override
+        public void onClassChanged(SimulatedDevice device, int deviceClass) {
+            mEvents.add("class " + device.getAddress() + " " + deviceClass);
+        }
+
+        @Override
+        public void onBondStateChanged(SimulatedDevice device, int bondState) {
+            mEvents.add("bond " + device.getAddress() + " " + bondState);
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.example.bluetoothapp.core.reconnect;
+
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.SimulatedConnector;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedRadio;
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReconnectEngineTest {
+
+    private static final long CONNECT_DELAY = 300;
+
+    private SimulatedRadio mRadio;
+    private VirtualScheduler mScheduler;
+    private SimulatedConnector mConnector;
+    private ReconnectEngine<SimulatedDevice> mEngine;
+    private final List<String> mGaveUp = new ArrayList<>();
+    private SimulatedDevice mHeadset;
+
+    @Before
+    public void setUp() {
+        mRadio = new SimulatedRadio();
+        mScheduler = new VirtualScheduler();
+        mConnector = new SimulatedConnector(mRadio, mScheduler, CONNECT_DELAY);
+        mEngine = createEngine(new ReconnectEngine.Policy.Builder()
+                .setInitialDelay(1000)
+                .setMaxDelay(8000)
+                .setJitter(0)
+                .setMaxAttempts(4)
+                .setMaxConcurrent(2)
+                .setAttemptTimeout(5000)
+                .build());
+        mHeadset = device(1);
+    }
+
+    @Test
+    public void drop_isReconnectedAfterInitialDelay() {
+        mRadio.emitAclDisconnected(mHeadset);
+        assertTrue(mEngine.isReconnecting(mHeadset.getAddress()));
+
+        mScheduler.advance(999);
+        assertEquals(0, mConnector.getAttemptCount());
+        mScheduler.advance(1 + CONNECT_DELAY);
+
+        assertFalse(mEngine.isReconnecting(mHeadset.getAddress()));
+        assertEquals(1, mConnector.getAttemptCount());
+        assertEquals(1000 + CONNECT_DELAY, mEngine.getLatencies().getPercentile(50));
+    }
+
+    @Test
+    public void unreachable_backsOffThenGivesUp() {
+        mConnector.setReachable(mHeadset, false);
+        mRadio.emitAclDisconnected(mHeadset);
+
+        // Attempts at 1000, then each after the 5000 timeout plus 2000, 4000 and 8000.
+        mScheduler.advance(1000);
+        assertEquals(1, mConnector.getAttemptCount());
+        mScheduler.advance(5000 + 2000);
+        assertEquals(2, mConnector.getAttemptCount());
+        mScheduler.advance(5000 + 4000);
+        assertEquals(3, mConnector.getAttemptCount());
+        mScheduler.advance(5000 + 8000 - 1);
+        assertEquals(3, mConnector.getAttemptCount());
+        mScheduler.advance(1);
+        assertEquals(4, mConnector.getAttemptCount());
+        mScheduler.advance(5000);
+
+        assertEquals(1, mGaveUp.size());
+        assertEquals(mHeadset.getAddress(), mGaveUp.get(0));
+        assertEquals(0, mEngine.getPendingCount());
+        assertEquals(0, mEngine.getConnectingCount());
+    }
+
+    @Test
+    public void restoredLink_endsReconnection() {
+        mConnector.setReachable(mHeadset, false);
+        mRadio.emitAclDisconnected(mHeadset);
+        mScheduler.advance(3000);
+
+        mRadio.emitAclConnected(mHeadset);
+        mScheduler.advance(60000);
+
+        assertEquals(1, mConnector.getAttemptCount());
+        assertEquals(0, mEngine.getPendingCount());
+        assertEquals(0, mEngine.getConnectingCount());
+        assertEquals(3000, mEngine.getLatencies().getPercentile(100));
+    }
+
+    @Test
+    public void attempts_neverExceedConcurrencyCap() {
+        mConnector.setConnectDelay(2000);
+        List<SimulatedDevice> devices = new ArrayList<>();
+        for (int index = 0; index < 6; index++) {
+            devices.add(device(10 + index));
+            mRadio.emitAclDisconnected(devices.get(index));
+        }
+
+        int maxConnecting = 0;
+        for (int step = 0; step < 100; step++) {
+            mScheduler.advance(100);
+            maxConnecting = Math.max(maxConnecting, mEngine.getConnectingCount());
+        }
+
+        assertEquals(2, maxConnecting);
+        assertEquals(0, mEngine.getPendingCount());
+        assertEquals(6, mEngine.getLatencies().getCount());
+        // Three rounds of two, each taking the connect delay.
+        assertEquals(1000 + 3 * 2000, mEngine.getLatencies().getPercentile(100));
+    }
+
+    @Test
+    public void flappingLinks_allComeBack() {
+        mEngine = createEngine(new ReconnectEngine.Policy.Builder().setMaxAttempts(20).build());
+        Random random = new Random(5);
+        List<SimulatedDevice> devices = new ArrayList<>();
+        for (int index = 0; index < 8; index++) {
+            devices.add(device(20 + index));
+        }
+        for (int step = 0; step < 200; step++) {
+            SimulatedDevice device = devices.get(random.nextInt(devices.size()));
+            mConnector.setReachable(device, random.nextInt(4) != 0);
+            if (random.nextBoolean()) {
+                mRadio.emitAclDisconnected(device);
+            }
+            mScheduler.advance(random.nextInt(3000));
+        }
+        for (SimulatedDevice device : devices) {
+            mConnector.setReachable(device, true);
+        }
+        mScheduler.advance(60 * 60 * 1000);
+
+        assertEquals(0, mEngine.getPendingCount());
+        assertTrue(mGaveUp.isEmpty());
+        long[] percentiles = mEngine.getLatencies().getPercentiles(50, 90, 99);
+        assertTrue(percentiles[0] <= percentiles[1] && percentiles[1] <= percentiles[2]);
+    }
+
+    private ReconnectEngine<SimulatedDevice> createEngine(ReconnectEngine.Policy policy) {
+        final ReconnectEngine<SimulatedDevice> engine = new ReconnectEngine<>(mScheduler,
+                mScheduler, mConnector, policy, new Random(1));
+        engine.setListener(new ReconnectEngine.Listener() {
+            @Override
+            public void onReconnected(String address, long latency, int attempts) {
+            }
+
+            @Override
+            public void onGaveUp(String address, int attempts) {
+                mGaveUp.add(address);
+            }
+        });
+        mRadio.open(new ConnectionListener() {
+            @Override
+            public void onAclConnected(SimulatedDevice device) {
+                engine.onConnected(device.getAddress());
+            }
+
+            @Override
+            public void onAclDisconnected(SimulatedDevice device) {
+                engine.onDisconnected(device.getAddress(), device);
+            }
+        }, BluetoothRadio.EVENT_CONNECTION);
+        return engine;
+    }
+
+    private SimulatedDevice device(int index) {
+        SimulatedDevice device = new SimulatedDevice(String.format("00:1A:7D:DA:71:%02X", index),
+                "Device " + index, 0x0404, BluetoothRadio.BOND_BONDED);
+        mRadio.addBondedDevice(device);
+        return device;
+    }
+
+    private abstract static class ConnectionListener
+            implements BluetoothRadio.Listener<SimulatedDevice> {
+
+        @Override
+        public void onStateChanged(int state) {
+        }
+
+        @Override
+        public void onDiscoveryStarted() {
+        }
+
+        @Override
+        public void onDiscoveryFinished() {
+        }
+
+        @Override
+        public void onDeviceFound(SimulatedDevice device, short rssi) {
+        }
+
+        @Override
+        public void onNameChanged(SimulatedDevice device, String name) {
+        }
+
+        @Override
+        public void onClassChanged(SimulatedDevice device, int deviceClass) {
+        }
+
+        @Override
+        public void onBondStateChanged(SimulatedDevice device, int bondState) {
+        }
+
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.example.bluetoothapp.core.search;
+
+import com.example.bluetoothapp.core.device.DeviceSnapshot;
+import com.example.bluetoothapp.core.device.MajorDeviceClass;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DeviceSearchIndexTest {
+
+    private static final int HEADSET = 0x0404;
+    private static final int PHONE = 0x020C;
+
+    private DeviceSearchIndex<String> mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new DeviceSearchIndex<>();
+        mIndex.put(device("00:00:00:00:00:01", "Bose QuietComfort Headphones", HEADSET,
+                BluetoothRadio.BOND_BONDED));
+        mIndex.put(device("00:00:00:00:00:02", "Galaxy S7", PHONE, BluetoothRadio.BOND_NONE));
+        mIndex.put(device("00:00:00:00:00:03", "Car Kit", HEADSET, BluetoothRadio.BOND_NONE));
+        mIndex.put(device("00:00:00:00:00:04", null, -1, BluetoothRadio.BOND_NONE));
+    }
+
+    @Test
+    public void search_matchesWordPrefixes() {
+        assertEquals(addresses("00:00:00:00:00:01"), addressesOf(mIndex.search("quiet")));
+        assertEquals(addresses("00:00:00:00:00:02"), addressesOf(mIndex.search("gal s7")));
+        assertEquals(addresses(), addressesOf(mIndex.search("kit galaxy")));
+    }
+
+    @Test
+    public void search_toleratesTypos() {
+        assertEquals(addresses("00:00:00:00:00:01"), addressesOf(mIndex.search("headphnes")));
+        assertEquals(addresses("00:00:00:00:00:01"), addressesOf(mIndex.search("quietconfort")));
+        assertEquals(addresses("00:00:00:00:00:02"), addressesOf(mIndex.search("galaxu")));
+        assertEquals(addresses(), addressesOf(mIndex.search("gadget")));
+    }
+
+    @Test
+    public void search_matchesAddresses() {
+        assertEquals(addresses("00:00:00:00:00:04"), addressesOf(mIndex.search("00:04")));
+    }
+
+    @Test
+    public void search_filtersByClassAndBondState() {
+        DeviceSearchIndex<String>.Search search = mIndex.newSearch();
+        search.setMajorClasses(EnumSet.of(MajorDeviceClass.AUDIO_VIDEO));
+        assertEquals(addresses("00:00:00:00:00:01", "00:00:00:00:00:03"),
+                addressesOf(search.getResults()));
+
+        search.setBondState(BluetoothRadio.BOND_NONE);
+        assertEquals(addresses("00:00:00:00:00:03"), addressesOf(search.getResults()));
+    }
+
+    @Test
+    public void search_followsKeystrokesAndNewDevices() {
+        DeviceSearchIndex<String>.Search search = mIndex.newSearch();
+        search.setText("k");
+        assertEquals(addresses("00:00:00:00:00:03"), addressesOf(search.getResults()));
+        search.setText("c");
+        assertEquals(addresses("00:00:00:00:00:03"), addressesOf(search.getResults()));
+        search.setText("ca");
+        assertEquals(addresses("00:00:00:00:00:03"), addressesOf(search.getResults()));
+
+        mIndex.put(device("00:00:00:00:00:05", "Car Stereo", HEADSET, BluetoothRadio.BOND_NONE));
+        mIndex.put(device("00:00:00:00:00:06", "Laptop", 0x010C, BluetoothRadio.BOND_NONE));
+        assertEquals(addresses("00:00:00:00:00:03", "00:00:00:00:00:05"),
+                addressesOf(search.getResults()));
+
+        search.setText("car st");
+        assertEquals(addresses("00:00:00:00:00:05"), addressesOf(search.getResults()));
+    }
+
+    @Test
+    public void put_replacesRenamedAndRemovedDevices() {
+        DeviceSearchIndex<String>.Search search = mIndex.newSearch();
+        search.setText("galaxy");
+        assertEquals(1, search.getResults().size());
+
+        mIndex.put(device("00:00:00:00:00:02", "Pixel", PHONE, BluetoothRadio.BOND_NONE));
+        assertEquals(addresses(), addressesOf(search.getResults()));
+        search.setText("pixel");
+        assertEquals(addresses("00:00:00:00:00:02"), addressesOf(search.getResults()));
+
+        assertTrue(mIndex.remove("00:00:00:00:00:02"));
+        assertEquals(addresses(), addressesOf(search.getResults()));
+        assertEquals(3, mIndex.size());
+    }
+
+    @Test
+    public void matches_agreesWithResults() {
+        DeviceSearchIndex<String>.Search search = mIndex.newSearch();
+        search.setText("headphnes");
+        DeviceSnapshot<String> other =
+                device("00:00:00:00:00:09", "Sony Headphones", HEADSET, BluetoothRadio.BOND_NONE);
+
+        assertTrue(search.matches(other));
+        mIndex.put(other);
+        assertEquals(addresses("00:00:00:00:00:01", "00:00:00:00:00:09"),
+                addressesOf(search.getResults()));
+        assertFalse(search.matches(mIndex.getAll().get(1)));
+    }
+
+    private static DeviceSnapshot<String> device(String address, String name, int deviceClass,
+                                                 int bondState) {
+        return new DeviceSnapshot<>(address, address, name, deviceClass, bondState, 0, 0);
+    }
+
+    private static List<String> addresses(String... addresses) {
+        List<String> list = new ArrayList<>();
+        for (String address : addresses) {
+            list.add(address);
+        }
+        return list;
+    }
+
+    private static List<String> addressesOf(List<DeviceSnapshot<String>> devices) {
+        List<String> addresses = new ArrayList<>();
+        for (DeviceSnapshot<String> device : devices) {
+            addresses.add(device.getAddress());
+        }
+        return addresses;
+    }
+
+}
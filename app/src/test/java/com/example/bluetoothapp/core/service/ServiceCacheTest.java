@@ -0,0 +1,204 @@
+package com.example.bluetoothapp.core.service;
+
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class ServiceCacheTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final long TTL = 60000;
+
+    private File mFile;
+    private VirtualScheduler mClock;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("services", ".bin");
+        assertTrue(mFile.delete());
+        mClock = new VirtualScheduler(1000);
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        new File(mFile.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void fromShort_expandsOnTheBaseUuid() {
+        assertEquals(UUID.fromString("0000110b-0000-1000-8000-00805f9b34fb"),
+                ServiceUuids.AUDIO_SINK);
+        assertEquals(UUID.fromString("00001101-0000-1000-8000-00805f9b34fb"),
+                ServiceUuids.SERIAL_PORT);
+    }
+
+    @Test
+    public void put_survivesReload() throws IOException {
+        ServiceCache cache = newCache(8);
+        cache.load();
+        cache.put("00:11:22:33:44:55", Arrays.asList(ServiceUuids.AUDIO_SINK,
+                ServiceUuids.AV_REMOTE_CONTROL));
+        cache.put("00:11:22:33:44:66", Collections.singletonList(ServiceUuids.SERIAL_PORT));
+
+        ServiceCache reloaded = newCache(8);
+        reloaded.load();
+
+        assertEquals(2, reloaded.size());
+        assertEquals(new ServiceRecord("00:11:22:33:44:55", Arrays.asList(
+                ServiceUuids.AUDIO_SINK, ServiceUuids.AV_REMOTE_CONTROL), 1000),
+                reloaded.get("00:11:22:33:44:55"));
+        assertTrue(reloaded.get("00:11:22:33:44:66").offers(ServiceUuids.SERIAL_PORT));
+    }
+
+    @Test
+    public void load_keepsRecordsPutBeforeIt() throws IOException {
+        ServiceCache cache = newCache(8);
+        cache.put("00:11:22:33:44:55", Collections.singletonList(ServiceUuids.AUDIO_SINK));
+        cache.put("00:11:22:33:44:66", Collections.singletonList(ServiceUuids.HEADSET));
+
+        // Writes wait behind the load, as on the single background thread.
+        final ArrayList<Runnable> writes = new ArrayList<>();
+        ServiceCache reloaded = new ServiceCache(new ServiceCacheFile(mFile), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                writes.add(command);
+            }
+        }, mClock, TTL, 8);
+        mClock.advance(10);
+        reloaded.put("00:11:22:33:44:55", Collections.singletonList(ServiceUuids.SERIAL_PORT));
+        reloaded.load();
+        for (Runnable write : writes) {
+            write.run();
+        }
+
+        assertEquals(2, reloaded.size());
+        assertTrue(reloaded.get("00:11:22:33:44:55").offers(ServiceUuids.SERIAL_PORT));
+        assertEquals(Collections.singleton("00:11:22:33:44:55"),
+                reloaded.getAddresses(ServiceUuids.SERIAL_PORT));
+        assertTrue(reloaded.getAddresses(ServiceUuids.AUDIO_SINK).isEmpty());
+        assertTrue(reloaded.get("00:11:22:33:44:66").offers(ServiceUuids.HEADSET));
+        ServiceCache again = newCache(8);
+        again.load();
+        assertEquals(2, again.size());
+    }
+
+    @Test
+    public void load_truncatedFile_keepsCompleteRecordsAndRewrites() throws IOException {
+        ServiceCache cache = newCache(8);
+        cache.put("00:11:22:33:44:55", Collections.singletonList(ServiceUuids.HEADSET));
+        cache.put("00:11:22:33:44:66", Collections.singletonList(ServiceUuids.HID));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+
+        ServiceCache reloaded = newCache(8);
+        reloaded.load();
+
+        assertEquals(1, reloaded.size());
+        assertNotNull(reloaded.get("00:11:22:33:44:55"));
+        assertTrue(new ServiceCacheFile(mFile).read(new ArrayList<ServiceRecord>()));
+    }
+
+    @Test
+    public void lookup_afterTtl_isMissAndForgotten() {
+        ServiceCache cache = newCache(8);
+        cache.put("00:11:22:33:44:55", Collections.singletonList(ServiceUuids.HEADSET));
+
+        mClock.advance(TTL - 1);
+        assertNotNull(cache.lookup("00:11:22:33:44:55"));
+        mClock.advance(1);
+        assertNull(cache.lookup("00:11:22:33:44:55"));
+
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void load_leavesOutExpiredRecords() throws IOException {
+        ServiceCache cache = newCache(8);
+        cache.put("00:11:22:33:44:55", Collections.singletonList(ServiceUuids.HEADSET));
+        mClock.advance(TTL);
+
+        ServiceCache reloaded = newCache(8);
+        reloaded.load();
+
+        assertEquals(0, reloaded.size());
+    }
+
+    @Test
+    public void getHitRate_beforeLookups_isNaN() {
+        ServiceCache cache = newCache(8);
+        cache.get("00:11:22:33:44:55");
+
+        assertTrue(Double.isNaN(cache.getHitRate()));
+    }
+
+    @Test
+    public void getAddresses_followsPutsAndExpiry() {
+        ServiceCache cache = newCache(8);
+        cache.put("00:11:22:33:44:55", Arrays.asList(ServiceUuids.AUDIO_SINK,
+                ServiceUuids.HANDSFREE));
+        mClock.advance(TTL / 2);
+        cache.put("00:11:22:33:44:66", Collections.singletonList(ServiceUuids.AUDIO_SINK));
+
+        assertEquals(new HashSet<>(Arrays.asList("00:11:22:33:44:55", "00:11:22:33:44:66")),
+                cache.getAddresses(ServiceUuids.AUDIO_SINK));
+        assertEquals(Collections.singleton("00:11:22:33:44:55"),
+                cache.getAddresses(ServiceUuids.HANDSFREE));
+        assertTrue(cache.getAddresses(ServiceUuids.HID).isEmpty());
+
+        cache.put("00:11:22:33:44:55", Collections.singletonList(ServiceUuids.SERIAL_PORT));
+        assertTrue(cache.getAddresses(ServiceUuids.HANDSFREE).isEmpty());
+
+        assertEquals(Collections.singleton("00:11:22:33:44:66"),
+                cache.getAddresses(ServiceUuids.AUDIO_SINK));
+
+        mClock.advance(TTL);
+        assertTrue(cache.getAddresses(ServiceUuids.AUDIO_SINK).isEmpty());
+    }
+
+    @Test
+    public void put_overCapacity_forgetsOldestFetched() {
+        ServiceCache cache = newCache(2);
+        cache.put("00:11:22:33:44:55", Collections.singletonList(ServiceUuids.HEADSET));
+        cache.put("00:11:22:33:44:66", Collections.singletonList(ServiceUuids.HEADSET));
+        cache.put("00:11:22:33:44:55", Collections.singletonList(ServiceUuids.HEADSET));
+        cache.put("00:11:22:33:44:77", Collections.singletonList(ServiceUuids.HEADSET));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("00:11:22:33:44:66"));
+        assertEquals(new HashSet<>(Arrays.asList("00:11:22:33:44:55", "00:11:22:33:44:77")),
+                cache.getAddresses(ServiceUuids.HEADSET));
+    }
+
+    private ServiceCache newCache(int capacity) {
+        return new ServiceCache(new ServiceCacheFile(mFile), DIRECT, mClock, TTL, capacity);
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.example.bluetoothapp.core.service;
+
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler;
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler.Kind;
+import com.example.bluetoothapp.core.operation.RadioOperationScheduler.Result;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedRadio;
+import com.example.bluetoothapp.core.radio.SimulatedUuidFetcher;
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class ServiceDiscoveryTest {
+
+    private static final Executor DROP = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+        }
+    };
+
+    private static final long QUERY_DELAY = 500;
+
+    private VirtualScheduler mScheduler;
+    private SimulatedUuidFetcher mFetcher;
+    private RadioOperationScheduler mOperations;
+    private ServiceCache mCache;
+    private ServiceDiscovery<SimulatedDevice> mDiscovery;
+    private final List<String> mFound = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mScheduler = new VirtualScheduler();
+        mFetcher = new SimulatedUuidFetcher(mScheduler, QUERY_DELAY);
+        mOperations = new RadioOperationScheduler(mScheduler, mScheduler,
+                RadioOperationScheduler.Policy.DEFAULT);
+        // Never written; the file is not read either.
+        mCache = new ServiceCache(new ServiceCacheFile(null), DROP, mScheduler,
+                ServiceCache.DEFAULT_TTL, ServiceCache.DEFAULT_CAPACITY);
+        mDiscovery = new ServiceDiscovery<>(new SimulatedRadio(), mFetcher, mOperations, mCache,
+                mScheduler, 1);
+        mDiscovery.setListener(new ServiceDiscovery.Listener() {
+            @Override
+            public void onServicesFound(String address, List<UUID> uuids) {
+                mFound.add(address);
+            }
+        });
+        mFetcher.open(mDiscovery);
+    }
+
+    @Test
+    public void devicesFound_areQueriedOnlyOnceDiscoveryEnds() {
+        SimulatedDevice headset = device("00:11:22:33:44:55", ServiceUuids.HEADSET);
+        mDiscovery.onDiscoveryStarted();
+        mDiscovery.onDeviceFound(headset);
+        mDiscovery.onDeviceFound(headset);
+        mScheduler.advance(QUERY_DELAY * 4);
+        assertEquals(0, mFetcher.getQueryCount());
+
+        mDiscovery.onDiscoveryFinished();
+        mScheduler.advance(QUERY_DELAY);
+
+        assertEquals(1, mFetcher.getQueryCount());
+        assertEquals(Collections.singletonList("00:11:22:33:44:55"), mFound);
+        assertTrue(mCache.get("00:11:22:33:44:55").offers(ServiceUuids.HEADSET));
+        assertEquals(0, mDiscovery.getPendingCount());
+        assertEquals(1, mOperations.getCount(Result.COMPLETED));
+    }
+
+    @Test
+    public void queries_stayWithinInFlightLimit() {
+        mDiscovery.onDiscoveryStarted();
+        for (int index = 0; index < 5; index++) {
+            mDiscovery.onDeviceFound(device("00:11:22:33:44:6" + index, ServiceUuids.HID));
+        }
+        mDiscovery.onDiscoveryFinished();
+
+        mScheduler.advance(0);
+        assertEquals(5, mDiscovery.getPendingCount());
+        assertEquals(0, mOperations.getQueueLength());
+        assertEquals(Kind.SDP, mOperations.getRunningKind());
+
+        mScheduler.advance(QUERY_DELAY);
+        assertEquals(2, mFetcher.getQueryCount());
+        assertEquals(4, mDiscovery.getPendingCount());
+
+        mScheduler.advance(QUERY_DELAY * 4);
+        assertEquals(5, mFound.size());
+        assertEquals(5, mDiscovery.getRoundTrips().getCount());
+        assertEquals(QUERY_DELAY, mDiscovery.getRoundTrips().getPercentile(0.5));
+    }
+
+    @Test
+    public void cachedDevice_isNotQueriedAgain() {
+        SimulatedDevice speaker = device("00:11:22:33:44:55", ServiceUuids.AUDIO_SINK);
+        scan(speaker);
+        scan(speaker);
+
+        assertEquals(1, mFetcher.getQueryCount());
+        assertEquals(0.5, mCache.getHitRate(), 0);
+
+        mScheduler.advance(ServiceCache.DEFAULT_TTL);
+        scan(speaker);
+        assertEquals(2, mFetcher.getQueryCount());
+    }
+
+    @Test
+    public void emptyAnswer_isFailureAndNotCached() {
+        SimulatedDevice silent = device("00:11:22:33:44:55");
+        scan(silent);
+
+        assertEquals(1, mDiscovery.getFailedCount());
+        assertEquals(0, mCache.size());
+        assertTrue(mFound.isEmpty());
+        assertEquals(0, mDiscovery.getRoundTrips().getCount());
+
+        scan(silent);
+        assertEquals(2, mFetcher.getQueryCount());
+    }
+
+    @Test
+    public void unaskedAnswer_isCachedAndSkipsItsQuery() {
+        SimulatedDevice first = device("00:11:22:33:44:55", ServiceUuids.HEADSET);
+        SimulatedDevice second = device("00:11:22:33:44:66", ServiceUuids.SERIAL_PORT);
+        mDiscovery.onDiscoveryStarted();
+        mDiscovery.onDeviceFound(first);
+        mDiscovery.onDeviceFound(second);
+        mDiscovery.onDiscoveryFinished();
+
+        // Another app's query answered the waiting device first.
+        mDiscovery.onUuids(second, Collections.singletonList(ServiceUuids.SERIAL_PORT));
+        mScheduler.advance(QUERY_DELAY * 4);
+
+        assertEquals(1, mFetcher.getQueryCount());
+        assertEquals(Arrays.asList("00:11:22:33:44:66", "00:11:22:33:44:55"), mFound);
+        assertEquals(0, mDiscovery.getPendingCount());
+    }
+
+    @Test
+    public void cancelAll_dropsWaitingQueries() {
+        mDiscovery.onDiscoveryStarted();
+        mDiscovery.onDeviceFound(device("00:11:22:33:44:55", ServiceUuids.HID));
+        mDiscovery.onDeviceFound(device("00:11:22:33:44:66", ServiceUuids.HID));
+        mDiscovery.onDiscoveryFinished();
+        mScheduler.advance(0);
+
+        mDiscovery.cancelAll();
+        mScheduler.advance(QUERY_DELAY * 4);
+
+        assertEquals(0, mDiscovery.getPendingCount());
+        assertNull(mOperations.getRunningKind());
+        assertEquals(1, mFetcher.getQueryCount());
+        assertEquals(1, mOperations.getCount(Result.CANCELLED));
+    }
+
+    @Test
+    public void cache_findsDevicesByService() {
+        scan(device("00:11:22:33:44:55", ServiceUuids.AUDIO_SINK, ServiceUuids.HANDSFREE),
+                device("00:11:22:33:44:66", ServiceUuids.HANDSFREE),
+                device("00:11:22:33:44:77", ServiceUuids.HID));
+
+        assertEquals(Collections.singleton("00:11:22:33:44:55"),
+                mCache.getAddresses(ServiceUuids.AUDIO_SINK));
+        assertEquals(2, mCache.getAddresses(ServiceUuids.HANDSFREE).size());
+    }
+
+    private SimulatedDevice device(String address, UUID... uuids) {
+        SimulatedDevice device = new SimulatedDevice(address, null, 0,
+                BluetoothRadio.BOND_NONE);
+        mFetcher.setServices(device, uuids);
+        return device;
+    }
+
+    private void scan(SimulatedDevice... devices) {
+        mDiscovery.onDiscoveryStarted();
+        for (SimulatedDevice device : devices) {
+            mDiscovery.onDeviceFound(device);
+        }
+        mDiscovery.onDiscoveryFinished();
+        mScheduler.advance(QUERY_DELAY * (devices.length + 1));
+    }
+
+}
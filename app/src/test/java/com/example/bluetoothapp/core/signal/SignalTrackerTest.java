@@ -0,0 +1,188 @@
+package com.example.bluetoothapp.core.signal;
+
+import com.example.bluetoothapp.core.device.MacAddress;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.RadioScript;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedRadio;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SignalTrackerTest {
+
+    private static final long NEAR = MacAddress.pack("00:1A:7D:00:00:01");
+    private static final long MIDDLE = MacAddress.pack("00:1A:7D:00:00:02");
+    private static final long FAR = MacAddress.pack("00:1A:7D:00:00:03");
+
+    private SignalTracker mTracker;
+
+    @Before
+    public void setUp() {
+        mTracker = new SignalTracker(2);
+    }
+
+    @Test
+    public void update_smoothesNoisyReadings() {
+        Random random = new Random(7);
+        for (int sample = 0; sample < 200; sample++) {
+            mTracker.update(NEAR, -60 + random.nextInt(21) - 10, sample * 10);
+        }
+
+        assertEquals(-60, mTracker.getRssi(NEAR), 3);
+        assertEquals(200, mTracker.getSampleCount(NEAR));
+        assertTrue(Double.isNaN(mTracker.getRssi(FAR)));
+    }
+
+    @Test
+    public void update_followsADeviceThatMoves() {
+        for (int sample = 0; sample < 50; sample++) {
+            mTracker.update(NEAR, -90, sample * 100);
+        }
+        for (int sample = 50; sample < 100; sample++) {
+            mTracker.update(NEAR, -40, sample * 100);
+        }
+
+        assertEquals(-40, mTracker.getRssi(NEAR), 2);
+    }
+
+    @Test
+    public void getNearest_ordersByStrongestSignal() {
+        mTracker.update(FAR, -90, 0);
+        mTracker.update(NEAR, -40, 0);
+        mTracker.update(MIDDLE, -65, 0);
+        long[] nearest = new long[2];
+
+        assertEquals(2, mTracker.getNearest(nearest, 0));
+        assertArrayEquals(new long[] {NEAR, MIDDLE}, nearest);
+
+        for (int sample = 1; sample < 30; sample++) {
+            mTracker.update(FAR, -30, sample * 100);
+        }
+
+        assertEquals(2, mTracker.getNearest(nearest, 0));
+        assertArrayEquals(new long[] {FAR, NEAR}, nearest);
+    }
+
+    @Test
+    public void getNearest_skipsDevicesNotHeardSince() {
+        mTracker.update(NEAR, -40, 0);
+        mTracker.update(MIDDLE, -65, 5000);
+        mTracker.update(FAR, -90, 5000);
+        long[] nearest = new long[3];
+
+        assertEquals(2, mTracker.getNearest(nearest, 1000));
+        assertEquals(MIDDLE, nearest[0]);
+        assertEquals(FAR, nearest[1]);
+    }
+
+    @Test
+    public void staleDevices_areDroppedInsteadOfGrowing() {
+        SignalTracker tracker = new SignalTracker(8, 1000);
+        for (int device = 0; device < 1000; device++) {
+            tracker.update(device + 1, -50 - device % 40, device * 100);
+        }
+
+        // Only the devices sampled within the last second, and at most one array's worth more.
+        assertTrue(String.valueOf(tracker.size()), tracker.size() <= 16);
+        long[] nearest = new long[20];
+        int found = tracker.getNearest(nearest, 0);
+        assertEquals(tracker.size(), found);
+        assertTrue(found <= 11);
+        for (int index = 0; index < found; index++) {
+            assertTrue(nearest[index] >= 990);
+            if (index > 0) {
+                assertTrue(tracker.getRssi(nearest[index - 1]) >= tracker.getRssi(nearest[index]));
+            }
+        }
+    }
+
+    @Test
+    public void remove_forgetsTheDevice() {
+        mTracker.update(FAR, -90, 0);
+        mTracker.update(NEAR, -40, 0);
+        mTracker.update(MIDDLE, -65, 0);
+
+        assertTrue(mTracker.remove(NEAR));
+        assertFalse(mTracker.remove(NEAR));
+
+        assertEquals(2, mTracker.size());
+        assertTrue(Double.isNaN(mTracker.getRssi(NEAR)));
+        long[] nearest = new long[3];
+        assertEquals(2, mTracker.getNearest(nearest, 0));
+        assertEquals(MIDDLE, nearest[0]);
+        assertEquals(FAR, nearest[1]);
+        mTracker.update(NEAR, -30, 100);
+        assertEquals(1, mTracker.getSampleCount(NEAR));
+        assertEquals(1, mTracker.getNearest(nearest, 100));
+        assertEquals(NEAR, nearest[0]);
+    }
+
+    @Test
+    public void simulatedScan_nearestMatchesAFullSort() {
+        final RadioScript script = new RadioScript.Builder()
+                .setDeviceCount(500)
+                .setFoundEvents(20000)
+                .build();
+        SimulatedRadio radio = new SimulatedRadio();
+        final SignalTracker tracker = new SignalTracker(16);
+        final long[] now = new long[1];
+        radio.open(new BluetoothRadio.Listener<SimulatedDevice>() {
+            @Override
+            public void onStateChanged(int state) {
+            }
+
+            @Override
+            public void onDiscoveryStarted() {
+            }
+
+            @Override
+            public void onDiscoveryFinished() {
+            }
+
+            @Override
+            public void onDeviceFound(SimulatedDevice device, short rssi) {
+                tracker.update(MacAddress.pack(device.getAddress()), rssi, now[0]++);
+            }
+
+            @Override
+            public void onAclConnected(SimulatedDevice device) {
+            }
+
+            @Override
+            public void onAclDisconnected(SimulatedDevice device) {
+            }
+
+            @Override
+            public void onNameChanged(SimulatedDevice device, String name) {
+            }
+
+            @Override
+            public void onClassChanged(SimulatedDevice device, int deviceClass) {
+            }
+
+            @Override
+            public void onBondStateChanged(SimulatedDevice device, int bondState) {
+            }
+        }, BluetoothRadio.EVENT_DISCOVERY);
+        radio.replay(script);
+
+        assertEquals(500, tracker.size());
+        double[] rssi = new double[script.getDeviceCount()];
+        for (int index = 0; index < rssi.length; index++) {
+            rssi[index] = tracker.getRssi(MacAddress.pack(RadioScript.address(index)));
+        }
+        Arrays.sort(rssi);
+        long[] nearest = new long[10];
+        assertEquals(10, tracker.getNearest(nearest, 0));
+        for (int rank = 0; rank < nearest.length; rank++) {
+            assertEquals(rssi[rssi.length - 1 - rank], tracker.getRssi(nearest[rank]), 0);
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.example.bluetoothapp.core.stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EventPublisherTest {
+
+    private final ArrayDeque<Runnable> mDeliveries = new ArrayDeque<>();
+    private EventPublisher<Integer> mPublisher;
+
+    @Before
+    public void setUp() {
+        mPublisher = new EventPublisher<>(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mDeliveries.add(command);
+            }
+        });
+    }
+
+    @Test
+    public void publish_deliversOnlyWhatWasRequested() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(2);
+        mPublisher.subscribe(subscriber);
+        publish(1, 2, 3);
+        runDeliveries();
+
+        assertEquals(Arrays.asList(1, 2), subscriber.mItems);
+
+        subscriber.mSubscription.request(5);
+        runDeliveries();
+
+        assertEquals(Arrays.asList(1, 2, 3), subscriber.mItems);
+    }
+
+    @Test
+    public void dropOldest_keepsTheNewestItemsOfAFullBuffer() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        mPublisher.subscribe(subscriber, 3, OverflowPolicy.DROP_OLDEST);
+        runDeliveries();
+        publish(1, 2, 3, 4, 5);
+        subscriber.mSubscription.request(Long.MAX_VALUE);
+        runDeliveries();
+
+        assertEquals(Arrays.asList(3, 4, 5), subscriber.mItems);
+        assertEquals(2, mPublisher.getDroppedCount());
+    }
+
+    @Test
+    public void latest_keepsOnlyTheLastItem() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        mPublisher.subscribe(subscriber, 10, OverflowPolicy.LATEST);
+        runDeliveries();
+        publish(1, 2, 3);
+        subscriber.mSubscription.request(Long.MAX_VALUE);
+        runDeliveries();
+
+        assertEquals(Collections.singletonList(3), subscriber.mItems);
+    }
+
+    @Test
+    public void slowSubscriber_doesNotHoldUpOthers() {
+        RecordingSubscriber slow = new RecordingSubscriber(0);
+        RecordingSubscriber fast = new RecordingSubscriber(Long.MAX_VALUE);
+        mPublisher.subscribe(slow, 1, OverflowPolicy.DROP_OLDEST);
+        mPublisher.subscribe(fast);
+        publish(1, 2, 3);
+        runDeliveries();
+
+        assertEquals(Arrays.asList(1, 2, 3), fast.mItems);
+        assertTrue(slow.mItems.isEmpty());
+    }
+
+    @Test
+    public void block_waitsForRoomInTheBuffer() throws Exception {
+        EventPublisher<Integer> publisher = new EventPublisher<>(EventPublisher.DIRECT);
+        final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber, 1, OverflowPolicy.BLOCK);
+        publisher.publish(1);
+        final CountDownLatch published = new CountDownLatch(1);
+        final EventPublisher<Integer> blocked = publisher;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                blocked.publish(2);
+                published.countDown();
+            }
+        });
+        thread.start();
+
+        assertFalse(published.await(100, TimeUnit.MILLISECONDS));
+
+        subscriber.mSubscription.request(1);
+
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+        thread.join();
+        assertEquals(Collections.singletonList(1), subscriber.mItems);
+        assertEquals(0, publisher.getDroppedCount());
+    }
+
+    @Test
+    public void cancel_stopsDeliveryAndUnsubscribes() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        mPublisher.subscribe(subscriber);
+        publish(1);
+        runDeliveries();
+        subscriber.mSubscription.cancel();
+        publish(2);
+        runDeliveries();
+
+        assertEquals(Collections.singletonList(1), subscriber.mItems);
+        assertFalse(mPublisher.hasSubscribers());
+    }
+
+    @Test
+    public void close_completesAfterTheBufferDrains() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        mPublisher.subscribe(subscriber);
+        publish(1);
+        mPublisher.close();
+        runDeliveries();
+
+        assertFalse(subscriber.mCompleted);
+
+        subscriber.mSubscription.request(1);
+        runDeliveries();
+
+        assertEquals(Collections.singletonList(1), subscriber.mItems);
+        assertTrue(subscriber.mCompleted);
+
+        RecordingSubscriber late = new RecordingSubscriber(1);
+        mPublisher.subscribe(late);
+        runDeliveries();
+
+        assertTrue(late.mCompleted);
+    }
+
+    private void publish(int... items) {
+        for (int item : items) {
+            mPublisher.publish(item);
+        }
+    }
+
+    private void runDeliveries() {
+        Runnable delivery;
+        while ((delivery = mDeliveries.poll()) != null) {
+            delivery.run();
+        }
+    }
+
+    static class RecordingSubscriber implements Subscriber<Integer> {
+
+        final List<Integer> mItems = new ArrayList<>();
+        private final long mInitialRequest;
+        Subscription mSubscription;
+        boolean mCompleted;
+        Throwable mError;
+
+        RecordingSubscriber(long initialRequest) {
+            mInitialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            mSubscription = subscription;
+            if (mInitialRequest > 0) {
+                subscription.request(mInitialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            mItems.add(item);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            mError = error;
+        }
+
+        @Override
+        public void onComplete() {
+            mCompleted = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.example.bluetoothapp.core.stream;
+
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreamsTest {
+
+    private EventPublisher<String> mSource;
+
+    @Before
+    public void setUp() {
+        mSource = new EventPublisher<>(EventPublisher.DIRECT);
+    }
+
+    @Test
+    public void window_batchesItemsArrivingWithinTheWindow() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        final List<List<String>> windows = new ArrayList<>();
+        Streams.window(mSource, 100, scheduler).subscribe(new Collector<List<String>>(windows));
+
+        mSource.publish("a");
+        scheduler.advance(50);
+        mSource.publish("b");
+        scheduler.advance(50);
+        mSource.publish("c");
+        scheduler.advance(500);
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Collections.singletonList("c")),
+                windows);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void window_flushesThePartialWindowOnComplete() {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        final List<List<String>> windows = new ArrayList<>();
+        Collector<List<String>> collector = new Collector<>(windows);
+        Streams.window(mSource, 100, scheduler).subscribe(collector);
+
+        mSource.publish("a");
+        mSource.close();
+
+        assertEquals(Collections.singletonList(Collections.singletonList("a")), windows);
+        assertTrue(collector.mCompleted);
+    }
+
+    @Test
+    public void distinct_passesTheFirstItemForEachKey() {
+        List<String> items = new ArrayList<>();
+        Streams.distinct(mSource, new Streams.Key<String, Character>() {
+            @Override
+            public Character of(String item) {
+                return item.charAt(0);
+            }
+        }).subscribe(new Collector<>(items));
+
+        mSource.publish("apple");
+        mSource.publish("banana");
+        mSource.publish("avocado");
+        mSource.publish("blueberry");
+        mSource.publish("cherry");
+
+        assertEquals(Arrays.asList("apple", "banana", "cherry"), items);
+    }
+
+    @Test
+    public void cancel_releasesTheSourceOnTheNextItem() {
+        Collector<String> collector = new Collector<>(new ArrayList<String>());
+        Streams.distinct(mSource, new Streams.Key<String, String>() {
+            @Override
+            public String of(String item) {
+                return item;
+            }
+        }).subscribe(collector);
+        collector.mSubscription.cancel();
+
+        mSource.publish("a");
+
+        assertFalse(mSource.hasSubscribers());
+    }
+
+    private static class Collector<T> implements Subscriber<T> {
+
+        private final List<T> mItems;
+        Subscription mSubscription;
+        boolean mCompleted;
+
+        Collector(List<T> items) {
+            mItems = items;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            mSubscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T item) {
+            mItems.add(item);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+        }
+
+        @Override
+        public void onComplete() {
+            mCompleted = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.example.bluetoothapp.core.time;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TimerWheelTest {
+
+    private VirtualScheduler mScheduler;
+    private final List<String> mExpired = new ArrayList<>();
+    private TimerWheel<String> mWheel;
+
+    @Before
+    public void setUp() {
+        mScheduler = new VirtualScheduler();
+        mWheel = new TimerWheel<>(mScheduler, mScheduler, 100, 8,
+                new TimerWheel.Callback<String>() {
+                    @Override
+                    public void onExpired(String item) {
+                        mExpired.add(item + "@" + mScheduler.now());
+                    }
+                });
+    }
+
+    @Test
+    public void deadline_expiresAtItsTick() {
+        mWheel.schedule("a", 250);
+        mWheel.schedule("b", 300);
+
+        mScheduler.advance(299);
+        assertTrue(mExpired.isEmpty());
+        mScheduler.advance(1);
+
+        assertEquals(Arrays.asList("a@300", "b@300"), sorted(mExpired));
+        assertEquals(0, mWheel.size());
+        assertEquals(0, mScheduler.getPendingCount());
+    }
+
+    @Test
+    public void deadlineBeyondOneTurn_waitsForItsTurn() {
+        mWheel.schedule("far", 2000);
+        mWheel.schedule("near", 200);
+
+        mScheduler.advance(1999);
+        assertEquals(Arrays.asList("near@200"), mExpired);
+        mScheduler.advance(1);
+
+        assertEquals(Arrays.asList("near@200", "far@2000"), mExpired);
+    }
+
+    @Test
+    public void pastDeadline_expiresAtOnce() {
+        mScheduler.advance(1000);
+        mWheel.schedule("late", 500);
+        mScheduler.advance(0);
+
+        assertEquals(Arrays.asList("late@1000"), mExpired);
+    }
+
+    @Test
+    public void manyDeadlines_useOneTimer() {
+        for (int index = 0; index < 1000; index++) {
+            mWheel.schedule("item" + index, 100 + index);
+        }
+
+        assertEquals(1, mScheduler.getPendingCount());
+        mScheduler.advance(1100);
+        assertEquals(1000, mExpired.size());
+        assertEquals(0, mWheel.size());
+    }
+
+    @Test
+    public void clear_dropsEverything() {
+        mWheel.schedule("a", 300);
+        mWheel.clear();
+        mScheduler.advance(1000);
+
+        assertTrue(mExpired.isEmpty());
+        assertEquals(0, mScheduler.getPendingCount());
+    }
+
+    private static List<String> sorted(List<String> items) {
+        List<String> copy = new ArrayList<>(items);
+        Collections.sort(copy);
+        return copy;
+    }
+
+}
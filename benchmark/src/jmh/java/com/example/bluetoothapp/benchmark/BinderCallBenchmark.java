@@ -0,0 +1,283 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.device.DeviceClass;
+import com.example.bluetoothapp.core.device.DeviceSnapshot;
+import com.example.bluetoothapp.core.device.DeviceSnapshotStore;
+import com.example.bluetoothapp.core.discovery.DiscoveryEvent;
+import com.example.bluetoothapp.core.discovery.DiscoveryPipeline;
+import com.example.bluetoothapp.core.discovery.DiscoverySnapshot;
+import com.example.bluetoothapp.core.list.SectionedDeviceList;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.RadioScript;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedRadio;
+import com.example.bluetoothapp.core.time.ManualClock;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binder calls made by one scan, counted by {@link SimulatedRadio}. Each iteration is a single
+ * scan, so the binderCalls counter reads as calls per scan.
+ * <ul>
+ * <li>{@link #deviceGetters} asks the device for its name, class and bond state wherever they
+ * are needed: when decoding, when classifying a row and when binding it, as BluetoothFacade and
+ * DeviceAdapter did before snapshots.</li>
+ * <li>{@link #snapshots} captures each device once into a DeviceSnapshot and reads everything
+ * after that from it. The store starts empty, so this is the cost of a first scan; later scans
+ * only list the bonded devices.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BinderCallBenchmark {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Param({"10", "100", "1000"})
+    public int deviceCount;
+
+    private RadioScript mScript;
+    private SimulatedRadio mRadio;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class BinderCalls {
+
+        public long binderCalls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            binderCalls = 0;
+        }
+
+    }
+
+    private interface RowBinder<D> {
+
+        void bind(D device, Blackhole blackhole);
+
+    }
+
+    @Setup
+    public void setUp() {
+        mScript = new RadioScript.Builder()
+                .setSeed(42L)
+                .setDeviceCount(deviceCount)
+                .setFoundEvents(deviceCount * 2)
+                .setUnnamedRate(0.1)
+                .setBondedRate(0.1)
+                .build();
+        mRadio = new SimulatedRadio();
+        mRadio.load(mScript);
+    }
+
+    @Benchmark
+    public void deviceGetters(BinderCalls calls, Blackhole blackhole) {
+        final SimulatedRadio radio = mRadio;
+        long before = radio.getBinderCallCount();
+        scan(new DiscoveryPipeline.Decoder<DiscoveryEvent<SimulatedDevice>, SimulatedDevice>() {
+            @Override
+            public DiscoveryEvent<SimulatedDevice> decode(DiscoveryEvent<SimulatedDevice> event) {
+                if (event.getType() != DiscoveryEvent.Type.FOUND) {
+                    return event;
+                }
+                SimulatedDevice device = event.getDevice();
+                String name = radio.getName(device);
+                if (name == null) {
+                    return null;
+                }
+                return DiscoveryEvent.found(device, radio.getAddress(device), name);
+            }
+
+            @Override
+            public List<DiscoveryEvent<SimulatedDevice>> getKnownDevices() {
+                Collection<SimulatedDevice> devices = radio.getBondedDevices();
+                List<DiscoveryEvent<SimulatedDevice>> known = new ArrayList<>(devices.size());
+                for (SimulatedDevice device : devices) {
+                    String name = radio.getName(device);
+                    if (name != null) {
+                        known.add(DiscoveryEvent.found(device, radio.getAddress(device), name));
+                    }
+                }
+                return known;
+            }
+        }, new SectionedDeviceList.Classifier<SimulatedDevice>() {
+            @Override
+            public String getAddress(SimulatedDevice device) {
+                return radio.getAddress(device);
+            }
+
+            @Override
+            public boolean isPaired(SimulatedDevice device) {
+                return radio.getBondState(device) == BluetoothRadio.BOND_BONDED;
+            }
+
+            @Override
+            public boolean hasPriority(SimulatedDevice device) {
+                return DeviceClass.fromCode(radio.getDeviceClass(device)) ==
+                        DeviceClass.AUDIO_VIDEO_HANDSFREE;
+            }
+        }, new RowBinder<SimulatedDevice>() {
+            @Override
+            public void bind(SimulatedDevice device, Blackhole blackhole) {
+                blackhole.consume(radio.getName(device));
+                blackhole.consume(DeviceClass.fromCode(radio.getDeviceClass(device)));
+            }
+        }, blackhole);
+        calls.binderCalls += radio.getBinderCallCount() - before;
+    }
+
+    @Benchmark
+    public void snapshots(BinderCalls calls, Blackhole blackhole) {
+        final SimulatedRadio radio = mRadio;
+        final DeviceSnapshotStore<SimulatedDevice> store =
+                new DeviceSnapshotStore<>(radio, new ManualClock());
+        long before = radio.getBinderCallCount();
+        scan(new DiscoveryPipeline.Decoder<DiscoveryEvent<SimulatedDevice>,
+                DeviceSnapshot<SimulatedDevice>>() {
+            @Override
+            public DiscoveryEvent<DeviceSnapshot<SimulatedDevice>> decode(
+                    DiscoveryEvent<SimulatedDevice> event) {
+                switch (event.getType()) {
+                    case STARTED:
+                        return DiscoveryEvent.started();
+                    case FINISHED:
+                        return DiscoveryEvent.finished();
+                }
+                DeviceSnapshot<SimulatedDevice> snapshot = store.capture(event.getDevice());
+                if (snapshot.getName() == null) {
+                    return null;
+                }
+                return DiscoveryEvent.found(snapshot, snapshot.getAddress(), snapshot.getName());
+            }
+
+            @Override
+            public List<DiscoveryEvent<DeviceSnapshot<SimulatedDevice>>> getKnownDevices() {
+                Collection<SimulatedDevice> devices = radio.getBondedDevices();
+                List<DiscoveryEvent<DeviceSnapshot<SimulatedDevice>>> known =
+                        new ArrayList<>(devices.size());
+                for (SimulatedDevice device : devices) {
+                    DeviceSnapshot<SimulatedDevice> snapshot = store.capture(device);
+                    if (snapshot.getName() != null) {
+                        known.add(DiscoveryEvent.found(snapshot, snapshot.getAddress(),
+                                snapshot.getName()));
+                    }
+                }
+                return known;
+            }
+        }, new SectionedDeviceList.Classifier<DeviceSnapshot<SimulatedDevice>>() {
+            @Override
+            public String getAddress(DeviceSnapshot<SimulatedDevice> device) {
+                return device.getAddress();
+            }
+
+            @Override
+            public boolean isPaired(DeviceSnapshot<SimulatedDevice> device) {
+                return device.getBondState() == BluetoothRadio.BOND_BONDED;
+            }
+
+            @Override
+            public boolean hasPriority(DeviceSnapshot<SimulatedDevice> device) {
+                return device.getDeviceClass() == DeviceClass.AUDIO_VIDEO_HANDSFREE;
+            }
+        }, new RowBinder<DeviceSnapshot<SimulatedDevice>>() {
+            @Override
+            public void bind(DeviceSnapshot<SimulatedDevice> device, Blackhole blackhole) {
+                blackhole.consume(device.getName());
+                blackhole.consume(device.getDeviceClass());
+            }
+        }, blackhole);
+        calls.binderCalls += radio.getBinderCallCount() - before;
+    }
+
+    private <D> void scan(DiscoveryPipeline.Decoder<DiscoveryEvent<SimulatedDevice>, D> decoder,
+                          SectionedDeviceList.Classifier<D> classifier,
+                          final RowBinder<D> binder, final Blackhole blackhole) {
+        final SectionedDeviceList<D> list = new SectionedDeviceList<>(classifier);
+        list.setCallback(new SectionedDeviceList.Callback() {
+            @Override
+            public void onInserted(int position, int count) {
+                bind(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                bind(position, count);
+            }
+
+            @SuppressWarnings("unchecked")
+            private void bind(int position, int count) {
+                for (int offset = 0; offset < count; offset++) {
+                    if (!list.isHeader(position + offset)) {
+                        binder.bind((D) list.getItem(position + offset), blackhole);
+                    }
+                }
+            }
+        });
+        final ManualClock clock = new ManualClock();
+        final DiscoveryPipeline<DiscoveryEvent<SimulatedDevice>, D> pipeline =
+                new DiscoveryPipeline<>(decoder, new DiscoveryPipeline.Listener<D>() {
+                    @Override
+                    public void onScanStarted(DiscoverySnapshot<D> snapshot) {
+                        list.setScanning(true);
+                        list.setAll(snapshot.getDevices());
+                    }
+
+                    @Override
+                    public void onDevicesFound(DiscoverySnapshot<D> snapshot) {
+                        for (D device : snapshot.getAddedDevices()) {
+                            list.add(device);
+                        }
+                    }
+
+                    @Override
+                    public void onScanFinished(DiscoverySnapshot<D> snapshot) {
+                        list.setScanning(false);
+                    }
+                }, DIRECT, clock, DiscoveryPipeline.DEFAULT_CAPACITY);
+        for (int step = 0; step < mScript.getStepCount(); step++) {
+            int deviceIndex = mScript.getStepDevice(step);
+            switch (mScript.getStep(step)) {
+                case RadioScript.STEP_DISCOVERY_STARTED:
+                    pipeline.offer(DiscoveryEvent.<SimulatedDevice>started());
+                    break;
+                case RadioScript.STEP_DEVICE_FOUND:
+                    pipeline.offer(DiscoveryEvent.found(mScript.getDevice(deviceIndex),
+                            null, null));
+                    break;
+                case RadioScript.STEP_DISCOVERY_FINISHED:
+                    pipeline.offer(DiscoveryEvent.<SimulatedDevice>finished());
+                    break;
+            }
+            clock.advance(1);
+            pipeline.drain();
+        }
+    }
+
+}
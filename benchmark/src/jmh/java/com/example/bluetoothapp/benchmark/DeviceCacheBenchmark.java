@@ -0,0 +1,107 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.cache.CachedDevice;
+import com.example.bluetoothapp.core.cache.DeviceCache;
+import com.example.bluetoothapp.core.cache.DeviceCacheFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start cost of getting the last-known devices back from disk. {@link #binary} loads the
+ * device cache; {@link #xml} reads the same fields from an XML properties file, which is how
+ * SharedPreferences stores them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeviceCacheBenchmark {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Param({"16", "128", "1024"})
+    public int deviceCount;
+
+    private File mBinaryFile;
+    private File mXmlFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42L);
+        ArrayList<CachedDevice> devices = new ArrayList<>(deviceCount);
+        Properties properties = new Properties();
+        for (int index = 0; index < deviceCount; index++) {
+            CachedDevice device = new CachedDevice(SyntheticDevice.address(index),
+                    "Device " + index, random.nextInt(0x2000) & 0x1FFC,
+                    random.nextInt(10) == 0 ? 12 : 10, 1500000000000L + index);
+            devices.add(device);
+            String key = device.getAddress();
+            properties.setProperty(key + ".name", device.getName());
+            properties.setProperty(key + ".class", Integer.toString(device.getDeviceClass()));
+            properties.setProperty(key + ".bond", Integer.toString(device.getBondState()));
+            properties.setProperty(key + ".seen", Long.toString(device.getLastSeen()));
+        }
+        mBinaryFile = File.createTempFile("devices", ".bin");
+        new DeviceCacheFile(mBinaryFile).rewrite(devices);
+        mXmlFile = File.createTempFile("devices", ".xml");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(mXmlFile));
+        try {
+            properties.storeToXML(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mBinaryFile.delete();
+        mXmlFile.delete();
+    }
+
+    @Benchmark
+    public DeviceCache binary() throws IOException {
+        DeviceCache cache = new DeviceCache(new DeviceCacheFile(mBinaryFile), DIRECT,
+                deviceCount);
+        cache.load();
+        return cache;
+    }
+
+    @Benchmark
+    public Properties xml() throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new BufferedInputStream(new FileInputStream(mXmlFile));
+        try {
+            properties.loadFromXML(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+}
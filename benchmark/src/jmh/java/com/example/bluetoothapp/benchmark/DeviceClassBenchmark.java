@@ -0,0 +1,65 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.device.DeviceClass;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class-of-device description lookups. {@link #hashMap()} rebuilds the boxed map on every call
+ * like the old getDeviceClassDescription() did; {@link #table()} goes through DeviceClass.
+ * Run with the gc profiler (the default for this module) to read gc.alloc.rate.norm, which is
+ * 0 B/op for the table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeviceClassBenchmark {
+
+    private static final int[] SAMPLE_CODES = {
+            0x0408, 0x020C, 0x010C, 0x0404, 0x0420, 0x0918, 0x0704, 0x0000, 0x0814, 0x1F00
+    };
+
+    private int mIndex;
+
+    @Benchmark
+    public String hashMap() {
+        int code = nextCode();
+        Map<Integer, String> deviceClasses = buildDeviceClasses();
+        return deviceClasses.get(code) == null ? "UNKNOWN" : deviceClasses.get(code);
+    }
+
+    @Benchmark
+    public String table() {
+        return DeviceClass.fromCode(nextCode()).name();
+    }
+
+    @Benchmark
+    public boolean tablePriorityCheck() {
+        return DeviceClass.fromCode(nextCode()) == DeviceClass.AUDIO_VIDEO_HANDSFREE;
+    }
+
+    private int nextCode() {
+        mIndex = (mIndex + 1) % SAMPLE_CODES.length;
+        return SAMPLE_CODES[mIndex];
+    }
+
+    private static Map<Integer, String> buildDeviceClasses() {
+        Map<Integer, String> deviceClasses = new HashMap<>();
+        for (DeviceClass deviceClass : DeviceClass.values()) {
+            if (deviceClass != DeviceClass.UNKNOWN) {
+                deviceClasses.put(deviceClass.getCode(), deviceClass.name());
+            }
+        }
+        return deviceClasses;
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.list.SectionedDeviceList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UI-side cost of one scan in which every device is reported through onDeviceFound. Divide the
+ * score by deviceCount for the per-found-device cost. {@link #rebuild} replays the old
+ * setList() + notifyDataSetChanged() path, which rebuilds the list and rebinds every row;
+ * {@link #incremental} applies each device to SectionedDeviceList and rebinds only the rows the
+ * callback reports.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeviceListBenchmark {
+
+    private static final boolean SCANNING = true;
+
+    @Param({"500", "1000", "2000"})
+    public int deviceCount;
+
+    private SyntheticDevice[] mDevices;
+
+    @Setup
+    public void setUp() {
+        mDevices = SyntheticDevice.population(deviceCount, 42L);
+    }
+
+    @Benchmark
+    public void rebuild(Blackhole blackhole) {
+        ArrayList<SyntheticDevice> found = new ArrayList<>();
+        for (SyntheticDevice device : mDevices) {
+            found.add(device);
+            ArrayList<Object> list = buildList(found);
+            for (int position = 0; position < list.size(); position++) {
+                blackhole.consume(list.get(position));
+            }
+        }
+    }
+
+    @Benchmark
+    public void incremental(final Blackhole blackhole) {
+        final SectionedDeviceList<SyntheticDevice> list =
+                new SectionedDeviceList<>(SyntheticDevice.CLASSIFIER);
+        list.setScanning(true);
+        list.setCallback(new SectionedDeviceList.Callback() {
+            @Override
+            public void onInserted(int position, int count) {
+                bind(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                bind(position, count);
+            }
+
+            private void bind(int position, int count) {
+                for (int offset = 0; offset < count; offset++) {
+                    blackhole.consume(list.getItem(position + offset));
+                }
+            }
+        });
+        for (SyntheticDevice device : mDevices) {
+            list.add(device);
+        }
+    }
+
+    private static ArrayList<Object> buildList(ArrayList<SyntheticDevice> devices) {
+        ArrayList<Object> list = new ArrayList<>();
+        if (getSection(devices, true).size() > 0) {
+            list.add("paired");
+            list.addAll(getSection(devices, true));
+        }
+        if (getSection(devices, false).size() > 0 || SCANNING) {
+            list.add("available");
+            list.addAll(getSection(devices, false));
+        }
+        return list;
+    }
+
+    private static ArrayList<SyntheticDevice> getSection(ArrayList<SyntheticDevice> devices,
+                                                         boolean paired) {
+        ArrayList<SyntheticDevice> priorityDevices = new ArrayList<>();
+        ArrayList<SyntheticDevice> otherDevices = new ArrayList<>();
+        for (SyntheticDevice device : devices) {
+            if (device.mPaired == paired) {
+                if (device.mPriority) {
+                    priorityDevices.add(device);
+                } else {
+                    otherDevices.add(device);
+                }
+            }
+        }
+        priorityDevices.addAll(otherDevices);
+        return priorityDevices;
+    }
+
+}
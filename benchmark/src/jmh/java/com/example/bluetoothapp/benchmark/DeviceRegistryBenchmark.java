@@ -0,0 +1,85 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.device.DeviceRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one full discovery pass (every device reported once) as the population grows.
+ * {@link #linearScan()} replays the old isNewDevice() dedup, {@link #registry()} the
+ * address-keyed registry that replaced it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeviceRegistryBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int deviceCount;
+
+    private String[] mAddresses;
+    private String[] mNames;
+
+    @Setup
+    public void setUp() {
+        mAddresses = new String[deviceCount];
+        mNames = new String[deviceCount];
+        for (int index = 0; index < deviceCount; index++) {
+            mAddresses[index] = String.format(Locale.US, "00:11:22:%02X:%02X:%02X",
+                    (index >> 16) & 0xFF, (index >> 8) & 0xFF, index & 0xFF);
+            mNames[index] = "Device " + index;
+        }
+    }
+
+    @Benchmark
+    public int linearScan() {
+        ArrayList<String> devices = new ArrayList<>();
+        for (int index = 0; index < deviceCount; index++) {
+            if (isNewDevice(devices, mNames[index])) {
+                devices.add(mNames[index]);
+            }
+        }
+        return devices.size();
+    }
+
+    @Benchmark
+    public int registry() {
+        DeviceRegistry<String> devices = new DeviceRegistry<>();
+        for (int index = 0; index < deviceCount; index++) {
+            devices.put(mAddresses[index], mNames[index], mNames[index]);
+        }
+        return devices.size();
+    }
+
+    @Benchmark
+    public int registryRescan() {
+        DeviceRegistry<String> devices = new DeviceRegistry<>(deviceCount);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int index = 0; index < deviceCount; index++) {
+                devices.put(mAddresses[index], mNames[index], mNames[index]);
+            }
+        }
+        return devices.size();
+    }
+
+    private static boolean isNewDevice(ArrayList<String> devices, String deviceName) {
+        for (int index = 0; index < devices.size(); index++) {
+            if (devices.get(index).equals(deviceName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.device.DeviceSnapshot;
+import com.example.bluetoothapp.core.search.DeviceSearchIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of answering one keystroke in the search box over deviceCount devices:
+ * {@link #keystroke()} types the next letter of a query into a kept search,
+ * {@link #typoQuery()} looks up a mistyped word afresh, and {@link #linearScan()} matches every
+ * name by substring as filtering the list directly would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeviceSearchBenchmark {
+
+    private static final String[] BRANDS = {"Bose", "Sony", "Galaxy", "Pixel", "JBL", "Jabra",
+            "Beats", "Garmin", "Fitbit", "Logitech", "Plantronics", "Sennheiser"};
+    private static final String[] MODELS = {"Headphones", "Speaker", "Watch", "Keyboard",
+            "Mouse", "Earbuds", "Car Kit", "Tracker", "Soundbar", "Phone"};
+    private static final String QUERY = "sennheiser headphones";
+
+    @Param({"100", "1000", "10000"})
+    public int deviceCount;
+
+    private DeviceSearchIndex<Object> mIndex;
+    private DeviceSearchIndex<Object>.Search mSearch;
+    private List<DeviceSnapshot<Object>> mDevices;
+    private int mTyped;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        mIndex = new DeviceSearchIndex<>();
+        mDevices = new ArrayList<>(deviceCount);
+        for (int index = 0; index < deviceCount; index++) {
+            String name = BRANDS[random.nextInt(BRANDS.length)] + ' ' +
+                    MODELS[random.nextInt(MODELS.length)] + ' ' + random.nextInt(1000);
+            String address = String.format(Locale.US, "00:11:22:%02X:%02X:%02X",
+                    (index >> 16) & 0xFF, (index >> 8) & 0xFF, index & 0xFF);
+            DeviceSnapshot<Object> device =
+                    new DeviceSnapshot<>(null, address, name, 0x0404, 10, 0, 0);
+            mDevices.add(device);
+            mIndex.put(device);
+        }
+        mSearch = mIndex.newSearch();
+    }
+
+    @Benchmark
+    public int keystroke() {
+        mTyped = mTyped % QUERY.length() + 1;
+        mSearch.setText(QUERY.substring(0, mTyped));
+        return mSearch.getResults().size();
+    }
+
+    @Benchmark
+    public int typoQuery() {
+        return mIndex.search("senheiser hedphones").size();
+    }
+
+    @Benchmark
+    public int linearScan() {
+        mTyped = mTyped % QUERY.length() + 1;
+        String query = QUERY.substring(0, mTyped);
+        int found = 0;
+        for (DeviceSnapshot<Object> device : mDevices) {
+            if (device.getName().toLowerCase(Locale.ROOT).contains(query)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.device.DeviceClass;
+import com.example.bluetoothapp.core.discovery.DiscoveryEvent;
+import com.example.bluetoothapp.core.discovery.DiscoveryPipeline;
+import com.example.bluetoothapp.core.discovery.DiscoverySnapshot;
+import com.example.bluetoothapp.core.list.SectionedDeviceList;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.RadioScript;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedRadio;
+import com.example.bluetoothapp.core.time.ManualClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One scan of a seeded {@link RadioScript}, replayed by {@link SimulatedRadio} through the same
+ * steps BluetoothFacade and DeviceAdapter take on a device. Every device is reported twice, as
+ * inquiry does, and a tenth of them are unnamed and dropped by the decoder.
+ * <ul>
+ * <li>{@link #scan} runs the whole path: radio event, pipeline decode and dedup, snapshot
+ * publish, and the incremental list update with a bind for every touched row.</li>
+ * <li>{@link #dedup} stops at the published snapshots.</li>
+ * <li>{@link #knownDevices} is the bonded device listing done at every scan start.</li>
+ * </ul>
+ * Run with the gc profiler (the module default) for bytes allocated per scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DiscoveryBenchmark {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Param({"10", "100", "1000", "10000"})
+    public int deviceCount;
+
+    @Param({"0.0", "0.5", "0.9"})
+    public double nameCollisionRate;
+
+    private RadioScript mScript;
+    private SimulatedRadio mRadio;
+
+    @Setup
+    public void setUp() {
+        mScript = new RadioScript.Builder()
+                .setSeed(42L)
+                .setDeviceCount(deviceCount)
+                .setFoundEvents(deviceCount * 2)
+                .setNameCollisionRate(nameCollisionRate)
+                .setUnnamedRate(0.1)
+                .build();
+        mRadio = new SimulatedRadio();
+        mRadio.load(mScript);
+    }
+
+    @Benchmark
+    public void scan(final Blackhole blackhole) {
+        final SectionedDeviceList<SimulatedDevice> list =
+                new SectionedDeviceList<>(createClassifier(mRadio));
+        list.setCallback(new SectionedDeviceList.Callback() {
+            @Override
+            public void onInserted(int position, int count) {
+                bind(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                bind(position, count);
+            }
+
+            private void bind(int position, int count) {
+                for (int offset = 0; offset < count; offset++) {
+                    blackhole.consume(list.getItem(position + offset));
+                }
+            }
+        });
+        replay(new DiscoveryPipeline.Listener<SimulatedDevice>() {
+            @Override
+            public void onScanStarted(DiscoverySnapshot<SimulatedDevice> snapshot) {
+                list.setScanning(true);
+                list.setAll(snapshot.getDevices());
+            }
+
+            @Override
+            public void onDevicesFound(DiscoverySnapshot<SimulatedDevice> snapshot) {
+                for (SimulatedDevice device : snapshot.getAddedDevices()) {
+                    list.add(device);
+                }
+            }
+
+            @Override
+            public void onScanFinished(DiscoverySnapshot<SimulatedDevice> snapshot) {
+                list.setScanning(false);
+            }
+        });
+    }
+
+    @Benchmark
+    public void dedup(final Blackhole blackhole) {
+        replay(new DiscoveryPipeline.Listener<SimulatedDevice>() {
+            @Override
+            public void onScanStarted(DiscoverySnapshot<SimulatedDevice> snapshot) {
+                blackhole.consume(snapshot);
+            }
+
+            @Override
+            public void onDevicesFound(DiscoverySnapshot<SimulatedDevice> snapshot) {
+                blackhole.consume(snapshot.getAddedDevices());
+            }
+
+            @Override
+            public void onScanFinished(DiscoverySnapshot<SimulatedDevice> snapshot) {
+                blackhole.consume(snapshot.size());
+            }
+        });
+    }
+
+    @Benchmark
+    public List<DiscoveryEvent<SimulatedDevice>> knownDevices() {
+        return getKnownDevices(mRadio);
+    }
+
+    private void replay(DiscoveryPipeline.Listener<SimulatedDevice> listener) {
+        final ManualClock clock = new ManualClock();
+        final DiscoveryPipeline<DiscoveryEvent<SimulatedDevice>, SimulatedDevice> pipeline =
+                new DiscoveryPipeline<>(createDecoder(mRadio), listener, DIRECT, clock,
+                        DiscoveryPipeline.DEFAULT_CAPACITY);
+        mRadio.open(new BluetoothRadio.Listener<SimulatedDevice>() {
+            @Override
+            public void onStateChanged(int state) {
+            }
+
+            @Override
+            public void onDiscoveryStarted() {
+                offer(DiscoveryEvent.<SimulatedDevice>started());
+            }
+
+            @Override
+            public void onDiscoveryFinished() {
+                offer(DiscoveryEvent.<SimulatedDevice>finished());
+            }
+
+            @Override
+            public void onDeviceFound(SimulatedDevice device, short rssi) {
+                offer(DiscoveryEvent.found(device, null, null));
+            }
+
+            @Override
+            public void onAclConnected(SimulatedDevice device) {
+            }
+
+            @Override
+            public void onAclDisconnected(SimulatedDevice device) {
+            }
+
+            @Override
+            public void onNameChanged(SimulatedDevice device, String name) {
+            }
+
+            @Override
+            public void onClassChanged(SimulatedDevice device, int deviceClass) {
+            }
+
+            @Override
+            public void onBondStateChanged(SimulatedDevice device, int bondState) {
+            }
+
+            // Inquiry reports a device every millisecond or so; the worker keeps up.
+            private void offer(DiscoveryEvent<SimulatedDevice> event) {
+                clock.advance(1);
+                pipeline.offer(event);
+                pipeline.drain();
+            }
+        }, BluetoothRadio.EVENT_DISCOVERY);
+        mRadio.replay(mScript);
+        mRadio.close();
+    }
+
+    private static DiscoveryPipeline.Decoder<DiscoveryEvent<SimulatedDevice>, SimulatedDevice>
+            createDecoder(final SimulatedRadio radio) {
+        return new DiscoveryPipeline.Decoder<DiscoveryEvent<SimulatedDevice>, SimulatedDevice>() {
+            @Override
+            public DiscoveryEvent<SimulatedDevice> decode(DiscoveryEvent<SimulatedDevice> event) {
+                if (event.getType() != DiscoveryEvent.Type.FOUND) {
+                    return event;
+                }
+                SimulatedDevice device = event.getDevice();
+                String name = radio.getName(device);
+                if (name == null) {
+                    return null;
+                }
+                return DiscoveryEvent.found(device, radio.getAddress(device), name);
+            }
+
+            @Override
+            public List<DiscoveryEvent<SimulatedDevice>> getKnownDevices() {
+                return DiscoveryBenchmark.getKnownDevices(radio);
+            }
+        };
+    }
+
+    private static List<DiscoveryEvent<SimulatedDevice>> getKnownDevices(SimulatedRadio radio) {
+        Collection<SimulatedDevice> devices = radio.getBondedDevices();
+        List<DiscoveryEvent<SimulatedDevice>> known = new ArrayList<>(devices.size());
+        for (SimulatedDevice device : devices) {
+            String name = radio.getName(device);
+            if (name != null) {
+                known.add(DiscoveryEvent.found(device, radio.getAddress(device), name));
+            }
+        }
+        return known;
+    }
+
+    private static SectionedDeviceList.Classifier<SimulatedDevice> createClassifier(
+            final SimulatedRadio radio) {
+        return new SectionedDeviceList.Classifier<SimulatedDevice>() {
+            @Override
+            public String getAddress(SimulatedDevice device) {
+                return radio.getAddress(device);
+            }
+
+            @Override
+            public boolean isPaired(SimulatedDevice device) {
+                return radio.getBondState(device) == BluetoothRadio.BOND_BONDED;
+            }
+
+            @Override
+            public boolean hasPriority(SimulatedDevice device) {
+                return DeviceClass.fromCode(radio.getDeviceClass(device)) ==
+                        DeviceClass.AUDIO_VIDEO_HANDSFREE;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.channel.BufferPool;
+import com.example.bluetoothapp.core.channel.FrameChannel;
+import com.example.bluetoothapp.core.channel.SocketByteStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frames of payloadSize bytes between two {@link FrameChannel}s over a loopback socket pair,
+ * the stand-in for an RFCOMM link. {@link #roundTrip()} sends a frame the peer echoes and
+ * waits for it to come back; {@link #stream()} sends a burst of frames the peer only counts,
+ * as a sensor streaming readings would, and waits for the last to arrive.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameChannelBenchmark {
+
+    private static final int BURST = 1024;
+    private static final byte ECHO = 1;
+    private static final byte SINK = 0;
+    private static final long TIMEOUT = 10000;
+
+    @Param({"16", "256", "4000"})
+    public int payloadSize;
+
+    private FrameChannel mChannel;
+    private FrameChannel mPeer;
+    // Released once per frame the peer counts or echoes back here.
+    private final Semaphore mArrived = new Semaphore(0);
+    private ByteBuffer mEcho;
+    private ByteBuffer mSink;
+
+    @Setup
+    public void setUp() throws IOException {
+        SocketByteStream[] streams = SocketByteStream.pair();
+        mChannel = new FrameChannel("local", streams[0], new BufferPool(16 * 1024, 16),
+                FrameChannel.Policy.DEFAULT, new FrameChannel.Listener() {
+                    @Override
+                    public void onFrame(FrameChannel channel, ByteBuffer frame) {
+                        mArrived.release();
+                    }
+
+                    @Override
+                    public void onClosed(FrameChannel channel, IOException cause) {
+                    }
+                });
+        mPeer = new FrameChannel("peer", streams[1], new BufferPool(16 * 1024, 16),
+                FrameChannel.Policy.DEFAULT, new FrameChannel.Listener() {
+                    @Override
+                    public void onFrame(FrameChannel channel, ByteBuffer frame) {
+                        if (frame.get(frame.position()) == ECHO) {
+                            channel.offer(frame);
+                        } else {
+                            mArrived.release();
+                        }
+                    }
+
+                    @Override
+                    public void onClosed(FrameChannel channel, IOException cause) {
+                    }
+                });
+        mChannel.start();
+        mPeer.start();
+        mEcho = payload(ECHO);
+        mSink = payload(SINK);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mChannel.close();
+        mPeer.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void roundTrip() throws InterruptedException {
+        mChannel.send(mEcho, TIMEOUT);
+        mArrived.acquire();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(BURST)
+    public void stream() throws InterruptedException {
+        for (int frame = 0; frame < BURST; frame++) {
+            mChannel.send(mSink, TIMEOUT);
+        }
+        mArrived.acquire(BURST);
+    }
+
+    private ByteBuffer payload(byte kind) {
+        ByteBuffer payload = ByteBuffer.allocate(payloadSize);
+        payload.put(0, kind);
+        return payload;
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.device.DeviceRegistry;
+import com.example.bluetoothapp.core.device.MacAddress;
+import com.example.bluetoothapp.core.radio.BluetoothRadio;
+import com.example.bluetoothapp.core.radio.LeScanFilter;
+import com.example.bluetoothapp.core.radio.LeScanResult;
+import com.example.bluetoothapp.core.radio.LeScanSettings;
+import com.example.bluetoothapp.core.radio.LeScanner;
+import com.example.bluetoothapp.core.radio.RadioScript;
+import com.example.bluetoothapp.core.radio.SimulatedDevice;
+import com.example.bluetoothapp.core.radio.SimulatedLeScanner;
+import com.example.bluetoothapp.core.signal.SignalTracker;
+import com.example.bluetoothapp.core.time.VirtualScheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of taking resultCount LE scan results into the device registry and signal tracker, as
+ * the facade does. {@link #batched()} receives them as one batch, as with a report delay;
+ * {@link #unbatched()} one callback per result. With filtered, a service UUID filter that a
+ * quarter of the results match is applied first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LeBatchBenchmark {
+
+    private static final UUID SERVICE = UUID.fromString("0000feaa-0000-1000-8000-00805f9b34fb");
+    private static final int DEVICE_COUNT = 200;
+
+    @Param({"100", "1000", "10000"})
+    public int resultCount;
+
+    @Param({"false", "true"})
+    public boolean filtered;
+
+    private List<LeScanResult<SimulatedDevice>> mResults;
+    private SimulatedLeScanner mBatchedScanner;
+    private SimulatedLeScanner mUnbatchedScanner;
+    private DeviceRegistry<SimulatedDevice> mRegistry;
+    private SignalTracker mSignals;
+    private long mNow;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        SimulatedDevice[] devices = new SimulatedDevice[DEVICE_COUNT];
+        for (int index = 0; index < DEVICE_COUNT; index++) {
+            devices[index] = new SimulatedDevice(RadioScript.address(index), null, -1,
+                    BluetoothRadio.BOND_NONE);
+        }
+        List<UUID> advertised = Collections.singletonList(SERVICE);
+        mResults = new ArrayList<>(resultCount);
+        for (int index = 0; index < resultCount; index++) {
+            int device = random.nextInt(DEVICE_COUNT);
+            mResults.add(new LeScanResult<>(devices[device], "Beacon " + device,
+                    -40 - random.nextInt(60), index, device % 4 == 0 ? advertised : null, null));
+        }
+        mBatchedScanner = new SimulatedLeScanner(new VirtualScheduler());
+        mBatchedScanner.startScan(settings(1000), mCallback);
+        mUnbatchedScanner = new SimulatedLeScanner(new VirtualScheduler());
+        mUnbatchedScanner.startScan(settings(0), mCallback);
+        mRegistry = new DeviceRegistry<>(DEVICE_COUNT);
+        mSignals = new SignalTracker(DEVICE_COUNT);
+    }
+
+    private LeScanSettings settings(long reportDelay) {
+        LeScanSettings.Builder builder = new LeScanSettings.Builder().setReportDelay(reportDelay);
+        if (filtered) {
+            builder.addFilter(LeScanFilter.serviceUuid(SERVICE));
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public int batched() {
+        mBatchedScanner.emitBatch(mResults);
+        return mRegistry.size();
+    }
+
+    @Benchmark
+    public int unbatched() {
+        for (int index = 0; index < mResults.size(); index++) {
+            mUnbatchedScanner.emit(mResults.get(index));
+        }
+        return mRegistry.size();
+    }
+
+    private final LeScanner.Callback<SimulatedDevice> mCallback =
+            new LeScanner.Callback<SimulatedDevice>() {
+                @Override
+                public void onResults(List<LeScanResult<SimulatedDevice>> results) {
+                    long now = mNow++;
+                    for (int index = 0; index < results.size(); index++) {
+                        LeScanResult<SimulatedDevice> result = results.get(index);
+                        SimulatedDevice device = result.getDevice();
+                        mSignals.update(MacAddress.pack(device.getAddress()), result.getRssi(),
+                                now);
+                        mRegistry.put(device.getAddress(), result.getName(), device);
+                    }
+                }
+
+                @Override
+                public void onScanFailed(int errorCode) {
+                }
+            };
+
+}
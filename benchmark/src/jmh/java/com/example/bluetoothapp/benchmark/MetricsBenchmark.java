@@ -0,0 +1,59 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.metrics.Counter;
+import com.example.bluetoothapp.core.metrics.Histogram;
+import com.example.bluetoothapp.core.metrics.MetricsRegistry;
+import com.example.bluetoothapp.core.reconnect.LatencyRecorder;
+import com.example.bluetoothapp.core.time.Clock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of recording a metric from four threads at once, as the radio, main, link and service
+ * threads do. {@link #counter()} increments a striped counter, {@link #atomicLong()} a single
+ * shared one; {@link #histogram()} records a latency into the fixed buckets,
+ * {@link #latencyRecorder()} into the locked ring the reconnect engine keeps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class MetricsBenchmark {
+
+    private final MetricsRegistry mMetrics = new MetricsRegistry(Clock.WALL);
+    private final Counter mCounter = mMetrics.counter("counter");
+    private final AtomicLong mAtomicLong = new AtomicLong();
+    private final Histogram mHistogram = mMetrics.histogram("histogram");
+    private final LatencyRecorder mLatencyRecorder = new LatencyRecorder(1024);
+
+    @Benchmark
+    public void counter() {
+        mCounter.increment();
+    }
+
+    @Benchmark
+    public long atomicLong() {
+        return mAtomicLong.incrementAndGet();
+    }
+
+    @Benchmark
+    public void histogram() {
+        mHistogram.record(ThreadLocalRandom.current().nextInt(1 << 20));
+    }
+
+    @Benchmark
+    public void latencyRecorder() {
+        mLatencyRecorder.record(ThreadLocalRandom.current().nextInt(1 << 20));
+    }
+
+}
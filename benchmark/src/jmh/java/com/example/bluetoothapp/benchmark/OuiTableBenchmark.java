@@ -0,0 +1,129 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.vendor.OuiTable;
+import com.example.bluetoothapp.core.vendor.OuiTableWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vendor lookups against a registry of entryCount OUIs, three in four of them hits:
+ * {@link #lookup()} searches the mapped table, {@link #lookupHashMap()} a map from boxed OUI
+ * to name, as parsing the registry at startup would build. {@link #map()} is the load time of
+ * the table; {@link #parseCsv()} that of reading the registry CSV instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OuiTableBenchmark {
+
+    private static final int LOOKUPS = 4096;
+
+    @Param({"1000", "35000"})
+    public int entryCount;
+
+    private File mTableFile;
+    private File mCsvFile;
+    private OuiTable mTable;
+    private final HashMap<Integer, String> mMap = new HashMap<>();
+    private long[] mAddresses;
+    private int mLookup;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(7);
+        OuiTableWriter writer = new OuiTableWriter();
+        int[] ouis = new int[entryCount];
+        mCsvFile = File.createTempFile("oui", ".csv");
+        Writer csv = new OutputStreamWriter(new FileOutputStream(mCsvFile), "UTF-8");
+        try {
+            csv.write("Registry,Assignment,Organization Name,Organization Address\n");
+            while (writer.size() < entryCount) {
+                // Globally administered, as every registered OUI is.
+                int oui = random.nextInt(0x1000000) & ~0x020000;
+                String vendor = "Vendor " + random.nextInt(entryCount * 2 / 3 + 1) + ", Inc.";
+                if (mMap.put(oui, vendor) == null) {
+                    ouis[writer.size()] = oui;
+                }
+                writer.add(oui, vendor);
+                csv.write(String.format(Locale.US, "MA-L,%06X,\"%s\",Street 1 City\n", oui,
+                        vendor));
+            }
+        } finally {
+            csv.close();
+        }
+        mTableFile = File.createTempFile("oui", ".bin");
+        OutputStream out = new FileOutputStream(mTableFile);
+        try {
+            writer.writeTo(out);
+        } finally {
+            out.close();
+        }
+        mTable = OuiTable.map(mTableFile);
+        mAddresses = new long[LOOKUPS];
+        for (int index = 0; index < LOOKUPS; index++) {
+            int oui = random.nextInt(4) == 0 ? random.nextInt(0x1000000) & ~0x020000
+                    : ouis[random.nextInt(entryCount)];
+            mAddresses[index] = ((long) oui << 24) | random.nextInt(0x1000000);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mTableFile.delete();
+        mCsvFile.delete();
+    }
+
+    @Benchmark
+    public int lookup() {
+        long address = mAddresses[mLookup++ & (LOOKUPS - 1)];
+        return mTable.findVendor(address);
+    }
+
+    @Benchmark
+    public String lookupHashMap() {
+        long address = mAddresses[mLookup++ & (LOOKUPS - 1)];
+        return mMap.get((int) (address >>> 24));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public OuiTable map() throws IOException {
+        return OuiTable.map(mTableFile);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public OuiTableWriter parseCsv() throws IOException {
+        OuiTableWriter writer = new OuiTableWriter();
+        Reader in = new InputStreamReader(new FileInputStream(mCsvFile), "UTF-8");
+        try {
+            writer.readCsv(in);
+        } finally {
+            in.close();
+        }
+        return writer;
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.device.MacAddress;
+import com.example.bluetoothapp.core.signal.SignalTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one RSSI sample against a tracker already holding deviceCount devices, and of
+ * reading the ten nearest of them: {@link #nearestFromHeap()} walks the tracker's heap,
+ * {@link #nearestBySorting()} sorts every estimate as re-sorting the list would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SignalTrackerBenchmark {
+
+    private static final int SAMPLES = 4096;
+    private static final int NEAREST = 10;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int deviceCount;
+
+    private SignalTracker mTracker;
+    private long[] mAddresses;
+    private long[] mSampleAddresses;
+    private short[] mSampleRssi;
+    private long[] mNearest;
+    private double[] mEstimates;
+    private int mSample;
+    private long mNow;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        mAddresses = new long[deviceCount];
+        mTracker = new SignalTracker(deviceCount);
+        for (int index = 0; index < deviceCount; index++) {
+            mAddresses[index] = MacAddress.pack(String.format(Locale.US, "00:11:22:%02X:%02X:%02X",
+                    (index >> 16) & 0xFF, (index >> 8) & 0xFF, index & 0xFF));
+            mTracker.update(mAddresses[index], -30 - random.nextInt(70), 0);
+        }
+        mSampleAddresses = new long[SAMPLES];
+        mSampleRssi = new short[SAMPLES];
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            mSampleAddresses[sample] = mAddresses[random.nextInt(deviceCount)];
+            mSampleRssi[sample] = (short) (-30 - random.nextInt(70));
+        }
+        mNearest = new long[NEAREST];
+        mEstimates = new double[deviceCount];
+    }
+
+    @Benchmark
+    public void update() {
+        int sample = mSample++ & (SAMPLES - 1);
+        mTracker.update(mSampleAddresses[sample], mSampleRssi[sample], mNow++);
+    }
+
+    @Benchmark
+    public int nearestFromHeap() {
+        return mTracker.getNearest(mNearest, 0);
+    }
+
+    @Benchmark
+    public double nearestBySorting() {
+        for (int index = 0; index < deviceCount; index++) {
+            mEstimates[index] = mTracker.getRssi(mAddresses[index]);
+        }
+        Arrays.sort(mEstimates);
+        return mEstimates[deviceCount - Math.min(NEAREST, deviceCount)];
+    }
+
+}
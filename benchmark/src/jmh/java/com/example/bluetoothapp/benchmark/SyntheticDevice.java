@@ -0,0 +1,55 @@
+package com.example.bluetoothapp.benchmark;
+
+import com.example.bluetoothapp.core.list.SectionedDeviceList;
+
+import java.util.Locale;
+import java.util.Random;
+
+final class SyntheticDevice {
+
+    static final SectionedDeviceList.Classifier<SyntheticDevice> CLASSIFIER =
+            new SectionedDeviceList.Classifier<SyntheticDevice>() {
+                @Override
+                public String getAddress(SyntheticDevice device) {
+                    return device.mAddress;
+                }
+
+                @Override
+                public boolean isPaired(SyntheticDevice device) {
+                    return device.mPaired;
+                }
+
+                @Override
+                public boolean hasPriority(SyntheticDevice device) {
+                    return device.mPriority;
+                }
+            };
+
+    final String mAddress;
+    final String mName;
+    final boolean mPaired;
+    final boolean mPriority;
+
+    SyntheticDevice(String address, String name, boolean paired, boolean priority) {
+        mAddress = address;
+        mName = name;
+        mPaired = paired;
+        mPriority = priority;
+    }
+
+    static String address(int index) {
+        return String.format(Locale.US, "00:11:22:%02X:%02X:%02X",
+                (index >> 16) & 0xFF, (index >> 8) & 0xFF, index & 0xFF);
+    }
+
+    static SyntheticDevice[] population(int count, long seed) {
+        Random random = new Random(seed);
+        SyntheticDevice[] devices = new SyntheticDevice[count];
+        for (int index = 0; index < count; index++) {
+            devices[index] = new SyntheticDevice(address(index), "Device " + index,
+                    random.nextInt(10) == 0, random.nextInt(5) == 0);
+        }
+        return devices;
+    }
+
+}